@@ -81,6 +81,16 @@ public final class DownloaderImpl extends Downloader {
         return instance;
     }
 
+    /**
+     * Get the HTTP client used by the extractor, its connection pool is also used by the
+     * downloads.
+     *
+     * @return the client
+     */
+    public OkHttpClient getClient() {
+        return client;
+    }
+
     /**
      * Enable TLS 1.2 and 1.1 on Android Kitkat. This function is mostly taken
      * from the documentation of OkHttpClient.Builder.sslSocketFactory(_,_).
@@ -161,6 +161,7 @@ import org.schabi.newpipe.error.ErrorUtil;
 import org.schabi.newpipe.error.UserAction;
 import org.schabi.newpipe.extractor.Info;
 import org.schabi.newpipe.extractor.MediaFormat;
+import org.schabi.newpipe.extractor.stream.AudioStream;
 import org.schabi.newpipe.extractor.stream.StreamInfo;
 import org.schabi.newpipe.extractor.stream.StreamSegment;
 import org.schabi.newpipe.extractor.stream.StreamType;
@@ -177,8 +178,10 @@ import org.schabi.newpipe.player.event.PlayerEventListener;
 import org.schabi.newpipe.player.event.PlayerGestureListener;
 import org.schabi.newpipe.player.event.PlayerServiceEventListener;
 import org.schabi.newpipe.player.helper.AudioReactor;
+import org.schabi.newpipe.player.helper.CachePrefetcher;
 import org.schabi.newpipe.player.helper.LoadController;
 import org.schabi.newpipe.player.helper.MediaSessionManager;
+import org.schabi.newpipe.player.helper.PinningCacheEvictor;
 import org.schabi.newpipe.player.helper.PlayerDataSource;
 import org.schabi.newpipe.player.helper.PlayerHelper;
 import org.schabi.newpipe.player.listeners.view.PlaybackSpeedClickListener;
@@ -187,6 +190,7 @@ import org.schabi.newpipe.player.mediaitem.MediaItemTag;
 import org.schabi.newpipe.player.playback.MediaSourceManager;
 import org.schabi.newpipe.player.playback.PlaybackListener;
 import org.schabi.newpipe.player.playback.PlayerMediaSession;
+import org.schabi.newpipe.player.playback.PreloadWindow;
 import org.schabi.newpipe.player.playback.SurfaceHolderCallback;
 import org.schabi.newpipe.player.playqueue.PlayQueue;
 import org.schabi.newpipe.player.playqueue.PlayQueueAdapter;
@@ -210,6 +214,7 @@ import org.schabi.newpipe.util.external_communication.ShareUtils;
 import org.schabi.newpipe.views.ExpandableSurfaceView;
 import org.schabi.newpipe.views.player.PlayerFastSeekOverlay;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -289,6 +294,7 @@ public final class Player implements
     private StreamSegmentAdapter segmentAdapter;
 
     @Nullable private MediaSourceManager playQueueManager;
+    @Nullable private PreloadWindow preloadWindow;
 
     @Nullable private PlayQueueItem currentItem;
     @Nullable private MediaItemTag currentMetadata;
@@ -309,6 +315,8 @@ public final class Player implements
 
     @NonNull private final VideoPlaybackResolver videoResolver;
     @NonNull private final AudioPlaybackResolver audioResolver;
+    @NonNull private final CachePrefetcher cachePrefetcher;
+    @NonNull private final PinningCacheEvictor cacheEvictor;
 
     private final MainPlayer service; //TODO try to remove and replace everything with context
 
@@ -436,6 +444,8 @@ public final class Player implements
 
         videoResolver = new VideoPlaybackResolver(context, dataSource, getQualityResolver());
         audioResolver = new AudioPlaybackResolver(context, dataSource);
+        cachePrefetcher = dataSource.getCachePrefetcher();
+        cacheEvictor = dataSource.getCacheEvictor();
 
         windowManager = ContextCompat.getSystemService(context, WindowManager.class);
     }
@@ -932,6 +942,12 @@ public final class Player implements
         if (playQueueManager != null) {
             playQueueManager.dispose();
         }
+        cachePrefetcher.cancel();
+        cacheEvictor.setPinnedUrls(Collections.emptyList());
+        cacheEvictor.flush();
+        if (DEBUG) {
+            Log.d(TAG, "Player cache: " + cacheEvictor);
+        }
         if (mediaSessionManager != null) {
             mediaSessionManager.dispose();
         }
@@ -990,7 +1006,11 @@ public final class Player implements
         }
 
         if (playQueue != null) {
-            playQueueManager = new MediaSourceManager(this, playQueue);
+            // keep the observed skip behaviour between play queues
+            if (preloadWindow == null) {
+                preloadWindow = new PreloadWindow(context);
+            }
+            playQueueManager = new MediaSourceManager(this, playQueue, preloadWindow);
         }
     }
 
@@ -2783,6 +2803,7 @@ public final class Player implements
             return;
         }
         currentItem = item;
+        updateCachePins();
 
         // Check if on wrong window
         if (currentPlayQueueIndex != playQueue.getIndex()) {
@@ -3163,6 +3184,7 @@ public final class Player implements
 
     @Override
     public void onPlayQueueEdited() {
+        updateCachePins();
         notifyPlaybackUpdateToListeners();
         showOrHideButtons();
         NotificationUtil.getInstance().createNotificationIfNeededAndUpdate(this, false);
@@ -3374,6 +3396,54 @@ public final class Player implements
         return videoResolver.resolve(info);
     }
 
+    @Override // own playback listener
+    public void onSourcePreloaded(@NonNull final PlayQueueItem item,
+                                  @NonNull final MediaItemTag metadata) {
+        final StreamInfo info = metadata.getMaybeStreamInfo().orElse(null);
+        if (info == null) {
+            return;
+        }
+
+        // Prefetch the same streams as chosen by sourceOf, the video renderer is disabled when
+        // playing in background so the video stream would not be played
+        @Nullable final VideoStream video = audioPlayerSelected() || isAudioOnly ? null
+                : metadata.getMaybeQuality()
+                        .map(MediaItemTag.Quality::getSelectedVideoStream)
+                        .orElse(null);
+
+        @Nullable AudioStream audio = null;
+        if (video == null || video.isVideoOnly()) {
+            final List<AudioStream> audioStreams = info.getAudioStreams();
+            final int index = ListHelper.getDefaultAudioFormat(context, audioStreams);
+            if (index >= 0 && index < audioStreams.size()) {
+                audio = audioStreams.get(index);
+            }
+        }
+
+        cachePrefetcher.prefetch(info, video, audio);
+    }
+
+    /**
+     * Prevents the cached streams around the current one from being evicted, so that going back
+     * and forth in the queue never downloads them again.
+     */
+    private void updateCachePins() {
+        if (playQueue == null) {
+            return;
+        }
+
+        final List<PlayQueueItem> streams = playQueue.getStreams();
+        final int index = playQueue.getIndex();
+        final int preloadSize = preloadWindow == null
+                ? PreloadWindow.MINIMUM_SIZE : preloadWindow.getSize();
+
+        final List<String> urls = new ArrayList<>();
+        for (int i = Math.max(0, index - 1); i <= index + preloadSize && i < streams.size(); i++) {
+            urls.add(streams.get(i).getUrl());
+        }
+        cacheEvictor.setPinnedUrls(urls);
+    }
+
     public void disablePreloadingOfCurrentTrack() {
         loadController.disablePreloadingOfCurrentTrack();
     }
@@ -11,7 +11,6 @@ import com.google.android.exoplayer2.upstream.FileDataSource;
 import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSink;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
-import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
 import com.google.android.exoplayer2.upstream.cache.SimpleCache;
 
 import java.io.File;
@@ -34,18 +33,17 @@ import androidx.annotation.NonNull;
     // see: https://stackoverflow.com/questions/28700391/using-cache-in-exoplayer
     // todo: make this a singleton?
     private static SimpleCache cache;
+    private static PinningCacheEvictor evictor;
 
     CacheFactory(@NonNull final Context context,
                  @NonNull final String userAgent,
                  @NonNull final TransferListener transferListener) {
-        this(context, userAgent, transferListener, PlayerHelper.getPreferredCacheSize(),
-                PlayerHelper.getPreferredFileSize());
+        this(context, userAgent, transferListener, PlayerHelper.getPreferredFileSize());
     }
 
     private CacheFactory(@NonNull final Context context,
                          @NonNull final String userAgent,
                          @NonNull final TransferListener transferListener,
-                         final long maxCacheSize,
                          final long maxFileSize) {
         this.maxFileSize = maxFileSize;
 
@@ -59,38 +57,26 @@ import androidx.annotation.NonNull;
         }
 
         if (cache == null) {
-            final LeastRecentlyUsedCacheEvictor evictor
-                    = new LeastRecentlyUsedCacheEvictor(maxCacheSize);
+            // the size of the cache is chosen by the evictor from the free space
+            evictor = new PinningCacheEvictor(cacheDir);
             cache = new SimpleCache(cacheDir, evictor, new StandaloneDatabaseProvider(context));
         }
     }
 
+    @NonNull
+    PinningCacheEvictor getEvictor() {
+        return evictor;
+    }
+
     @NonNull
     @Override
-    public DataSource createDataSource() {
+    public CacheDataSource createDataSource() {
         Log.d(TAG, "initExoPlayerCache: cacheDir = " + cacheDir.getAbsolutePath());
 
         final DataSource dataSource = dataSourceFactory.createDataSource();
         final FileDataSource fileSource = new FileDataSource();
         final CacheDataSink dataSink = new CacheDataSink(cache, maxFileSize);
 
-        return new CacheDataSource(cache, dataSource, fileSource, dataSink, CACHE_FLAGS, null);
-    }
-
-    public void tryDeleteCacheFiles() {
-        if (!cacheDir.exists() || !cacheDir.isDirectory()) {
-            return;
-        }
-
-        try {
-            for (final File file : cacheDir.listFiles()) {
-                final String filePath = file.getAbsolutePath();
-                final boolean deleteSuccessful = file.delete();
-
-                Log.d(TAG, "tryDeleteCacheFiles: " + filePath + " deleted = " + deleteSuccessful);
-            }
-        } catch (final Exception e) {
-            Log.e(TAG, "Failed to delete file.", e);
-        }
+        return new CacheDataSource(cache, dataSource, fileSource, dataSink, CACHE_FLAGS, evictor);
     }
 }
@@ -0,0 +1,169 @@
+package org.schabi.newpipe.player.helper;
+
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.ArrayMap;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.cache.CacheWriter;
+import com.google.android.exoplayer2.util.Util;
+
+import org.schabi.newpipe.extractor.MediaFormat;
+import org.schabi.newpipe.extractor.stream.AudioStream;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.extractor.stream.VideoStream;
+import org.schabi.newpipe.util.StreamTypeUtil;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Map;
+
+import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+import static org.schabi.newpipe.player.Player.DEBUG;
+
+/**
+ * Downloads the first seconds of the streams that will be played next into the player cache,
+ * using the same cache keys as the media sources, so that the next stream starts without
+ * buffering. Only progressive streams are prefetched, DASH and HLS streams are loaded in
+ * chunks by the player anyway.
+ * <p>
+ * All methods must be called from the main thread.
+ * </p>
+ */
+public final class CachePrefetcher {
+    private static final String TAG = "CachePrefetcher";
+
+    /**
+     * How many seconds of each audio stream are downloaded in advance.
+     */
+    private static final int PREFETCH_SECONDS = 5;
+
+    /**
+     * The smallest amount of bytes downloaded from an audio stream, enough for the container
+     * headers of low bitrate streams.
+     */
+    private static final long MINIMUM_AUDIO_BYTES = 64 * 1024;
+
+    /**
+     * The amount of bytes downloaded from a video stream, the bitrate of video streams is not
+     * always known. This is about {@link #PREFETCH_SECONDS} seconds of a 720p stream.
+     */
+    private static final long VIDEO_BYTES = 1024 * 1024;
+
+    @NonNull
+    private final CacheFactory cacheFactory;
+
+    /**
+     * The running downloads by cache key, a key is never downloaded twice at the same time.
+     */
+    @NonNull
+    private final Map<String, Disposable> prefetches = new ArrayMap<>();
+
+    CachePrefetcher(@NonNull final CacheFactory cacheFactory) {
+        this.cacheFactory = cacheFactory;
+    }
+
+    /**
+     * Downloads the beginning of the streams of an upcoming item, if not already cached.
+     *
+     * @param info  the stream info of the item
+     * @param video the video stream that will be played, or {@code null} if none
+     * @param audio the audio stream that will be played, or {@code null} if none
+     */
+    public void prefetch(@NonNull final StreamInfo info,
+                         @Nullable final VideoStream video,
+                         @Nullable final AudioStream audio) {
+        if (StreamTypeUtil.isLiveStream(info.getStreamType())) {
+            return;
+        }
+
+        if (video != null) {
+            prefetch(video.getUrl(), PlayerHelper.cacheKeyOf(info, video),
+                    MediaFormat.getSuffixById(video.getFormatId()), VIDEO_BYTES);
+        }
+        if (audio != null) {
+            // the average bitrate is in kbit/s
+            final long length = Math.max(MINIMUM_AUDIO_BYTES,
+                    audio.getAverageBitrate() * 125L * PREFETCH_SECONDS);
+            prefetch(audio.getUrl(), PlayerHelper.cacheKeyOf(info, audio),
+                    MediaFormat.getSuffixById(audio.getFormatId()), length);
+        }
+    }
+
+    /**
+     * Stops all the running downloads, the bytes already downloaded stay in the cache.
+     */
+    public void cancel() {
+        // disposing removes the download from the map
+        for (final Disposable prefetch : new ArrayList<>(prefetches.values())) {
+            prefetch.dispose();
+        }
+    }
+
+    private void prefetch(@Nullable final String url,
+                          @NonNull final String cacheKey,
+                          @Nullable final String extension,
+                          final long length) {
+        if (url == null || url.isEmpty() || prefetches.containsKey(cacheKey)
+                || !isProgressive(Uri.parse(url), extension)) {
+            return;
+        }
+
+        final DataSpec dataSpec = new DataSpec.Builder()
+                .setUri(url)
+                .setLength(length)
+                .setKey(cacheKey)
+                .build();
+
+        final Disposable prefetch = Completable.create(emitter -> {
+            final CacheWriter writer = new CacheWriter(cacheFactory.createDataSource(),
+                    dataSpec, null, null);
+            emitter.setCancellable(writer::cancel);
+            // the prefetched spans are not a playback of the stream
+            cacheFactory.getEvictor().startPrefetch(cacheKey);
+            try {
+                writer.cache();
+                emitter.onComplete();
+            } catch (final InterruptedIOException e) {
+                // canceled
+            } finally {
+                cacheFactory.getEvictor().finishPrefetch(cacheKey);
+            }
+        })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .doFinally(() -> prefetches.remove(cacheKey))
+                .subscribe(() -> {
+                    if (DEBUG) {
+                        Log.d(TAG, "Prefetched " + length + " bytes of " + cacheKey);
+                    }
+                }, error -> Log.w(TAG, "Failed to prefetch " + cacheKey, error));
+
+        if (!prefetch.isDisposed()) {
+            prefetches.put(cacheKey, prefetch);
+        }
+    }
+
+    /**
+     * Infers the type of a stream the same way as
+     * {@link org.schabi.newpipe.player.resolver.PlaybackResolver}.
+     *
+     * @param uri       the URL of the stream
+     * @param extension the extension of the stream format, if known
+     * @return whether the stream is a single progressive file, the only type prefetched
+     */
+    private static boolean isProgressive(@NonNull final Uri uri,
+                                         @Nullable final String extension) {
+        final int type = extension == null || extension.isEmpty()
+                ? Util.inferContentType(uri) : Util.inferContentType("." + extension);
+        return type == C.TYPE_OTHER;
+    }
+}
@@ -0,0 +1,506 @@
+package org.schabi.newpipe.player.helper;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+import static org.schabi.newpipe.player.Player.DEBUG;
+
+/**
+ * Evicts the resources of the player cache that are the least likely to be played again, and
+ * sizes the cache from the free storage.
+ * <p>
+ * Every resource (all the cached parts of a stream with a given quality) has a frequency of use,
+ * which halves every {@link #FREQUENCY_HALF_LIFE_MILLIS}: a song played often last week is kept
+ * over a video watched once a month ago, but a video watched once today is kept over a song not
+ * played since a while. The resources of the streams around the current position of the play
+ * queue are pinned, they are never evicted.
+ * </p>
+ * <p>
+ * The frequencies are saved next to the cache folder, so they survive a restart of the app.
+ * Only the playback counts as a use, the bytes written by {@link CachePrefetcher} do not.
+ * </p>
+ */
+public final class PinningCacheEvictor implements CacheEvictor, CacheDataSource.EventListener {
+    private static final String TAG = "PinningCacheEvictor";
+
+    /**
+     * The size of the cache is this share of the storage left for it.
+     */
+    private static final long FREE_SPACE_DIVISOR = 20;
+    private static final long MINIMUM_SIZE = 64 * 1024 * 1024L;
+    private static final long MAXIMUM_SIZE = 512 * 1024 * 1024L;
+    private static final long SIZE_UPDATE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final long FREQUENCY_HALF_LIFE_MILLIS = TimeUnit.DAYS.toMillis(2);
+
+    /**
+     * A resource read again after this time counts as a new use, the reads of the same
+     * playback are closer than this.
+     */
+    private static final long NEW_USE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * The frequencies are saved in background this long after a new use, the other uses in the
+     * meantime are saved at the same time.
+     */
+    private static final long SAVE_DELAY_SECONDS = 30;
+
+    private static final int FREQUENCIES_VERSION = 1;
+    private static final String FREQUENCIES_SUFFIX = ".frequencies";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    @NonNull
+    private final File cacheDir;
+    @NonNull
+    private final File frequenciesFile;
+    @NonNull
+    private final Map<String, Resource> resources = new HashMap<>();
+    @NonNull
+    private final Set<String> prefetchedKeys = new HashSet<>();
+    @NonNull
+    private final Object saveLock = new Object();
+    @NonNull
+    private List<String> pinnedUrls = new ArrayList<>();
+
+    private boolean initialized = false;
+    private long currentSize = 0;
+    private long maxSize = MINIMUM_SIZE;
+    private long maxSizeTimestamp = 0;
+    private boolean frequenciesChanged = false;
+    private boolean saveScheduled = false;
+
+    private long hitBytes = 0;
+    private long missBytes = 0;
+    private long evictedBytes = 0;
+    private int evictions = 0;
+
+    PinningCacheEvictor(@NonNull final File cacheDir) {
+        this.cacheDir = cacheDir;
+        // the cache deletes the unknown files of its folder
+        frequenciesFile = new File(cacheDir.getParentFile(),
+                cacheDir.getName() + FREQUENCIES_SUFFIX);
+    }
+
+    /**
+     * Pins the resources of some streams, the previously pinned streams can be evicted again.
+     *
+     * @param urls the URLs of the streams, as used by {@link PlayerHelper#cacheKeyOf}
+     */
+    public synchronized void setPinnedUrls(@NonNull final Collection<String> urls) {
+        pinnedUrls = new ArrayList<>(urls);
+    }
+
+    /**
+     * Marks a resource as being downloaded by {@link CachePrefetcher}, the spans written in the
+     * meantime are not counted as a use.
+     *
+     * @param key the cache key of the resource
+     */
+    synchronized void startPrefetch(@NonNull final String key) {
+        prefetchedKeys.add(key);
+    }
+
+    /**
+     * @param key the cache key of the resource, as given to {@link #startPrefetch(String)}
+     */
+    synchronized void finishPrefetch(@NonNull final String key) {
+        prefetchedKeys.remove(key);
+    }
+
+    /**
+     * Saves the changed frequencies in background now, without waiting for the scheduled save.
+     * Called when the player is released, the app can be killed afterwards.
+     */
+    public void flush() {
+        Schedulers.io().scheduleDirect(this::saveFrequencies);
+    }
+
+    /**
+     * @return the share of the bytes read by the player that came from the cache, between 0 and 1
+     */
+    public synchronized float getHitRate() {
+        final long total = hitBytes + missBytes;
+        return total == 0 ? 0 : hitBytes / (float) total;
+    }
+
+    public synchronized long getCurrentSize() {
+        return currentSize;
+    }
+
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT, "%d of %d MiB used by %d resources, hit rate %.1f%%, "
+                        + "%d evictions (%d MiB)", currentSize >> 20, maxSize >> 20,
+                resources.size(), getHitRate() * 100, evictions, evictedBytes >> 20);
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // CacheEvictor
+    //////////////////////////////////////////////////////////////////////////*/
+
+    @Override
+    public boolean requiresCacheSpanTouches() {
+        return true;
+    }
+
+    @Override
+    public synchronized void onCacheInitialized() {
+        // called from the loading thread of the cache, after the spans of the previous sessions
+        loadFrequencies();
+        initialized = true;
+        updateMaxSize(System.currentTimeMillis());
+    }
+
+    @Override
+    public synchronized void onStartFile(@NonNull final Cache cache, @NonNull final String key,
+                                         final long position, final long length) {
+        final long now = System.currentTimeMillis();
+        if (now - maxSizeTimestamp > SIZE_UPDATE_INTERVAL_MILLIS) {
+            updateMaxSize(now);
+        }
+        if (length != C.LENGTH_UNSET) {
+            evict(cache, key, length);
+        }
+    }
+
+    @Override
+    public synchronized void onSpanAdded(@NonNull final Cache cache,
+                                         @NonNull final CacheSpan span) {
+        currentSize += span.length;
+
+        Resource resource = resources.get(span.key);
+        if (resource == null) {
+            resource = new Resource();
+            resources.put(span.key, resource);
+        }
+        resource.bytes += span.length;
+
+        if (initialized) {
+            // the span was downloaded
+            missBytes += span.length;
+            if (!prefetchedKeys.contains(span.key)) {
+                use(span.key, System.currentTimeMillis());
+            }
+            evict(cache, span.key, 0);
+        } else {
+            // the span was cached in a previous session
+            resource.lastUseTimestamp = Math.max(resource.lastUseTimestamp,
+                    span.lastTouchTimestamp);
+        }
+    }
+
+    @Override
+    public synchronized void onSpanRemoved(@NonNull final Cache cache,
+                                           @NonNull final CacheSpan span) {
+        currentSize -= span.length;
+
+        final Resource resource = resources.get(span.key);
+        if (resource != null) {
+            resource.bytes -= span.length;
+            if (resource.bytes <= 0) {
+                resources.remove(span.key);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onSpanTouched(@NonNull final Cache cache,
+                                           @NonNull final CacheSpan oldSpan,
+                                           @NonNull final CacheSpan newSpan) {
+        use(newSpan.key, System.currentTimeMillis());
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // CacheDataSource.EventListener
+    //////////////////////////////////////////////////////////////////////////*/
+
+    @Override
+    public synchronized void onCachedBytesRead(final long cacheSizeBytes,
+                                               final long cachedBytesRead) {
+        hitBytes += cachedBytesRead;
+    }
+
+    @Override
+    public void onCacheIgnored(final int reason) {
+        // the bytes read from the network are counted when written to the cache
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Eviction
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * @param freeSpace   the usable space left on the storage, in bytes
+     * @param currentSize the size of the cache, in bytes
+     * @return the size the cache can grow to
+     */
+    static long getMaxSize(final long freeSpace, final long currentSize) {
+        return Math.max(MINIMUM_SIZE,
+                Math.min(MAXIMUM_SIZE, (freeSpace + currentSize) / FREE_SPACE_DIVISOR));
+    }
+
+    /**
+     * @param frequency       how many times the resource was used, before decay
+     * @param lastUseTimestamp when the resource was used for the last time
+     * @param now             the current time
+     * @return how likely the resource is to be used again, the lowest is evicted first
+     */
+    static double getScore(final double frequency, final long lastUseTimestamp,
+                           final long now) {
+        final double halfLives = Math.max(0, now - lastUseTimestamp)
+                / (double) FREQUENCY_HALF_LIFE_MILLIS;
+        return frequency * Math.pow(0.5, halfLives);
+    }
+
+    /**
+     * Counts a use of a resource, and schedules the save of the frequencies if it is a new use.
+     *
+     * @param key the cache key of the resource
+     * @param now the current time
+     */
+    synchronized void use(@NonNull final String key, final long now) {
+        final Resource resource = resources.get(key);
+        if (resource != null && resource.use(now)) {
+            frequenciesChanged = true;
+            if (!saveScheduled) {
+                // the cache calls the evictor holding its lock, the file is written later
+                saveScheduled = true;
+                Schedulers.io().scheduleDirect(this::saveFrequencies, SAVE_DELAY_SECONDS,
+                        TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * @param key the cache key of the resource
+     * @param now the current time
+     * @return the frequency of use of the resource after decay, or {@code 0} if not cached
+     */
+    synchronized double getFrequency(@NonNull final String key, final long now) {
+        final Resource resource = resources.get(key);
+        return resource == null ? 0
+                : getScore(resource.frequency, resource.lastUseTimestamp, now);
+    }
+
+    private void updateMaxSize(final long now) {
+        maxSize = getMaxSize(cacheDir.getUsableSpace(), currentSize);
+        maxSizeTimestamp = now;
+    }
+
+    /**
+     * Removes the resources with the lowest score until the required space is available.
+     *
+     * @param cache         the cache
+     * @param writtenKey    the resource being written, never evicted
+     * @param requiredSpace the bytes about to be written
+     */
+    private void evict(@NonNull final Cache cache, @NonNull final String writtenKey,
+                       final long requiredSpace) {
+        final long now = System.currentTimeMillis();
+        final Set<String> skipped = new HashSet<>();
+        skipped.add(writtenKey);
+
+        while (currentSize + requiredSpace > maxSize) {
+            final String key = findEvictable(skipped, now);
+            if (key == null) {
+                // only pinned resources are left, let the cache grow until they are unpinned
+                break;
+            }
+            skipped.add(key);
+
+            final long size = currentSize;
+            try {
+                // removing the spans calls back onSpanRemoved
+                cache.removeResource(key);
+            } catch (final Exception e) {
+                Log.w(TAG, "Failed to evict " + key, e);
+            }
+            evictions++;
+            evictedBytes += size - currentSize;
+
+            if (DEBUG) {
+                Log.d(TAG, "Evicted " + key + ", " + this);
+            }
+        }
+    }
+
+    @Nullable
+    private String findEvictable(@NonNull final Set<String> skipped, final long now) {
+        String evictable = null;
+        double lowestScore = Double.MAX_VALUE;
+
+        for (final Map.Entry<String, Resource> entry : resources.entrySet()) {
+            if (skipped.contains(entry.getKey()) || isPinned(entry.getKey())) {
+                continue;
+            }
+
+            final Resource resource = entry.getValue();
+            final double score = getScore(resource.frequency, resource.lastUseTimestamp, now);
+            if (score < lowestScore) {
+                lowestScore = score;
+                evictable = entry.getKey();
+            }
+        }
+
+        return evictable;
+    }
+
+    private boolean isPinned(@NonNull final String key) {
+        // the cache keys start with the URL of the stream
+        for (final String url : pinnedUrls) {
+            if (key.startsWith(url)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Persistence
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Restores the frequencies of the resources cached in a previous session, the resources
+     * evicted since then are ignored.
+     */
+    private void loadFrequencies() {
+        if (!frequenciesFile.exists()) {
+            return;
+        }
+
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(frequenciesFile)))) {
+            if (input.readInt() != FREQUENCIES_VERSION) {
+                return;
+            }
+
+            for (int count = input.readInt(); count > 0; count--) {
+                final String key = input.readUTF();
+                final double frequency = input.readDouble();
+                final long lastUseTimestamp = input.readLong();
+
+                final Resource resource = resources.get(key);
+                if (resource != null) {
+                    resource.frequency = frequency;
+                    resource.lastUseTimestamp = Math.max(resource.lastUseTimestamp,
+                            lastUseTimestamp);
+                }
+            }
+        } catch (final IOException e) {
+            Log.w(TAG, "Failed to load the frequencies of the player cache", e);
+        }
+    }
+
+    /**
+     * Writes the frequencies of all the cached resources if they changed since the last save,
+     * called from a background thread.
+     */
+    void saveFrequencies() {
+        synchronized (saveLock) {
+            final byte[] data;
+            try {
+                data = serializeFrequencies();
+            } catch (final IOException e) {
+                Log.w(TAG, "Failed to serialize the frequencies of the player cache", e);
+                return;
+            }
+            if (data == null) {
+                return; // nothing changed
+            }
+
+            final File temporary = new File(frequenciesFile.getPath() + TEMPORARY_SUFFIX);
+            try (FileOutputStream output = new FileOutputStream(temporary)) {
+                output.write(data);
+            } catch (final IOException e) {
+                Log.w(TAG, "Failed to save the frequencies of the player cache", e);
+                //noinspection ResultOfMethodCallIgnored
+                temporary.delete();
+                return;
+            }
+
+            if (!temporary.renameTo(frequenciesFile)) {
+                //noinspection ResultOfMethodCallIgnored
+                temporary.delete();
+                Log.w(TAG, "Could not rename " + temporary.getName());
+            }
+        }
+    }
+
+    /**
+     * @return the frequencies of all the cached resources, or {@code null} if they did not change
+     * since the last call
+     * @throws IOException if a cache key is too long to be written
+     */
+    @Nullable
+    private synchronized byte[] serializeFrequencies() throws IOException {
+        saveScheduled = false;
+        if (!frequenciesChanged) {
+            return null;
+        }
+        frequenciesChanged = false;
+
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(buffer)) {
+            output.writeInt(FREQUENCIES_VERSION);
+            output.writeInt(resources.size());
+            for (final Map.Entry<String, Resource> entry : resources.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeDouble(entry.getValue().frequency);
+                output.writeLong(entry.getValue().lastUseTimestamp);
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    private static final class Resource {
+        private long bytes = 0;
+        private double frequency = 1;
+        private long lastUseTimestamp = 0;
+
+        /**
+         * @param now the current time
+         * @return whether this is a new use, not another read of the same playback
+         */
+        private boolean use(final long now) {
+            final boolean newUse = now - lastUseTimestamp > NEW_USE_INTERVAL_MILLIS;
+            if (newUse) {
+                frequency = getScore(frequency, lastUseTimestamp, now) + 1;
+            }
+            lastUseTimestamp = now;
+            return newUse;
+        }
+    }
+}
@@ -35,17 +35,30 @@ public class PlayerDataSource {
     private final int continueLoadingCheckIntervalBytes;
     private final DataSource.Factory cacheDataSourceFactory;
     private final DataSource.Factory cachelessDataSourceFactory;
+    private final CachePrefetcher cachePrefetcher;
+    private final PinningCacheEvictor cacheEvictor;
 
     public PlayerDataSource(@NonNull final Context context,
                             @NonNull final String userAgent,
                             @NonNull final TransferListener transferListener) {
         continueLoadingCheckIntervalBytes = PlayerHelper.getProgressiveLoadIntervalBytes(context);
-        cacheDataSourceFactory = new CacheFactory(context, userAgent, transferListener);
+        final CacheFactory cacheFactory = new CacheFactory(context, userAgent, transferListener);
+        cacheDataSourceFactory = cacheFactory;
+        cachePrefetcher = new CachePrefetcher(cacheFactory);
+        cacheEvictor = cacheFactory.getEvictor();
         cachelessDataSourceFactory = new DefaultDataSource
                 .Factory(context, new DefaultHttpDataSource.Factory().setUserAgent(userAgent))
                 .setTransferListener(transferListener);
     }
 
+    public CachePrefetcher getCachePrefetcher() {
+        return cachePrefetcher;
+    }
+
+    public PinningCacheEvictor getCacheEvictor() {
+        return cacheEvictor;
+    }
+
     public SsMediaSource.Factory getLiveSsMediaSourceFactory() {
         return new SsMediaSource.Factory(
                 new DefaultSsChunkSource.Factory(cachelessDataSourceFactory),
@@ -327,10 +327,6 @@ public final class PlayerHelper {
         return isUsingInexactSeek(context) ? SeekParameters.CLOSEST_SYNC : SeekParameters.EXACT;
     }
 
-    public static long getPreferredCacheSize() {
-        return 64 * 1024 * 1024L;
-    }
-
     public static long getPreferredFileSize() {
         return 2 * 1024 * 1024L; // ExoPlayer CacheDataSink.MIN_RECOMMENDED_FRAGMENT_SIZE
     }
@@ -434,6 +430,21 @@ public final class PlayerHelper {
         return Integer.parseInt(preferredIntervalBytes) * 1024;
     }
 
+    /**
+     * @param context the context to read the preferences
+     * @return how many streams after the current one are loaded, or {@code 0} if adaptive
+     */
+    public static int getPreloadWindowSize(@NonNull final Context context) {
+        final String preferredSize = getPreferences(context).getString(
+                context.getString(R.string.preload_window_key),
+                context.getString(R.string.preload_window_adaptive_value));
+
+        if (context.getString(R.string.preload_window_adaptive_value).equals(preferredSize)) {
+            return 0;
+        }
+        return Integer.parseInt(preferredSize);
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // Private helpers
     ////////////////////////////////////////////////////////////////////////////
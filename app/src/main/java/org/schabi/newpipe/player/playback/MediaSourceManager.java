@@ -5,7 +5,7 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.collection.ArraySet;
+import androidx.collection.ArrayMap;
 
 import com.google.android.exoplayer2.source.MediaSource;
 
@@ -26,7 +26,10 @@ import org.schabi.newpipe.player.playqueue.events.ReorderEvent;
 import org.schabi.newpipe.util.ServiceHelper;
 
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -34,7 +37,6 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Single;
-import io.reactivex.rxjava3.disposables.CompositeDisposable;
 import io.reactivex.rxjava3.disposables.Disposable;
 import io.reactivex.rxjava3.internal.subscriptions.EmptySubscription;
 import io.reactivex.rxjava3.schedulers.Schedulers;
@@ -49,32 +51,30 @@ public class MediaSourceManager {
     private final String TAG = "MediaSourceManager@" + hashCode();
 
     /**
-     * Determines how many streams before and after the current stream should be loaded.
-     * The default value (1) ensures seamless playback under typical network settings.
+     * Determines how many streams before the current stream should be loaded, and the minimum
+     * amount of streams after the current stream. The default value (1) ensures seamless
+     * playback under typical network settings.
      * <p>
      * The streams after the current will be loaded into the playlist timeline while the
      * streams before will only be cached for future usage.
      * </p>
      *
      * @see #onMediaSourceReceived(PlayQueueItem, ManagedMediaSource)
+     * @see PreloadWindow
      */
     private static final int WINDOW_SIZE = 1;
 
-    /**
-     * Determines the maximum number of disposables allowed in the {@link #loaderReactor}.
-     * Once exceeded, new calls to {@link #loadImmediate()} will evict all disposables in the
-     * {@link #loaderReactor} in order to load a new set of items.
-     *
-     * @see #loadImmediate()
-     * @see #maybeLoadItem(PlayQueueItem)
-     */
-    private static final int MAXIMUM_LOADER_SIZE = WINDOW_SIZE * 2 + 1;
-
     @NonNull
     private final PlaybackListener playbackListener;
     @NonNull
     private final PlayQueue playQueue;
 
+    /**
+     * Determines how many streams after the current stream should be loaded.
+     */
+    @NonNull
+    private final PreloadWindow preloadWindow;
+
     /**
      * Determines the gap time between the playback position and the playback duration which
      * the {@link #getEdgeIntervalSignal()} begins to request loading.
@@ -113,10 +113,11 @@ public class MediaSourceManager {
     @NonNull
     private Subscription playQueueReactor;
 
+    /**
+     * The streams being loaded. The loaders of the streams that leave the window are canceled.
+     */
     @NonNull
-    private final CompositeDisposable loaderReactor;
-    @NonNull
-    private final Set<PlayQueueItem> loadingItems;
+    private final Map<PlayQueueItem, Disposable> loaders;
 
     @NonNull
     private final AtomicBoolean isBlocked;
@@ -127,14 +128,16 @@ public class MediaSourceManager {
     private final Handler removeMediaSourceHandler = new Handler();
 
     public MediaSourceManager(@NonNull final PlaybackListener listener,
-                              @NonNull final PlayQueue playQueue) {
-        this(listener, playQueue, 400L,
+                              @NonNull final PlayQueue playQueue,
+                              @NonNull final PreloadWindow preloadWindow) {
+        this(listener, playQueue, preloadWindow, 400L,
                 /*playbackNearEndGapMillis=*/TimeUnit.MILLISECONDS.convert(30, TimeUnit.SECONDS),
                 /*progressUpdateIntervalMillis*/TimeUnit.MILLISECONDS.convert(2, TimeUnit.SECONDS));
     }
 
     private MediaSourceManager(@NonNull final PlaybackListener listener,
                                @NonNull final PlayQueue playQueue,
+                               @NonNull final PreloadWindow preloadWindow,
                                final long loadDebounceMillis,
                                final long playbackNearEndGapMillis,
                                final long progressUpdateIntervalMillis) {
@@ -149,6 +152,7 @@ public class MediaSourceManager {
 
         this.playbackListener = listener;
         this.playQueue = playQueue;
+        this.preloadWindow = preloadWindow;
 
         this.playbackNearEndGapMillis = playbackNearEndGapMillis;
         this.progressUpdateIntervalMillis = progressUpdateIntervalMillis;
@@ -159,14 +163,12 @@ public class MediaSourceManager {
         this.debouncedLoader = getDebouncedLoader();
 
         this.playQueueReactor = EmptySubscription.INSTANCE;
-        this.loaderReactor = new CompositeDisposable();
+        this.loaders = new ArrayMap<>();
 
         this.isBlocked = new AtomicBoolean(false);
 
         this.playlist = new ManagedMediaSourcePlaylist();
 
-        this.loadingItems = Collections.synchronizedSet(new ArraySet<>());
-
         playQueue.getBroadcastReceiver()
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(getReactor());
@@ -188,7 +190,11 @@ public class MediaSourceManager {
         debouncedLoader.dispose();
 
         playQueueReactor.cancel();
-        loaderReactor.dispose();
+
+        for (final Disposable loader : loaders.values()) {
+            loader.dispose();
+        }
+        loaders.clear();
     }
 
     /*//////////////////////////////////////////////////////////////////////////
@@ -234,6 +240,7 @@ public class MediaSourceManager {
                 populateSources();
                 break;
             case SELECT:
+                preloadWindow.onIndexChanged(playQueue.getIndex(), System.currentTimeMillis());
                 maybeRenewCurrentIndex();
                 break;
             case REMOVE:
@@ -383,14 +390,15 @@ public class MediaSourceManager {
         if (DEBUG) {
             Log.d(TAG, "MediaSource - loadImmediate() called");
         }
-        final ItemsToLoad itemsToLoad = getItemsToLoad(playQueue);
+        final ItemsToLoad itemsToLoad = getItemsToLoad(playQueue, preloadWindow.getSize());
         if (itemsToLoad == null) {
             return;
         }
 
-        // Evict the previous items being loaded to free up memory, before start loading new ones
-        maybeClearLoaders();
+        // Evict the items outside the window to free up memory, before start loading new ones
+        cancelLoaders(itemsToLoad);
 
+        // The neighbors are sorted by priority
         maybeLoadItem(itemsToLoad.center);
         for (final PlayQueueItem item : itemsToLoad.neighbors) {
             maybeLoadItem(item);
@@ -405,18 +413,19 @@ public class MediaSourceManager {
             return;
         }
 
-        if (!loadingItems.contains(item) && isCorrectionNeeded(item)) {
+        if (!loaders.containsKey(item) && isCorrectionNeeded(item)) {
             if (DEBUG) {
                 Log.d(TAG, "MediaSource - Loading=[" + item.getTitle() + "] "
                         + "with url=[" + item.getUrl() + "]");
             }
 
-            loadingItems.add(item);
             final Disposable loader = getLoadedMediaSource(item)
                     .observeOn(AndroidSchedulers.mainThread())
                     /* No exception handling since getLoadedMediaSource guarantees nonnull return */
                     .subscribe(mediaSource -> onMediaSourceReceived(item, mediaSource));
-            loaderReactor.add(loader);
+            if (!loader.isDisposed()) {
+                loaders.put(item, loader);
+            }
         }
     }
 
@@ -455,7 +464,7 @@ public class MediaSourceManager {
                     + "] with url=[" + item.getUrl() + "]");
         }
 
-        loadingItems.remove(item);
+        loaders.remove(item);
 
         final int itemIndex = playQueue.indexOf(item);
         // Only update the playlist timeline for items at the current index or after.
@@ -466,6 +475,13 @@ public class MediaSourceManager {
             }
             playlist.update(itemIndex, mediaSource, removeMediaSourceHandler,
                     this::maybeSynchronizePlayer);
+
+            // Download the beginning of the next streams before they are played
+            if (itemIndex > playQueue.getIndex()) {
+                MediaItemTag.from(mediaSource.getMediaItem())
+                        .filter(tag -> tag.getMaybeStreamInfo().isPresent())
+                        .ifPresent(tag -> playbackListener.onSourcePreloaded(item, tag));
+            }
         }
     }
 
@@ -522,14 +538,20 @@ public class MediaSourceManager {
         playlist.invalidate(currentIndex, removeMediaSourceHandler, this::loadImmediate);
     }
 
-    private void maybeClearLoaders() {
+    private void cancelLoaders(@NonNull final ItemsToLoad itemsToLoad) {
         if (DEBUG) {
-            Log.d(TAG, "MediaSource - maybeClearLoaders() called.");
+            Log.d(TAG, "MediaSource - cancelLoaders() called.");
         }
-        if (!loadingItems.contains(playQueue.getItem())
-                && loaderReactor.size() > MAXIMUM_LOADER_SIZE) {
-            loaderReactor.clear();
-            loadingItems.clear();
+
+        final Iterator<Map.Entry<PlayQueueItem, Disposable>> iterator =
+                loaders.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<PlayQueueItem, Disposable> loader = iterator.next();
+            if (loader.getKey() != itemsToLoad.center
+                    && !itemsToLoad.neighbors.contains(loader.getKey())) {
+                loader.getValue().dispose();
+                iterator.remove();
+            }
         }
     }
 
@@ -558,7 +580,8 @@ public class MediaSourceManager {
     //////////////////////////////////////////////////////////////////////////*/
 
     @Nullable
-    private static ItemsToLoad getItemsToLoad(@NonNull final PlayQueue playQueue) {
+    static ItemsToLoad getItemsToLoad(@NonNull final PlayQueue playQueue,
+                                      final int preloadSize) {
         // The current item has higher priority
         final int currentIndex = playQueue.getIndex();
         final PlayQueueItem currentItem = playQueue.getItem(currentIndex);
@@ -566,31 +589,31 @@ public class MediaSourceManager {
             return null;
         }
 
-        // The rest are just for seamless playback
+        // The rest are just for seamless playback, the nearest next items go first
+        final List<PlayQueueItem> streams = playQueue.getStreams();
+        final Set<PlayQueueItem> neighbors = new LinkedHashSet<>();
+        final int size = Math.max(WINDOW_SIZE, preloadSize);
+        for (int i = 1; i <= size && i < streams.size(); i++) {
+            // Do a round robin
+            neighbors.add(streams.get((currentIndex + i) % streams.size()));
+        }
+
         // Although timeline is not updated prior to the current index, these sources are still
         // loaded into the cache for faster retrieval at a potentially later time.
         final int leftBound = Math.max(0, currentIndex - MediaSourceManager.WINDOW_SIZE);
-        final int rightLimit = currentIndex + MediaSourceManager.WINDOW_SIZE + 1;
-        final int rightBound = Math.min(playQueue.size(), rightLimit);
-        final Set<PlayQueueItem> neighbors = new ArraySet<>(
-                playQueue.getStreams().subList(leftBound, rightBound));
-
-        // Do a round robin
-        final int excess = rightLimit - playQueue.size();
-        if (excess >= 0) {
-            neighbors.addAll(playQueue.getStreams()
-                    .subList(0, Math.min(playQueue.size(), excess)));
+        for (int i = currentIndex - 1; i >= leftBound; i--) {
+            neighbors.add(streams.get(i));
         }
         neighbors.remove(currentItem);
 
         return new ItemsToLoad(currentItem, neighbors);
     }
 
-    private static class ItemsToLoad {
+    static class ItemsToLoad {
         @NonNull
-        private final PlayQueueItem center;
+        final PlayQueueItem center;
         @NonNull
-        private final Collection<PlayQueueItem> neighbors;
+        final Collection<PlayQueueItem> neighbors;
 
         ItemsToLoad(@NonNull final PlayQueueItem center,
                     @NonNull final Collection<PlayQueueItem> neighbors) {
@@ -6,6 +6,7 @@ import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.source.MediaSource;
 
 import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.player.mediaitem.MediaItemTag;
 import org.schabi.newpipe.player.playqueue.PlayQueueItem;
 
 public interface PlaybackListener {
@@ -69,6 +70,19 @@ public interface PlaybackListener {
     @Nullable
     MediaSource sourceOf(PlayQueueItem item, StreamInfo info);
 
+    /**
+     * Called when a stream after the current one has been resolved and added to the timeline.
+     * Signals to the listener that it can start downloading the beginning of the stream,
+     * so that it plays without buffering once reached.
+     * <p>
+     * May be called at any time.
+     * </p>
+     *
+     * @param item      the item of the stream
+     * @param metadata  the metadata of the resolved media source
+     */
+    void onSourcePreloaded(@NonNull PlayQueueItem item, @NonNull MediaItemTag metadata);
+
     /**
      * Called when the play queue can no longer be played or used.
      * Currently, this means the play queue is empty and complete.
@@ -0,0 +1,147 @@
+package org.schabi.newpipe.player.playback;
+
+import android.content.Context;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import org.schabi.newpipe.player.helper.PlayerHelper;
+import org.schabi.newpipe.util.ListHelper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how many streams after the current one are loaded in advance by the
+ * {@link MediaSourceManager}. The size is either fixed by the user, or adapted to the network,
+ * to the battery and to how often the user skips streams.
+ */
+public class PreloadWindow {
+    public static final int MINIMUM_SIZE = 1;
+    public static final int MAXIMUM_SIZE = 5;
+
+    /**
+     * A stream replaced by the next one before this time is considered skipped.
+     */
+    private static final long SKIP_THRESHOLD_MILLIS = TimeUnit.SECONDS.toMillis(20);
+
+    /**
+     * Weight of the last change of stream in the skip rate, the older ones fade out.
+     */
+    private static final float SKIP_RATE_WEIGHT = 0.3f;
+
+    private static final int LOW_BATTERY_PERCENT = 15;
+
+    @Nullable
+    private final Context context;
+
+    /**
+     * The size chosen by the user, or {@code 0} if adaptive.
+     */
+    private final int fixedSize;
+
+    private float skipRate = 0;
+    private int lastIndex = -1;
+    private long lastIndexMillis = 0;
+
+    public PreloadWindow(@NonNull final Context context) {
+        this(context.getApplicationContext(), PlayerHelper.getPreloadWindowSize(context));
+    }
+
+    PreloadWindow(@Nullable final Context context, final int fixedSize) {
+        this.context = context;
+        this.fixedSize = fixedSize;
+    }
+
+    /**
+     * Records a change of the current stream, used to measure how often the user skips.
+     *
+     * @param index      the index of the new current stream in the play queue
+     * @param timeMillis the time of the change
+     */
+    public void onIndexChanged(final int index, final long timeMillis) {
+        if (index == lastIndex) {
+            return;
+        }
+
+        if (lastIndex >= 0) {
+            // jumping over streams is also a skip, even after listening the whole stream
+            final boolean skipped = timeMillis - lastIndexMillis < SKIP_THRESHOLD_MILLIS
+                    || index - lastIndex > 1;
+            skipRate += ((skipped ? 1 : 0) - skipRate) * SKIP_RATE_WEIGHT;
+        }
+
+        lastIndex = index;
+        lastIndexMillis = timeMillis;
+    }
+
+    public float getSkipRate() {
+        return skipRate;
+    }
+
+    /**
+     * @return how many streams after the current one must be loaded
+     */
+    public int getSize() {
+        if (fixedSize > 0) {
+            return fixedSize;
+        }
+        if (context == null) {
+            return MINIMUM_SIZE;
+        }
+
+        return getAdaptiveSize(isBatteryConstrained(context),
+                ListHelper.isMeteredNetwork(context), skipRate);
+    }
+
+    /**
+     * @param batteryConstrained if the battery saver is on or the battery is low
+     * @param metered            if the network is metered (like mobile data)
+     * @param skipRate           how often the user skips streams, between 0 and 1
+     * @return the amount of streams to load after the current one
+     */
+    static int getAdaptiveSize(final boolean batteryConstrained,
+                               final boolean metered,
+                               final float skipRate) {
+        if (batteryConstrained) {
+            return MINIMUM_SIZE;
+        }
+
+        int size = metered ? MINIMUM_SIZE : MINIMUM_SIZE + 1;
+
+        // users skipping often need the following streams ready, limited on metered networks
+        if (skipRate >= 0.5f) {
+            size += metered ? 1 : 3;
+        } else if (skipRate >= 0.25f) {
+            size += 1;
+        }
+
+        return Math.min(size, MAXIMUM_SIZE);
+    }
+
+    private static boolean isBatteryConstrained(@NonNull final Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return false;
+        }
+
+        final PowerManager powerManager =
+                ContextCompat.getSystemService(context, PowerManager.class);
+        if (powerManager != null && powerManager.isPowerSaveMode()) {
+            return true;
+        }
+
+        final BatteryManager batteryManager =
+                ContextCompat.getSystemService(context, BatteryManager.class);
+        if (batteryManager == null || (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                && batteryManager.isCharging())) {
+            return false;
+        }
+
+        final int level = batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+        // zero or negative if the battery is absent or the property is not supported
+        return level > 0 && level <= LOW_BATTERY_PERCENT;
+    }
+}
@@ -2,9 +2,12 @@ package org.schabi.newpipe.settings;
 
 import android.content.Context;
 import android.os.Bundle;
+import android.text.format.Formatter;
+import android.util.Log;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.preference.Preference;
 
@@ -18,8 +21,10 @@ import org.schabi.newpipe.local.history.HistoryRecordManager;
 import org.schabi.newpipe.util.InfoCache;
 
 import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
+import io.reactivex.rxjava3.core.Single;
 import io.reactivex.rxjava3.disposables.CompositeDisposable;
 import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 
 public class HistorySettingsFragment extends BasePreferenceFragment {
     private String cacheWipeKey;
@@ -28,6 +33,8 @@ public class HistorySettingsFragment extends BasePreferenceFragment {
     private String searchHistoryClearKey;
     private HistoryRecordManager recordManager;
     private CompositeDisposable disposables;
+    @Nullable
+    private Disposable cacheSizeDisposable;
 
     @Override
     public void onCreatePreferences(final Bundle savedInstanceState, final String rootKey) {
@@ -54,14 +61,35 @@ public class HistorySettingsFragment extends BasePreferenceFragment {
         if (defaultPreferences.getString(getString(R.string.recaptcha_cookies_key), "").isEmpty()) {
             clearCookiePref.setEnabled(false);
         }
+
+        // the size of the metadata cache is computed by listing its files
+        cacheSizeDisposable = Single.fromCallable(InfoCache.getInstance()::getDiskSize)
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(this::updateCacheWipeSummary,
+                        throwable -> Log.w(TAG, "Could not compute the metadata cache size",
+                                throwable));
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (cacheSizeDisposable != null) {
+            cacheSizeDisposable.dispose();
+        }
     }
 
     @Override
     public boolean onPreferenceTreeClick(final Preference preference) {
         if (preference.getKey().equals(cacheWipeKey)) {
+            // the files on disk are deleted in background, there is no need to list them
             InfoCache.getInstance().clearCache();
             Toast.makeText(requireContext(),
                     R.string.metadata_cache_wipe_complete_notice, Toast.LENGTH_SHORT).show();
+            if (cacheSizeDisposable != null) {
+                cacheSizeDisposable.dispose();
+            }
+            updateCacheWipeSummary(0);
         } else if (preference.getKey().equals(viewsHistoryClearKey)) {
             openDeleteWatchHistoryDialog(requireContext(), recordManager, disposables);
         } else if (preference.getKey().equals(playbackStatesClearKey)) {
@@ -74,6 +102,21 @@ public class HistorySettingsFragment extends BasePreferenceFragment {
         return true;
     }
 
+    /**
+     * Shows the size and the hit counts of the metadata cache under the wipe preference.
+     *
+     * @param diskSize the size of the infos saved on disk, in bytes
+     */
+    private void updateCacheWipeSummary(final long diskSize) {
+        final InfoCache cache = InfoCache.getInstance();
+        requirePreference(R.string.metadata_cache_wipe_key).setSummary(
+                getString(R.string.metadata_cache_wipe_summary) + "\n"
+                        + getString(R.string.metadata_cache_stats,
+                        Formatter.formatShortFileSize(requireContext(), diskSize),
+                        cache.getMemoryHitCount(), cache.getDiskHitCount(),
+                        cache.getMissCount()));
+    }
+
     private static Disposable getDeletePlaybackStatesDisposable(
             @NonNull final Context context, final HistoryRecordManager recordManager) {
         return recordManager.deleteCompleteStreamStateHistory()
@@ -0,0 +1,24 @@
+package org.schabi.newpipe.streams;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Receives the state of a muxer at the points where the processing can be resumed. To resume,
+ * the output must contain exactly the data written before the checkpoint, and a new muxer
+ * created with the same sources must receive the state instead of parsing them again.
+ */
+public interface CheckpointListener {
+
+    /**
+     * Called when a checkpoint is reached, the output stream is not written while this method
+     * runs.
+     *
+     * @param state           the muxer state, the object is modified after this call returns
+     * @param sourcePositions for each source, the offset from where the data is still required
+     *                        to resume, or -1 if the source is not used anymore. The data before
+     *                        the offset can be discarded or overwritten
+     * @throws IOException if the checkpoint can not be saved
+     */
+    void onCheckpoint(Serializable state, long[] sourcePositions) throws IOException;
+}
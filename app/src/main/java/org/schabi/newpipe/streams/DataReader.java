@@ -16,11 +16,12 @@ public class DataReader {
     public static final int FLOAT_SIZE = 4;
 
     private static final int BUFFER_SIZE = 128 * 1024; // 128 KiB
+    private static final int TRANSFER_THRESHOLD = 32 * 1024; // 32 KiB
 
     private long position = 0;
     private final SharpStream stream;
 
-    private InputStream view;
+    private View view;
     private int viewSize;
 
     public DataReader(final SharpStream stream) {
@@ -65,8 +66,14 @@ public class DataReader {
     }
 
     public int readInt() throws IOException {
-        primitiveRead(INTEGER_SIZE);
-        return primitive[0] << 24 | primitive[1] << 16 | primitive[2] << 8 | primitive[3];
+        if (readCount < INTEGER_SIZE) {
+            primitiveRead(INTEGER_SIZE);
+            return getInt(primitive, 0);
+        }
+
+        final int value = getInt(readBuffer, readOffset);
+        consume(INTEGER_SIZE);
+        return value;
     }
 
     public long readUnsignedInt()  throws IOException {
@@ -76,16 +83,25 @@ public class DataReader {
 
 
     public short readShort() throws IOException {
-        primitiveRead(SHORT_SIZE);
-        return (short) (primitive[0] << 8 | primitive[1]);
+        if (readCount < SHORT_SIZE) {
+            primitiveRead(SHORT_SIZE);
+            return getShort(primitive, 0);
+        }
+
+        final short value = getShort(readBuffer, readOffset);
+        consume(SHORT_SIZE);
+        return value;
     }
 
     public long readLong() throws IOException {
-        primitiveRead(LONG_SIZE);
-        final long high
-                = primitive[0] << 24 | primitive[1] << 16 | primitive[2] << 8 | primitive[3];
-        final long low = primitive[4] << 24 | primitive[5] << 16 | primitive[6] << 8 | primitive[7];
-        return high << 32 | low;
+        if (readCount < LONG_SIZE) {
+            primitiveRead(LONG_SIZE);
+            return getLong(primitive, 0);
+        }
+
+        final long value = getLong(readBuffer, readOffset);
+        consume(LONG_SIZE);
+        return value;
     }
 
     public int read(final byte[] buffer) throws IOException {
@@ -154,6 +170,80 @@ public class DataReader {
         return stream.canRewind();
     }
 
+    /**
+     * Moves the read position to the given offset, going backwards requires a stream that can be
+     * rewound. Any view obtained before is dropped.
+     *
+     * @param offset the new position
+     * @throws IOException if the stream can not be rewound or the offset is beyond the end
+     */
+    public void seek(final long offset) throws IOException {
+        if (offset < position) {
+            if (!stream.canRewind()) {
+                throw new IOException("The provided stream doesn't allow seek");
+            }
+            rewind();
+        }
+
+        viewSize = 0;
+        while (position < offset) {
+            if (skipBytes(offset - position) < 1) {
+                throw new EOFException("Can not seek to " + offset + ", the stream ends at "
+                        + position);
+            }
+        }
+    }
+
+    /**
+     * Moves {@code count} bytes to the target stream. The buffered data is written first, the
+     * remaining bytes are moved with {@link SharpStream#transferTo(SharpStream, long)} if the
+     * amount is big enough.
+     *
+     * @param target the stream where the data is written
+     * @param count  amount of bytes to move
+     * @return the amount of bytes moved
+     * @throws IOException if an I/O error occurs
+     */
+    public long transferTo(final SharpStream target, final long count) throws IOException {
+        if (readCount < 0) {
+            return 0;
+        }
+
+        long amount = count;
+        long total = 0;
+
+        if (readCount > 0) {
+            final int read = (int) Math.min(readCount, amount);
+            target.write(readBuffer, readOffset, read);
+
+            readOffset += read;
+            readCount -= read;
+            amount -= read;
+            total += read;
+
+            if (readCount == 0) {
+                readOffset = readBuffer.length; // force a buffer refill on the next read
+            }
+        }
+
+        if (amount >= TRANSFER_THRESHOLD) {
+            total += stream.transferTo(target, amount);
+        } else {
+            while (amount > 0 && !fillBuffer()) {
+                final int read = (int) Math.min(readCount, amount);
+                target.write(readBuffer, readOffset, read);
+
+                readOffset += read;
+                readCount -= read;
+                amount -= read;
+                total += read;
+            }
+        }
+
+        position += total;
+        return total;
+    }
+
     /**
      * Wraps this instance of {@code DataReader} into {@code InputStream}
      * object. Note: Any read in the {@code DataReader} will not modify
@@ -162,87 +252,131 @@ public class DataReader {
      * @param size the size of the view
      * @return the view
      */
-    public InputStream getView(final int size) {
+    public View getView(final int size) {
         if (view == null) {
-            view = new InputStream() {
-                @Override
-                public int read() throws IOException {
-                    if (viewSize < 1) {
-                        return -1;
-                    }
-                    final int res = DataReader.this.read();
-                    if (res > 0) {
-                        viewSize--;
-                    }
-                    return res;
-                }
-
-                @Override
-                public int read(final byte[] buffer) throws IOException {
-                    return read(buffer, 0, buffer.length);
-                }
-
-                @Override
-                public int read(final byte[] buffer, final int offset, final int count)
-                        throws IOException {
-                    if (viewSize < 1) {
-                        return -1;
-                    }
-
-                    final int res = DataReader.this.read(buffer, offset, Math.min(viewSize, count));
-                    viewSize -= res;
-
-                    return res;
-                }
-
-                @Override
-                public long skip(final long amount) throws IOException {
-                    if (viewSize < 1) {
-                        return 0;
-                    }
-                    final int res = (int) DataReader.this.skipBytes(Math.min(amount, viewSize));
-                    viewSize -= res;
-
-                    return res;
-                }
-
-                @Override
-                public int available() {
-                    return viewSize;
-                }
-
-                @Override
-                public void close() {
-                    viewSize = 0;
-                }
-
-                @Override
-                public boolean markSupported() {
-                    return false;
-                }
-
-            };
+            view = new View();
         }
         viewSize = size;
 
         return view;
     }
 
-    private final short[] primitive = new short[LONG_SIZE];
+    /**
+     * A limited view of the {@code DataReader} data, also allows move the data to another
+     * {@link SharpStream} without copying it into new arrays.
+     */
+    public final class View extends InputStream {
+        @Override
+        public int read() throws IOException {
+            if (viewSize < 1) {
+                return -1;
+            }
+            final int res = DataReader.this.read();
+            if (res > 0) {
+                viewSize--;
+            }
+            return res;
+        }
+
+        @Override
+        public int read(final byte[] buffer) throws IOException {
+            return read(buffer, 0, buffer.length);
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int count)
+                throws IOException {
+            if (viewSize < 1) {
+                return -1;
+            }
+
+            final int res = DataReader.this.read(buffer, offset, Math.min(viewSize, count));
+            viewSize -= res;
+
+            return res;
+        }
+
+        @Override
+        public long skip(final long amount) throws IOException {
+            if (viewSize < 1) {
+                return 0;
+            }
+            final int res = (int) DataReader.this.skipBytes(Math.min(amount, viewSize));
+            viewSize -= res;
+
+            return res;
+        }
+
+        /**
+         * Moves data of this view to the target stream.
+         *
+         * @param target the stream where the data is written
+         * @param count  amount of bytes to move, limited by the view size
+         * @return the amount of bytes moved
+         * @throws IOException if an I/O error occurs
+         */
+        public long transferTo(final SharpStream target, final long count) throws IOException {
+            if (viewSize < 1) {
+                return 0;
+            }
+
+            final int res = (int) DataReader.this.transferTo(target, Math.min(viewSize, count));
+            viewSize -= res;
+
+            return res;
+        }
 
+        @Override
+        public int available() {
+            return viewSize;
+        }
+
+        @Override
+        public void close() {
+            viewSize = 0;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    private final byte[] primitive = new byte[LONG_SIZE];
+
+    /**
+     * Slow path of the primitive reads, used only if the value is split between the end of the
+     * read buffer and the next chunk of the stream.
+     *
+     * @param amount the size of the primitive
+     */
     private void primitiveRead(final int amount) throws IOException {
-        final byte[] buffer = new byte[amount];
-        final int read = read(buffer, 0, amount);
+        final int read = read(primitive, 0, amount);
 
         if (read != amount) {
             throw new EOFException("Truncated stream, missing "
                     + (amount - read) + " bytes");
         }
+    }
 
-        for (int i = 0; i < amount; i++) {
-            // the "byte" data type in java is signed and is very annoying
-            primitive[i] = (short) (buffer[i] & 0xFF);
-        }
+    private void consume(final int amount) {
+        readOffset += amount;
+        readCount -= amount;
+        position += amount;
+    }
+
+    private static short getShort(final byte[] buffer, final int offset) {
+        return (short) ((buffer[offset] & 0xFF) << 8 | (buffer[offset + 1] & 0xFF));
+    }
+
+    private static int getInt(final byte[] buffer, final int offset) {
+        return (buffer[offset] & 0xFF) << 24 | (buffer[offset + 1] & 0xFF) << 16
+                | (buffer[offset + 2] & 0xFF) << 8 | (buffer[offset + 3] & 0xFF);
+    }
+
+    private static long getLong(final byte[] buffer, final int offset) {
+        return ((long) getInt(buffer, offset)) << 32
+                | (getInt(buffer, offset + INTEGER_SIZE) & 0xFFFFFFFFL);
     }
 
     private final byte[] readBuffer = new byte[BUFFER_SIZE];
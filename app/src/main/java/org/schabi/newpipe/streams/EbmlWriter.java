@@ -0,0 +1,219 @@
+package org.schabi.newpipe.streams;
+
+import org.schabi.newpipe.streams.io.SharpStream;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable buffer for writing EBML elements. The element IDs, the encoded sizes and the payloads
+ * are written straight into the same array, and the size of an element can be back-patched once
+ * all of its children are written. The buffer grows when needed and is reused after every
+ * {@link #writeTo(SharpStream)}, so writing blocks does not allocate anything.
+ */
+final class EbmlWriter {
+    private static final int MAX_SIZE_LENGTH = 8;
+
+    private byte[] buffer;
+    private int size = 0;
+
+    EbmlWriter(final int initialCapacity) {
+        buffer = new byte[initialCapacity];
+    }
+
+    /**
+     * @return amount of bytes pending to be written
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Discards the pending data.
+     */
+    void reset() {
+        size = 0;
+    }
+
+    /**
+     * Writes the pending data and resets the buffer.
+     *
+     * @param stream the output
+     * @return amount of written bytes
+     * @throws IOException if the output fails
+     */
+    int writeTo(final SharpStream stream) throws IOException {
+        final int count = size;
+        stream.write(buffer, 0, count);
+        size = 0;
+        return count;
+    }
+
+    /**
+     * Writes an element ID, the ID must include the length marker (for example
+     * {@code 0x1F43B675} for the Cluster element).
+     *
+     * @param id the element ID
+     */
+    void writeId(final int id) {
+        if ((id & 0xFF000000) != 0) {
+            writeInt(id);
+        } else if ((id & 0xFF0000) != 0) {
+            ensureCapacity(3);
+            buffer[size++] = (byte) (id >>> 16);
+            buffer[size++] = (byte) (id >>> 8);
+            buffer[size++] = (byte) id;
+        } else if ((id & 0xFF00) != 0) {
+            writeShort(id);
+        } else {
+            writeByte(id);
+        }
+    }
+
+    void writeByte(final int value) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) value;
+    }
+
+    void writeShort(final int value) {
+        ensureCapacity(DataReader.SHORT_SIZE);
+        buffer[size++] = (byte) (value >>> 8);
+        buffer[size++] = (byte) value;
+    }
+
+    void writeInt(final int value) {
+        ensureCapacity(DataReader.INTEGER_SIZE);
+        buffer[size++] = (byte) (value >>> 24);
+        buffer[size++] = (byte) (value >>> 16);
+        buffer[size++] = (byte) (value >>> 8);
+        buffer[size++] = (byte) value;
+    }
+
+    void write(final byte[] data) {
+        write(data, 0, data.length);
+    }
+
+    void write(final byte[] data, final int offset, final int count) {
+        ensureCapacity(count);
+        System.arraycopy(data, offset, buffer, size, count);
+        size += count;
+    }
+
+    /**
+     * Writes a variable size integer, used for element sizes and track numbers of blocks.
+     *
+     * @param number the value
+     */
+    void writeVint(final long number) {
+        final int length = getLength(number);
+        ensureCapacity(length);
+        putVint(size, number, length);
+        size += length;
+    }
+
+    /**
+     * Writes the size and the content of an unsigned integer element.
+     *
+     * @param number the value
+     */
+    void writeUnsigned(final long number) {
+        final int length = getLength(number);
+        ensureCapacity(length + 1);
+
+        buffer[size++] = (byte) (0x80 | length);
+        for (int i = length - 1, shift = 0; i >= 0; i--, shift += 8) {
+            buffer[size + i] = (byte) (number >>> shift);
+        }
+        size += length;
+    }
+
+    /**
+     * Writes the size and the content of an UTF-8 string element.
+     *
+     * @param value the string
+     */
+    void writeString(final String value) {
+        final byte[] str = value.getBytes(StandardCharsets.UTF_8);
+        writeVint(str.length);
+        write(str);
+    }
+
+    /**
+     * Writes the size and the content of a binary element.
+     *
+     * @param data the content
+     */
+    void writeBinary(final byte[] data) {
+        writeVint(data.length);
+        write(data);
+    }
+
+    /**
+     * Writes the ID of a master element, the size is written by {@link #endElement(int)}.
+     *
+     * @param id the element ID
+     * @return the mark to pass to {@link #endElement(int)}
+     */
+    int startElement(final int id) {
+        writeId(id);
+        return size;
+    }
+
+    /**
+     * Inserts the size of an element in front of the content written since the
+     * {@link #startElement(int)} call. Nested elements must be ended first.
+     *
+     * @param mark the value returned by {@link #startElement(int)}
+     */
+    void endElement(final int mark) {
+        final long contentSize = size - mark;
+        final int length = getLength(contentSize);
+
+        ensureCapacity(length);
+        System.arraycopy(buffer, mark, buffer, mark + length, size - mark);
+        putVint(mark, contentSize, length);
+        size += length;
+    }
+
+    private void putVint(final int offset, final long number, final int length) {
+        for (int i = length - 1, shift = 0; i >= 0; i--, shift += 8) {
+            buffer[offset + i] = (byte) (number >>> shift);
+        }
+        buffer[offset] |= (byte) (0x80 >>> (length - 1));
+    }
+
+    private void ensureCapacity(final int count) {
+        if (size + count > buffer.length) {
+            final byte[] newBuffer = new byte[Math.max(buffer.length * 2, size + count)];
+            System.arraycopy(buffer, 0, newBuffer, 0, size);
+            buffer = newBuffer;
+        }
+    }
+
+    /**
+     * Calculates the amount of bytes required to encode a number, the values with all bits set
+     * are avoided because are reserved in the variable size integers.
+     *
+     * @param number the value
+     * @return the amount of bytes
+     */
+    static int getLength(final long number) {
+        int length = -1;
+        for (int i = 1; i < MAX_SIZE_LENGTH; i++) {
+            if (number < 1L << (7 * i)) {
+                length = i;
+                break;
+            }
+        }
+
+        if (length < 1) {
+            throw new ArithmeticException("Can't encode a number of bigger than 7 bytes");
+        }
+
+        if (number == (1L << (7 * length)) - 1) {
+            length++;
+        }
+
+        return length;
+    }
+}
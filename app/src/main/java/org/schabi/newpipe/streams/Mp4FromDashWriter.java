@@ -3,12 +3,12 @@ package org.schabi.newpipe.streams;
 import org.schabi.newpipe.streams.Mp4DashReader.Hdlr;
 import org.schabi.newpipe.streams.Mp4DashReader.Mdia;
 import org.schabi.newpipe.streams.Mp4DashReader.Mp4DashChunk;
-import org.schabi.newpipe.streams.Mp4DashReader.Mp4DashSample;
 import org.schabi.newpipe.streams.Mp4DashReader.Mp4Track;
 import org.schabi.newpipe.streams.Mp4DashReader.TrackKind;
 import org.schabi.newpipe.streams.Mp4DashReader.TrunEntry;
 import org.schabi.newpipe.streams.io.SharpStream;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -26,6 +26,8 @@ public class Mp4FromDashWriter {
     private static final long THRESHOLD_FOR_CO64 = 0xFFFEFFFFL;
     // 2.2 MiB enough for: 1080p 60fps 00h35m00s
     private static final int THRESHOLD_MOOV_LENGTH = (256 * 1024) + (2048 * 1024);
+    // fast start mode, bigger moov boxes are written using the regular mode
+    private static final int THRESHOLD_FAST_START_MOOV_LENGTH = 32 * 1024 * 1024;
 
     private final long time;
 
@@ -36,6 +38,7 @@ public class Mp4FromDashWriter {
     private long writeOffset;
 
     private boolean moovSimulation = true;
+    private boolean samplesSimulation = false;
 
     private boolean done = false;
     private boolean parsed = false;
@@ -45,6 +48,9 @@ public class Mp4FromDashWriter {
 
     private Mp4DashReader[] readers;
     private Mp4DashChunk[] readersChunks;
+    private long pendingSamplesSize = 0;
+
+    private boolean fastStart = false;
 
     private int overrideMainBrand = 0x00;
 
@@ -112,6 +118,18 @@ public class Mp4FromDashWriter {
         }
     }
 
+    /**
+     * Writes the output sequentially, without seeking. All sample tables are computed from the
+     * fragments metadata before writing any sample, then the moov box is written followed by the
+     * mdat box. The moov box is fully kept in the memory, if bigger than 32 MiB the regular mode
+     * is used.
+     *
+     * @param enable {@code true} to compute the sample tables before writing the samples
+     */
+    public void setFastStart(final boolean enable) {
+        fastStart = enable;
+    }
+
     public void setMainBrand(final int brand) {
         overrideMainBrand = brand;
     }
@@ -256,7 +274,9 @@ public class Mp4FromDashWriter {
         // calculate the moov size
         final int auxSize = makeMoov(defaultMediaTime, tablesInfo, is64);
 
-        if (auxSize < THRESHOLD_MOOV_LENGTH) {
+        final boolean writeFastStart = fastStart && auxSize <= THRESHOLD_FAST_START_MOOV_LENGTH;
+
+        if (writeFastStart || auxSize < THRESHOLD_MOOV_LENGTH) {
             auxBuffer = ByteBuffer.allocate(auxSize); // cache moov in the memory
         }
 
@@ -265,8 +285,10 @@ public class Mp4FromDashWriter {
 
         final int ftypSize = makeFtyp();
 
-        // reserve moov space in the output stream
-        if (auxSize > 0) {
+        if (writeFastStart) {
+            writeOffset += auxSize; // the moov is written after filling the sample tables
+        } else if (auxSize > 0) {
+            // reserve moov space in the output stream
             int length = auxSize;
             final byte[] buffer = new byte[64 * 1024]; // 64 KiB
             while (length > 0) {
@@ -304,7 +326,14 @@ public class Mp4FromDashWriter {
             outRestore();
         }
 
-        outWrite(makeMdat(totalSampleSize, is64));
+        final byte[] mdat = makeMdat(totalSampleSize, is64);
+        if (writeFastStart) {
+            // fill the sample tables without writing the samples
+            writeOffset += mdat.length;
+            samplesSimulation = true;
+        } else {
+            outWrite(mdat);
+        }
 
         final int[] sampleIndex = new int[readers.length];
         final int[] sizes
@@ -322,16 +351,11 @@ public class Mp4FromDashWriter {
 
                 final long chunkOffset = writeOffset;
                 int syncCount = 0;
-                final int limit;
-                if (singleSampleBuffer > 0) {
-                    limit = singleSampleBuffer;
-                } else {
-                    limit = sampleIndex[i] == 0 ? SAMPLES_PER_CHUNK_INIT : SAMPLES_PER_CHUNK;
-                }
+                final int limit = getChunkLength(sampleIndex[i], singleSampleBuffer);
 
                 int j = 0;
                 for (; j < limit; j++) {
-                    final Mp4DashSample sample = getNextSample(i);
+                    final TrunEntry sample = getNextSampleInfo(i);
 
                     if (sample == null) {
                         if (tablesInfo[i].ctts > 0 && sampleExtra[i] >= 0) {
@@ -346,7 +370,7 @@ public class Mp4FromDashWriter {
                     sampleIndex[i]++;
 
                     if (tablesInfo[i].ctts > 0) {
-                        if (sample.info.sampleCompositionTimeOffset == sampleExtra[i]) {
+                        if (sample.sampleCompositionTimeOffset == sampleExtra[i]) {
                             sampleCount[i]++;
                         } else {
                             if (sampleExtra[i] >= 0) {
@@ -355,21 +379,22 @@ public class Mp4FromDashWriter {
                                 outRestore();
                             }
                             sampleCount[i] = 1;
-                            sampleExtra[i] = sample.info.sampleCompositionTimeOffset;
+                            sampleExtra[i] = sample.sampleCompositionTimeOffset;
                         }
                     }
 
-                    if (tablesInfo[i].stss > 0 && sample.info.isKeyframe) {
+                    if (tablesInfo[i].stss > 0 && sample.isKeyframe) {
                         sync[syncCount++] = sampleIndex[i];
                     }
 
                     if (tablesInfo[i].stsz > 0) {
-                        sizes[j] = sample.data.length;
+                        sizes[j] = sample.sampleSize;
                     }
-
-                    outWrite(sample.data, sample.data.length);
                 }
 
+                // the samples of the chunk are contiguous in the source, move them all at once
+                writePendingSamples(i);
+
                 if (j > 0) {
                     written++;
 
@@ -395,7 +420,15 @@ public class Mp4FromDashWriter {
             }
         }
 
-        if (auxBuffer != null) {
+        if (writeFastStart) {
+            samplesSimulation = false;
+
+            outStream.write(auxBuffer.array(), 0, auxBuffer.capacity());
+            auxBuffer = null;
+            outStream.write(mdat);
+
+            writeSamples(singleSampleBuffer);
+        } else if (auxBuffer != null) {
             // dump moov
             outSeek(ftypSize);
             outStream.write(auxBuffer.array(), 0, auxBuffer.capacity());
@@ -403,21 +436,93 @@ public class Mp4FromDashWriter {
         }
     }
 
-    private Mp4DashSample getNextSample(final int track) throws IOException {
+    /**
+     * Writes the samples of all tracks, using the same interleaving used to fill the sample
+     * tables in the fast start mode.
+     *
+     * @param singleSampleBuffer the samples per chunk of a single audio track, or {@code -1} to
+     *                           use the default chunk lengths
+     * @throws IOException if the samples can not be moved to the output
+     */
+    private void writeSamples(final int singleSampleBuffer) throws IOException {
+        for (int i = 0; i < readers.length; i++) {
+            readers[i].rewind();
+            readersChunks[i] = null;
+        }
+
+        final int[] sampleIndex = new int[readers.length];
+
+        int written = readers.length;
+        while (written > 0) {
+            written = 0;
+
+            for (int i = 0; i < readers.length; i++) {
+                if (sampleIndex[i] < 0) {
+                    continue; // track is done
+                }
+
+                final int limit = getChunkLength(sampleIndex[i], singleSampleBuffer);
+                int j = 0;
+                for (; j < limit; j++) {
+                    if (getNextSampleInfo(i) == null) {
+                        sampleIndex[i] = -1;
+                        break;
+                    }
+                    sampleIndex[i]++;
+                }
+
+                writePendingSamples(i);
+
+                if (j > 0) {
+                    written++;
+                }
+            }
+        }
+    }
+
+    private static int getChunkLength(final int sampleIndex, final int singleSampleBuffer) {
+        if (singleSampleBuffer > 0) {
+            return singleSampleBuffer;
+        }
+        return sampleIndex == 0 ? SAMPLES_PER_CHUNK_INIT : SAMPLES_PER_CHUNK;
+    }
+
+    private TrunEntry getNextSampleInfo(final int track) throws IOException {
         if (readersChunks[track] == null) {
-            readersChunks[track] = readers[track].getNextChunk(false);
+            readersChunks[track] = readers[track].getNextChunk(samplesSimulation);
             if (readersChunks[track] == null) {
                 return null; // EOF reached
             }
         }
 
-        final Mp4DashSample sample = readersChunks[track].getNextSample();
-        if (sample == null) {
+        final TrunEntry info = readersChunks[track].getNextSampleInfo();
+        if (info == null) {
+            writePendingSamples(track); // must be done before reading the next chunk
             readersChunks[track] = null;
-            return getNextSample(track);
+            return getNextSampleInfo(track);
         } else {
-            return sample;
+            pendingSamplesSize += info.sampleSize;
+            return info;
+        }
+    }
+
+    private void writePendingSamples(final int track) throws IOException {
+        if (pendingSamplesSize < 1) {
+            return;
         }
+        if (samplesSimulation) {
+            writeOffset += pendingSamplesSize;
+            pendingSamplesSize = 0;
+            return;
+        }
+
+        final long moved = readersChunks[track].data.transferTo(outStream, pendingSamplesSize);
+        if (moved != pendingSamplesSize) {
+            throw new EOFException("EOF reached while reading a sample");
+        }
+
+        writeOffset += moved;
+        pendingSamplesSize = 0;
     }
 
 
@@ -825,6 +930,9 @@ public class Mp4FromDashWriter {
             }
             tablesInfo.stsc = make(0x73747363, -1, 3, tablesInfo.stsc);
             tablesInfo.stsz = make(0x7374737A, tablesInfo.stszDefault, 1, tablesInfo.stsz);
+            if (tablesInfo.stszDefault > 0) {
+                tablesInfo.stsz = 0; // all samples have the same size, the table is empty
+            }
             tablesInfo.stco = make(is64 ? 0x636F3634 : 0x7374636F, -1, is64 ? 2 : 1,
                     tablesInfo.stco);
         }
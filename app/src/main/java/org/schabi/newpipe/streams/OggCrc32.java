@@ -0,0 +1,140 @@
+package org.schabi.newpipe.streams;
+
+/**
+ * CRC-32 used by Ogg pages: polynomial 0x04C11DB7, not reflected, zero initial value and zero
+ * final xor. Processes 8 bytes per iteration (slice-by-8), and can be updated while the page
+ * segments are appended because the checksum of the header can be combined later.
+ */
+final class OggCrc32 {
+    private static final int POLYNOMIAL = 0x04C11DB7;
+    private static final int[][] TABLES = new int[8][256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 24;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc << 1) ^ (crc < 0 ? POLYNOMIAL : 0);
+            }
+            TABLES[0][i] = crc;
+        }
+
+        for (int k = 1; k < TABLES.length; k++) {
+            for (int i = 0; i < 256; i++) {
+                final int prev = TABLES[k - 1][i];
+                TABLES[k][i] = (prev << 8) ^ TABLES[0][prev >>> 24];
+            }
+        }
+    }
+
+    private int value = 0;
+    private long length = 0;
+
+    /**
+     * Appends data to the checksum.
+     *
+     * @param buffer the data
+     * @param offset the data offset
+     * @param count  amount of bytes
+     */
+    void update(final byte[] buffer, final int offset, final int count) {
+        value = update(value, buffer, offset, count);
+        length += count;
+    }
+
+    int getValue() {
+        return value;
+    }
+
+    /**
+     * @return amount of bytes added since the last reset
+     */
+    long getLength() {
+        return length;
+    }
+
+    void reset() {
+        value = 0;
+        length = 0;
+    }
+
+    /**
+     * Calculates the checksum of the data, continuing from a previous checksum.
+     *
+     * @param initialCrc the checksum of the previous data, or zero
+     * @param buffer     the data
+     * @param offset     the data offset
+     * @param count      amount of bytes
+     * @return the new checksum
+     */
+    static int update(final int initialCrc, final byte[] buffer, final int offset,
+                      final int count) {
+        final int[] t0 = TABLES[0];
+        final int[] t1 = TABLES[1];
+        final int[] t2 = TABLES[2];
+        final int[] t3 = TABLES[3];
+        final int[] t4 = TABLES[4];
+        final int[] t5 = TABLES[5];
+        final int[] t6 = TABLES[6];
+        final int[] t7 = TABLES[7];
+
+        int crc = initialCrc;
+        int i = offset;
+        final int end = offset + count;
+
+        for (final int limit = end - 7; i < limit; i += 8) {
+            final int high = crc ^ ((buffer[i] & 0xFF) << 24 | (buffer[i + 1] & 0xFF) << 16
+                    | (buffer[i + 2] & 0xFF) << 8 | (buffer[i + 3] & 0xFF));
+
+            crc = t7[high >>> 24] ^ t6[(high >>> 16) & 0xFF]
+                    ^ t5[(high >>> 8) & 0xFF] ^ t4[high & 0xFF]
+                    ^ t3[buffer[i + 4] & 0xFF] ^ t2[buffer[i + 5] & 0xFF]
+                    ^ t1[buffer[i + 6] & 0xFF] ^ t0[buffer[i + 7] & 0xFF];
+        }
+
+        for (; i < end; i++) {
+            crc = (crc << 8) ^ t0[(crc >>> 24) ^ (buffer[i] & 0xFF)];
+        }
+
+        return crc;
+    }
+
+    /**
+     * Gets the checksum of two consecutive blocks of data, using their checksums.
+     *
+     * @param crcFirst     the checksum of the first block
+     * @param crcSecond    the checksum of the second block (calculated from zero)
+     * @param lengthSecond the length of the second block
+     * @return the checksum of both blocks
+     */
+    static int combine(final int crcFirst, final int crcSecond, final long lengthSecond) {
+        // crc(A + B) = crc(A) * x^(8 * length(B)) mod P  xor  crc(B)
+        int power = 0x01; // x^0
+        int square = 0x100; // x^8
+        for (long n = lengthSecond; n > 0; n >>>= 1) {
+            if ((n & 1) != 0) {
+                power = multiply(power, square);
+            }
+            square = multiply(square, square);
+        }
+
+        return multiply(crcFirst, power) ^ crcSecond;
+    }
+
+    /**
+     * Multiplies two polynomials modulo {@link #POLYNOMIAL}.
+     *
+     * @param a the first polynomial
+     * @param b the second polynomial
+     * @return the product
+     */
+    private static int multiply(final int a, final int b) {
+        int product = 0;
+        for (int bit = 31; bit >= 0; bit--) {
+            product = (product << 1) ^ (product < 0 ? POLYNOMIAL : 0);
+            if ((a & (1 << bit)) != 0) {
+                product ^= b;
+            }
+        }
+        return product;
+    }
+}
@@ -11,6 +11,7 @@ import org.schabi.newpipe.streams.io.SharpStream;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
@@ -35,7 +36,7 @@ public class OggFromWebMWriter implements Closeable {
     private final SharpStream output;
 
     private int sequenceCount = 0;
-    private final int streamId;
+    private int streamId;
     private byte packetFlag = FLAG_FIRST;
 
     private WebMReader webm = null;
@@ -51,7 +52,12 @@ public class OggFromWebMWriter implements Closeable {
     private final byte[] segmentTable = new byte[255];
     private long segmentTableNextTimestamp = TIME_SCALE_NS;
 
-    private final int[] crc32Table = new int[256];
+    private final OggCrc32 pageChecksum = new OggCrc32();
+
+    private CheckpointListener checkpointListener = null;
+    private long checkpointInterval;
+    private boolean resumed = false;
+    private long written = 0;
 
     public OggFromWebMWriter(@NonNull final SharpStream source, @NonNull final SharpStream target) {
         if (!source.canRead() || !source.canRewind()) {
@@ -65,8 +71,6 @@ public class OggFromWebMWriter implements Closeable {
         this.output = target;
 
         this.streamId = (int) System.currentTimeMillis();
-
-        populateCrc32Table();
     }
 
     public boolean isDone() {
@@ -128,6 +132,59 @@ public class OggFromWebMWriter implements Closeable {
         }
     }
 
+    /**
+     * Continues a demuxing interrupted after a checkpoint, use this method instead of
+     * {@link #parseSource()} and {@link #selectTrack(int)}. The output must contain the data
+     * written before the checkpoint, and be positioned at the end.
+     *
+     * @param checkpointState the state received by the {@link CheckpointListener}
+     * @throws IOException if the source can not be moved to the saved position
+     */
+    public void resume(final Serializable checkpointState) throws IOException {
+        if (done) {
+            throw new IllegalStateException("already done");
+        }
+        if (parsed) {
+            throw new IllegalStateException("already parsed");
+        }
+        if (!(checkpointState instanceof State)) {
+            throw new IllegalArgumentException("The state does not belong to this demuxer");
+        }
+
+        final State state = (State) checkpointState;
+        try {
+            webm = new WebMReader(source);
+            webm.resume(state.position);
+            webmTrack = webm.getSelectedTrack();
+
+            // the checkpoints are made while a block is held, the segment and the cluster are
+            // always in use
+            webmSegment = webm.getNextSegment();
+            webmCluster = webmSegment.getNextCluster();
+            webmBlockLastTimecode = state.lastTimecode;
+
+            sequenceCount = state.sequenceCount;
+            streamId = state.streamId;
+            packetFlag = state.packetFlag;
+            segmentTableNextTimestamp = state.segmentTableNextTimestamp;
+            resumed = true;
+        } finally {
+            parsed = true;
+        }
+    }
+
+    /**
+     * Enables the checkpoints while demuxing, the demuxing can be resumed from the last one with
+     * {@link #resume(Serializable)}.
+     *
+     * @param listener the listener, or {@code null} to disable the checkpoints
+     * @param interval amount of bytes written between two checkpoints
+     */
+    public void setCheckpointListener(final CheckpointListener listener, final long interval) {
+        checkpointListener = listener;
+        checkpointInterval = interval;
+    }
+
     @Override
     public void close() throws IOException {
         done = true;
@@ -173,7 +230,7 @@ public class OggFromWebMWriter implements Closeable {
         }
 
         /* step 2: create packet with code init data */
-        if (webmTrack.codecPrivate != null) {
+        if (!resumed && webmTrack.codecPrivate != null) {
             addPacketSegment(webmTrack.codecPrivate.length);
             makePacketheader(0x00, header, webmTrack.codecPrivate);
             write(header);
@@ -182,7 +239,7 @@ public class OggFromWebMWriter implements Closeable {
 
         /* step 3: create packet with metadata */
         final byte[] buffer = makeMetadata();
-        if (buffer != null) {
+        if (!resumed && buffer != null) {
             addPacketSegment(buffer.length);
             makePacketheader(0x00, header, buffer);
             write(header);
@@ -190,6 +247,7 @@ public class OggFromWebMWriter implements Closeable {
         }
 
         /* step 4: calculate amount of packets */
+        long nextCheckpoint = written + checkpointInterval;
         while (webmSegment != null) {
             bloq = getNextBlock();
 
@@ -198,6 +256,7 @@ public class OggFromWebMWriter implements Closeable {
                 //noinspection ResultOfMethodCallIgnored
                 bloq.data.read(page.array(), pos, bloq.dataSize);
                 page.position(pos + bloq.dataSize);
+                pageChecksum.update(page.array(), pos, bloq.dataSize);
                 continue;
             }
 
@@ -224,7 +283,9 @@ public class OggFromWebMWriter implements Closeable {
 
             // create header and calculate page checksum
             int checksum = makePacketheader((long) elapsedNs, header, null);
-            checksum = calcCrc32(checksum, page.array(), page.position());
+            checksum = OggCrc32.combine(checksum, pageChecksum.getValue(),
+                    pageChecksum.getLength());
+            pageChecksum.reset();
 
             header.putInt(HEADER_CHECKSUM_OFFSET, checksum);
 
@@ -233,9 +294,28 @@ public class OggFromWebMWriter implements Closeable {
             write(page);
 
             webmBlock = bloq;
+
+            if (checkpointListener != null && bloq != null && written >= nextCheckpoint) {
+                checkpoint();
+                nextCheckpoint = written + checkpointInterval;
+            }
         }
     }
 
+    private void checkpoint() throws IOException {
+        final State state = new State();
+
+        // the held block is read again after resuming
+        state.position = webm.getPosition(true);
+        state.lastTimecode = webmBlockLastTimecode - webmBlockNearDuration;
+        state.sequenceCount = sequenceCount;
+        state.streamId = streamId;
+        state.packetFlag = packetFlag;
+        state.segmentTableNextTimestamp = segmentTableNextTimestamp;
+
+        checkpointListener.onCheckpoint(state, new long[]{state.position.getOffset()});
+    }
+
     private int makePacketheader(final long granPos, @NonNull final ByteBuffer buffer,
                                  final byte[] immediatePage) {
         short length = HEADER_SIZE;
@@ -258,10 +338,11 @@ public class OggFromWebMWriter implements Closeable {
 
         clearSegmentTable(); // clear segment table for next header
 
-        int checksumCrc32 = calcCrc32(0x00, buffer.array(), length);
+        int checksumCrc32 = OggCrc32.update(0x00, buffer.array(), 0, length);
 
         if (immediatePage != null) {
-            checksumCrc32 = calcCrc32(checksumCrc32, immediatePage, immediatePage.length);
+            checksumCrc32 = OggCrc32.update(checksumCrc32, immediatePage, 0,
+                    immediatePage.length);
             buffer.putInt(HEADER_CHECKSUM_OFFSET, checksumCrc32);
             segmentTableNextTimestamp -= TIME_SCALE_NS;
         }
@@ -292,6 +373,7 @@ public class OggFromWebMWriter implements Closeable {
 
     private void write(final ByteBuffer buffer) throws IOException {
         output.write(buffer.array(), 0, buffer.position());
+        written += buffer.position();
         buffer.position(0);
     }
 
@@ -392,25 +474,17 @@ public class OggFromWebMWriter implements Closeable {
         return true;
     }
 
-    private void populateCrc32Table() {
-        for (int i = 0; i < 0x100; i++) {
-            int crc = i << 24;
-            for (int j = 0; j < 8; j++) {
-                final long b = crc >>> 31;
-                crc <<= 1;
-                crc ^= (int) (0x100000000L - b) & 0x04c11db7;
-            }
-            crc32Table[i] = crc;
-        }
-    }
-
-    private int calcCrc32(final int initialCrc, final byte[] buffer, final int size) {
-        int crc = initialCrc;
-        for (int i = 0; i < size; i++) {
-            final int reg = (crc >>> 24) & 0xff;
-            crc = (crc << 8) ^ crc32Table[reg ^ (buffer[i] & 0xff)];
-        }
-
-        return crc;
+    /**
+     * Progress of the demuxing, saved on every checkpoint.
+     */
+    static class State implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        WebMReader.Position position;
+        long lastTimecode;
+        int sequenceCount;
+        int streamId;
+        byte packetFlag;
+        long segmentTableNextTimestamp;
     }
 }
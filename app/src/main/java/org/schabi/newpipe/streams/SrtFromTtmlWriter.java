@@ -1,18 +1,14 @@
 package org.schabi.newpipe.streams;
 
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.nodes.Node;
-import org.jsoup.nodes.TextNode;
-import org.jsoup.parser.Parser;
-import org.jsoup.select.Elements;
+import org.schabi.newpipe.streams.io.SharpInputStream;
 import org.schabi.newpipe.streams.io.SharpStream;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * @author kapodamy
@@ -31,14 +27,18 @@ public class SrtFromTtmlWriter {
         this.ignoreEmptyFrames = ignoreEmptyFrames;
     }
 
-    private static String getTimestamp(final Element frame, final String attr) {
+    private static String getTimestamp(final XmlPullReader frame, final String attr) {
         return frame
-                .attr(attr)
+                .getAttribute(attr)
                 .replace('.', ','); // SRT subtitles uses comma as decimal separator
     }
 
     private void writeFrame(final String begin, final String end, final StringBuilder text)
             throws IOException {
+        if (ignoreEmptyFrames && text.length() < 1) {
+            return;
+        }
+
         writeString(String.valueOf(frameIndex++));
         writeString(NEW_LINE);
         writeString(begin);
@@ -62,42 +62,110 @@ public class SrtFromTtmlWriter {
          * tag timestamps (in auto-generated subtitles) are not supported, maybe in the future
          * also TimestampTagOption enum is not applicable
          * Language parsing is not supported
+         *
+         * Every "body > div > p" paragraph is written as soon as is closed, only the text and
+         * <br> placed directly inside of the paragraph are used.
          */
 
-        // parse XML
-        final byte[] buffer = new byte[(int) ttml.available()];
-        ttml.read(buffer);
-        final Document doc = Jsoup.parse(new ByteArrayInputStream(buffer), "UTF-8", "",
-                Parser.xmlParser());
-
+        final XmlPullReader reader = new XmlPullReader(new SharpInputStream(ttml));
+        final ArrayList<String> tree = new ArrayList<>(); // the currently open tags
         final StringBuilder text = new StringBuilder(128);
-        final Elements paragraphList = doc.select("body > div > p");
 
-        // check if has frames
-        if (paragraphList.size() < 1) {
-            return;
+        int cueDepth = -1;
+        String begin = null;
+        String end = null;
+
+        int token;
+        while ((token = reader.next()) != XmlPullReader.END_DOCUMENT) {
+            final boolean insideCue = cueDepth >= 0 && tree.size() == cueDepth + 1;
+
+            switch (token) {
+                case XmlPullReader.START_TAG:
+                    final String name = reader.getName();
+
+                    if (insideCue && name.equalsIgnoreCase("br")) {
+                        text.append(NEW_LINE);
+                    } else if (cueDepth < 0 && isCue(tree, name)) {
+                        text.setLength(0);
+                        begin = getTimestamp(reader, "begin");
+                        end = getTimestamp(reader, "end");
+
+                        if (reader.isEmptyElement()) {
+                            writeFrame(begin, end, text);
+                        } else {
+                            cueDepth = tree.size();
+                        }
+                    }
+
+                    if (!reader.isEmptyElement()) {
+                        tree.add(name);
+                    }
+                    break;
+                case XmlPullReader.END_TAG:
+                    // close the tag and anything left open inside of it
+                    final int index = tree.lastIndexOf(reader.getName());
+                    if (index < 0) {
+                        break;
+                    }
+                    while (tree.size() > index) {
+                        tree.remove(tree.size() - 1);
+                    }
+
+                    if (cueDepth >= index) {
+                        cueDepth = -1;
+                        writeFrame(begin, end, text);
+                    }
+                    break;
+                case XmlPullReader.TEXT:
+                    if (insideCue) {
+                        appendNormalized(text, reader.getText());
+                    }
+                    break;
+                case XmlPullReader.CDATA:
+                    if (insideCue) {
+                        text.append(reader.getText());
+                    }
+                    break;
+            }
         }
 
-        for (final Element paragraph : paragraphList) {
-            text.setLength(0);
-
-            for (final Node children : paragraph.childNodes()) {
-                if (children instanceof TextNode) {
-                    text.append(((TextNode) children).text());
-                } else if (children instanceof Element
-                        && ((Element) children).tagName().equalsIgnoreCase("br")) {
-                    text.append(NEW_LINE);
-                }
-            }
+        if (cueDepth >= 0) {
+            writeFrame(begin, end, text); // unclosed paragraph
+        }
+    }
 
-            if (ignoreEmptyFrames && text.length() < 1) {
-                continue;
-            }
+    private static boolean isCue(final List<String> tree, final String name) {
+        final int size = tree.size();
+        return size >= 2 && isTag(name, "p") && isTag(tree.get(size - 1), "div")
+                && isTag(tree.get(size - 2), "body");
+    }
 
-            final String begin = getTimestamp(paragraph, "begin");
-            final String end = getTimestamp(paragraph, "end");
+    private static boolean isTag(final String name, final String tag) {
+        return name.toLowerCase(Locale.ENGLISH).equals(tag);
+    }
 
-            writeFrame(begin, end, text);
+    /**
+     * Collapses the whitespace runs into a single space and drops invisible characters (zero
+     * width space and soft hyphen), same as Jsoup does with text nodes.
+     *
+     * @param text the subtitle text being built
+     * @param str  the characters of a text node
+     */
+    private static void appendNormalized(final StringBuilder text, final String str) {
+        boolean lastWasWhite = false;
+
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == 160) {
+                if (!lastWasWhite) {
+                    text.append(' ');
+                    lastWasWhite = true;
+                }
+            } else if (c != 8203 && c != 173) {
+                text.append(c);
+                lastWasWhite = false;
+            }
         }
     }
 }
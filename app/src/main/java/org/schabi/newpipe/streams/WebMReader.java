@@ -4,9 +4,10 @@ import org.schabi.newpipe.streams.io.SharpStream;
 
 import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 /**
@@ -21,6 +22,11 @@ public class WebMReader {
 
     private static final int ID_SEGMENT = 0x08538067;
 
+    private static final int ID_SEEK_HEAD = 0x014D9B74;
+    private static final int ID_SEEK = 0x0DBB;
+    private static final int ID_SEEK_ID = 0x13AB;
+    private static final int ID_SEEK_POSITION = 0x13AC;
+
     private static final int ID_INFO = 0x0549A966;
     private static final int ID_TIMECODE_SCALE = 0x0AD7B1;
     private static final int ID_DURATION = 0x489;
@@ -44,6 +50,13 @@ public class WebMReader {
     private static final int ID_BLOCK = 0x21;
     private static final int ID_GROUP_BLOCK = 0x20;
 
+    private static final int ID_CUES = 0x0C53BB6B;
+    private static final int ID_CUE_POINT = 0x3B;
+    private static final int ID_CUE_TIME = 0x33;
+    private static final int ID_CUE_TRACK_POSITIONS = 0x37;
+    private static final int ID_CUE_TRACK = 0x77;
+    private static final int ID_CUE_CLUSTER_POSITION = 0x71;
+
 
     public enum TrackKind {
         Audio/*2*/, Video/*1*/, Other
@@ -87,6 +100,100 @@ public class WebMReader {
         return tracks[index];
     }
 
+    public WebMTrack getSelectedTrack() {
+        return selectedTrack < 0 ? null : tracks[selectedTrack];
+    }
+
+    /**
+     * Saves the read position, the returned object can be used to continue reading the same
+     * stream in a new {@link WebMReader}, even if the data before the position was destroyed.
+     * The segment and cluster returned last are restored, the blocks are read from the position.
+     *
+     * @param repeatLastBlock {@code true} to read again the last returned block after resuming,
+     *                        otherwise, the reading continues with the next block
+     * @return the position
+     */
+    public Position getPosition(final boolean repeatLastBlock) {
+        if (tracks == null) {
+            throw new IllegalStateException("The stream is not parsed");
+        }
+
+        final Position position = new Position();
+        position.tracks = tracks;
+        position.selectedTrack = selectedTrack;
+        position.done = done;
+
+        if (done) {
+            position.offset = -1;
+            return position;
+        }
+
+        position.segment = segment.ref;
+        position.info = segment.info;
+        position.segmentEnded = segment.ended;
+        position.cluster = segment.currentCluster;
+
+        final Cluster cluster = segment.cluster;
+        if (segment.ended) {
+            position.offset = segment.ref.offset + segment.ref.size;
+        } else if (cluster != null && !cluster.ended) {
+            position.clusterReturned = true;
+            position.clusterTimecode = cluster.timecode;
+            position.offset = cluster.getBlockOffset(repeatLastBlock);
+        } else if (segment.firstClusterInSegment && segment.currentCluster != null) {
+            // only the cluster header was read
+            position.clusterPending = true;
+            position.offset = segment.currentCluster.offset + segment.currentCluster.size
+                    - segment.currentCluster.contentSize;
+        } else if (segment.currentCluster != null) {
+            position.offset = segment.currentCluster.offset + segment.currentCluster.size;
+        } else {
+            position.offset = stream.position();
+        }
+
+        return position;
+    }
+
+    /**
+     * Continues the reading from a position obtained with {@link #getPosition(boolean)}, use this
+     * method instead of {@link #parse()}. The next call of {@link #getNextSegment()} returns the
+     * restored segment (unless it was ended), and the next call of
+     * {@link Segment#getNextCluster()} returns the restored cluster (unless it was ended).
+     *
+     * @param position the saved position
+     * @throws IOException if the stream can not be moved to the position
+     */
+    public void resume(final Position position) throws IOException {
+        if (tracks != null) {
+            throw new IllegalStateException("The stream is already parsed");
+        }
+
+        tracks = position.tracks;
+        selectedTrack = position.selectedTrack;
+        done = position.done;
+
+        if (done) {
+            return;
+        }
+
+        stream.seek(position.offset);
+
+        segment = new Segment(position.segment);
+        segment.info = position.info;
+        segment.tracks = tracks;
+        segment.currentCluster = position.cluster;
+        segment.firstClusterInSegment = position.clusterPending;
+        segment.ended = position.segmentEnded;
+        firstSegment = !position.segmentEnded;
+
+        if (position.clusterReturned) {
+            final Cluster cluster = new Cluster(position.cluster);
+            cluster.timecode = position.clusterTimecode;
+            cluster.blocksOffset = position.offset;
+            segment.resumedCluster = cluster;
+        }
+    }
+
     public Segment getNextSegment() throws IOException {
         if (done) {
             return null;
@@ -274,18 +381,25 @@ public class WebMReader {
                                 final boolean metadataExpected) throws IOException {
         final Segment obj = new Segment(ref);
         Element elem;
-        while ((elem = untilElement(ref, ID_INFO, ID_TRACKS, ID_CLUSTER)) != null) {
+        while ((elem = untilElement(ref, ID_SEEK_HEAD, ID_INFO, ID_TRACKS, ID_CUES,
+                ID_CLUSTER)) != null) {
             if (elem.type == ID_CLUSTER) {
                 obj.currentCluster = elem;
                 break;
             }
             switch (elem.type) {
+                case ID_SEEK_HEAD:
+                    readSeekHead(elem, obj);
+                    break;
                 case ID_INFO:
                     obj.info = readInfo(elem);
                     break;
                 case ID_TRACKS:
                     obj.tracks = readTracks(elem, trackLacingExpected);
                     break;
+                case ID_CUES:
+                    obj.cues = readCues(elem, obj.dataOffset);
+                    break;
             }
             ensure(elem);
         }
@@ -299,6 +413,98 @@ public class WebMReader {
         return obj;
     }
 
+    private void readSeekHead(final Element ref, final Segment obj) throws IOException {
+        Element elemSeek;
+        while ((elemSeek = untilElement(ref, ID_SEEK)) != null) {
+            long seekId = 0;
+            long seekPosition = -1;
+
+            Element elem;
+            while ((elem = untilElement(elemSeek, ID_SEEK_ID, ID_SEEK_POSITION)) != null) {
+                if (elem.type == ID_SEEK_ID) {
+                    seekId = readNumber(elem);
+                    seekId &= ~Long.highestOneBit(seekId); // remove the length marker
+                } else {
+                    seekPosition = readNumber(elem);
+                }
+                ensure(elem);
+            }
+
+            if (seekId == ID_CUES && seekPosition >= 0) {
+                obj.cuesOffset = obj.dataOffset + seekPosition;
+            }
+            ensure(elemSeek);
+        }
+    }
+
+    private CuePoint[] readCues(final Element ref, final long segmentDataOffset)
+            throws IOException {
+        final ArrayList<CuePoint> points = new ArrayList<>(256);
+        Element elemCuePoint;
+
+        while ((elemCuePoint = untilElement(ref, ID_CUE_POINT)) != null) {
+            long time = -1;
+            final int first = points.size();
+            Element elem;
+
+            while ((elem = untilElement(elemCuePoint, ID_CUE_TIME, ID_CUE_TRACK_POSITIONS))
+                    != null) {
+                if (elem.type == ID_CUE_TIME) {
+                    time = readNumber(elem);
+                    ensure(elem);
+                    continue;
+                }
+
+                final CuePoint point = new CuePoint();
+                Element elemPosition;
+                while ((elemPosition = untilElement(elem, ID_CUE_TRACK,
+                        ID_CUE_CLUSTER_POSITION)) != null) {
+                    if (elemPosition.type == ID_CUE_TRACK) {
+                        point.trackNumber = readNumber(elemPosition);
+                    } else {
+                        point.clusterOffset = segmentDataOffset + readNumber(elemPosition);
+                    }
+                    ensure(elemPosition);
+                }
+                points.add(point);
+                ensure(elem);
+            }
+
+            // the time can be placed after the track positions
+            for (int i = first; i < points.size(); i++) {
+                points.get(i).timecode = time;
+            }
+            ensure(elemCuePoint);
+        }
+
+        final CuePoint[] cues = new CuePoint[points.size()];
+        return points.toArray(cues);
+    }
+
+    /**
+     * Finds the last point placed at or before the timecode, or the first point if all of them
+     * are placed after.
+     *
+     * @param points      the cue points, sorted by time
+     * @param timecode    the timecode in segment ticks
+     * @param trackNumber the track number, or -1 to use the points of any track
+     * @return the point or {@code null} if there no points for the track
+     */
+    private static CuePoint findCuePoint(final Iterable<CuePoint> points, final long timecode,
+                                         final long trackNumber) {
+        CuePoint found = null;
+        for (final CuePoint point : points) {
+            if (trackNumber >= 0 && point.trackNumber != trackNumber) {
+                continue;
+            }
+            if (found != null && point.timecode > timecode) {
+                break;
+            }
+            found = point;
+        }
+        return found;
+    }
+
     private WebMTrack[] readTracks(final Element ref, final int lacingExpected) throws IOException {
         final ArrayList<WebMTrack> trackEntries = new ArrayList<>(2);
         Element elemTrackEntry;
@@ -393,23 +599,30 @@ public class WebMReader {
                     + " without Timecode element");
         }
         obj.timecode = readNumber(elem);
+        obj.blocksOffset = stream.position();
 
         return obj;
     }
 
-    static class Element {
+    static class Element implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         int type;
         long offset;
         long contentSize;
         long size;
     }
 
-    public static class Info {
+    public static class Info implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         public long timecodeScale;
         public long duration;
     }
 
-    public static class WebMTrack {
+    public static class WebMTrack implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         public long trackNumber;
         protected int trackType;
         public String codecId;
@@ -425,6 +638,7 @@ public class WebMReader {
         Segment(final Element ref) {
             this.ref = ref;
             this.firstClusterInSegment = true;
+            this.dataOffset = ref.offset + ref.size - ref.contentSize;
         }
 
         public Info info;
@@ -433,29 +647,193 @@ public class WebMReader {
         private final Element ref;
         boolean firstClusterInSegment;
 
+        private final long dataOffset;
+        private CuePoint[] cues;
+        private long cuesOffset = -1;
+        private final ArrayList<CuePoint> clusterIndex = new ArrayList<>();
+        private boolean clusterIndexComplete = false;
+
+        private Cluster cluster;
+        private Cluster resumedCluster;
+        private boolean ended = false;
+
+        /**
+         * Gets the cue points of the segment. If the Cues element is placed after the clusters,
+         * is read using the Seek Head element, this requires a stream that can be rewound, and
+         * the data of the last read block is no longer available.
+         *
+         * @return the cue points, or {@code null} if the segment does not have cues
+         * @throws IOException if an I/O error occurs
+         */
+        public CuePoint[] getCues() throws IOException {
+            if (cues == null && cuesOffset >= 0 && stream.canRewind()) {
+                final long position = stream.position();
+                try {
+                    stream.seek(cuesOffset);
+                    cues = readCues(readElement(ID_CUES), dataOffset);
+                } finally {
+                    cuesOffset = -1; // do not try again
+                    stream.seek(position);
+                }
+            }
+            return cues;
+        }
+
+        /**
+         * Moves to the cluster containing the timecode, the blocks of the returned cluster are
+         * read from the start and {@link #getNextCluster()} continues from there. The Cues are
+         * used if available, otherwise the clusters are indexed while are read. Seeking backwards
+         * requires a stream that can be rewound. Any cluster or block obtained before can no
+         * longer be used.
+         *
+         * @param timecodeNs the timecode in nanoseconds
+         * @return the cluster, or {@code null} if the segment does not have clusters
+         * @throws IOException if an I/O error occurs
+         */
+        public Cluster seek(final long timecodeNs) throws IOException {
+            if (segment != this) {
+                throw new IllegalStateException("Only the current segment can be seeked");
+            }
+
+            final long timecode = timecodeNs / info.timecodeScale;
+            final CuePoint[] points = getCues();
+
+            if (points != null) {
+                CuePoint point = findCuePoint(Arrays.asList(points), timecode,
+                        tracks[selectedTrack].trackNumber);
+                if (point == null) {
+                    point = findCuePoint(Arrays.asList(points), timecode, -1);
+                }
+                if (point != null) {
+                    return readClusterAt(point);
+                }
+            }
+
+            CuePoint point = findCuePoint(clusterIndex, timecode, -1);
+            if (!clusterIndexComplete && (point == null
+                    || point == clusterIndex.get(clusterIndex.size() - 1))) {
+                // walk the unknown clusters until the timecode is reached
+                if (point != null) {
+                    readClusterAt(point);
+                }
+
+                // the clusters are added to the index while are read
+                Cluster walked = getNextCluster();
+                while (walked != null && walked.timecode <= timecode) {
+                    walked = getNextCluster();
+                }
+                point = findCuePoint(clusterIndex, timecode, -1);
+            }
+
+            return point == null ? null : readClusterAt(point);
+        }
+
+        private Cluster readClusterAt(final CuePoint point) throws IOException {
+            stream.seek(point.clusterOffset);
+            currentCluster = readElement(ID_CLUSTER);
+            firstClusterInSegment = false;
+            resumedCluster = null;
+            ended = false;
+
+            cluster = readCluster(currentCluster);
+            return cluster;
+        }
+
+        private Cluster indexCluster(final Cluster next) {
+            cluster = next;
+            if (next == null) {
+                clusterIndexComplete = true;
+                ended = true;
+                return null;
+            }
+
+            final int size = clusterIndex.size();
+            if (size < 1 || clusterIndex.get(size - 1).clusterOffset < next.ref.offset) {
+                final CuePoint point = new CuePoint();
+                point.timecode = next.timecode;
+                point.clusterOffset = next.ref.offset;
+                clusterIndex.add(point);
+            }
+
+            return next;
+        }
+
         public Cluster getNextCluster() throws IOException {
             if (done) {
                 return null;
             }
+            if (resumedCluster != null) {
+                final Cluster resumed = resumedCluster;
+                resumedCluster = null;
+                return indexCluster(resumed);
+            }
             if (firstClusterInSegment && segment.currentCluster != null) {
                 firstClusterInSegment = false;
-                return readCluster(segment.currentCluster);
+                return indexCluster(readCluster(segment.currentCluster));
             }
             ensure(segment.currentCluster);
 
             final Element elem = untilElement(segment.ref, ID_CLUSTER);
             if (elem == null) {
-                return null;
+                return indexCluster(null);
             }
 
             segment.currentCluster = elem;
 
-            return readCluster(segment.currentCluster);
+            return indexCluster(readCluster(segment.currentCluster));
+        }
+    }
+
+    /**
+     * Position of a cluster, obtained from the Cues element or found while reading the segment.
+     */
+    public static class CuePoint {
+        public long trackNumber;
+        /**
+         * Timecode of the point, in segment ticks.
+         */
+        public long timecode;
+        /**
+         * Absolute offset of the cluster in the source stream.
+         */
+        public long clusterOffset;
+    }
+
+    /**
+     * Read position obtained with {@link #getPosition(boolean)}.
+     */
+    public static final class Position implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private WebMTrack[] tracks;
+        private int selectedTrack;
+        private boolean done;
+
+        private Element segment;
+        private Info info;
+        private boolean segmentEnded;
+
+        private Element cluster;
+        private boolean clusterPending;
+        private boolean clusterReturned;
+        private long clusterTimecode;
+
+        private long offset;
+
+        private Position() {
+        }
+
+        /**
+         * @return the offset from where the stream data is required to resume, or -1 if the
+         * reading is finished
+         */
+        public long getOffset() {
+            return offset;
         }
     }
 
     public static class SimpleBlock {
-        public InputStream data;
+        public DataReader.View data;
         public boolean createdFromBlock;
 
         SimpleBlock(final Element ref) {
@@ -479,6 +857,8 @@ public class WebMReader {
         SimpleBlock currentSimpleBlock = null;
         Element currentBlockGroup = null;
         public long timecode;
+        private long blocksOffset;
+        private boolean ended = false;
 
         Cluster(final Element ref) {
             this.ref = ref;
@@ -488,7 +868,23 @@ public class WebMReader {
             return stream.position() >= (ref.offset + ref.size);
         }
 
+        private long getBlockOffset(final boolean start) {
+            final Element block = currentBlockGroup != null ? currentBlockGroup
+                    : currentSimpleBlock != null ? currentSimpleBlock.ref : null;
+
+            if (block == null) {
+                return blocksOffset; // no blocks read yet
+            }
+            return start ? block.offset : block.offset + block.size;
+        }
+
         public SimpleBlock getNextSimpleBlock() throws IOException {
+            final SimpleBlock block = readNextSimpleBlock();
+            ended = block == null;
+            return block;
+        }
+
+        private SimpleBlock readNextSimpleBlock() throws IOException {
             if (insideClusterBounds()) {
                 return null;
             }
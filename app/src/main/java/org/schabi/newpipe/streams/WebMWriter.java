@@ -10,9 +10,8 @@ import org.schabi.newpipe.streams.io.SharpStream;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.Serializable;
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 
 /**
@@ -44,6 +43,12 @@ public class WebMWriter implements Closeable {
 
     private byte[] outBuffer;
     private ByteBuffer outByteBuffer;
+    private EbmlWriter ebml;
+    private final Block block = new Block();
+
+    private CheckpointListener checkpointListener = null;
+    private long checkpointInterval;
+    private State resumeState = null;
 
     public WebMWriter(final SharpStream... source) {
         sourceTracks = source;
@@ -51,6 +56,7 @@ public class WebMWriter implements Closeable {
         infoTracks = new WebMTrack[sourceTracks.length];
         outBuffer = new byte[BUFFER_SIZE];
         outByteBuffer = ByteBuffer.wrap(outBuffer);
+        ebml = new EbmlWriter(BUFFER_SIZE);
         clustersOffsetsSizes = new ArrayList<>(256);
     }
 
@@ -98,6 +104,63 @@ public class WebMWriter implements Closeable {
         }
     }
 
+    /**
+     * Continues a muxing interrupted after a checkpoint, use this method instead of
+     * {@link #parseSources()} and {@link #selectTracks(int...)}. The output given to
+     * {@link #build(SharpStream)} must contain the data written before the checkpoint, and be
+     * positioned at the end.
+     *
+     * @param checkpointState the state received by the {@link CheckpointListener}
+     * @throws IOException if the sources can not be moved to the saved positions
+     */
+    public void resume(final Serializable checkpointState) throws IOException {
+        if (done) {
+            throw new IllegalStateException("already done");
+        }
+        if (parsed) {
+            throw new IllegalStateException("already parsed");
+        }
+        if (!(checkpointState instanceof State)
+                || ((State) checkpointState).positions.length != readers.length) {
+            throw new IllegalArgumentException("The state does not belong to this muxer");
+        }
+
+        final State state = (State) checkpointState;
+        try {
+            readersSegment = new Segment[readers.length];
+            readersCluster = new Cluster[readers.length];
+
+            for (int i = 0; i < readers.length; i++) {
+                readers[i] = new WebMReader(sourceTracks[i]);
+                readers[i].resume(state.positions[i]);
+                infoTracks[i] = readers[i].getSelectedTrack();
+
+                if (state.segmentReturned[i]) {
+                    readersSegment[i] = readers[i].getNextSegment();
+                    if (state.clusterReturned[i]) {
+                        readersCluster[i] = readersSegment[i].getNextCluster();
+                    }
+                }
+            }
+
+            resumeState = state;
+        } finally {
+            parsed = true;
+        }
+    }
+
+    /**
+     * Enables the checkpoints while muxing, the muxing can be resumed from the last one with
+     * {@link #resume(Serializable)}.
+     *
+     * @param listener the listener, or {@code null} to disable the checkpoints
+     * @param interval amount of bytes written between two checkpoints
+     */
+    public void setCheckpointListener(final CheckpointListener listener, final long interval) {
+        checkpointListener = listener;
+        checkpointInterval = interval;
+    }
+
     public boolean isDone() {
         return done;
     }
@@ -118,7 +181,10 @@ public class WebMWriter implements Closeable {
         readersCluster = null;
         outBuffer = null;
         outByteBuffer = null;
+        ebml = null;
         clustersOffsetsSizes = null;
+        checkpointListener = null;
+        resumeState = null;
     }
 
     @SuppressWarnings("MethodLength")
@@ -127,93 +193,33 @@ public class WebMWriter implements Closeable {
             throw new IOException("The output stream must be allow seek");
         }
 
-        makeEBML(out);
-
-        final long offsetSegmentSizeSet = written + 5;
-        final long offsetInfoDurationSet = written + 94;
-        final long offsetClusterSet = written + 58;
-        final long offsetCuesSet = written + 75;
-
-        final ArrayList<byte[]> listBuffer = new ArrayList<>(4);
-
-        /* segment */
-        listBuffer.add(new byte[]{
-                0x18, 0x53, (byte) 0x80, 0x67, 0x01,
-                0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00// segment content size
-        });
-
-        final long segmentOffset = written + listBuffer.get(0).length;
-
-        /* seek head */
-        listBuffer.add(new byte[]{
-                0x11, 0x4d, (byte) 0x9b, 0x74, (byte) 0xbe,
-                0x4d, (byte) 0xbb, (byte) 0x8b,
-                0x53, (byte) 0xab, (byte) 0x84, 0x15, 0x49, (byte) 0xa9, 0x66, 0x53,
-                (byte) 0xac, (byte) 0x81,
-                /*info offset*/ 0x43,
-                0x4d, (byte) 0xbb, (byte) 0x8b, 0x53, (byte) 0xab,
-                (byte) 0x84, 0x16, 0x54, (byte) 0xae, 0x6b, 0x53, (byte) 0xac, (byte) 0x81,
-                /*tracks offset*/ 0x56,
-                0x4d, (byte) 0xbb, (byte) 0x8e, 0x53, (byte) 0xab, (byte) 0x84, 0x1f,
-                0x43, (byte) 0xb6, 0x75, 0x53, (byte) 0xac, (byte) 0x84,
-                /*cluster offset [2]*/ 0x00, 0x00, 0x00, 0x00,
-                0x4d, (byte) 0xbb, (byte) 0x8e, 0x53, (byte) 0xab, (byte) 0x84, 0x1c, 0x53,
-                (byte) 0xbb, 0x6b, 0x53, (byte) 0xac, (byte) 0x84,
-                /*cues offset [7]*/ 0x00, 0x00, 0x00, 0x00
-        });
-
-        /* info */
-        listBuffer.add(new byte[]{
-                0x15, 0x49, (byte) 0xa9, 0x66, (byte) 0x8e, 0x2a, (byte) 0xd7, (byte) 0xb1
-        });
-        // the segment duration MUST NOT exceed 4 bytes
-        listBuffer.add(encode(DEFAULT_TIMECODE_SCALE, true));
-        listBuffer.add(new byte[]{0x44, (byte) 0x89, (byte) 0x84,
-                0x00, 0x00, 0x00, 0x00, // info.duration
-        });
-
-        /* tracks */
-        listBuffer.addAll(makeTracks());
-
-        dump(listBuffer, out);
-
-        // reserve space for Cues element
-        final long cueOffset = written;
-        makeEbmlVoid(out, CUE_RESERVE_SIZE, true);
+        final State state;
+        if (resumeState == null) {
+            state = makeHeader(out);
+        } else {
+            state = resumeState;
+            written = state.written;
+            clustersOffsetsSizes = state.clusters;
+        }
 
-        final int[] defaultSampleDuration = new int[infoTracks.length];
-        final long[] duration = new long[infoTracks.length];
+        long nextCheckpoint = written + checkpointInterval;
+        boolean resumed = resumeState != null;
 
-        for (int i = 0; i < infoTracks.length; i++) {
-            if (infoTracks[i].defaultDuration < 0) {
-                defaultSampleDuration[i] = -1; // not available
+        while (resumed || state.blockWritten > 0) {
+            int i = 0;
+            if (resumed) {
+                resumed = false;
+                i = state.track;
             } else {
-                defaultSampleDuration[i] = (int) Math.ceil(infoTracks[i].defaultDuration
-                        / (float) DEFAULT_TIMECODE_SCALE);
+                state.blockWritten = 0;
             }
-            duration[i] = -1;
-        }
-
-        // Select a track for the cue
-        final int cuesForTrackId = selectTrackForCue();
-        long nextCueTime = infoTracks[cuesForTrackId].trackType == 1 ? -1 : 0;
-        final ArrayList<KeyFrame> keyFrames = new ArrayList<>(32);
 
-        int firstClusterOffset = (int) written;
-        long currentClusterOffset = makeCluster(out, 0, 0, true);
-
-        long baseTimecode = 0;
-        long limitTimecode = -1;
-        int limitTimecodeByTrackId = cuesForTrackId;
-
-        int blockWritten = Integer.MAX_VALUE;
-
-        int newClusterByTrackId = -1;
-
-        while (blockWritten > 0) {
-            blockWritten = 0;
-            int i = 0;
             while (i < readers.length) {
+                if (checkpointListener != null && written >= nextCheckpoint) {
+                    checkpoint(state, i);
+                    nextCheckpoint = written + checkpointInterval;
+                }
+
                 final Block bloq = getNextBlockFrom(i);
                 if (bloq == null) {
                     i++;
@@ -221,66 +227,70 @@ public class WebMWriter implements Closeable {
                 }
 
                 if (bloq.data == null) {
-                    blockWritten = 1; // fake block
-                    newClusterByTrackId = i;
+                    state.blockWritten = 1; // fake block
+                    state.newClusterByTrackId = i;
                     i++;
                     continue;
                 }
 
-                if (newClusterByTrackId == i) {
-                    limitTimecodeByTrackId = i;
-                    newClusterByTrackId = -1;
-                    baseTimecode = bloq.absoluteTimecode;
-                    limitTimecode = baseTimecode + INTERV;
-                    currentClusterOffset = makeCluster(out, baseTimecode, currentClusterOffset,
-                            true);
+                if (state.newClusterByTrackId == i) {
+                    state.limitTimecodeByTrackId = i;
+                    state.newClusterByTrackId = -1;
+                    state.baseTimecode = bloq.absoluteTimecode;
+                    state.limitTimecode = state.baseTimecode + INTERV;
+                    state.currentClusterOffset = makeCluster(out, state.baseTimecode,
+                            state.currentClusterOffset, true);
                 }
 
-                if (cuesForTrackId == i) {
-                    if ((nextCueTime > -1 && bloq.absoluteTimecode >= nextCueTime)
-                            || (nextCueTime < 0 && bloq.isKeyframe())) {
-                        if (nextCueTime > -1) {
-                            nextCueTime += DEFAULT_CUES_EACH_MS;
+                if (state.cuesForTrackId == i) {
+                    if ((state.nextCueTime > -1 && bloq.absoluteTimecode >= state.nextCueTime)
+                            || (state.nextCueTime < 0 && bloq.isKeyframe())) {
+                        if (state.nextCueTime > -1) {
+                            state.nextCueTime += DEFAULT_CUES_EACH_MS;
                         }
-                        keyFrames.add(new KeyFrame(segmentOffset, currentClusterOffset, written,
-                                bloq.absoluteTimecode));
+                        state.keyFrames.add(new KeyFrame(state.segmentOffset,
+                                state.currentClusterOffset, written, bloq.absoluteTimecode));
                     }
                 }
 
-                writeBlock(out, bloq, baseTimecode);
-                blockWritten++;
+                writeBlock(out, bloq, state.baseTimecode);
+                state.blockWritten++;
 
-                if (defaultSampleDuration[i] < 0 && duration[i] >= 0) {
+                if (state.defaultSampleDuration[i] < 0 && state.duration[i] >= 0) {
                     // if the sample duration in unknown,
                     // calculate using current_duration - previous_duration
-                    defaultSampleDuration[i] = (int) (bloq.absoluteTimecode - duration[i]);
+                    state.defaultSampleDuration[i] = (int) (bloq.absoluteTimecode
+                            - state.duration[i]);
                 }
-                duration[i] = bloq.absoluteTimecode;
+                state.duration[i] = bloq.absoluteTimecode;
 
-                if (limitTimecode < 0) {
-                    limitTimecode = bloq.absoluteTimecode + INTERV;
+                if (state.limitTimecode < 0) {
+                    state.limitTimecode = bloq.absoluteTimecode + INTERV;
                     continue;
                 }
 
-                if (bloq.absoluteTimecode >= limitTimecode) {
-                    if (limitTimecodeByTrackId != i) {
-                        limitTimecode += INTERV - (bloq.absoluteTimecode - limitTimecode);
+                if (bloq.absoluteTimecode >= state.limitTimecode) {
+                    if (state.limitTimecodeByTrackId != i) {
+                        state.limitTimecode += INTERV
+                                - (bloq.absoluteTimecode - state.limitTimecode);
                     }
                     i++;
                 }
             }
         }
 
-        makeCluster(out, -1, currentClusterOffset, false);
+        makeCluster(out, -1, state.currentClusterOffset, false);
 
-        final long segmentSize = written - offsetSegmentSizeSet - 7;
+        final long segmentSize = written - state.offsetSegmentSizeSet - 7;
 
         /* Segment size */
-        seekTo(out, offsetSegmentSizeSet);
+        seekTo(out, state.offsetSegmentSizeSet);
         outByteBuffer.putLong(0, segmentSize);
         out.write(outBuffer, 1, DataReader.LONG_SIZE - 1);
 
         /* Segment duration */
+        final int[] defaultSampleDuration = state.defaultSampleDuration;
+        final long[] duration = state.duration;
         long longestDuration = 0;
         for (int i = 0; i < duration.length; i++) {
             if (defaultSampleDuration[i] > 0) {
@@ -290,45 +300,153 @@ public class WebMWriter implements Closeable {
                 longestDuration = duration[i];
             }
         }
-        seekTo(out, offsetInfoDurationSet);
+        seekTo(out, state.offsetInfoDurationSet);
         outByteBuffer.putFloat(0, longestDuration);
         dump(outBuffer, DataReader.FLOAT_SIZE, out);
 
         /* first Cluster offset */
-        firstClusterOffset -= segmentOffset;
-        writeInt(out, offsetClusterSet, firstClusterOffset);
+        writeInt(out, state.offsetClusterSet,
+                (int) (state.firstClusterOffset - state.segmentOffset));
 
-        seekTo(out, cueOffset);
+        seekTo(out, state.cueOffset);
 
         /* Cue */
         short cueSize = 0;
-        dump(new byte[]{0x1c, 0x53, (byte) 0xbb, 0x6b, 0x20, 0x00, 0x00}, out); // header size is 7
+        ebml.write(new byte[]{0x1c, 0x53, (byte) 0xbb, 0x6b, 0x20, 0x00, 0x00}); // header size is 7
+        flush(out);
 
-        for (final KeyFrame keyFrame : keyFrames) {
-            final int size = makeCuePoint(cuesForTrackId, keyFrame, outBuffer);
+        for (final KeyFrame keyFrame : state.keyFrames) {
+            makeCuePoint(state.cuesForTrackId, keyFrame);
+            final int size = ebml.size();
 
             if ((cueSize + size + 7 + MINIMUM_EBML_VOID_SIZE) > CUE_RESERVE_SIZE) {
+                ebml.reset();
                 break; // no space left
             }
 
             cueSize += size;
-            dump(outBuffer, size, out);
+            flush(out);
         }
 
         makeEbmlVoid(out, CUE_RESERVE_SIZE - cueSize - 7, false);
 
-        seekTo(out, cueOffset + 5);
+        seekTo(out, state.cueOffset + 5);
         outByteBuffer.putShort(0, cueSize);
         dump(outBuffer, DataReader.SHORT_SIZE, out);
 
         /* seek head, seek for cues element */
-        writeInt(out, offsetCuesSet, (int) (cueOffset - segmentOffset));
+        writeInt(out, state.offsetCuesSet, (int) (state.cueOffset - state.segmentOffset));
 
         for (final ClusterInfo cluster : clustersOffsetsSizes) {
             writeInt(out, cluster.offset, cluster.size | 0x10000000);
         }
     }
 
+    private State makeHeader(final SharpStream out) throws IOException {
+        final State state = new State();
+        makeEBML(out);
+
+        state.offsetSegmentSizeSet = written + 5;
+        state.offsetInfoDurationSet = written + 94;
+        state.offsetClusterSet = written + 58;
+        state.offsetCuesSet = written + 75;
+
+        /* segment */
+        ebml.write(new byte[]{
+                0x18, 0x53, (byte) 0x80, 0x67, 0x01,
+                0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00// segment content size
+        });
+
+        state.segmentOffset = written + ebml.size();
+
+        /* seek head */
+        ebml.write(new byte[]{
+                0x11, 0x4d, (byte) 0x9b, 0x74, (byte) 0xbe,
+                0x4d, (byte) 0xbb, (byte) 0x8b,
+                0x53, (byte) 0xab, (byte) 0x84, 0x15, 0x49, (byte) 0xa9, 0x66, 0x53,
+                (byte) 0xac, (byte) 0x81,
+                /*info offset*/ 0x43,
+                0x4d, (byte) 0xbb, (byte) 0x8b, 0x53, (byte) 0xab,
+                (byte) 0x84, 0x16, 0x54, (byte) 0xae, 0x6b, 0x53, (byte) 0xac, (byte) 0x81,
+                /*tracks offset*/ 0x56,
+                0x4d, (byte) 0xbb, (byte) 0x8e, 0x53, (byte) 0xab, (byte) 0x84, 0x1f,
+                0x43, (byte) 0xb6, 0x75, 0x53, (byte) 0xac, (byte) 0x84,
+                /*cluster offset [2]*/ 0x00, 0x00, 0x00, 0x00,
+                0x4d, (byte) 0xbb, (byte) 0x8e, 0x53, (byte) 0xab, (byte) 0x84, 0x1c, 0x53,
+                (byte) 0xbb, 0x6b, 0x53, (byte) 0xac, (byte) 0x84,
+                /*cues offset [7]*/ 0x00, 0x00, 0x00, 0x00
+        });
+
+        /* info */
+        ebml.write(new byte[]{
+                0x15, 0x49, (byte) 0xa9, 0x66, (byte) 0x8e, 0x2a, (byte) 0xd7, (byte) 0xb1
+        });
+        // the segment duration MUST NOT exceed 4 bytes
+        ebml.writeUnsigned(DEFAULT_TIMECODE_SCALE);
+        ebml.write(new byte[]{0x44, (byte) 0x89, (byte) 0x84,
+                0x00, 0x00, 0x00, 0x00, // info.duration
+        });
+
+        /* tracks */
+        makeTracks();
+
+        flush(out);
+
+        // reserve space for Cues element
+        state.cueOffset = written;
+        makeEbmlVoid(out, CUE_RESERVE_SIZE, true);
+
+        state.defaultSampleDuration = new int[infoTracks.length];
+        state.duration = new long[infoTracks.length];
+
+        for (int i = 0; i < infoTracks.length; i++) {
+            if (infoTracks[i].defaultDuration < 0) {
+                state.defaultSampleDuration[i] = -1; // not available
+            } else {
+                state.defaultSampleDuration[i] = (int) Math.ceil(infoTracks[i].defaultDuration
+                        / (float) DEFAULT_TIMECODE_SCALE);
+            }
+            state.duration[i] = -1;
+        }
+
+        // Select a track for the cue
+        state.cuesForTrackId = selectTrackForCue();
+        state.nextCueTime = infoTracks[state.cuesForTrackId].trackType == 1 ? -1 : 0;
+        state.keyFrames = new ArrayList<>(32);
+
+        state.firstClusterOffset = (int) written;
+        state.currentClusterOffset = makeCluster(out, 0, 0, true);
+
+        state.baseTimecode = 0;
+        state.limitTimecode = -1;
+        state.limitTimecodeByTrackId = state.cuesForTrackId;
+        state.blockWritten = Integer.MAX_VALUE;
+        state.newClusterByTrackId = -1;
+        state.clusters = clustersOffsetsSizes;
+
+        return state;
+    }
+
+    private void checkpoint(final State state, final int track) throws IOException {
+        final long[] sourcePositions = new long[readers.length];
+        state.positions = new WebMReader.Position[readers.length];
+        state.segmentReturned = new boolean[readers.length];
+        state.clusterReturned = new boolean[readers.length];
+
+        for (int i = 0; i < readers.length; i++) {
+            // the last block was written, continue with the next one
+            state.positions[i] = readers[i].getPosition(false);
+            state.segmentReturned[i] = readersSegment[i] != null;
+            state.clusterReturned[i] = readersCluster[i] != null;
+            sourcePositions[i] = state.positions[i].getOffset();
+        }
+
+        state.written = written;
+        state.track = track;
+
+        checkpointListener.onCheckpoint(state, sourcePositions);
+    }
+
     private Block getNextBlockFrom(final int internalTrackId) throws IOException {
         if (readersSegment[internalTrackId] == null) {
             readersSegment[internalTrackId] = readers[internalTrackId].getNextSegment();
@@ -348,17 +466,18 @@ public class WebMWriter implements Closeable {
         final SimpleBlock res = readersCluster[internalTrackId].getNextSimpleBlock();
         if (res == null) {
             readersCluster[internalTrackId] = null;
-            return new Block(); // fake block to indicate the end of the cluster
+            block.data = null;
+            return block; // fake block to indicate the end of the cluster
         }
 
-        final Block bloq = new Block();
-        bloq.data = res.data;
-        bloq.dataSize = res.dataSize;
-        bloq.trackNumber = internalTrackId;
-        bloq.flags = res.flags;
-        bloq.absoluteTimecode = res.absoluteTimeCodeNs / DEFAULT_TIMECODE_SCALE;
+        // the same instance is reused, only one block is handled at the time
+        block.data = res.data;
+        block.dataSize = res.dataSize;
+        block.trackNumber = internalTrackId;
+        block.flags = res.flags;
+        block.absoluteTimecode = res.absoluteTimeCodeNs / DEFAULT_TIMECODE_SCALE;
 
-        return bloq;
+        return block;
     }
 
     private void seekTo(final SharpStream stream, final long offset) throws IOException {
@@ -391,26 +510,20 @@ public class WebMWriter implements Closeable {
             throw new IndexOutOfBoundsException("SimpleBlock timecode overflow.");
         }
 
-        final ArrayList<byte[]> listBuffer = new ArrayList<>(5);
-        listBuffer.add(new byte[]{(byte) 0xa3});
-        listBuffer.add(null); // block size
-        listBuffer.add(encode(bloq.trackNumber + 1, false));
-        listBuffer.add(ByteBuffer.allocate(DataReader.SHORT_SIZE).putShort((short) relativeTimeCode)
-                .array());
-        listBuffer.add(new byte[]{bloq.flags});
+        final int trackNumber = bloq.trackNumber + 1;
+        final int blockSize = EbmlWriter.getLength(trackNumber) + DataReader.SHORT_SIZE + 1
+                + bloq.dataSize;
 
-        int blockSize = bloq.dataSize;
-        for (int i = 2; i < listBuffer.size(); i++) {
-            blockSize += listBuffer.get(i).length;
-        }
-        listBuffer.set(1, encode(blockSize, false));
+        /* simple block */
+        ebml.writeId(0xa3);
+        ebml.writeVint(blockSize);
+        ebml.writeVint(trackNumber);
+        ebml.writeShort((int) relativeTimeCode);
+        ebml.writeByte(bloq.flags);
 
-        dump(listBuffer, stream);
+        flush(stream);
 
-        int read;
-        while ((read = bloq.data.read(outBuffer)) > 0) {
-            dump(outBuffer, read, stream);
-        }
+        written += bloq.data.transferTo(stream, bloq.dataSize);
     }
 
     private long makeCluster(final SharpStream stream, final long timecode, final long offsetStart,
@@ -428,19 +541,19 @@ public class WebMWriter implements Closeable {
 
         if (create) {
             /* cluster */
-            dump(new byte[]{0x1f, 0x43, (byte) 0xb6, 0x75}, stream);
+            ebml.writeId(0x1f43b675);
 
             cluster = new ClusterInfo();
-            cluster.offset = written;
+            cluster.offset = written + ebml.size();
             clustersOffsetsSizes.add(cluster);
 
-            dump(new byte[]{
-                    0x10, 0x00, 0x00, 0x00,
-                    /* timestamp */
-                    (byte) 0xe7
-            }, stream);
+            ebml.writeInt(0x10000000); // cluster size, set at the end
+
+            /* timestamp */
+            ebml.writeId(0xe7);
+            ebml.writeUnsigned(timecode);
 
-            dump(encode(timecode, true), stream);
+            flush(stream);
         }
 
         return offset;
@@ -448,142 +561,121 @@ public class WebMWriter implements Closeable {
 
     private void makeEBML(final SharpStream stream) throws IOException {
         // default values
-        dump(new byte[]{
+        ebml.write(new byte[]{
                 0x1A, 0x45, (byte) 0xDF, (byte) 0xA3, 0x01, 0x00, 0x00, 0x00,
                 0x00, 0x00, 0x00, 0x1F, 0x42, (byte) 0x86, (byte) 0x81, 0x01,
                 0x42, (byte) 0xF7, (byte) 0x81, 0x01, 0x42, (byte) 0xF2, (byte) 0x81, 0x04,
                 0x42, (byte) 0xF3, (byte) 0x81, 0x08, 0x42, (byte) 0x82, (byte) 0x84, 0x77,
                 0x65, 0x62, 0x6D, 0x42, (byte) 0x87, (byte) 0x81, 0x02,
                 0x42, (byte) 0x85, (byte) 0x81, 0x02
-        }, stream);
+        });
+        flush(stream);
     }
 
-    private ArrayList<byte[]> makeTracks() {
-        final ArrayList<byte[]> buffer = new ArrayList<>(1);
-        buffer.add(new byte[]{0x16, 0x54, (byte) 0xae, 0x6b});
-        buffer.add(null);
+    private void makeTracks() {
+        final int tracks = ebml.startElement(0x1654ae6b);
 
         for (int i = 0; i < infoTracks.length; i++) {
-            buffer.addAll(makeTrackEntry(i, infoTracks[i]));
+            makeTrackEntry(i, infoTracks[i]);
         }
 
-        return lengthFor(buffer);
+        ebml.endElement(tracks);
     }
 
-    private ArrayList<byte[]> makeTrackEntry(final int internalTrackId, final WebMTrack track) {
-        final byte[] id = encode(internalTrackId + 1, true);
-        final ArrayList<byte[]> buffer = new ArrayList<>(12);
-
+    private void makeTrackEntry(final int internalTrackId, final WebMTrack track) {
         /* track */
-        buffer.add(new byte[]{(byte) 0xae});
-        buffer.add(null);
+        final int entry = ebml.startElement(0xae);
 
         /* track number */
-        buffer.add(new byte[]{(byte) 0xd7});
-        buffer.add(id);
+        ebml.writeId(0xd7);
+        ebml.writeUnsigned(internalTrackId + 1);
 
         /* track uid */
-        buffer.add(new byte[]{0x73, (byte) 0xc5});
-        buffer.add(id);
+        ebml.writeId(0x73c5);
+        ebml.writeUnsigned(internalTrackId + 1);
 
         /* flag lacing */
-        buffer.add(new byte[]{(byte) 0x9c, (byte) 0x81, 0x00});
+        ebml.writeId(0x9c);
+        ebml.writeUnsigned(0);
 
         /* lang */
-        buffer.add(new byte[]{0x22, (byte) 0xb5, (byte) 0x9c, (byte) 0x83, 0x75, 0x6e, 0x64});
+        ebml.writeId(0x22b59c);
+        ebml.writeString("und");
 
         /* codec id */
-        buffer.add(new byte[]{(byte) 0x86});
-        buffer.addAll(encode(track.codecId));
+        ebml.writeId(0x86);
+        ebml.writeString(track.codecId);
 
         /* codec delay*/
         if (track.codecDelay >= 0) {
-            buffer.add(new byte[]{0x56, (byte) 0xAA});
-            buffer.add(encode(track.codecDelay, true));
+            ebml.writeId(0x56aa);
+            ebml.writeUnsigned(track.codecDelay);
         }
 
         /* codec seek pre-roll*/
         if (track.seekPreRoll >= 0) {
-            buffer.add(new byte[]{0x56, (byte) 0xBB});
-            buffer.add(encode(track.seekPreRoll, true));
+            ebml.writeId(0x56bb);
+            ebml.writeUnsigned(track.seekPreRoll);
         }
 
         /* type */
-        buffer.add(new byte[]{(byte) 0x83});
-        buffer.add(encode(track.trackType, true));
+        ebml.writeId(0x83);
+        ebml.writeUnsigned(track.trackType);
 
         /* default duration */
         if (track.defaultDuration >= 0) {
-            buffer.add(new byte[]{0x23, (byte) 0xe3, (byte) 0x83});
-            buffer.add(encode(track.defaultDuration, true));
+            ebml.writeId(0x23e383);
+            ebml.writeUnsigned(track.defaultDuration);
         }
 
         /* audio/video */
         if ((track.trackType == 1 || track.trackType == 2) && valid(track.bMetadata)) {
-            buffer.add(new byte[]{(byte) (track.trackType == 1 ? 0xe0 : 0xe1)});
-            buffer.add(encode(track.bMetadata.length, false));
-            buffer.add(track.bMetadata);
+            ebml.writeId(track.trackType == 1 ? 0xe0 : 0xe1);
+            ebml.writeBinary(track.bMetadata);
         }
 
         /* codec private*/
         if (valid(track.codecPrivate)) {
-            buffer.add(new byte[]{0x63, (byte) 0xa2});
-            buffer.add(encode(track.codecPrivate.length, false));
-            buffer.add(track.codecPrivate);
+            ebml.writeId(0x63a2);
+            ebml.writeBinary(track.codecPrivate);
         }
 
-        return lengthFor(buffer);
+        ebml.endElement(entry);
     }
 
-    private int makeCuePoint(final int internalTrackId, final KeyFrame keyFrame,
-                             final byte[] buffer) {
-        final ArrayList<byte[]> cue = new ArrayList<>(5);
-
+    private void makeCuePoint(final int internalTrackId, final KeyFrame keyFrame) {
         /* CuePoint */
-        cue.add(new byte[]{(byte) 0xbb});
-        cue.add(null);
+        final int cuePoint = ebml.startElement(0xbb);
 
         /* CueTime */
-        cue.add(new byte[]{(byte) 0xb3});
-        cue.add(encode(keyFrame.duration, true));
+        ebml.writeId(0xb3);
+        ebml.writeUnsigned(keyFrame.duration);
 
         /* CueTrackPosition */
-        cue.addAll(makeCueTrackPosition(internalTrackId, keyFrame));
-
-        int size = 0;
-        lengthFor(cue);
+        makeCueTrackPosition(internalTrackId, keyFrame);
 
-        for (final byte[] buff : cue) {
-            System.arraycopy(buff, 0, buffer, size, buff.length);
-            size += buff.length;
-        }
-
-        return size;
+        ebml.endElement(cuePoint);
     }
 
-    private ArrayList<byte[]> makeCueTrackPosition(final int internalTrackId,
-                                                   final KeyFrame keyFrame) {
-        final ArrayList<byte[]> buffer = new ArrayList<>(8);
-
+    private void makeCueTrackPosition(final int internalTrackId, final KeyFrame keyFrame) {
         /* CueTrackPositions */
-        buffer.add(new byte[]{(byte) 0xb7});
-        buffer.add(null);
+        final int positions = ebml.startElement(0xb7);
 
         /* CueTrack */
-        buffer.add(new byte[]{(byte) 0xf7});
-        buffer.add(encode(internalTrackId + 1, true));
+        ebml.writeId(0xf7);
+        ebml.writeUnsigned(internalTrackId + 1);
 
         /* CueClusterPosition */
-        buffer.add(new byte[]{(byte) 0xf1});
-        buffer.add(encode(keyFrame.clusterPosition, true));
+        ebml.writeId(0xf1);
+        ebml.writeUnsigned(keyFrame.clusterPosition);
 
         /* CueRelativePosition */
         if (keyFrame.relativePosition > 0) {
-            buffer.add(new byte[]{(byte) 0xf0});
-            buffer.add(encode(keyFrame.relativePosition, true));
+            ebml.writeId(0xf0);
+            ebml.writeUnsigned(keyFrame.relativePosition);
         }
 
-        return lengthFor(buffer);
+        ebml.endElement(positions);
     }
 
     private void makeEbmlVoid(final SharpStream out, final int amount, final boolean wipe)
@@ -606,78 +698,14 @@ public class WebMWriter implements Closeable {
         }
     }
 
-    private void dump(final byte[] buffer, final SharpStream stream) throws IOException {
-        dump(buffer, buffer.length, stream);
-    }
-
     private void dump(final byte[] buffer, final int count, final SharpStream stream)
             throws IOException {
         stream.write(buffer, 0, count);
         written += count;
     }
 
-    private void dump(final ArrayList<byte[]> buffers, final SharpStream stream)
-            throws IOException {
-        for (final byte[] buffer : buffers) {
-            stream.write(buffer);
-            written += buffer.length;
-        }
-    }
-
-    private ArrayList<byte[]> lengthFor(final ArrayList<byte[]> buffer) {
-        long size = 0;
-        for (int i = 2; i < buffer.size(); i++) {
-            size += buffer.get(i).length;
-        }
-        buffer.set(1, encode(size, false));
-        return buffer;
-    }
-
-    private byte[] encode(final long number, final boolean withLength) {
-        int length = -1;
-        for (int i = 1; i <= 7; i++) {
-            if (number < Math.pow(2, 7 * i)) {
-                length = i;
-                break;
-            }
-        }
-
-        if (length < 1) {
-            throw new ArithmeticException("Can't encode a number of bigger than 7 bytes");
-        }
-
-        if (number == (Math.pow(2, 7 * length)) - 1) {
-            length++;
-        }
-
-        final int offset = withLength ? 1 : 0;
-        final byte[] buffer = new byte[offset + length];
-        final long marker = (long) Math.floor((length - 1f) / 8f);
-
-        int shift = 0;
-        for (int i = length - 1; i >= 0; i--, shift += 8) {
-            long b = number >>> shift;
-            if (!withLength && i == marker) {
-                b = b | (0x80 >>> (length - 1));
-            }
-            buffer[offset + i] = (byte) b;
-        }
-
-        if (withLength) {
-            buffer[0] = (byte) (0x80 | length);
-        }
-
-        return buffer;
-    }
-
-    private ArrayList<byte[]> encode(final String value) {
-        final byte[] str = value.getBytes(StandardCharsets.UTF_8); // or use "utf-8"
-
-        final ArrayList<byte[]> buffer = new ArrayList<>(2);
-        buffer.add(encode(str.length, false));
-        buffer.add(str);
-
-        return buffer;
+    private void flush(final SharpStream stream) throws IOException {
+        written += ebml.writeTo(stream);
     }
 
     private boolean valid(final byte[] buffer) {
@@ -723,7 +751,9 @@ public class WebMWriter implements Closeable {
         return 0;
     }
 
-    static class KeyFrame {
+    static class KeyFrame implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         KeyFrame(final long segment, final long cluster, final long block, final long timecode) {
             clusterPosition = cluster - segment;
             relativePosition = (int) (block - cluster - CLUSTER_HEADER_SIZE);
@@ -736,7 +766,7 @@ public class WebMWriter implements Closeable {
     }
 
     static class Block {
-        InputStream data;
+        DataReader.View data;
         int trackNumber;
         byte flags;
         int dataSize;
@@ -754,8 +784,46 @@ public class WebMWriter implements Closeable {
         }
     }
 
-    static class ClusterInfo {
+    static class ClusterInfo implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         long offset;
         int size;
     }
+
+    /**
+     * Progress of the muxing, saved on every checkpoint.
+     */
+    static class State implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        WebMReader.Position[] positions;
+        boolean[] segmentReturned;
+        boolean[] clusterReturned;
+
+        long written;
+        ArrayList<ClusterInfo> clusters;
+        ArrayList<KeyFrame> keyFrames;
+
+        long offsetSegmentSizeSet;
+        long offsetInfoDurationSet;
+        long offsetClusterSet;
+        long offsetCuesSet;
+        long segmentOffset;
+        long cueOffset;
+        int firstClusterOffset;
+
+        int[] defaultSampleDuration;
+        long[] duration;
+        int cuesForTrackId;
+        long nextCueTime;
+
+        long currentClusterOffset;
+        long baseTimecode;
+        long limitTimecode;
+        int limitTimecodeByTrackId;
+        int blockWritten;
+        int newClusterByTrackId;
+        int track;
+    }
 }
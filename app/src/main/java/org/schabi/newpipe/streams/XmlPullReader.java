@@ -0,0 +1,324 @@
+package org.schabi.newpipe.streams;
+
+import org.jsoup.parser.Parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Minimal non-validating XML pull parser, reads the document in small chunks and reports every
+ * token as soon as is found. The tokenization and the entity decoding follows the Jsoup rules,
+ * this allows replacing a Jsoup DOM without changing the output.
+ */
+public class XmlPullReader {
+    public static final int END_DOCUMENT = 0;
+    public static final int START_TAG = 1;
+    public static final int END_TAG = 2;
+    public static final int TEXT = 3;
+    public static final int CDATA = 4;
+    /**
+     * Comments, processing instructions and doctypes.
+     */
+    public static final int IGNORABLE = 5;
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int EOF = -1;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int offset = 0;
+    private int count = 0;
+    private boolean started = false;
+
+    private String name;
+    private boolean emptyElement;
+    private final ArrayList<String> attributes = new ArrayList<>(); // name and value pairs
+    private final StringBuilder text = new StringBuilder(128);
+
+    public XmlPullReader(final InputStream stream) {
+        this.reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return the token type, {@link #END_DOCUMENT} if there no more tokens
+     * @throws IOException if an I/O error occurs
+     */
+    public int next() throws IOException {
+        name = null;
+        emptyElement = false;
+        attributes.clear();
+        text.setLength(0);
+
+        if (!started) {
+            started = true;
+            if (peek(0) == 0xFEFF) {
+                offset++; // byte order mark
+            }
+        }
+
+        if (peek(0) == EOF) {
+            return END_DOCUMENT;
+        }
+
+        if (isMarkup()) {
+            final int c = peek(1);
+            if (c == '/') {
+                return readEndTag();
+            } else if (c == '!') {
+                return readDeclaration();
+            } else if (c == '?') {
+                offset += 2;
+                skipUntil(">");
+                return IGNORABLE;
+            } else {
+                return readStartTag();
+            }
+        }
+
+        // text node, ends on the next markup
+        int c;
+        while ((c = peek(0)) != EOF) {
+            if (c == '<' && isMarkup()) {
+                break;
+            }
+            text.append((char) c);
+            offset++;
+        }
+
+        return TEXT;
+    }
+
+    /**
+     * @return the tag name of {@link #START_TAG} and {@link #END_TAG} tokens
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return {@code true} if the {@link #START_TAG} token is self closing
+     */
+    public boolean isEmptyElement() {
+        return emptyElement;
+    }
+
+    /**
+     * Gets the value of the attribute of the current {@link #START_TAG} token, if there duplicate
+     * attributes the first one is used.
+     *
+     * @param attr the attribute name, case insensitive
+     * @return the attribute value, or an empty string if missing
+     */
+    public String getAttribute(final String attr) {
+        for (int i = 0; i < attributes.size(); i += 2) {
+            if (attributes.get(i).equalsIgnoreCase(attr)) {
+                return attributes.get(i + 1);
+            }
+        }
+        return "";
+    }
+
+    /**
+     * @return the content of {@link #TEXT} (with the entities decoded) and {@link #CDATA} tokens
+     */
+    public String getText() {
+        return decode(text, false);
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private int readStartTag() throws IOException {
+        offset++;
+        name = readName();
+
+        while (true) {
+            skipWhitespace();
+
+            final int c = peek(0);
+            if (c == EOF) {
+                return END_DOCUMENT; // truncated tag
+            } else if (c == '>') {
+                offset++;
+                break;
+            } else if (c == '/') {
+                offset++;
+                if (peek(0) == '>') {
+                    offset++;
+                    emptyElement = true;
+                    break;
+                }
+                continue;
+            }
+
+            final String attr = readName();
+            String value = "";
+
+            skipWhitespace();
+            if (peek(0) == '=') {
+                offset++;
+                skipWhitespace();
+                value = readAttributeValue();
+            }
+
+            if (attr.length() > 0) {
+                attributes.add(attr);
+                attributes.add(value);
+            } else {
+                offset++; // stray character
+            }
+        }
+
+        return START_TAG;
+    }
+
+    private int readEndTag() throws IOException {
+        offset += 2;
+
+        if (!isAsciiLetter(peek(0))) {
+            skipUntil(">"); // invalid, also skips "</>"
+            return IGNORABLE;
+        }
+
+        name = readName();
+        skipUntil(">");
+        return END_TAG;
+    }
+
+    private int readDeclaration() throws IOException {
+        offset += 2;
+
+        if (startsWith("--")) {
+            offset += 2;
+            skipUntil("-->");
+        } else if (startsWith("[CDATA[")) {
+            offset += 7;
+
+            int c;
+            while ((c = peek(0)) != EOF && !startsWith("]]>")) {
+                text.append((char) c);
+                offset++;
+            }
+            if (c != EOF) {
+                offset += 3;
+            }
+
+            return CDATA;
+        } else {
+            skipUntil(">"); // doctype or bogus comment
+        }
+
+        return IGNORABLE;
+    }
+
+    private String readName() throws IOException {
+        final StringBuilder str = new StringBuilder(16);
+        int c;
+        while ((c = peek(0)) != EOF && !isWhitespace(c) && c != '/' && c != '>' && c != '=') {
+            str.append((char) c);
+            offset++;
+        }
+        return str.toString();
+    }
+
+    private String readAttributeValue() throws IOException {
+        final StringBuilder str = new StringBuilder(32);
+        final int quote = peek(0);
+        int c;
+
+        if (quote == '"' || quote == '\'') {
+            offset++;
+            while ((c = peek(0)) != EOF && c != quote) {
+                str.append((char) c);
+                offset++;
+            }
+            if (c != EOF) {
+                offset++;
+            }
+        } else {
+            while ((c = peek(0)) != EOF && !isWhitespace(c) && c != '>') {
+                str.append((char) c);
+                offset++;
+            }
+        }
+
+        return decode(str, true);
+    }
+
+    private static String decode(final CharSequence str, final boolean inAttribute) {
+        for (int i = 0; i < str.length(); i++) {
+            if (str.charAt(i) == '&') {
+                return Parser.unescapeEntities(str.toString(), inAttribute);
+            }
+        }
+        return str.toString();
+    }
+
+    private boolean isMarkup() throws IOException {
+        if (peek(0) != '<') {
+            return false;
+        }
+
+        final int c = peek(1);
+        return c == '/' || c == '!' || c == '?' || isAsciiLetter(c);
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (isWhitespace(peek(0))) {
+            offset++;
+        }
+    }
+
+    private void skipUntil(final String terminator) throws IOException {
+        while (peek(0) != EOF) {
+            if (startsWith(terminator)) {
+                offset += terminator.length();
+                return;
+            }
+            offset++;
+        }
+    }
+
+    private boolean startsWith(final String str) throws IOException {
+        for (int i = 0; i < str.length(); i++) {
+            if (peek(i) != str.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int peek(final int ahead) throws IOException {
+        if (offset + ahead >= count) {
+            // keep the unread chars and fill the rest of the buffer
+            count -= offset;
+            System.arraycopy(buffer, offset, buffer, 0, count);
+            offset = 0;
+
+            while (count <= ahead) {
+                final int read = reader.read(buffer, count, buffer.length - count);
+                if (read < 0) {
+                    return EOF;
+                }
+                count += read;
+            }
+        }
+
+        return buffer[offset + ahead];
+    }
+
+    private static boolean isWhitespace(final int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isAsciiLetter(final int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
@@ -1,12 +1,16 @@
 package org.schabi.newpipe.streams.io;
 
+import androidx.annotation.Nullable;
+
 import java.io.Closeable;
 import java.io.Flushable;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 
 /**
  * Based on C#'s Stream class. SharpStream is a wrapper around the 2 different APIs for SAF
- * ({@link us.shandian.giga.io.FileStreamSAF}) and non-SAF ({@link us.shandian.giga.io.FileStream}).
+ * ({@link us.shandian.giga.io.FileStreamSAF}) and non-SAF
+ * ({@link us.shandian.giga.io.FileChannelStream}).
  * It has both input and output like in C#, while in Java those are usually different classes.
  * {@link SharpInputStream} and {@link SharpOutputStream} are simple classes that wrap
  * {@link SharpStream} and extend respectively {@link java.io.InputStream} and
@@ -15,6 +19,8 @@ import java.io.IOException;
  * or {@link java.io.OutputStream}.
  */
 public abstract class SharpStream implements Closeable, Flushable {
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024; // 64 KiB
+
     public abstract int read() throws IOException;
 
     public abstract int read(byte[] buffer) throws IOException;
@@ -67,4 +73,84 @@ public abstract class SharpStream implements Closeable, Flushable {
     public long length() throws IOException {
         throw new UnsupportedOperationException("Unsupported operation");
     }
+
+    /**
+     * Gets the channel used to read from this stream, the channel position must be the same as
+     * the stream position.
+     *
+     * @return the channel or {@code null} if this stream is not backed by a file
+     */
+    @Nullable
+    public FileChannel getReadChannel() {
+        return null;
+    }
+
+    /**
+     * Gets the channel used to write on this stream, the channel position must be the same as
+     * the stream position.
+     *
+     * @return the channel or {@code null} if this stream is not backed by a file
+     */
+    @Nullable
+    public FileChannel getWriteChannel() {
+        return null;
+    }
+
+    /**
+     * Moves {@code count} bytes from the current position of this stream to the target. If both
+     * streams are backed by a {@link FileChannel} the data is moved by the kernel, without
+     * copying it through the JVM heap, otherwise {@link #transferFrom(SharpStream, long)} is used.
+     *
+     * @param target the stream where the data is written
+     * @param count  amount of bytes to move
+     * @return the amount of bytes moved, can be less than {@code count} if EOF is reached
+     * @throws IOException if an I/O error occurs
+     */
+    public long transferTo(final SharpStream target, final long count) throws IOException {
+        final FileChannel source = getReadChannel();
+        final FileChannel destination = target.getWriteChannel();
+
+        if (source == null || destination == null) {
+            return target.transferFrom(this, count);
+        }
+
+        final long start = source.position();
+        long total = 0;
+        while (total < count) {
+            final long moved = source.transferTo(start + total, count - total, destination);
+            if (moved < 1) {
+                break; // EOF reached
+            }
+            total += moved;
+        }
+
+        source.position(start + total);
+        return total;
+    }
+
+    /**
+     * Writes {@code count} bytes read from the source on this stream. The default implementation
+     * copies the data through a temporal buffer, streams that can do it better should override
+     * this method.
+     *
+     * @param source the stream where the data is read
+     * @param count  amount of bytes to move
+     * @return the amount of bytes moved, can be less than {@code count} if EOF is reached
+     * @throws IOException if an I/O error occurs
+     */
+    public long transferFrom(final SharpStream source, final long count) throws IOException {
+        final byte[] buffer = new byte[(int) Math.min(count, TRANSFER_BUFFER_SIZE)];
+        long total = 0;
+
+        while (total < count) {
+            final int read = source.read(buffer, 0, (int) Math.min(count - total, buffer.length));
+            if (read < 1) {
+                break; // EOF reached
+            }
+            write(buffer, 0, read);
+            total += read;
+        }
+
+        return total;
+    }
 }
@@ -25,7 +25,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.net.URI;
 
-import us.shandian.giga.io.FileStream;
+import us.shandian.giga.io.FileChannelStream;
 import us.shandian.giga.io.FileStreamSAF;
 
 public class StoredFileHelper implements Serializable {
@@ -190,7 +190,7 @@ public class StoredFileHelper implements Serializable {
         assertValid();
 
         if (docFile == null) {
-            return new FileStream(ioFile);
+            return new FileChannelStream(ioFile);
         } else {
             return new FileStreamSAF(context.getContentResolver(), docFile.getUri());
         }
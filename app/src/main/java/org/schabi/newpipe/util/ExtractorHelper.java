@@ -54,7 +54,9 @@ import org.schabi.newpipe.extractor.suggestion.SuggestionExtractor;
 import org.schabi.newpipe.util.external_communication.TextLinkifier;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Single;
@@ -64,6 +66,12 @@ public final class ExtractorHelper {
     private static final String TAG = ExtractorHelper.class.getSimpleName();
     private static final InfoCache CACHE = InfoCache.getInstance();
 
+    /**
+     * The infos being loaded from the network, shared by all the callers asking for the same info
+     * at the same time. An entry is removed once its load is done.
+     */
+    private static final Map<String, Single<? extends Info>> RUNNING_LOADS = new HashMap<>();
+
     private ExtractorHelper() {
         //no instance
     }
@@ -219,8 +227,8 @@ public final class ExtractorHelper {
                                                          final InfoItem.InfoType infoType,
                                                          final Single<I> loadFromNetwork) {
         checkServiceId(serviceId);
-        final Single<I> actualLoadFromNetwork = loadFromNetwork
-                .doOnSuccess(info -> CACHE.putInfo(serviceId, url, info, infoType));
+        final Single<I> actualLoadFromNetwork = loadShared(serviceId, url, infoType,
+                loadFromNetwork.doOnSuccess(info -> CACHE.putInfo(serviceId, url, info, infoType)));
 
         final Single<I> load;
         if (forceLoad) {
@@ -236,6 +244,45 @@ public final class ExtractorHelper {
         return load;
     }
 
+    /**
+     * Shares a load from the network between concurrent callers, for example the detail fragment
+     * and the player asking for the same stream, so that the info is extracted only once.
+     * A caller subscribing after the load is done starts a new load. The load is not canceled
+     * when its callers are disposed, so that the info still ends up in the cache.
+     *
+     * @param <I>             the item type's class that extends {@link Info}
+     * @param serviceId       the service to load from
+     * @param url             the URL to load
+     * @param infoType        the {@link InfoItem.InfoType} of the item
+     * @param loadFromNetwork the {@link Single} to load the item from the network
+     * @return a {@link Single} that joins the running load of the item, or starts it
+     */
+    private static <I extends Info> Single<I> loadShared(final int serviceId, final String url,
+                                                         final InfoItem.InfoType infoType,
+                                                         final Single<I> loadFromNetwork) {
+        final String key = serviceId + ":" + infoType + ":" + url;
+        return Single.defer(() -> {
+            synchronized (RUNNING_LOADS) {
+                //noinspection unchecked
+                Single<I> load = (Single<I>) RUNNING_LOADS.get(key);
+                if (load == null) {
+                    // Only this load can remove the entry, it is not subscribed before being added
+                    load = loadFromNetwork
+                            .doFinally(() -> {
+                                synchronized (RUNNING_LOADS) {
+                                    RUNNING_LOADS.remove(key);
+                                }
+                            })
+                            .cache();
+                    RUNNING_LOADS.put(key, load);
+                } else if (MainActivity.DEBUG) {
+                    Log.d(TAG, "loadShared() joined the running load of " + key);
+                }
+                return load;
+            }
+        });
+    }
+
     /**
      * Default implementation uses the {@link InfoCache} to get cached results.
      *
@@ -266,7 +313,8 @@ public final class ExtractorHelper {
 
     public static boolean isCached(final int serviceId, final String url,
                                    final InfoItem.InfoType infoType) {
-        return null != loadFromCache(serviceId, url, infoType).blockingGet();
+        checkServiceId(serviceId);
+        return CACHE.isCached(serviceId, url, infoType);
     }
 
     /**
@@ -19,6 +19,7 @@
 
 package org.schabi.newpipe.util;
 
+import android.content.Context;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -28,9 +29,17 @@ import androidx.collection.LruCache;
 import org.schabi.newpipe.MainActivity;
 import org.schabi.newpipe.extractor.Info;
 import org.schabi.newpipe.extractor.InfoItem;
+import org.schabi.newpipe.extractor.channel.ChannelInfo;
+import org.schabi.newpipe.extractor.comments.CommentsInfo;
+import org.schabi.newpipe.extractor.playlist.PlaylistInfo;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Map;
 
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
 public final class InfoCache {
     private final String TAG = getClass().getSimpleName();
     private static final boolean DEBUG = MainActivity.DEBUG;
@@ -44,6 +53,20 @@ public final class InfoCache {
 
     private static final LruCache<String, CacheData> LRU_CACHE = new LruCache<>(MAX_ITEMS_ON_CACHE);
 
+    private static final String DISK_CACHE_DIR_NAME = "info_cache";
+    private static final long MAX_DISK_CACHE_SIZE = 10 * 1024 * 1024;
+
+    /**
+     * Keeps the infos of streams, channels, playlists and comments after the process is killed,
+     * or {@code null} if not initialized.
+     */
+    @Nullable
+    private static InfoDiskCache diskCache;
+
+    private static long memoryHitCount = 0;
+    private static long diskHitCount = 0;
+    private static long missCount = 0;
+
     private InfoCache() {
         // no instance
     }
@@ -52,6 +75,19 @@ public final class InfoCache {
         return INSTANCE;
     }
 
+    /**
+     * Initialize the disk cache, usually you want to call this in the Application class.
+     *
+     * @param context used to get the cache dir
+     */
+    public void init(@NonNull final Context context) {
+        final InfoDiskCache cache = new InfoDiskCache(
+                new File(context.getCacheDir(), DISK_CACHE_DIR_NAME), MAX_DISK_CACHE_SIZE);
+        // lets isCached() know the infos of the previous sessions without reading the disk
+        Schedulers.io().scheduleDirect(cache::index);
+        diskCache = cache;
+    }
+
     @NonNull
     private static String keyOf(final int serviceId, @NonNull final String url,
                                 @NonNull final InfoItem.InfoType infoType) {
@@ -89,21 +125,67 @@ public final class InfoCache {
             Log.d(TAG, "getFromKey() called with: "
                     + "serviceId = [" + serviceId + "], url = [" + url + "]");
         }
+        final String key = keyOf(serviceId, url, infoType);
+        synchronized (LRU_CACHE) {
+            final Info info = getInfo(key);
+            if (info != null || diskCache == null) {
+                countHit(info != null, false);
+                return info;
+            }
+        }
+
+        // the disk is read without blocking the memory cache
+        final InfoDiskCache.Entry entry = diskCache.get(key);
         synchronized (LRU_CACHE) {
-            return getInfo(keyOf(serviceId, url, infoType));
+            countHit(entry != null, true);
+            if (entry == null) {
+                return null;
+            }
+            LRU_CACHE.put(key, new CacheData(entry.info, entry.expireTimestamp));
+            return entry.info;
         }
     }
 
+    /**
+     * Checks if an info is cached, without accessing the disk so it can be called from the main
+     * thread.
+     *
+     * @param serviceId the service of the info
+     * @param url       the URL of the info
+     * @param infoType  the type of the info
+     * @return whether {@link #getFromKey(int, String, InfoItem.InfoType)} would return the info
+     */
+    public boolean isCached(final int serviceId, @NonNull final String url,
+                            @NonNull final InfoItem.InfoType infoType) {
+        final String key = keyOf(serviceId, url, infoType);
+        synchronized (LRU_CACHE) {
+            if (getInfo(key) != null) {
+                return true;
+            }
+        }
+        return diskCache != null && diskCache.contains(key);
+    }
+
     public void putInfo(final int serviceId, @NonNull final String url, @NonNull final Info info,
                         @NonNull final InfoItem.InfoType infoType) {
         if (DEBUG) {
             Log.d(TAG, "putInfo() called with: info = [" + info + "]");
         }
 
-        final long expirationMillis = ServiceHelper.getCacheExpirationMillis(info.getServiceId());
+        final long expireTimestamp = System.currentTimeMillis()
+                + ServiceHelper.getCacheExpirationMillis(info.getServiceId());
+        final String key = keyOf(serviceId, url, infoType);
         synchronized (LRU_CACHE) {
-            final CacheData data = new CacheData(info, expirationMillis);
-            LRU_CACHE.put(keyOf(serviceId, url, infoType), data);
+            final CacheData data = new CacheData(info, expireTimestamp);
+            LRU_CACHE.put(key, data);
+        }
+
+        if (diskCache != null && isPersistent(info)) {
+            try {
+                diskCache.put(key, info, expireTimestamp);
+            } catch (final IOException e) {
+                Log.w(TAG, "Could not save info to disk: " + url, e);
+            }
         }
     }
 
@@ -113,11 +195,19 @@ public final class InfoCache {
             Log.d(TAG, "removeInfo() called with: "
                     + "serviceId = [" + serviceId + "], url = [" + url + "]");
         }
+        final String key = keyOf(serviceId, url, infoType);
         synchronized (LRU_CACHE) {
-            LRU_CACHE.remove(keyOf(serviceId, url, infoType));
+            LRU_CACHE.remove(key);
+        }
+        if (diskCache != null) {
+            diskCache.remove(key);
         }
     }
 
+    /**
+     * Removes all the infos from the memory, the files of the disk cache are deleted in
+     * background.
+     */
     public void clearCache() {
         if (DEBUG) {
             Log.d(TAG, "clearCache() called");
@@ -125,6 +215,9 @@ public final class InfoCache {
         synchronized (LRU_CACHE) {
             LRU_CACHE.evictAll();
         }
+        if (diskCache != null) {
+            Schedulers.io().scheduleDirect(diskCache::clear);
+        }
     }
 
     public void trimCache() {
@@ -143,12 +236,76 @@ public final class InfoCache {
         }
     }
 
+    /**
+     * Lists the files of the disk cache the first time, must not be called from the main thread.
+     *
+     * @return the total size of the infos saved on disk, in bytes
+     */
+    public long getDiskSize() {
+        return diskCache == null ? 0 : diskCache.getSize();
+    }
+
+    /**
+     * @return how many infos were found in memory since the app was opened
+     */
+    public long getMemoryHitCount() {
+        synchronized (LRU_CACHE) {
+            return memoryHitCount;
+        }
+    }
+
+    /**
+     * @return how many infos were found on disk, after not being found in memory
+     */
+    public long getDiskHitCount() {
+        synchronized (LRU_CACHE) {
+            return diskHitCount;
+        }
+    }
+
+    /**
+     * @return how many infos were not cached and had to be extracted again
+     */
+    public long getMissCount() {
+        synchronized (LRU_CACHE) {
+            return missCount;
+        }
+    }
+
+    /**
+     * Only the infos opened again later are saved on disk, the infos of kiosks and feeds
+     * change too often.
+     *
+     * @param info the info to cache
+     * @return whether the info is also saved on disk
+     */
+    private static boolean isPersistent(@NonNull final Info info) {
+        return info instanceof StreamInfo || info instanceof ChannelInfo
+                || info instanceof PlaylistInfo || info instanceof CommentsInfo;
+    }
+
+    /**
+     * Must be called while holding the lock of the memory cache.
+     *
+     * @param hit      whether the info was found in the cache
+     * @param fromDisk whether the info was read from disk, ignored if not found
+     */
+    private static void countHit(final boolean hit, final boolean fromDisk) {
+        if (!hit) {
+            missCount++;
+        } else if (fromDisk) {
+            diskHitCount++;
+        } else {
+            memoryHitCount++;
+        }
+    }
+
     private static final class CacheData {
         private final long expireTimestamp;
         private final Info info;
 
-        private CacheData(@NonNull final Info info, final long timeoutMillis) {
-            this.expireTimestamp = System.currentTimeMillis() + timeoutMillis;
+        private CacheData(@NonNull final Info info, final long expireTimestamp) {
+            this.expireTimestamp = expireTimestamp;
             this.info = info;
         }
 
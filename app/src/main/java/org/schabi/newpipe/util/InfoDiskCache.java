@@ -0,0 +1,276 @@
+package org.schabi.newpipe.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.schabi.newpipe.extractor.Info;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Second tier of the {@link InfoCache}, keeps the infos on disk so they are still available
+ * after the process is killed.
+ * <p>
+ * Every info is saved in its own file, made of a header with the key and the expiration time,
+ * followed by the serialized and compressed info. Reading a file updates its modification time,
+ * the least recently used files are deleted once the total size exceeds the limit.
+ * </p>
+ * <p>
+ * The keys and expiration times of all files are also kept in the memory, so
+ * {@link #contains(String)} can be called from the main thread. They are read once by
+ * {@link #index()}, which must be called from a background thread.
+ * </p>
+ */
+final class InfoDiskCache {
+    private static final int VERSION = 1;
+    private static final String FILE_SUFFIX = ".info";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    @NonNull
+    private final File directory;
+    private final long maxSize;
+
+    /**
+     * The total size of the files, or {@code -1} if not computed yet.
+     */
+    private long size = -1;
+
+    /**
+     * The expiration time of the cached infos by key, complete once {@link #index()} was called.
+     */
+    @NonNull
+    private final Map<String, Long> expirations = new ConcurrentHashMap<>();
+
+    InfoDiskCache(@NonNull final File directory, final long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param key the key of the info
+     * @return the info and its expiration, or {@code null} if not cached or expired
+     */
+    @Nullable
+    synchronized Entry get(@NonNull final String key) {
+        final File file = fileOf(key);
+        if (!file.exists()) {
+            return null;
+        }
+
+        Entry entry = null;
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            final long expireTimestamp = readHeader(input, key);
+            if (expireTimestamp > System.currentTimeMillis()) {
+                try (ObjectInputStream objects =
+                             new ObjectInputStream(new InflaterInputStream(input))) {
+                    entry = new Entry((Info) objects.readObject(), expireTimestamp);
+                }
+            }
+        } catch (final IOException | ClassNotFoundException | ClassCastException e) {
+            // corrupted or saved by another version of the extractor
+        }
+
+        if (entry == null) {
+            delete(file);
+        } else {
+            expirations.put(key, entry.expireTimestamp);
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+        }
+        return entry;
+    }
+
+    /**
+     * Checks if an info is cached without accessing the disk. The infos saved by a previous
+     * session are not found until {@link #index()} is done.
+     *
+     * @param key the key of the info
+     * @return whether the info is cached and not expired
+     */
+    boolean contains(@NonNull final String key) {
+        final Long expireTimestamp = expirations.get(key);
+        return expireTimestamp != null && expireTimestamp > System.currentTimeMillis();
+    }
+
+    /**
+     * Reads the keys and expiration times of the files saved by the previous sessions, and
+     * computes their total size. Must be called from a background thread.
+     */
+    synchronized void index() {
+        size = 0;
+        for (final File file : listFiles()) {
+            size += file.length();
+
+            try (DataInputStream input = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)))) {
+                if (input.readInt() == VERSION) {
+                    final String key = input.readUTF();
+                    expirations.put(key, input.readLong());
+                }
+            } catch (final IOException e) {
+                // corrupted, deleted once read
+            }
+        }
+    }
+
+    /**
+     * @param key             the key of the info
+     * @param info            the info to save
+     * @param expireTimestamp when the info expires, in milliseconds
+     * @throws IOException if the info could not be serialized or written
+     */
+    synchronized void put(@NonNull final String key, @NonNull final Info info,
+                          final long expireTimestamp) throws IOException {
+        computeSize();
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+
+        final File file = fileOf(key);
+        final File temporary = new File(directory, file.getName() + TEMPORARY_SUFFIX);
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            output.writeInt(VERSION);
+            output.writeUTF(key);
+            output.writeLong(expireTimestamp);
+
+            final ObjectOutputStream objects =
+                    new ObjectOutputStream(new DeflaterOutputStream(output));
+            objects.writeObject(info);
+            objects.close();
+        } catch (final IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            temporary.delete();
+            throw e;
+        }
+
+        delete(file);
+        if (!temporary.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            temporary.delete();
+            throw new IOException("Could not rename " + temporary.getName());
+        }
+        size += file.length();
+        expirations.put(key, expireTimestamp);
+
+        trim();
+    }
+
+    synchronized void remove(@NonNull final String key) {
+        delete(fileOf(key));
+    }
+
+    synchronized void clear() {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        size = 0;
+        expirations.clear();
+    }
+
+    /**
+     * @return the total size of the cached infos, in bytes
+     */
+    synchronized long getSize() {
+        computeSize();
+        return size;
+    }
+
+    @NonNull
+    private File fileOf(@NonNull final String key) {
+        // the key is checked when reading, a collision only drops the other info
+        return new File(directory, String.format(Locale.ROOT, "%08x", key.hashCode())
+                + FILE_SUFFIX);
+    }
+
+    /**
+     * @param input the content of a cache file
+     * @param key   the key of the requested info
+     * @return the expiration time, or {@code -1} if the file belongs to another key
+     */
+    private static long readHeader(@NonNull final DataInputStream input,
+                                   @NonNull final String key) throws IOException {
+        if (input.readInt() != VERSION || !key.equals(input.readUTF())) {
+            return -1;
+        }
+        return input.readLong();
+    }
+
+    private void delete(@NonNull final File file) {
+        final long length = file.length();
+        if (file.delete() && size > 0) {
+            size = Math.max(0, size - length);
+        }
+
+        // the file can belong to any key with the same hash
+        final Iterator<String> keys = expirations.keySet().iterator();
+        while (keys.hasNext()) {
+            if (fileOf(keys.next()).equals(file)) {
+                keys.remove();
+            }
+        }
+    }
+
+    private void computeSize() {
+        if (size >= 0) {
+            return;
+        }
+
+        size = 0;
+        for (final File file : listFiles()) {
+            size += file.length();
+        }
+    }
+
+    private void trim() {
+        if (size <= maxSize) {
+            return;
+        }
+
+        final File[] files = listFiles();
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (final File file : files) {
+            if (size <= maxSize) {
+                break;
+            }
+            delete(file);
+        }
+    }
+
+    @NonNull
+    private File[] listFiles() {
+        final File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        return files == null ? new File[0] : files;
+    }
+
+    static final class Entry {
+        @NonNull
+        final Info info;
+        final long expireTimestamp;
+
+        Entry(@NonNull final Info info, final long expireTimestamp) {
+            this.info = info;
+            this.expireTimestamp = expireTimestamp;
+        }
+    }
+}
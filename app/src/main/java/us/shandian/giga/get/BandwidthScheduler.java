@@ -0,0 +1,165 @@
+package us.shandian.giga.get;
+
+import androidx.annotation.NonNull;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * Token bucket shared by all download threads, limits the total download speed. When the threads
+ * of several missions are waiting for tokens, the missions with the highest priority are served
+ * first, and the rest share the bandwidth by weight (fair queuing). The share of a mission that
+ * stops downloading is given to the others, as only the waiting missions are taken into account.
+ */
+public class BandwidthScheduler {
+
+    /**
+     * Minimum size of the bucket, must fit the biggest read done by the download threads
+     */
+    private static final int MIN_BURST = DownloadMission.BUFFER_SIZE;
+
+    /**
+     * Time in milliseconds of bandwidth that can be accumulated while no thread is downloading
+     */
+    private static final int BURST_TIME = 250;
+
+    private static BandwidthScheduler instance;
+
+    /**
+     * Download speed limit in bytes per second, {@code 0} means no limit
+     */
+    private volatile long rate = 0;
+
+    private double tokens = 0;
+    private long lastRefill;
+
+    private final ArrayList<Share> waiting = new ArrayList<>();
+
+    public static synchronized BandwidthScheduler getInstance() {
+        if (instance == null) instance = new BandwidthScheduler();
+        return instance;
+    }
+
+    /**
+     * Changes the download speed limit, the waiting threads are released if the limit is removed
+     *
+     * @param bytesPerSecond the limit, {@code 0} to remove it
+     */
+    public synchronized void setRate(long bytesPerSecond) {
+        rate = Math.max(bytesPerSecond, 0);
+        tokens = 0;
+        lastRefill = System.nanoTime();
+        notifyAll();
+    }
+
+    public long getRate() {
+        return rate;
+    }
+
+    /**
+     * Takes tokens for the bytes read by a download thread, waiting if the limit was reached
+     *
+     * @param share the share of the mission being downloaded
+     * @param bytes amount of bytes read, must not exceed {@link DownloadMission#BUFFER_SIZE}
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public void acquire(@NonNull Share share, int bytes) throws InterruptedException {
+        if (rate < 1) return;
+
+        synchronized (this) {
+            if (share.waiters++ == 0) {
+                // do not let a mission claim the bandwidth not used while it was not downloading
+                double position = Double.MAX_VALUE;
+                for (Share other : waiting) {
+                    if (other.priority == share.priority)
+                        position = Math.min(position, other.position);
+                }
+                if (position != Double.MAX_VALUE) share.position = Math.max(share.position, position);
+                waiting.add(share);
+            }
+
+            try {
+                while (true) {
+                    long currentRate = rate;
+                    if (currentRate < 1) return;
+
+                    refill(currentRate);
+
+                    if (next() == share) {
+                        if (tokens >= bytes) break;
+                        wait(Math.max((long) ((bytes - tokens) * 1000 / currentRate), 1));
+                    } else {
+                        // the next share takes the tokens first, the waiting threads are notified
+                        wait(BURST_TIME);
+                    }
+                }
+
+                tokens -= bytes;
+                share.position += (double) bytes / share.getWeight();
+            } finally {
+                if (--share.waiters == 0) waiting.remove(share);
+                notifyAll();
+            }
+        }
+    }
+
+    private void refill(long currentRate) {
+        long now = System.nanoTime();
+        double burst = Math.max(currentRate * BURST_TIME / 1000.0, MIN_BURST);
+
+        tokens = Math.min(tokens + (now - lastRefill) * currentRate / 1e9, burst);
+        lastRefill = now;
+    }
+
+    /**
+     * Gets the waiting share with the highest priority and less bytes downloaded by weight
+     */
+    private Share next() {
+        Share next = null;
+        for (Share share : waiting) {
+            if (next == null || share.priority > next.priority ||
+                    (share.priority == next.priority && share.position < next.position))
+                next = share;
+        }
+        return next;
+    }
+
+    /**
+     * The share of the bandwidth of a mission, used by all the threads of the mission
+     */
+    public static class Share implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        public static final int WEIGHT_LOW = 1;
+        public static final int WEIGHT_NORMAL = 2;
+        public static final int WEIGHT_HIGH = 4;
+
+        public static final int PRIORITY_NORMAL = 0;
+        public static final int PRIORITY_HIGH = 1;
+
+        /**
+         * Amount of bandwidth compared to the other missions with the same priority
+         */
+        public volatile int weight = WEIGHT_NORMAL;
+
+        /**
+         * Missions with higher priority get all the bandwidth they can use before the rest, and
+         * are post-processed first
+         */
+        public volatile int priority = PRIORITY_NORMAL;
+
+        /**
+         * Bytes downloaded divided by the weight, the smallest one is served first
+         */
+        private transient double position = 0;
+
+        /**
+         * Amount of threads of the mission waiting for tokens
+         */
+        private transient int waiters = 0;
+
+        private int getWeight() {
+            return Math.max(weight, 1);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package us.shandian.giga.get;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Tracks which download thread owns every block, without locks. A bitmap marks the acquired (or
+ * already downloaded) blocks, and every thread owns at most one range of contiguous blocks,
+ * whose pending blocks can be taken by other thread (work stealing).
+ *
+ * @see DownloadMission#blocks
+ */
+class BlockTable {
+
+    /**
+     * The block offsets, shared with the mission. An offset is {@code -1} if the block was
+     * downloaded, written only by the owner of the block
+     */
+    private final int[] blocks;
+
+    /**
+     * One bit for every block, set if the block is acquired or downloaded
+     */
+    private final AtomicLongArray acquired;
+
+    /**
+     * The range owned by every thread, used to find the ranges that can be split
+     */
+    private final AtomicReferenceArray<Block> ranges;
+
+    BlockTable(@NonNull int[] blocks, int threads) {
+        this.blocks = blocks;
+        this.acquired = new AtomicLongArray((blocks.length + 63) / 64);
+        this.ranges = new AtomicReferenceArray<>(threads);
+
+        for (int i = 0; i < blocks.length; i++) {
+            if (blocks[i] < 0) acquired.set(i / 64, acquired.get(i / 64) | (1L << (i % 64)));
+        }
+    }
+
+    /**
+     * Gets the amount of blocks not downloaded yet
+     */
+    int getPendingCount() {
+        int count = 0;
+        for (int block : blocks) if (block >= 0) count++;
+        return count;
+    }
+
+    /**
+     * Acquire a range of contiguous blocks. If all blocks are already acquired, the pending
+     * blocks of the range that will take more time to finish are split (work stealing)
+     *
+     * @param thread index of the calling thread, the range is registered for it
+     * @param size   desired amount of blocks in the range
+     * @return the range or {@code null} if no more blocks left
+     */
+    @Nullable
+    Block acquire(int thread, int size) {
+        int start = acquireFirst();
+        if (start < 0) return steal(thread);
+
+        int end = start + 1;
+
+        // only the first block of the range can be partially downloaded
+        while (end < blocks.length && end - start < size) {
+            if (blocks[end] != 0 || !tryAcquire(end)) break;
+            end++;
+        }
+
+        Block block = new Block(start, end);
+        block.done = blocks[start];
+        ranges.set(thread, block);
+
+        return block;
+    }
+
+    /**
+     * Marks the current block of the range as downloaded and moves to the next one
+     *
+     * @param block the range, owned by the calling thread
+     * @return {@code true} if there are more blocks, {@code false} if the range is finished or
+     * the remaining blocks were taken by other thread
+     */
+    boolean next(Block block) {
+        blocks[block.getPosition()] = -1;
+        block.done = 0;
+
+        while (true) {
+            long range = block.range.get();
+            int position = position(range) + 1;
+
+            if (block.range.compareAndSet(range, pack(position, end(range)))) {
+                return position < end(range);
+            }
+        }
+    }
+
+    /**
+     * Release a range of blocks, the progress of the current block is saved
+     *
+     * @param thread index of the calling thread
+     * @param block  the range, owned by the calling thread
+     */
+    void release(int thread, Block block) {
+        long range;
+        do {
+            // close the range first, this stops other threads from taking blocks of it
+            range = block.range.get();
+        } while (!block.range.compareAndSet(range, pack(position(range), position(range))));
+
+        ranges.compareAndSet(thread, block, null);
+
+        int position = position(range);
+        if (position >= end(range)) return;
+
+        blocks[position] = block.done;
+        for (int i = position; i < end(range); i++) {
+            long mask = 1L << (i % 64);
+            int index = i / 64;
+            long value;
+            do {
+                value = acquired.get(index);
+            } while (!acquired.compareAndSet(index, value, value & ~mask));
+        }
+    }
+
+    private int acquireFirst() {
+        for (int index = 0; index < acquired.length(); index++) {
+            long value;
+            while ((value = acquired.get(index)) != -1L) {
+                int bit = Long.numberOfTrailingZeros(~value);
+                int position = index * 64 + bit;
+                if (position >= blocks.length) break;
+
+                if (acquired.compareAndSet(index, value, value | (1L << bit))) return position;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean tryAcquire(int position) {
+        long mask = 1L << (position % 64);
+        int index = position / 64;
+        long value;
+        do {
+            value = acquired.get(index);
+            if ((value & mask) != 0) return false;
+        } while (!acquired.compareAndSet(index, value, value | mask));
+
+        return true;
+    }
+
+    /**
+     * Takes the second half of the pending blocks of the slowest range, the block being
+     * downloaded by the owner of the range is never split.
+     */
+    @Nullable
+    private Block steal(int thread) {
+        while (true) {
+            Block slowest = null;
+            long slowestRange = 0;
+            long slowestTime = 0;
+
+            for (int i = 0; i < ranges.length(); i++) {
+                Block block = ranges.get(i);
+                if (block == null || i == thread) continue;
+
+                long range = block.range.get();
+                int pending = end(range) - position(range) - 1;
+                if (pending < 1) continue;
+
+                // an unknown speed is considered slow, the range was just acquired
+                long time = pending * 1000L / Math.max(block.speed, 1);
+                if (slowest == null || time > slowestTime) {
+                    slowest = block;
+                    slowestRange = range;
+                    slowestTime = time;
+                }
+            }
+
+            if (slowest == null) return null;
+
+            int pending = end(slowestRange) - position(slowestRange) - 1;
+            int split = end(slowestRange) - (pending + 1) / 2;
+            long shrunk = pack(position(slowestRange), split);
+
+            // if the owner moved to the next block meanwhile, try again
+            if (!slowest.range.compareAndSet(slowestRange, shrunk)) continue;
+
+            Block block = new Block(split, end(slowestRange));
+            block.done = blocks[split];
+            ranges.set(thread, block);
+
+            return block;
+        }
+    }
+
+    private static long pack(int position, int end) {
+        return ((long) position << 32) | (end & 0xFFFFFFFFL);
+    }
+
+    private static int position(long range) {
+        return (int) (range >>> 32);
+    }
+
+    private static int end(long range) {
+        return (int) range;
+    }
+
+    /**
+     * Range of blocks acquired by a download thread
+     */
+    static class Block {
+        /**
+         * The block being downloaded and the index after the last block of the range, packed
+         * to be updated atomically, the end is reduced if other thread takes the pending blocks
+         */
+        private final AtomicLong range;
+
+        /**
+         * Amount of bytes downloaded of the current block, used only by the owner
+         */
+        int done;
+
+        /**
+         * Download speed of the range in bytes per second, {@code 0} if unknown
+         */
+        volatile long speed;
+
+        Block(int position, int end) {
+            range = new AtomicLong(pack(position, end));
+        }
+
+        int getPosition() {
+            return position(range.get());
+        }
+
+        int getEnd() {
+            return end(range.get());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package us.shandian.giga.get;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A HTTP request done by the downloader, opened with a {@link DownloadTransport}. Like
+ * {@link java.net.HttpURLConnection}, the request is sent when the response is read for the
+ * first time, the request headers must be set before that.
+ */
+public interface DownloadConnection {
+
+    void setRequestProperty(@NonNull String name, @NonNull String value);
+
+    @Nullable
+    String getRequestProperty(@NonNull String name);
+
+    /**
+     * Sends the request if needed and gets the HTTP status code of the response
+     *
+     * @return the status code
+     * @throws IOException if an error occurred connecting to the server
+     */
+    int getResponseCode() throws IOException;
+
+    /**
+     * Gets the value of a response header
+     *
+     * @param name the header name
+     * @return the value, or {@code null} if not present or the request failed
+     */
+    @Nullable
+    String getHeaderField(@NonNull String name);
+
+    /**
+     * Gets the value of the {@code Content-Length} response header
+     *
+     * @return the length in bytes, or {@code -1} if unknown
+     */
+    long getContentLength();
+
+    InputStream getInputStream() throws IOException;
+
+    /**
+     * Aborts the request, or releases the connection if the response was read. This method can
+     * be called from any thread
+     */
+    void disconnect();
+}
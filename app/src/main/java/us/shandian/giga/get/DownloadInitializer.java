@@ -7,12 +7,12 @@ import androidx.annotation.NonNull;
 
 import org.schabi.newpipe.streams.io.SharpStream;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InterruptedIOException;
-import java.net.HttpURLConnection;
 import java.nio.channels.ClosedByInterruptException;
 
-import us.shandian.giga.util.Utility;
 
 import static org.schabi.newpipe.BuildConfig.DEBUG;
 import static us.shandian.giga.get.DownloadMission.ERROR_HTTP_FORBIDDEN;
@@ -22,9 +22,10 @@ public class DownloadInitializer extends Thread {
     final static int mId = 0;
     private final static int RESERVE_SPACE_DEFAULT = 5 * 1024 * 1024;// 5 MiB
     private final static int RESERVE_SPACE_MAXIMUM = 150 * 1024 * 1024;// 150 MiB
+    private final static int MAXIMUM_PLAYLIST_LENGTH = 4 * 1024 * 1024;// 4 MiB
 
     private final DownloadMission mMission;
-    private HttpURLConnection mConn;
+    private DownloadConnection mConn;
 
     DownloadInitializer(@NonNull DownloadMission mission) {
         mMission = mission;
@@ -45,6 +46,7 @@ public class DownloadInitializer extends Thread {
 
         int retryCount = 0;
         int httpCode = 204;
+        boolean segmented = false;
 
         while (true) {
             try {
@@ -52,6 +54,7 @@ public class DownloadInitializer extends Thread {
                     // calculate the whole size of the mission
                     long finalLength = 0;
                     long lowestSize = Long.MAX_VALUE;
+                    long[] lengths = new long[mMission.urls.length];
 
                     for (int i = 0; i < mMission.urls.length && mMission.running; i++) {
                         mConn = mMission.openConnection(mMission.urls[i], true, -1, -1);
@@ -59,13 +62,19 @@ public class DownloadInitializer extends Thread {
                         dispose();
 
                         if (Thread.interrupted()) return;
-                        long length = Utility.getContentLength(mConn);
+                        long length = mConn.getContentLength();
+
+                        // the length of a playlist is not the length of its segments
+                        boolean playlist = SegmentPlaylist.isPlaylist(mMission.urls[i], mConn.getHeaderField("Content-Type"));
+                        if (playlist) length = -1;
 
                         if (i == 0) {
                             httpCode = mConn.getResponseCode();
                             mMission.length = length;
+                            segmented = playlist;
                         }
 
+                        lengths[i] = length;
                         if (length > 0) finalLength += length;
                         if (length < lowestSize) lowestSize = length;
                     }
@@ -74,7 +83,12 @@ public class DownloadInitializer extends Thread {
 
                     // reserve space at the start of the file
                     if (mMission.psAlgorithm != null && mMission.psAlgorithm.reserveSpace) {
-                        if (lowestSize < 1) {
+                        long planned = mMission.psAlgorithm.planReservedSpace(lengths);
+
+                        if (planned > 0) {
+                            // all lengths are known, the output can be written in place
+                            mMission.offsets[0] = planned;
+                        } else if (lowestSize < 1) {
                             // the length is unknown use the default size
                             mMission.offsets[0] = RESERVE_SPACE_DEFAULT;
                         } else {
@@ -91,16 +105,33 @@ public class DownloadInitializer extends Thread {
                     if (!mMission.running || Thread.interrupted()) return;
 
                     httpCode = mConn.getResponseCode();
-                    mMission.length = Utility.getContentLength(mConn);
+                    mMission.length = mConn.getContentLength();
+
+                    segmented = SegmentPlaylist.isPlaylist(mMission.urls[mMission.current], mConn.getHeaderField("Content-Type"));
                 }
 
-                if (mMission.length == 0 || httpCode == 204) {
+                if ((mMission.length == 0 && !segmented) || httpCode == 204) {
                     mMission.notifyError(DownloadMission.ERROR_HTTP_NO_CONTENT, null);
                     return;
                 }
 
-                // check for dynamic generated content
-                if (mMission.length == -1 && mConn.getResponseCode() == 200) {
+                if (segmented) {
+                    String[] segments = readPlaylist();
+
+                    if (!mMission.running || Thread.interrupted()) return;
+
+                    // the segments are downloaded by all threads, every segment is a block
+                    synchronized (mMission.LOCK) {
+                        mMission.segments = segments;
+                        mMission.blocks = new int[segments.length];
+                        mMission.length = 0;
+                    }
+
+                    if (DEBUG) {
+                        Log.d(TAG, "playlist with " + segments.length + " segments");
+                    }
+                } else if (mMission.length == -1 && mConn.getResponseCode() == 200) {
+                    // dynamic generated content
                     mMission.blocks = new int[0];
                     mMission.length = 0;
                     mMission.unknownLength = true;
@@ -154,7 +185,7 @@ public class DownloadInitializer extends Thread {
 
                 if (!mMission.running || Thread.interrupted()) return;
 
-                if (!mMission.unknownLength && mMission.recoveryInfo != null) {
+                if (!mMission.unknownLength && !segmented && mMission.recoveryInfo != null) {
                     String entityTag = mConn.getHeaderField("ETAG");
                     String lastModified = mConn.getHeaderField("Last-Modified");
                     MissionRecoveryInfo recovery = mMission.recoveryInfo[mMission.current];
@@ -200,6 +231,26 @@ public class DownloadInitializer extends Thread {
         mMission.start();
     }
 
+    private String[] readPlaylist() throws IOException {
+        mConn = mMission.openConnection(false, -1, -1);
+        mMission.establishConnection(mId, mConn);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        try (InputStream stream = mConn.getInputStream()) {
+            byte[] buf = new byte[DownloadMission.BUFFER_SIZE];
+            int len;
+
+            while ((len = stream.read(buf)) != -1) {
+                buffer.write(buf, 0, len);
+                if (buffer.size() > MAXIMUM_PLAYLIST_LENGTH)
+                    throw new IOException("The playlist is too big");
+            }
+        }
+
+        return SegmentPlaylist.parse(mMission.urls[mMission.current], buffer.toString("UTF-8"));
+    }
+
     @Override
     public void interrupt() {
         super.interrupt();
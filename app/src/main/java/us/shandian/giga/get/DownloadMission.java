@@ -9,25 +9,29 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.grack.nanojson.JsonStringWriter;
+
 import org.schabi.newpipe.DownloaderImpl;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.net.ConnectException;
-import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
-import java.net.URL;
 import java.net.UnknownHostException;
 import java.nio.channels.ClosedByInterruptException;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 import javax.net.ssl.SSLException;
 
 import org.schabi.newpipe.streams.io.StoredFileHelper;
 import us.shandian.giga.postprocessing.Postprocessing;
+import us.shandian.giga.postprocessing.PostprocessingExecutor;
 import us.shandian.giga.service.DownloadManagerService;
 import us.shandian.giga.util.Utility;
 
@@ -41,6 +45,13 @@ public class DownloadMission extends Mission {
 
     private static final String TAG = "DownloadMission";
 
+    private static DownloadTransport transport;
+
+    private static final AtomicLongFieldUpdater<DownloadMission> DONE_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(DownloadMission.class, "done");
+    private static final AtomicIntegerFieldUpdater<DownloadMission> WRITING_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(DownloadMission.class, "writingToFile");
+
     public static final int ERROR_NOTHING = -1;
     public static final int ERROR_PATH_CREATION = 1000;
     public static final int ERROR_FILE_CREATION = 1001;
@@ -103,6 +114,16 @@ public class DownloadMission extends Mission {
      */
     public transient File metadata;
 
+    /**
+     * Incremented every time the metadata is written, the journal belongs to this version
+     */
+    private long metadataVersion;
+
+    /**
+     * Progress saved between the writes of the metadata
+     */
+    private transient MissionJournal journal;
+
     /**
      * maximum attempts
      */
@@ -120,6 +141,12 @@ public class DownloadMission extends Mission {
      */
     int[] blocks;
 
+    /**
+     * The segments of the current resource, if the resource is a playlist. Every segment is a
+     * block, and the blocks are written in order {@link DownloadRunnableSegmented}
+     */
+    String[] segments;
+
     /**
      * Download/File resume offset in fallback mode (if applicable) {@link DownloadRunnableFallback}
      */
@@ -130,6 +157,11 @@ public class DownloadMission extends Mission {
      */
     public int threadCount = 3;
 
+    /**
+     * Weight and priority of the mission when the download speed is limited
+     */
+    public BandwidthScheduler.Share bandwidth = new BandwidthScheduler.Share();
+
     /**
      * information required to recover a download
      */
@@ -143,16 +175,24 @@ public class DownloadMission extends Mission {
     public Exception errObject = null;
 
     public transient Handler mHandler;
-    private transient boolean[] blockAcquired;
+    transient BlockTable blockTable;
+    transient SegmentAssembler assembler;
 
-    private transient long writingToFileNext;
-    private transient volatile boolean writingToFile;
+    /**
+     * Throughput and latency measurements, since the app was opened
+     */
+    @NonNull
+    public transient MissionMetrics metrics = new MissionMetrics();
+
+    private transient volatile long writingToFileNext;
+    private transient volatile int writingToFile;
 
     final Object LOCK = new Lock();
 
     @NonNull
     public transient Thread[] threads = new Thread[0];
     public transient Thread init = null;
+    private transient Thread refresh = null;
 
     public DownloadMission(String[] urls, StoredFileHelper storage, char kind, Postprocessing psInstance) {
         if (Objects.requireNonNull(urls).length < 1)
@@ -171,39 +211,28 @@ public class DownloadMission extends Mission {
     }
 
     /**
-     * Acquire a block
-     *
-     * @return the block or {@code null} if no more blocks left
+     * Gets the transport used by all missions, the connections are shared with the extractor
+     * requests
      */
-    @Nullable
-    Block acquireBlock() {
-        synchronized (LOCK) {
-            for (int i = 0; i < blockAcquired.length; i++) {
-                if (!blockAcquired[i] && blocks[i] >= 0) {
-                    Block block = new Block();
-                    block.position = i;
-                    block.done = blocks[i];
-
-                    blockAcquired[i] = true;
-                    return block;
-                }
-            }
+    static synchronized DownloadTransport getTransport() {
+        if (transport == null) {
+            DownloaderImpl downloader = DownloaderImpl.getInstance();
+            if (downloader == null)
+                transport = new HttpUrlConnectionTransport();
+            else
+                transport = new OkHttpTransport(downloader.getClient());
         }
 
-        return null;
+        return transport;
     }
 
     /**
-     * Release an block
+     * Changes the transport used to open the connections
      *
-     * @param position the index of the block
-     * @param done     amount of bytes downloaded
+     * @param newTransport the transport, or {@code null} to use the default one
      */
-    void releaseBlock(int position, int done) {
-        synchronized (LOCK) {
-            blockAcquired[position] = false;
-            blocks[position] = done;
-        }
+    public static synchronized void setTransport(@Nullable DownloadTransport newTransport) {
+        transport = newTransport;
     }
 
     /**
@@ -212,25 +241,19 @@ public class DownloadMission extends Mission {
      * @param headRequest {@code true} for use {@code HEAD} request method, otherwise, {@code GET} is used
      * @param rangeStart  range start
      * @param rangeEnd    range end
-     * @return a {@link java.net.URLConnection URLConnection} linking to the URL.
+     * @return a {@link DownloadConnection} linking to the URL.
      * @throws IOException if an I/O exception occurs.
      */
-    HttpURLConnection openConnection(boolean headRequest, long rangeStart, long rangeEnd) throws IOException {
+    DownloadConnection openConnection(boolean headRequest, long rangeStart, long rangeEnd) throws IOException {
         return openConnection(urls[current], headRequest, rangeStart, rangeEnd);
     }
 
-    HttpURLConnection openConnection(String url, boolean headRequest, long rangeStart, long rangeEnd) throws IOException {
-        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
-        conn.setInstanceFollowRedirects(true);
+    DownloadConnection openConnection(String url, boolean headRequest, long rangeStart, long rangeEnd) throws IOException {
+        DownloadConnection conn = getTransport().open(url, headRequest);
         conn.setRequestProperty("User-Agent", DownloaderImpl.USER_AGENT);
         conn.setRequestProperty("Accept", "*/*");
         conn.setRequestProperty("Accept-Encoding", "*");
 
-        if (headRequest) conn.setRequestMethod("HEAD");
-
-        // BUG workaround: switching between networks can freeze the download forever
-        conn.setConnectTimeout(30000);
-
         if (rangeStart >= 0) {
             String req = "bytes=" + rangeStart + "-";
             if (rangeEnd > 0) req += rangeEnd;
@@ -247,8 +270,11 @@ public class DownloadMission extends Mission {
      * @throws IOException if an error occurred connecting to the server.
      * @throws HttpError   if the HTTP Status-Code is not satisfiable
      */
-    void establishConnection(int threadId, HttpURLConnection conn) throws IOException, HttpError {
+    void establishConnection(int threadId, DownloadConnection conn) throws IOException, HttpError {
+        // the request is sent here, both transports wait for the response headers
+        long requestTime = System.nanoTime();
         int statusCode = conn.getResponseCode();
+        metrics.onResponse(System.nanoTime() - requestTime);
 
         if (DEBUG) {
             Log.d(TAG, threadId + ":[request]  Range=" + conn.getRequestProperty("Range"));
@@ -278,19 +304,24 @@ public class DownloadMission extends Mission {
         mHandler.obtainMessage(what, this).sendToTarget();
     }
 
-    synchronized void notifyProgress(long deltaLen) {
+    /**
+     * Adds downloaded bytes, called without locks by the download threads. The state is saved
+     * asynchronously after every {@link #BLOCK_SIZE} bytes
+     *
+     * @param deltaLen amount of bytes, negative if the downloaded data was discarded
+     */
+    void notifyProgress(long deltaLen) {
         if (unknownLength) {
-            length += deltaLen;// Update length before proceeding
+            length += deltaLen;// Update length before proceeding, only one thread is used
         }
 
-        done += deltaLen;
+        long current = DONE_UPDATER.addAndGet(this, deltaLen);
 
         if (metadata == null) return;
 
-        if (!writingToFile && (done > writingToFileNext || deltaLen < 0)) {
-            writingToFile = true;
-            writingToFileNext = done + BLOCK_SIZE;
-            writeThisToFileAsync();
+        if ((current > writingToFileNext || deltaLen < 0) && WRITING_UPDATER.compareAndSet(this, 0, 1)) {
+            writingToFileNext = current + BLOCK_SIZE;
+            runAsync(-2, deltaLen < 0 ? this::writeThisToFile : this::writeProgressToFile);
         }
     }
 
@@ -344,6 +375,8 @@ public class DownloadMission extends Mission {
 
         errCode = code;
         errObject = err;
+        metrics.onStop();
+        stopRefresh();
 
         switch (code) {
             case ERROR_SSL_EXCEPTION:
@@ -380,6 +413,9 @@ public class DownloadMission extends Mission {
             }
         }
 
+        metrics.onStop();
+        stopRefresh();
+
         if (psAlgorithm != null && psState == 0) {
             threads = new Thread[]{
                     runAsync(1, this::doPostprocessing)
@@ -438,6 +474,8 @@ public class DownloadMission extends Mission {
         running = true;
         errCode = ERROR_NOTHING;
 
+        metrics.onStart();
+
         if (hasInvalidStorage()) {
             notifyError(ERROR_FILE_CREATION, null);
             return;
@@ -462,25 +500,52 @@ public class DownloadMission extends Mission {
 
         init = null;
         finishCount = 0;
-        blockAcquired = new boolean[blocks.length];
 
         if (blocks.length < 1) {
             threads = new Thread[]{runAsync(1, new DownloadRunnableFallback(this))};
         } else {
-            int remainingBlocks = 0;
-            for (int block : blocks) if (block >= 0) remainingBlocks++;
+            blockTable = new BlockTable(blocks, threadCount);
+            int remainingBlocks = blockTable.getPendingCount();
 
             if (remainingBlocks < 1) {
                 notifyFinished();
                 return;
             }
 
+            if (segments != null) {
+                // the segments before the first pending one are already written
+                int next = 0;
+                while (blocks[next] < 0) next++;
+
+                assembler = new SegmentAssembler(next, offsets[0] + done);
+            }
+
             threads = new Thread[Math.min(threadCount, remainingBlocks)];
 
             for (int i = 0; i < threads.length; i++) {
-                threads[i] = runAsync(i + 1, new DownloadRunnable(this, i));
+                Thread thread = segments == null ? new DownloadRunnable(this, i) : new DownloadRunnableSegmented(this, i);
+                threads[i] = runAsync(i + 1, thread);
             }
         }
+
+        startRefresh();
+    }
+
+    /**
+     * Refreshes the URL of the current resource in background, before it expires
+     */
+    private void startRefresh() {
+        stopRefresh();
+
+        if (DownloadMissionRefresh.isRefreshable(this))
+            refresh = runAsync(DownloadMissionRefresh.mID, new DownloadMissionRefresh(this));
+    }
+
+    private void stopRefresh() {
+        if (refresh == null) return;
+
+        refresh.interrupt();
+        refresh = null;
     }
 
     /**
@@ -497,6 +562,7 @@ public class DownloadMission extends Mission {
         }
 
         running = false;
+        metrics.onStop();
         notify(DownloadManagerService.MESSAGE_PAUSED);
 
         if (init != null && init.isAlive()) {
@@ -527,7 +593,10 @@ public class DownloadMission extends Mission {
      */
     @Override
     public boolean delete() {
-        if (psAlgorithm != null) psAlgorithm.cleanupTemporalDir();
+        if (psAlgorithm != null) {
+            psAlgorithm.cleanupTemporalDir();
+            psAlgorithm.discardCheckpoint();
+        }
 
         notify(DownloadManagerService.MESSAGE_DELETED);
 
@@ -552,7 +621,9 @@ public class DownloadMission extends Mission {
         threads = new Thread[0];
         fallbackResumeOffset = 0;
         blocks = null;
-        blockAcquired = null;
+        blockTable = null;
+        segments = null;
+        assembler = null;
 
         if (rollback) current = 0;
         if (persistChanges) writeThisToFile();
@@ -570,14 +641,50 @@ public class DownloadMission extends Mission {
      * Write this {@link DownloadMission} to the meta file asynchronously
      * if no thread is already running.
      */
-    void writeThisToFile() {
+    public void writeThisToFile() {
         synchronized (LOCK) {
             if (metadata == null) return;
+            metadataVersion++;
+
+            // started before, the blocks changed while writing are appended to the journal again
+            if (journal == null) journal = new MissionJournal(metadata);
+            try {
+                journal.reset(this);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to start the progress journal", e);
+                journal = null;
+            }
+
             Utility.writeToFile(metadata, this);
-            writingToFile = false;
+            writingToFile = 0;
         }
     }
 
+    /**
+     * Append the download progress to the journal, the whole mission is written to the meta file
+     * if the journal can not be used
+     */
+    private void writeProgressToFile() {
+        synchronized (LOCK) {
+            if (metadata == null) return;
+
+            try {
+                if (journal != null && journal.append(this)) {
+                    writingToFile = 0;
+                    return;
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write the progress journal", e);
+            }
+
+            writeThisToFile();
+        }
+    }
+
+    long getMetadataVersion() {
+        return metadataVersion;
+    }
+
     /**
      * Indicates if the download if fully finished
      *
@@ -647,6 +754,20 @@ public class DownloadMission extends Mission {
         writeThisToFileAsync();
     }
 
+    /**
+     * Changes the share of the bandwidth used by this mission when the download speed is limited
+     *
+     * @param weight   amount of bandwidth compared to the other missions with the same priority,
+     *                 one of the {@code BandwidthScheduler.Share.WEIGHT_*} constants
+     * @param priority one of the {@code BandwidthScheduler.Share.PRIORITY_*} constants, also
+     *                 used to order the post-processing queue
+     */
+    public void setBandwidthShare(int weight, int priority) {
+        bandwidth.weight = weight;
+        bandwidth.priority = priority;
+        writeThisToFileAsync();
+    }
+
     /**
      * Attempts to continue a blocked post-processing
      *
@@ -677,6 +798,31 @@ public class DownloadMission extends Mission {
         return (isPsFailed() || errCode == ERROR_POSTPROCESSING_HOLD) || isFinished();
     }
 
+    /**
+     * Writes the download settings and the measurements of this mission as a JSON object
+     *
+     * @param writer the destination
+     */
+    public void writeDiagnosticsOn(@NonNull JsonStringWriter writer) {
+        writer.object()
+                .value("name", storage.getName())
+                .value("kind", String.valueOf(kind))
+                .value("length", getLength())
+                .value("done", done)
+                .value("thread_count", threadCount)
+                .value("block_size", BLOCK_SIZE)
+                .value("buffer_size", BUFFER_SIZE)
+                .value("resources", urls.length)
+                .value("segments", segments == null ? 0 : segments.length)
+                .value("fallback", blocks != null && blocks.length < 1)
+                .value("running", running)
+                .value("error", errCode);
+
+        metrics.writeJsonOn(writer, "metrics");
+
+        writer.end();
+    }
+
     /**
      * Indicates if mission urls has expired and there an attempt to renovate them
      *
@@ -700,11 +846,13 @@ public class DownloadMission extends Mission {
         Exception exception = null;
 
         try {
-            psAlgorithm.run(this);
+            // waits if too many missions are being post-processed
+            PostprocessingExecutor.getInstance().execute(this, bandwidth.priority);
         } catch (Exception err) {
             Log.e(TAG, "Post-processing failed. " + psAlgorithm.toString(), err);
 
-            if (err instanceof InterruptedIOException || err instanceof ClosedByInterruptException || thread.isInterrupted()) {
+            if (err instanceof InterruptedIOException || err instanceof ClosedByInterruptException ||
+                    err instanceof InterruptedException || thread.isInterrupted()) {
                 notifyError(DownloadMission.ERROR_POSTPROCESSING_STOPPED, null);
                 return;
             }
@@ -749,6 +897,9 @@ public class DownloadMission extends Mission {
     private boolean deleteThisFromFile() {
         synchronized (LOCK) {
             boolean res = metadata.delete();
+            if (journal == null) journal = new MissionJournal(metadata);
+            journal.delete();
+            journal = null;
             metadata = null;
             return res;
         }
@@ -777,6 +928,8 @@ public class DownloadMission extends Mission {
         //   -1:     wait for saving the state by  pause()  method
         //    0:     initializer
         //  >=1:     any download thread
+        //   -3:     recovery of expired urls
+        //   -4:     refresh of urls about to expire
 
         if (DEBUG) {
             who.setName(String.format("%s[%s] %s", TAG, id, storage.getName()));
@@ -795,6 +948,8 @@ public class DownloadMission extends Mission {
     private void joinForThreads(int millis) {
         final Thread currentThread = Thread.currentThread();
 
+        stopRefresh();
+
         if (init != null && init != currentThread && init.isAlive()) {
             init.interrupt();
 
@@ -831,6 +986,13 @@ public class DownloadMission extends Mission {
         }
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+
+        // the field initializers are not run, the missions saved by older versions lack the share
+        if (bandwidth == null) bandwidth = new BandwidthScheduler.Share();
+        metrics = new MissionMetrics();
+    }
 
     static class HttpError extends Exception {
         final int statusCode;
@@ -845,11 +1007,6 @@ public class DownloadMission extends Mission {
         }
     }
 
-    public static class Block {
-        public int position;
-        public int done;
-    }
-
     private static class Lock implements Serializable {
         // java.lang.Object cannot be used because is not serializable
     }
@@ -12,7 +12,6 @@ import org.schabi.newpipe.extractor.stream.VideoStream;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
-import java.net.HttpURLConnection;
 import java.nio.channels.ClosedByInterruptException;
 import java.util.List;
 
@@ -29,7 +28,7 @@ public class DownloadMissionRecover extends Thread {
 
     private final int mErrCode;
 
-    private HttpURLConnection mConn;
+    private DownloadConnection mConn;
     private MissionRecoveryInfo mRecovery;
     private StreamExtractor mExtractor;
 
@@ -48,10 +47,12 @@ public class DownloadMissionRecover extends Thread {
 
         Exception err = null;
         int attempt = 0;
+        long startTime = System.nanoTime();
 
         while (attempt++ < mMission.maxRetry) {
             try {
                 tryRecover();
+                mMission.metrics.onRecovery(System.nanoTime() - startTime, mMission.errCode == DownloadMission.ERROR_NOTHING);
                 return;
             } catch (InterruptedIOException | ClosedByInterruptException e) {
                 return;
@@ -62,6 +63,7 @@ public class DownloadMissionRecover extends Thread {
         }
 
         // give up
+        mMission.metrics.onRecovery(System.nanoTime() - startTime, false);
         mMission.notifyError(mErrCode, err);
     }
 
@@ -127,44 +129,48 @@ public class DownloadMissionRecover extends Thread {
             return;
         }*/
 
-        String url = null;
+        resolve(findUrl(mExtractor, mRecovery));
+    }
 
-        switch (mRecovery.getKind()) {
+    /**
+     * Looks for the stream described by the recovery information
+     *
+     * @param extractor the extractor of the mission source, with the page already fetched
+     * @param recovery  the stream to look for
+     * @return the stream URL, or {@code null} if the stream is not available anymore
+     */
+    static String findUrl(StreamExtractor extractor, MissionRecoveryInfo recovery) throws ExtractionException, IOException {
+        switch (recovery.getKind()) {
             case 'a':
-                for (AudioStream audio : mExtractor.getAudioStreams()) {
-                    if (audio.getAverageBitrate() == mRecovery.getDesiredBitrate() && audio.getFormat() == mRecovery.getFormat()) {
-                        url = audio.getUrl();
-                        break;
+                for (AudioStream audio : extractor.getAudioStreams()) {
+                    if (audio.getAverageBitrate() == recovery.getDesiredBitrate() && audio.getFormat() == recovery.getFormat()) {
+                        return audio.getUrl();
                     }
                 }
-                break;
+                return null;
             case 'v':
                 List<VideoStream> videoStreams;
-                if (mRecovery.isDesired2())
-                    videoStreams = mExtractor.getVideoOnlyStreams();
+                if (recovery.isDesired2())
+                    videoStreams = extractor.getVideoOnlyStreams();
                 else
-                    videoStreams = mExtractor.getVideoStreams();
+                    videoStreams = extractor.getVideoStreams();
                 for (VideoStream video : videoStreams) {
-                    if (video.resolution.equals(mRecovery.getDesired()) && video.getFormat() == mRecovery.getFormat()) {
-                        url = video.getUrl();
-                        break;
+                    if (video.resolution.equals(recovery.getDesired()) && video.getFormat() == recovery.getFormat()) {
+                        return video.getUrl();
                     }
                 }
-                break;
+                return null;
             case 's':
-                for (SubtitlesStream subtitles : mExtractor.getSubtitles(mRecovery.getFormat())) {
+                for (SubtitlesStream subtitles : extractor.getSubtitles(recovery.getFormat())) {
                     String tag = subtitles.getLanguageTag();
-                    if (tag.equals(mRecovery.getDesired()) && subtitles.isAutoGenerated() == mRecovery.isDesired2()) {
-                        url = subtitles.getUrl();
-                        break;
+                    if (tag.equals(recovery.getDesired()) && subtitles.isAutoGenerated() == recovery.isDesired2()) {
+                        return subtitles.getUrl();
                     }
                 }
-                break;
+                return null;
             default:
                 throw new RuntimeException("Unknown stream type");
         }
-
-        resolve(url);
     }
 
     private void resolve(String url) throws IOException, HttpError {
@@ -235,7 +241,7 @@ public class DownloadMissionRecover extends Thread {
         mMission.start();
     }
 
-    private long[] parseContentRange(String value) {
+    static long[] parseContentRange(String value) {
         long[] range = new long[3];
 
         if (value == null) {
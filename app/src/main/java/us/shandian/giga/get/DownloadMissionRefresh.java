@@ -0,0 +1,208 @@
+package us.shandian.giga.get;
+
+import android.util.Log;
+
+import org.schabi.newpipe.extractor.NewPipe;
+import org.schabi.newpipe.extractor.stream.StreamExtractor;
+
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.concurrent.TimeUnit;
+
+import static org.schabi.newpipe.BuildConfig.DEBUG;
+
+/**
+ * Replaces the URL of the current resource shortly before it expires, the expiration time is read
+ * from the {@code expire} parameter of the URL (used by YouTube). The download threads are not
+ * stopped, the next requests use the new URL, which is refreshed again before it expires. If the
+ * URL can not be refreshed, the download continues and the recovery runs when the server rejects
+ * the expired URL.
+ */
+public class DownloadMissionRefresh extends Thread {
+    private static final String TAG = "DownloadMissionRefresh";
+    static final int mID = -4;
+
+    /**
+     * Time before the expiration to refresh the URL, in milliseconds
+     */
+    private static final long REFRESH_MARGIN = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Time to wait before trying again if the URL could not be refreshed, in milliseconds
+     */
+    private static final long RETRY_DELAY = TimeUnit.MINUTES.toMillis(1);
+
+    private final DownloadMission mMission;
+    private final int mCurrent;
+    private String mUrl;
+
+    private DownloadConnection mConn;
+
+    DownloadMissionRefresh(DownloadMission mission) {
+        mMission = mission;
+        mCurrent = mission.current;
+        mUrl = mission.urls[mission.current];
+    }
+
+    /**
+     * Reads the expiration time of a URL
+     *
+     * @param url the resource URL
+     * @return the expiration time in milliseconds (unix time), or {@code -1} if unknown
+     */
+    static long getExpiration(String url) {
+        if (url == null) return -1;
+
+        int query = url.indexOf('?');
+        if (query < 0) return -1;
+
+        for (String param : url.substring(query + 1).split("&")) {
+            if (!param.startsWith("expire=")) continue;
+
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(param.substring(7)));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        // the parameter can also be a path segment in old URLs
+        int index = url.lastIndexOf("/expire/", query);
+        if (index < 0) return -1;
+
+        int end = url.indexOf('/', index + 8);
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(url.substring(index + 8, end < 0 ? query : end)));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Checks if the URL of the current resource of a mission can be refreshed
+     *
+     * @param mission the mission
+     * @return {@code true} if the URL expires and can be found again from the mission source
+     */
+    static boolean isRefreshable(DownloadMission mission) {
+        return mission.source != null && mission.recoveryInfo != null && mission.segments == null
+                && !mission.unknownLength && mission.current < mission.urls.length
+                && getExpiration(mission.urls[mission.current]) > 0;
+    }
+
+    @Override
+    public void run() {
+        long expiration = getExpiration(mUrl);
+
+        try {
+            long delay = expiration - REFRESH_MARGIN - System.currentTimeMillis();
+
+            while (true) {
+                if (delay > 0) Thread.sleep(delay);
+                if (!isCurrent()) return;
+
+                long startTime = System.nanoTime();
+                String url = null;
+
+                try {
+                    url = refresh();
+                } catch (InterruptedIOException | ClosedByInterruptException e) {
+                    return;
+                } catch (Exception e) {
+                    if (!isCurrent()) return;
+                    Log.w(TAG, "Failed to refresh the URL of " + mMission.storage.getName(), e);
+                }
+
+                mMission.metrics.onRefresh(System.nanoTime() - startTime, url != null);
+
+                if (url != null) {
+                    mUrl = url;
+                    expiration = getExpiration(url);
+                    if (expiration < 0) return;
+
+                    delay = expiration - REFRESH_MARGIN - System.currentTimeMillis();
+                    continue;
+                }
+
+                // keep trying until the URL expires, after that the recovery takes care of it
+                if (System.currentTimeMillis() + RETRY_DELAY >= expiration) return;
+                delay = RETRY_DELAY;
+            }
+        } catch (InterruptedException e) {
+            // the mission was paused or finished
+        }
+    }
+
+    private boolean isCurrent() {
+        return mMission.running && mMission.errCode == DownloadMission.ERROR_NOTHING
+                && mMission.current == mCurrent && mUrl.equals(mMission.urls[mCurrent])
+                && !isInterrupted();
+    }
+
+    /**
+     * Looks for the new URL of the resource and swaps it if the resource is the same
+     *
+     * @return the new URL, or {@code null} if the URL was not replaced
+     */
+    private String refresh() throws Exception {
+        StreamExtractor extractor = NewPipe.getServiceByUrl(mMission.source).getStreamExtractor(mMission.source);
+        extractor.fetchPage();
+
+        if (!isCurrent()) return null;
+
+        String url = DownloadMissionRecover.findUrl(extractor, mMission.recoveryInfo[mCurrent]);
+        if (url == null || url.equals(mUrl)) return null;
+
+        if (!isSameResource(url)) {
+            // the data already downloaded does not match, only a recovery can handle this
+            if (DEBUG) Log.d(TAG, "the resource has changed, the URL is not replaced");
+            return null;
+        }
+
+        synchronized (mMission.LOCK) {
+            if (!isCurrent()) return null;
+            mMission.urls[mCurrent] = url;
+        }
+
+        Log.i(TAG, String.format("refresh()  name=%s  url=%s", mMission.storage.getName(), url));
+
+        mMission.writeThisToFile();
+        return url;
+    }
+
+    /**
+     * Checks with a range request if the new URL serves the same resource
+     */
+    private boolean isSameResource(String url) throws Exception {
+        String condition = mMission.recoveryInfo[mCurrent].getValidateCondition();
+
+        try {
+            mConn = mMission.openConnection(url, true, mMission.length - 10, mMission.length);
+            if (condition != null) mConn.setRequestProperty("If-Range", condition);
+            mMission.establishConnection(mID, mConn);
+
+            if (mConn.getResponseCode() != 206) return false;
+
+            long[] contentRange = DownloadMissionRecover.parseContentRange(mConn.getHeaderField("Content-Range"));
+            return contentRange[2] == mMission.length;
+        } finally {
+            disconnect();
+        }
+    }
+
+    private void disconnect() {
+        try {
+            mConn.disconnect();
+        } catch (Exception e) {
+            // nothing to do
+        } finally {
+            mConn = null;
+        }
+    }
+
+    @Override
+    public void interrupt() {
+        super.interrupt();
+        if (mConn != null) disconnect();
+    }
+}
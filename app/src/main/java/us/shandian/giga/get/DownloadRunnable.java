@@ -6,11 +6,10 @@ import org.schabi.newpipe.streams.io.SharpStream;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.nio.channels.ClosedByInterruptException;
 import java.util.Objects;
 
-import us.shandian.giga.get.DownloadMission.Block;
+import us.shandian.giga.get.BlockTable.Block;
 import us.shandian.giga.get.DownloadMission.HttpError;
 
 import static org.schabi.newpipe.BuildConfig.DEBUG;
@@ -24,19 +23,57 @@ import static us.shandian.giga.get.DownloadMission.ERROR_HTTP_FORBIDDEN;
 public class DownloadRunnable extends Thread {
     private static final String TAG = "DownloadRunnable";
 
+    /**
+     * Minimum duration of a request in milliseconds, larger ranges reduce the overhead of the
+     * requests latency
+     */
+    private static final long REQUEST_DURATION = 4000;
+
+    /**
+     * The request duration is at least this multiple of the connection latency
+     */
+    private static final int LATENCY_FACTOR = 10;
+
+    /**
+     * Maximum amount of blocks of a range, big ranges can be throttled by some servers
+     */
+    private static final int MAX_RANGE_BLOCKS = 16;// 8 MiB
+
     private final DownloadMission mMission;
     private final int mId;
 
-    private HttpURLConnection mConn;
+    private DownloadConnection mConn;
+
+    /**
+     * Observed download speed in bytes per second, {@code 0} if unknown
+     */
+    private long mSpeed = 0;
+
+    /**
+     * Observed time in milliseconds to receive the response headers
+     */
+    private long mLatency = 0;
 
     DownloadRunnable(DownloadMission mission, int id) {
         mMission = Objects.requireNonNull(mission);
         mId = id;
     }
 
-    private void releaseBlock(Block block, long remain) {
-        // set the block offset to -1 if it is completed
-        mMission.releaseBlock(block.position, remain < 0 ? -1 : block.done);
+    /**
+     * Calculates the amount of blocks to request, based on the observed speed and latency of
+     * this connection
+     */
+    private int getRangeSize() {
+        if (mSpeed < 1) return 1;// nothing measured yet
+
+        long duration = Math.max(REQUEST_DURATION, mLatency * LATENCY_FACTOR);
+        long size = mSpeed * duration / 1000L / DownloadMission.BLOCK_SIZE;
+
+        return (int) Math.max(1, Math.min(size, MAX_RANGE_BLOCKS));
+    }
+
+    private static long average(long previous, long value) {
+        return previous < 1 ? value : (previous + value) / 2;
     }
 
     @Override
@@ -46,6 +83,8 @@ public class DownloadRunnable extends Thread {
         int retryCount = 0;
         SharpStream f;
 
+        MissionMetrics.ThreadMetrics metrics = mMission.metrics.getThread(mId);
+
         try {
             f = mMission.storage.getStream();
         } catch (IOException e) {
@@ -55,7 +94,9 @@ public class DownloadRunnable extends Thread {
 
         while (mMission.running && mMission.errCode == DownloadMission.ERROR_NOTHING) {
             if (!retry) {
-                block = mMission.acquireBlock();
+                long waitTime = System.nanoTime();
+                block = mMission.blockTable.acquire(mId, getRangeSize());
+                metrics.onBlockWait(System.nanoTime() - waitTime);
             }
 
             if (block == null) {
@@ -63,26 +104,27 @@ public class DownloadRunnable extends Thread {
                 break;
             }
 
+            // until measured, the range is expected to be downloaded at the connection speed
+            if (block.speed < 1) block.speed = mSpeed;
+
             if (DEBUG) {
                 if (retry)
-                    Log.d(TAG, mId + ":retry block at position=" + block.position + " from the start");
+                    Log.d(TAG, mId + ":retry block at position=" + block.getPosition() + " from the start");
                 else
-                    Log.d(TAG, mId + ":acquired block at position=" + block.position + " done=" + block.done);
+                    Log.d(TAG, mId + ":acquired blocks at position=" + block.getPosition() + " end=" + block.getEnd() + " done=" + block.done);
             }
 
-            long start = (long)block.position * DownloadMission.BLOCK_SIZE;
-            long end = start + DownloadMission.BLOCK_SIZE - 1;
-
-            start += block.done;
-
-            if (end >= mMission.length) {
-                end = mMission.length - 1;
-            }
+            long start = (long) block.getPosition() * DownloadMission.BLOCK_SIZE + block.done;
+            long end = Math.min((long) block.getEnd() * DownloadMission.BLOCK_SIZE, mMission.length) - 1;
 
             try {
+                long requestTime = System.nanoTime();
+
                 mConn = mMission.openConnection(false, start, end);
                 mMission.establishConnection(mId, mConn);
 
+                mLatency = average(mLatency, (System.nanoTime() - requestTime) / 1000000L);
+
                 // check if the download can be resumed
                 if (mConn.getResponseCode() == 416) {
                     if (block.done > 0) {
@@ -90,6 +132,7 @@ public class DownloadRunnable extends Thread {
                         mMission.notifyProgress(-block.done);
                         block.done = 0;
                         retry = true;
+                        metrics.onRetry();
                         mConn.disconnect();
                         continue;
                     }
@@ -112,20 +155,68 @@ public class DownloadRunnable extends Thread {
 
                 try (InputStream is = mConn.getInputStream()) {
                     byte[] buf = new byte[DownloadMission.BUFFER_SIZE];
+                    boolean owned = true;
+                    long blockEnd = -1;
+                    long transferTime = System.currentTimeMillis();
+                    long transferred = 0;
+                    int unreported = 0;
+                    long readTime = System.nanoTime();
+                    boolean firstRead = true;
                     int len;
 
-                    // use always start <= end
-                    // fixes a deadlock because in some videos, youtube is sending one byte alone
-                    while (start <= end && mMission.running && (len = is.read(buf, 0, buf.length)) != -1) {
-                        f.write(buf, 0, len);
-                        start += len;
-                        block.done += len;
-                        mMission.notifyProgress(len);
+                    try {
+                        while (owned && mMission.running && (len = is.read(buf, 0, buf.length)) != -1) {
+                            metrics.onTransfer(len, System.nanoTime() - readTime);
+                            if (firstRead) {
+                                metrics.onFirstByte(System.nanoTime() - requestTime);
+                                firstRead = false;
+                            }
+                            BandwidthScheduler.getInstance().acquire(mMission.bandwidth, len);
+
+                            for (int offset = 0; offset < len; ) {
+                                // never write past the current block, the next one can be owned by other thread
+                                if (blockEnd <= start) {
+                                    blockEnd = (block.getPosition() + 1L) * DownloadMission.BLOCK_SIZE;
+                                    blockEnd = Math.min(blockEnd, mMission.length);
+                                }
+
+                                int count = (int) Math.min(len - offset, blockEnd - start);
+                                long writeTime = System.nanoTime();
+                                f.write(buf, offset, count);
+                                metrics.onDiskWrite(System.nanoTime() - writeTime);
+                                offset += count;
+                                start += count;
+                                block.done += count;
+                                unreported += count;
+
+                                if (start >= blockEnd && !mMission.blockTable.next(block)) {
+                                    // the range is finished, or the remaining blocks were stolen
+                                    owned = false;
+                                    break;
+                                }
+                            }
+
+                            // report the progress in batches, avoids contention between the threads
+                            if (unreported >= DownloadMission.BUFFER_SIZE) {
+                                mMission.notifyProgress(unreported);
+                                unreported = 0;
+                            }
+
+                            transferred += len;
+                            long elapsed = System.currentTimeMillis() - transferTime;
+                            if (elapsed > 0) block.speed = transferred * 1000L / elapsed;
+
+                            readTime = System.nanoTime();
+                        }
+                    } finally {
+                        if (unreported > 0) mMission.notifyProgress(unreported);
                     }
+
+                    if (block.speed > 0) mSpeed = average(mSpeed, block.speed);
                 }
 
                 if (DEBUG && mMission.running) {
-                    Log.d(TAG, mId + ":position " + block.position + " stopped " + start + "/" + end);
+                    Log.d(TAG, mId + ":position " + block.getPosition() + " stopped " + start + "/" + end + " speed=" + mSpeed);
                 }
             } catch (Exception e) {
                 if (!mMission.running || e instanceof ClosedByInterruptException) break;
@@ -147,8 +238,9 @@ public class DownloadRunnable extends Thread {
                 }
 
                 retry = true;
+                metrics.onRetry();
             } finally {
-                if (!retry) releaseBlock(block, end - start);
+                if (!retry) mMission.blockTable.release(mId, block);
             }
         }
 
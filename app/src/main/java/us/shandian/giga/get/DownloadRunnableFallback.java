@@ -8,11 +8,9 @@ import org.schabi.newpipe.streams.io.SharpStream;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.nio.channels.ClosedByInterruptException;
 
 import us.shandian.giga.get.DownloadMission.HttpError;
-import us.shandian.giga.util.Utility;
 
 import static org.schabi.newpipe.BuildConfig.DEBUG;
 import static us.shandian.giga.get.DownloadMission.ERROR_HTTP_FORBIDDEN;
@@ -28,7 +26,7 @@ public class DownloadRunnableFallback extends Thread {
     private int mRetryCount = 0;
     private InputStream mIs;
     private SharpStream mF;
-    private HttpURLConnection mConn;
+    private DownloadConnection mConn;
 
     DownloadRunnableFallback(@NonNull DownloadMission mission) {
         mMission = mission;
@@ -52,6 +50,7 @@ public class DownloadRunnableFallback extends Thread {
     public void run() {
         boolean done;
         long start = mMission.fallbackResumeOffset;
+        MissionMetrics.ThreadMetrics metrics = mMission.metrics.getThread(1);
 
         if (DEBUG && !mMission.unknownLength && start > 0) {
             Log.i(TAG, "Resuming a single-thread download at " + start);
@@ -61,6 +60,7 @@ public class DownloadRunnableFallback extends Thread {
             long rangeStart = (mMission.unknownLength || start < 1) ? -1 : start;
 
             int mId = 1;
+            long requestTime = System.nanoTime();
             mConn = mMission.openConnection(false, rangeStart, -1);
 
             if (mRetryCount == 0 && rangeStart == -1) {
@@ -80,7 +80,7 @@ public class DownloadRunnableFallback extends Thread {
 
             // secondary check for the file length
             if (!mMission.unknownLength)
-                mMission.unknownLength = Utility.getContentLength(mConn) == -1;
+                mMission.unknownLength = mConn.getContentLength() == -1;
 
             if (mMission.unknownLength || mConn.getResponseCode() == 200) {
                 // restart amount of bytes downloaded
@@ -93,12 +93,25 @@ public class DownloadRunnableFallback extends Thread {
             mIs = mConn.getInputStream();
 
             byte[] buf = new byte[DownloadMission.BUFFER_SIZE];
+            long readTime = System.nanoTime();
+            boolean firstRead = true;
             int len = 0;
 
             while (mMission.running && (len = mIs.read(buf, 0, buf.length)) != -1) {
+                metrics.onTransfer(len, System.nanoTime() - readTime);
+                if (firstRead) {
+                    metrics.onFirstByte(System.nanoTime() - requestTime);
+                    firstRead = false;
+                }
+                BandwidthScheduler.getInstance().acquire(mMission.bandwidth, len);
+
+                long writeTime = System.nanoTime();
                 mF.write(buf, 0, len);
+                metrics.onDiskWrite(System.nanoTime() - writeTime);
+
                 start += len;
                 mMission.notifyProgress(len);
+                readTime = System.nanoTime();
             }
 
             dispose();
@@ -128,6 +141,8 @@ public class DownloadRunnableFallback extends Thread {
                 Log.e(TAG, "got exception, retrying...", e);
             }
 
+            metrics.onRetry();
+
             run();// try again
             return;
         }
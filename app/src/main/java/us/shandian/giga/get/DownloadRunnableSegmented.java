@@ -0,0 +1,158 @@
+package us.shandian.giga.get;
+
+import android.util.Log;
+
+import org.schabi.newpipe.streams.io.SharpStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.Objects;
+
+import us.shandian.giga.get.BlockTable.Block;
+
+import static org.schabi.newpipe.BuildConfig.DEBUG;
+
+/**
+ * Runnable to download the segments of a playlist. Every thread downloads a segment in memory,
+ * then waits until the previous segments are written to write it. A failed segment is retried by
+ * the same thread, the next segments can not be written without it.
+ */
+public class DownloadRunnableSegmented extends Thread {
+    private static final String TAG = "DownloadRunnableSeg";
+
+    private final DownloadMission mMission;
+    private final int mId;
+
+    private DownloadConnection mConn;
+
+    DownloadRunnableSegmented(DownloadMission mission, int id) {
+        mMission = Objects.requireNonNull(mission);
+        mId = id;
+    }
+
+    @Override
+    public void run() {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(DownloadMission.BLOCK_SIZE);
+        Block block = null;
+        int retryCount = 0;
+        SharpStream f;
+
+        MissionMetrics.ThreadMetrics metrics = mMission.metrics.getThread(mId);
+
+        try {
+            f = mMission.storage.getStream();
+        } catch (IOException e) {
+            mMission.notifyError(e);// this never should happen
+            return;
+        }
+
+        while (mMission.running && mMission.errCode == DownloadMission.ERROR_NOTHING) {
+            if (block == null) {
+                long waitTime = System.nanoTime();
+                block = mMission.blockTable.acquire(mId, 1);
+                metrics.onBlockWait(System.nanoTime() - waitTime);
+
+                if (block == null) {
+                    if (DEBUG) Log.d(TAG, mId + ":no more segments left, exiting");
+                    break;
+                }
+            }
+
+            int segment = block.getPosition();
+
+            try {
+                buffer.reset();
+
+                long requestTime = System.nanoTime();
+                mConn = mMission.openConnection(mMission.segments[segment], false, -1, -1);
+                mMission.establishConnection(mId, mConn);
+
+                try (InputStream is = mConn.getInputStream()) {
+                    byte[] buf = new byte[DownloadMission.BUFFER_SIZE];
+                    long readTime = System.nanoTime();
+                    boolean firstRead = true;
+                    int len;
+
+                    while (mMission.running && (len = is.read(buf, 0, buf.length)) != -1) {
+                        metrics.onTransfer(len, System.nanoTime() - readTime);
+                        if (firstRead) {
+                            metrics.onFirstByte(System.nanoTime() - requestTime);
+                            firstRead = false;
+                        }
+                        BandwidthScheduler.getInstance().acquire(mMission.bandwidth, len);
+                        buffer.write(buf, 0, len);
+                        readTime = System.nanoTime();
+                    }
+                }
+
+                if (!mMission.running) break;
+
+                // waiting for the previous segments is also time without a block to download
+                long waitTime = System.nanoTime();
+                long position = mMission.assembler.awaitTurn(segment);
+                metrics.onBlockWait(System.nanoTime() - waitTime);
+
+                long writeTime = System.nanoTime();
+                f.seek(position);
+                f.write(buffer.toByteArray());
+                metrics.onDiskWrite(System.nanoTime() - writeTime);
+
+                long written = position + buffer.size() - mMission.offsets[mMission.current];
+
+                // the segment and the progress are saved together, the segment is not written twice
+                synchronized (mMission.LOCK) {
+                    mMission.blockTable.next(block);
+                    mMission.notifyProgress(buffer.size());
+
+                    // the final length is unknown until the last segment, estimate it
+                    mMission.length = written * mMission.segments.length / (segment + 1);
+                }
+
+                mMission.assembler.advance(buffer.size());
+                mMission.blockTable.release(mId, block);
+                block = null;
+
+                if (DEBUG) {
+                    Log.d(TAG, mId + ":segment " + segment + " written, length=" + buffer.size());
+                }
+            } catch (Exception e) {
+                if (!mMission.running || e instanceof ClosedByInterruptException || e instanceof InterruptedException)
+                    break;
+
+                if (retryCount++ >= mMission.maxRetry) {
+                    mMission.notifyError(e);
+                    break;
+                }
+
+                metrics.onRetry();
+
+                if (DEBUG) {
+                    Log.e(TAG, mId + ":segment " + segment + " failed, retrying", e);
+                }
+            } finally {
+                if (mConn != null) mConn.disconnect();
+            }
+        }
+
+        if (block != null) mMission.blockTable.release(mId, block);
+
+        f.close();
+
+        if (mMission.errCode == DownloadMission.ERROR_NOTHING && mMission.running) {
+            mMission.notifyFinished();
+        }
+    }
+
+    @Override
+    public void interrupt() {
+        super.interrupt();
+
+        try {
+            if (mConn != null) mConn.disconnect();
+        } catch (Exception e) {
+            // nothing to do
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package us.shandian.giga.get;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+/**
+ * Opens the HTTP connections used by the downloader
+ */
+public interface DownloadTransport {
+
+    /**
+     * Creates a request, nothing is sent until the response is read
+     *
+     * @param url         the resource url
+     * @param headRequest {@code true} to use the {@code HEAD} method, otherwise, {@code GET}
+     * @return the connection
+     * @throws IOException if the url is invalid
+     */
+    @NonNull
+    DownloadConnection open(@NonNull String url, boolean headRequest) throws IOException;
+}
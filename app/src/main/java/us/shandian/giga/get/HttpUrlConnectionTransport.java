@@ -0,0 +1,86 @@
+package us.shandian.giga.get;
+
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Transport based on {@link HttpURLConnection}, every request opens a new connection
+ */
+public class HttpUrlConnectionTransport implements DownloadTransport {
+
+    @NonNull
+    @Override
+    public DownloadConnection open(@NonNull String url, boolean headRequest) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setInstanceFollowRedirects(true);
+
+        if (headRequest) conn.setRequestMethod("HEAD");
+
+        // BUG workaround: switching between networks can freeze the download forever
+        conn.setConnectTimeout(30000);
+
+        return new Connection(conn);
+    }
+
+    private static class Connection implements DownloadConnection {
+        private final HttpURLConnection conn;
+
+        Connection(HttpURLConnection conn) {
+            this.conn = conn;
+        }
+
+        @Override
+        public void setRequestProperty(@NonNull String name, @NonNull String value) {
+            conn.setRequestProperty(name, value);
+        }
+
+        @Nullable
+        @Override
+        public String getRequestProperty(@NonNull String name) {
+            return conn.getRequestProperty(name);
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            return conn.getResponseCode();
+        }
+
+        @Nullable
+        @Override
+        public String getHeaderField(@NonNull String name) {
+            return conn.getHeaderField(name);
+        }
+
+        @Override
+        public long getContentLength() {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                return conn.getContentLengthLong();
+            }
+
+            try {
+                return Long.parseLong(conn.getHeaderField("Content-Length"));
+            } catch (Exception err) {
+                // nothing to do
+            }
+
+            return -1;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return conn.getInputStream();
+        }
+
+        @Override
+        public void disconnect() {
+            conn.disconnect();
+        }
+    }
+}
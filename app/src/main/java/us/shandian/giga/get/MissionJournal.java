@@ -0,0 +1,181 @@
+package us.shandian.giga.get;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Append-only journal with the download progress of a mission, stored next to the mission
+ * metadata. The metadata (the whole mission serialized) is only rewritten when the mission state
+ * changes, while the progress is appended here as small records with the changed blocks.
+ * <p>
+ * The journal starts with the version of the metadata it belongs to, and is discarded if the
+ * metadata was rewritten later. A record cut by a crash is ignored.
+ */
+public class MissionJournal {
+    private static final String TAG = "MissionJournal";
+
+    private final static String SUFFIX = ".journal";
+    private final static int MAGIC = 0x4E504A31;// "NPJ1"
+    private final static byte RECORD_PROGRESS = 1;
+
+    private final File file;
+
+    /**
+     * The blocks array and the resource of the mission when the metadata was written, the journal
+     * can not describe a new resource
+     */
+    private int[] blocks;
+    private int current;
+
+    /**
+     * The blocks as written in the metadata and the journal, used to find the changed ones
+     */
+    private int[] written;
+
+    public MissionJournal(@NonNull File metadata) {
+        file = new File(metadata.getPath() + SUFFIX);
+    }
+
+    /**
+     * Checks if a file in the pending missions directory is a journal
+     */
+    public static boolean isJournal(@NonNull File file) {
+        return file.getName().endsWith(SUFFIX);
+    }
+
+    /**
+     * Starts a new empty journal, must be called before writing the metadata. If the metadata
+     * can not be written, the version does not match and the journal is ignored
+     *
+     * @param mission the mission, with the version of the metadata to be written
+     * @throws IOException if the journal can not be written
+     */
+    void reset(@NonNull DownloadMission mission) throws IOException {
+        blocks = null;
+
+        try (DataOutputStream stream = new DataOutputStream(new FileOutputStream(file))) {
+            stream.writeInt(MAGIC);
+            stream.writeLong(mission.getMetadataVersion());
+        }
+
+        blocks = mission.blocks;
+        current = mission.current;
+        written = blocks == null ? null : blocks.clone();
+    }
+
+    /**
+     * Appends the current progress of the mission, only the changed blocks are written
+     *
+     * @param mission the mission
+     * @return {@code false} if the metadata must be written instead, the mission started a new
+     * resource or the journal was not started
+     * @throws IOException if the journal can not be written
+     */
+    boolean append(@NonNull DownloadMission mission) throws IOException {
+        if (blocks == null || mission.blocks != blocks || mission.current != current) return false;
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+        DataOutputStream record = new DataOutputStream(buffer);
+
+        int count = 0;
+        for (int i = 0; i < blocks.length; i++) if (blocks[i] != written[i]) count++;
+
+        record.writeByte(RECORD_PROGRESS);
+        record.writeLong(mission.done);
+        record.writeLong(mission.length);
+        record.writeLong(mission.fallbackResumeOffset);
+        record.writeInt(count);
+
+        for (int i = 0; count > 0 && i < blocks.length; i++) {
+            int value = blocks[i];
+            if (value == written[i]) continue;
+
+            record.writeInt(i);
+            record.writeInt(value);
+            written[i] = value;
+        }
+
+        // a single write per record, a crash can only cut the last record
+        try (FileOutputStream stream = new FileOutputStream(file, true)) {
+            stream.write(buffer.toByteArray());
+        }
+
+        return true;
+    }
+
+    /**
+     * Applies the progress saved in the journal to a mission just read from the metadata
+     *
+     * @param mission the mission
+     * @return {@code true} if the journal belongs to the metadata and was applied
+     */
+    public boolean replay(@NonNull DownloadMission mission) {
+        try (DataInputStream stream =
+                     new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (stream.readInt() != MAGIC || stream.readLong() != mission.getMetadataVersion())
+                return false;
+
+            int[] blocks = mission.blocks;
+            if (blocks == null) return false;
+
+            while (true) {
+                long done;
+                long length;
+                long fallbackResumeOffset;
+                int[] changes;
+
+                try {
+                    if (stream.readByte() != RECORD_PROGRESS) break;
+
+                    done = stream.readLong();
+                    length = stream.readLong();
+                    fallbackResumeOffset = stream.readLong();
+
+                    int count = stream.readInt();
+                    if (count < 0 || count > blocks.length) break;
+
+                    changes = new int[count * 2];
+
+                    for (int i = 0; i < changes.length; i++) changes[i] = stream.readInt();
+                } catch (EOFException e) {
+                    // end of the journal, or the last record was cut
+                    break;
+                }
+
+                for (int i = 0; i < changes.length; i += 2) {
+                    if (changes[i] < 0 || changes[i] >= blocks.length) return true;
+                }
+                for (int i = 0; i < changes.length; i += 2) blocks[changes[i]] = changes[i + 1];
+
+                mission.done = done;
+                mission.length = length;
+                mission.fallbackResumeOffset = fallbackResumeOffset;
+            }
+
+            return true;
+        } catch (FileNotFoundException e) {
+            return false;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read the journal " + file.getName(), e);
+            return false;
+        }
+    }
+
+    public void delete() {
+        blocks = null;
+        written = null;
+        if (file.exists() && !file.delete()) Log.w(TAG, "Unable to delete " + file.getName());
+    }
+}
@@ -0,0 +1,279 @@
+package us.shandian.giga.get;
+
+import androidx.annotation.NonNull;
+
+import com.grack.nanojson.JsonStringWriter;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Throughput and latency of a mission, measured by the download threads while the mission runs.
+ * The measurements are used to tune the amount of threads and the block size, they are not saved
+ * and start again every time the app is opened.
+ */
+public class MissionMetrics {
+    private final TreeMap<Integer, ThreadMetrics> threads = new TreeMap<>();
+    private final LinkedHashMap<String, Long> stages = new LinkedHashMap<>();
+
+    /**
+     * Time until the response headers of every request, including the initializer and recovery
+     */
+    private final Timing requests = new Timing();
+
+    /**
+     * Duration of the recoveries of expired URLs
+     */
+    private final Timing recoveries = new Timing();
+    private int failedRecoveries = 0;
+
+    /**
+     * Duration of the refreshes of URLs about to expire
+     */
+    private final Timing refreshes = new Timing();
+    private int failedRefreshes = 0;
+
+    private long activeTime = 0;
+    private long activeSince = -1;
+
+    synchronized void onStart() {
+        if (activeSince < 0) activeSince = System.nanoTime();
+    }
+
+    synchronized void onStop() {
+        if (activeSince < 0) return;
+
+        activeTime += System.nanoTime() - activeSince;
+        activeSince = -1;
+    }
+
+    synchronized ThreadMetrics getThread(int id) {
+        ThreadMetrics metrics = threads.get(id);
+        if (metrics == null) {
+            metrics = new ThreadMetrics();
+            threads.put(id, metrics);
+        }
+        return metrics;
+    }
+
+    synchronized void onResponse(long time) {
+        requests.add(time);
+    }
+
+    synchronized void onRecovery(long time, boolean recovered) {
+        recoveries.add(time);
+        if (!recovered) failedRecoveries++;
+    }
+
+    synchronized void onRefresh(long time, boolean refreshed) {
+        refreshes.add(time);
+        if (!refreshed) failedRefreshes++;
+    }
+
+    /**
+     * Adds the duration of a post-processing stage, the time of repeated stages is summed
+     *
+     * @param stage name of the stage
+     * @param time  duration in nanoseconds
+     */
+    public synchronized void onStage(@NonNull String stage, long time) {
+        Long previous = stages.get(stage);
+        stages.put(stage, previous == null ? time : previous + time);
+    }
+
+    /**
+     * Gets the time spent downloading, the paused time is not included
+     *
+     * @return the time in nanoseconds
+     */
+    public synchronized long getActiveTime() {
+        if (activeSince < 0) return activeTime;
+        return activeTime + System.nanoTime() - activeSince;
+    }
+
+    /**
+     * Gets the amount of bytes downloaded by all threads, since the app was opened
+     */
+    public synchronized long getBytes() {
+        long bytes = 0;
+        for (ThreadMetrics thread : threads.values()) bytes += thread.getBytes();
+        return bytes;
+    }
+
+    /**
+     * Writes the measurements as a JSON object
+     *
+     * @param writer the destination
+     * @param key    the object key, or {@code null} if written in an array
+     */
+    public synchronized void writeJsonOn(@NonNull JsonStringWriter writer, String key) {
+        if (key == null)
+            writer.object();
+        else
+            writer.object(key);
+
+        long active = getActiveTime();
+        writer.value("active_ms", toMillis(active));
+        writer.value("bytes", getBytes());
+        writer.value("bytes_per_second", speed(getBytes(), active));
+
+        requests.writeJsonOn(writer, "response");
+        recoveries.writeJsonOn(writer, "recovery");
+        writer.value("failed_recoveries", failedRecoveries);
+        refreshes.writeJsonOn(writer, "refresh");
+        writer.value("failed_refreshes", failedRefreshes);
+
+        writer.object("postprocessing");
+        for (Map.Entry<String, Long> stage : stages.entrySet())
+            writer.value(stage.getKey() + "_ms", toMillis(stage.getValue()));
+        writer.end();
+
+        writer.array("threads");
+        for (Map.Entry<Integer, ThreadMetrics> thread : threads.entrySet())
+            thread.getValue().writeJsonOn(writer, thread.getKey());
+        writer.end();
+
+        writer.end();
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        long active = getActiveTime();
+        StringBuilder str = new StringBuilder(512);
+
+        str.append(String.format(Locale.ROOT, "speed: %s/s in %.1f s",
+                formatBytes(speed(getBytes(), active)), active / 1e9));
+        str.append("\nrequests: ").append(requests);
+        str.append("\nrecoveries: ").append(recoveries).append(", failed ").append(failedRecoveries);
+        str.append("\nrefreshes: ").append(refreshes).append(", failed ").append(failedRefreshes);
+
+        for (Map.Entry<Integer, ThreadMetrics> thread : threads.entrySet())
+            str.append("\nthread ").append(thread.getKey()).append(": ").append(thread.getValue());
+
+        for (Map.Entry<String, Long> stage : stages.entrySet()) {
+            str.append(String.format(Locale.ROOT, "\npost-processing %s: %.1f s",
+                    stage.getKey(), stage.getValue() / 1e9));
+        }
+
+        return str.toString();
+    }
+
+    private static long speed(long bytes, long time) {
+        return time < 1 ? 0 : (long) (bytes * 1e9 / time);
+    }
+
+    private static double toMillis(long time) {
+        return Math.round(time / 1e4) / 100d;
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format(Locale.ROOT, "%.1f KiB", bytes / 1024d);
+        return String.format(Locale.ROOT, "%.2f MiB", bytes / 1048576d);
+    }
+
+    /**
+     * Measurements of a download thread. Only the owner thread writes them, the lock is never
+     * contended except while the measurements are being read.
+     */
+    static class ThreadMetrics {
+        private final Timing firstByte = new Timing();
+        private final Timing blockWait = new Timing();
+        private final Timing diskWrite = new Timing();
+        private long bytes = 0;
+        private long transferTime = 0;
+        private int retries = 0;
+
+        /**
+         * Adds the time from the request until the first byte of the body was read
+         *
+         * @param time duration in nanoseconds
+         */
+        synchronized void onFirstByte(long time) {
+            firstByte.add(time);
+        }
+
+        synchronized void onBlockWait(long time) {
+            blockWait.add(time);
+        }
+
+        synchronized void onDiskWrite(long time) {
+            diskWrite.add(time);
+        }
+
+        /**
+         * @param bytes amount of bytes received from a connection
+         * @param time  time spent receiving them, in nanoseconds
+         */
+        synchronized void onTransfer(long bytes, long time) {
+            this.bytes += bytes;
+            transferTime += time;
+        }
+
+        synchronized void onRetry() {
+            retries++;
+        }
+
+        synchronized long getBytes() {
+            return bytes;
+        }
+
+        synchronized void writeJsonOn(JsonStringWriter writer, int id) {
+            writer.object()
+                    .value("id", id)
+                    .value("bytes", bytes)
+                    .value("bytes_per_second", speed(bytes, transferTime))
+                    .value("retries", retries);
+
+            firstByte.writeJsonOn(writer, "first_byte");
+            blockWait.writeJsonOn(writer, "block_wait");
+            diskWrite.writeJsonOn(writer, "disk_write");
+
+            writer.end();
+        }
+
+        @NonNull
+        @Override
+        public synchronized String toString() {
+            return formatBytes(speed(bytes, transferTime)) + "/s, " + retries + " retries"
+                    + ", first byte " + firstByte + ", block wait " + blockWait
+                    + ", disk write " + diskWrite;
+        }
+    }
+
+    /**
+     * Count, total and maximum of a duration, the caller must hold the lock of the owner
+     */
+    private static class Timing {
+        private int count = 0;
+        private long total = 0;
+        private long max = 0;
+
+        void add(long time) {
+            count++;
+            total += time;
+            if (time > max) max = time;
+        }
+
+        void writeJsonOn(JsonStringWriter writer, String key) {
+            writer.object(key)
+                    .value("count", count)
+                    .value("average_ms", count < 1 ? 0 : toMillis(total / count))
+                    .value("max_ms", toMillis(max))
+                    .value("total_ms", toMillis(total))
+                    .end();
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            if (count < 1) return "0";
+
+            return String.format(Locale.ROOT, "%d, avg %.1f ms, max %.1f ms",
+                    count, total / count / 1e6, max / 1e6);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package us.shandian.giga.get;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Transport based on OkHttp. The connection pool is shared with the given client, so the
+ * connections, TLS sessions and HTTP/2 streams are reused between blocks and between the
+ * requests of the extractor.
+ */
+public class OkHttpTransport implements DownloadTransport {
+    private final OkHttpClient client;
+
+    public OkHttpTransport(@NonNull OkHttpClient client) {
+        // BUG workaround: switching between networks can freeze the download forever
+        this.client = client.newBuilder()
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @NonNull
+    @Override
+    public DownloadConnection open(@NonNull String url, boolean headRequest) throws IOException {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null) throw new IOException("Invalid url: " + url);
+
+        return new Connection(httpUrl, headRequest);
+    }
+
+    private class Connection implements DownloadConnection {
+        private final HttpUrl url;
+        private final boolean headRequest;
+        private final Headers.Builder headers = new Headers.Builder();
+
+        private volatile Call call;
+        private volatile boolean disconnected = false;
+        private volatile Response response;
+
+        Connection(HttpUrl url, boolean headRequest) {
+            this.url = url;
+            this.headRequest = headRequest;
+        }
+
+        @NonNull
+        private synchronized Response execute() throws IOException {
+            if (response != null) return response;
+            if (disconnected) throw new IOException("Canceled");
+
+            Request.Builder request = new Request.Builder()
+                    .url(url)
+                    .headers(headers.build());
+
+            if (headRequest) request.head();
+
+            call = client.newCall(request.build());
+            response = call.execute();
+            return response;
+        }
+
+        @Override
+        public void setRequestProperty(@NonNull String name, @NonNull String value) {
+            headers.set(name, value);
+        }
+
+        @Nullable
+        @Override
+        public String getRequestProperty(@NonNull String name) {
+            return headers.get(name);
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            return execute().code();
+        }
+
+        @Nullable
+        @Override
+        public String getHeaderField(@NonNull String name) {
+            try {
+                return execute().header(name);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public long getContentLength() {
+            try {
+                return Long.parseLong(getHeaderField("Content-Length"));
+            } catch (Exception err) {
+                return -1;
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            ResponseBody body = execute().body();
+            if (body == null) throw new IOException("The response has no body");
+
+            return body.byteStream();
+        }
+
+        @Override
+        public void disconnect() {
+            disconnected = true;
+
+            // if the body was read completely, the connection goes back to the pool
+            Response currentResponse = response;
+            if (currentResponse != null) currentResponse.close();
+
+            // otherwise, abort the request or the body being read by other thread
+            Call currentCall = call;
+            if (currentCall != null) currentCall.cancel();
+        }
+    }
+}
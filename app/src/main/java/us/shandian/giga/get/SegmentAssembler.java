@@ -0,0 +1,46 @@
+package us.shandian.giga.get;
+
+/**
+ * Writes the segments in order. The download threads fetch the segments concurrently, and wait
+ * here until the previous segments are written.
+ */
+class SegmentAssembler {
+
+    /**
+     * The first segment not written yet
+     */
+    private int next;
+
+    /**
+     * The file offset where the next segment is written
+     */
+    private long position;
+
+    SegmentAssembler(int next, long position) {
+        this.next = next;
+        this.position = position;
+    }
+
+    /**
+     * Waits until all the segments before the given one are written
+     *
+     * @param segment index of the segment
+     * @return the file offset where the segment must be written
+     * @throws InterruptedException if the download was stopped while waiting
+     */
+    synchronized long awaitTurn(int segment) throws InterruptedException {
+        while (next != segment) wait();
+        return position;
+    }
+
+    /**
+     * Moves to the next segment, must be called by the owner of the turn after writing
+     *
+     * @param length the length of the written segment
+     */
+    synchronized void advance(long length) {
+        next++;
+        position += length;
+        notifyAll();
+    }
+}
@@ -0,0 +1,109 @@
+package us.shandian.giga.get;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the segments of a HLS media playlist. Every segment is downloaded as a block by the
+ * download threads, and the segments are written one after other in the output file.
+ */
+public class SegmentPlaylist {
+
+    private static final Pattern URI_ATTRIBUTE = Pattern.compile("URI=\"([^\"]*)\"");
+    private static final Pattern METHOD_ATTRIBUTE = Pattern.compile("METHOD=([A-Z0-9-]+)");
+
+    private SegmentPlaylist() {
+    }
+
+    /**
+     * Checks if a resource is a playlist, by the content type or by the extension of the URL
+     *
+     * @param url         the resource URL
+     * @param contentType the {@code Content-Type} header of the response, if available
+     * @return {@code true} if the resource must be downloaded as segments
+     */
+    public static boolean isPlaylist(@NonNull String url, @Nullable String contentType) {
+        if (contentType != null && contentType.toLowerCase(Locale.ROOT).contains("mpegurl"))
+            return true;
+
+        int index = url.indexOf('?');
+        String path = index < 0 ? url : url.substring(0, index);
+
+        return path.toLowerCase(Locale.ROOT).endsWith(".m3u8");
+    }
+
+    /**
+     * Parses a media playlist, the initialization segment (if any) is the first one
+     *
+     * @param url     the playlist URL, used to resolve the relative segment URLs
+     * @param content the playlist
+     * @return the URL of every segment, in playback order
+     * @throws IOException if the playlist is invalid, is a master playlist, is live or uses
+     *                     features not supported (encryption and byte ranges)
+     */
+    @NonNull
+    public static String[] parse(@NonNull String url, @NonNull String content) throws IOException {
+        URI base;
+        try {
+            base = new URI(url);
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid playlist URL", e);
+        }
+
+        String[] lines = content.split("\r?\n");
+        if (lines.length < 1 || !lines[0].trim().startsWith("#EXTM3U"))
+            throw new IOException("The resource is not a HLS playlist");
+
+        ArrayList<String> segments = new ArrayList<>();
+        boolean finished = false;
+
+        for (String line : lines) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+
+            if (!line.startsWith("#")) {
+                segments.add(resolve(base, line));
+            } else if (line.startsWith("#EXT-X-STREAM-INF")) {
+                throw new IOException("Master playlists are not supported, a variant must be chosen");
+            } else if (line.startsWith("#EXT-X-BYTERANGE")) {
+                throw new IOException("Segments with byte ranges are not supported");
+            } else if (line.startsWith("#EXT-X-KEY")) {
+                Matcher method = METHOD_ATTRIBUTE.matcher(line);
+                if (!method.find() || !method.group(1).equals("NONE"))
+                    throw new IOException("Encrypted segments are not supported");
+            } else if (line.startsWith("#EXT-X-MAP")) {
+                if (line.contains("BYTERANGE="))
+                    throw new IOException("Segments with byte ranges are not supported");
+
+                Matcher uri = URI_ATTRIBUTE.matcher(line);
+                if (!uri.find()) throw new IOException("Invalid initialization segment: " + line);
+
+                // only one initialization segment, before the media segments
+                if (segments.isEmpty()) segments.add(resolve(base, uri.group(1)));
+            } else if (line.startsWith("#EXT-X-ENDLIST")) {
+                finished = true;
+            }
+        }
+
+        if (!finished) throw new IOException("Live playlists can not be downloaded");
+        if (segments.isEmpty()) throw new IOException("The playlist has no segments");
+
+        return segments.toArray(new String[0]);
+    }
+
+    private static String resolve(URI base, String reference) throws IOException {
+        try {
+            return base.resolve(new URI(reference)).toString();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("Invalid segment URL: " + reference, e);
+        }
+    }
+}
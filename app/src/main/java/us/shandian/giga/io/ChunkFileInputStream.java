@@ -10,7 +10,7 @@ public class ChunkFileInputStream extends SharpStream {
     private SharpStream source;
     private final long offset;
     private final long length;
-    private long position;
+    private volatile long position;// also read by the OffsetChecker while muxing in background
 
     private long progressReport;
     private final ProgressReport onProgress;
@@ -86,6 +86,24 @@ public class ChunkFileInputStream extends SharpStream {
         return res;
     }
 
+    @Override
+    public long transferTo(SharpStream target, long count) throws IOException {
+        count = Math.min(count, length - position);
+        if (count < 1) {
+            return 0;
+        }
+
+        long res = source.transferTo(target, count);
+        position += res;
+
+        if (onProgress != null && position > progressReport) {
+            onProgress.report(position);
+            progressReport = position + REPORT_INTERVAL;
+        }
+
+        return res;
+    }
+
     @Override
     public long skip(long pos) throws IOException {
         pos = Math.min(pos + position, length);
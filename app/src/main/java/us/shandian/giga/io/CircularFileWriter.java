@@ -7,6 +7,7 @@ import org.schabi.newpipe.streams.io.SharpStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.Objects;
 
 public class CircularFileWriter extends SharpStream {
@@ -23,6 +24,7 @@ public class CircularFileWriter extends SharpStream {
 
     private long reportPosition;
     private long maxLengthKnown = -1;
+    private boolean checkpoints = false;
 
     private BufferedFile out;
     private BufferedFile aux;
@@ -44,6 +46,38 @@ public class CircularFileWriter extends SharpStream {
         reportPosition = NOTIFY_BYTES_INTERVAL;
     }
 
+    /**
+     * Continues the output saved by a checkpoint, see {@link #checkpoint(long)}
+     *
+     * @param target       the output file
+     * @param temp         the auxiliar file used before the checkpoint
+     * @param checker      the checker
+     * @param outputLength the output length on the checkpoint
+     * @param auxLength    the auxiliar length on the checkpoint
+     * @throws IOException if the auxiliar file is missing or an I/O error occurs
+     */
+    public CircularFileWriter(SharpStream target, File temp, OffsetChecker checker,
+                              long outputLength, long auxLength) throws IOException {
+        Objects.requireNonNull(checker);
+
+        if (!temp.exists() || temp.length() < auxLength) {
+            throw new IOException("The temporal file of the checkpoint is missing or incomplete");
+        }
+
+        aux = new BufferedFile(temp);
+        out = new BufferedFile(target);
+
+        callback = checker;
+        checkpoints = true;
+
+        out.length = outputLength;
+        out.seek(outputLength);
+        aux.length = auxLength;
+        aux.seek(auxLength);
+
+        reportPosition = outputLength + auxLength + NOTIFY_BYTES_INTERVAL;
+    }
+
     private void flushAuxiliar(long amount) throws IOException {
         if (aux.length < 1) {
             return;
@@ -53,23 +87,14 @@ public class CircularFileWriter extends SharpStream {
         aux.flush();
 
         boolean underflow = aux.offset < aux.length || out.offset < out.length;
-        byte[] buffer = new byte[COPY_BUFFER_SIZE];
 
         aux.target.seek(0);
         out.target.seek(out.length);
 
-        long length = amount;
-        while (length > 0) {
-            int read = (int) Math.min(length, Integer.MAX_VALUE);
-            read = aux.target.read(buffer, 0, Math.min(read, buffer.length));
-
-            if (read < 1) {
-                amount -= length;
-                break;
-            }
-
-            out.writeProof(buffer, read);
-            length -= read;
+        // if both files are backed by a FileChannel, the data is moved without using the heap
+        long moved = transferProof(aux.target, 0, out.target, out.length, amount);
+        if (moved < amount) {
+            amount = moved;// EOF reached
         }
 
         if (underflow) {
@@ -99,11 +124,12 @@ public class CircularFileWriter extends SharpStream {
 
         if (amount < aux.length) {
             // move the excess data to the beginning of the file
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
             long readOffset = amount;
             long writeOffset = 0;
 
             aux.length -= amount;
-            length = aux.length;
+            long length = aux.length;
             while (length > 0) {
                 int read = (int) Math.min(length, Integer.MAX_VALUE);
                 read = aux.target.read(buffer, 0, Math.min(read, buffer.length));
@@ -152,6 +178,51 @@ public class CircularFileWriter extends SharpStream {
         return length;
     }
 
+    /**
+     * Flush any buffer and, if the whole auxiliar file fits before the {@code limit}, move its
+     * content to the output file. The auxiliar file is not modified, so a checkpoint saved before
+     * keeps being valid. Once this method is called the auxiliar file is no longer flushed
+     * automatically, so the written data can be resumed from the lengths returned by
+     * {@link #getOutputLength()} and {@link #getAuxiliarLength()}, until more data is written.
+     *
+     * @param limit the offset checked before the call, where no data should be written, or -1
+     *              if the whole file can be used
+     * @return {@code false} if a seek was done and the current data can not be resumed
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean checkpoint(long limit) throws IOException {
+        checkpoints = true;
+        flush();
+
+        if (out.offset < out.length || aux.offset < aux.length) {
+            return false;// underflow
+        }
+
+        if (aux.length > 0 && (limit == -1 || out.length + aux.length <= limit)) {
+            aux.target.seek(0);
+            out.target.seek(out.length);
+
+            long moved = transferProof(aux.target, 0, out.target, out.length, aux.length);
+            if (moved < aux.length) {
+                throw new IOException("The auxiliar file is truncated, expected " + aux.length + " moved " + moved);
+            }
+
+            out.length += moved;
+            out.offset = out.length;
+            aux.reset();
+        }
+
+        return true;
+    }
+
+    public long getOutputLength() {
+        return out.length;
+    }
+
+    public long getAuxiliarLength() {
+        return aux.length;
+    }
+
     /**
      * Close the file without flushing any buffer
      */
@@ -179,8 +250,22 @@ public class CircularFileWriter extends SharpStream {
 
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
+        push(b, off, null, len);
+    }
+
+    @Override
+    public long transferFrom(SharpStream source, long count) throws IOException {
+        return push(null, 0, source, (int) Math.min(count, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Writes the data from the buffer, or from the source stream if the buffer is {@code null}
+     *
+     * @return the amount of bytes written
+     */
+    private int push(byte[] b, int off, SharpStream source, int len) throws IOException {
         if (len == 0) {
-            return;
+            return 0;
         }
 
         long available;
@@ -200,19 +285,19 @@ public class CircularFileWriter extends SharpStream {
         boolean underflow = offsetAux < aux.length || offsetOut < out.length;
 
         if (usingAux) {
-            // before continue calculate the final length of aux
+            len = aux.push(b, off, source, len);
+
+            // calculate the final length of aux
             long length = offsetAux + len;
             if (underflow) {
                 if (aux.length > length) {
                     length = aux.length;// the length is not changed
                 }
             } else {
-                length = aux.length + len;
+                length = aux.length;
             }
 
-            aux.write(b, off, len);
-
-            if (length >= THRESHOLD_AUX_LENGTH && length <= available) {
+            if (!checkpoints && length >= THRESHOLD_AUX_LENGTH && length <= available) {
                 flushAuxiliar(available);
             }
         } else {
@@ -221,14 +306,13 @@ public class CircularFileWriter extends SharpStream {
             }
 
             int length = Math.min(len, (int) Math.min(Integer.MAX_VALUE, available));
-            out.write(b, off, length);
+            int written = out.push(b, off, source, length);
 
-            len -= length;
-            off += length;
-
-            if (len > 0) {
-                aux.write(b, off, len);
+            if (written == length && len > length) {
+                written += aux.push(b, off + length, source, len - length);
             }
+
+            len = written;
         }
 
         if (onProgress != null) {
@@ -238,6 +322,29 @@ public class CircularFileWriter extends SharpStream {
                 onProgress.report(absoluteOffset);
             }
         }
+
+        return len;
+    }
+
+    private long transferProof(SharpStream source, long sourceOffset, SharpStream target,
+                               long targetOffset, long count) throws IOException {
+        if (onWriteError == null) {
+            return source.transferTo(target, count);
+        }
+
+        while (true) {
+            try {
+                return source.transferTo(target, count);
+            } catch (Exception e) {
+                if (!onWriteError.handle(e)) {
+                    throw e;// give up
+                }
+
+                // try again from the beginning
+                source.seek(sourceOffset);
+                target.seek(targetOffset);
+            }
+        }
     }
 
     @Override
@@ -379,7 +486,7 @@ public class CircularFileWriter extends SharpStream {
         private int queueSize;
 
         BufferedFile(File file) throws FileNotFoundException {
-            this.target = new FileStream(file);
+            this.target = new FileChannelStream(file);
         }
 
         BufferedFile(SharpStream target) {
@@ -414,6 +521,41 @@ public class CircularFileWriter extends SharpStream {
             }
         }
 
+        int push(byte[] b, int off, SharpStream source, int len) throws IOException {
+            if (source == null) {
+                write(b, off, len);
+                return len;
+            }
+
+            FileChannel channel = source.getReadChannel();
+            int moved = 0;
+
+            if (channel != null && target.getWriteChannel() != null) {
+                flush();// the queue must be written first
+
+                moved = (int) transferProof(source, channel.position(), target, offset, len);
+                offset += moved;
+            } else {
+                while (moved < len) {
+                    // if the queue is full, the method available() will flush the queue
+                    int read = source.read(queue, queueSize, Math.min(available(), len - moved));
+                    if (read < 1) {
+                        break;// EOF reached
+                    }
+
+                    queueSize += read;
+                    moved += read;
+                }
+            }
+
+            long total = offset + queueSize;
+            if (total > length) {
+                length = total;// save length
+            }
+
+            return moved;
+        }
+
         void flush() throws IOException {
             writeProof(queue, queueSize);
             offset += queueSize;
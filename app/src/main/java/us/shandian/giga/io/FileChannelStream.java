@@ -0,0 +1,211 @@
+package us.shandian.giga.io;
+
+import androidx.annotation.NonNull;
+
+import org.schabi.newpipe.streams.io.SharpStream;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link SharpStream} backed by a {@link FileChannel}. Allows zero-copy transfers between
+ * streams and optionally serves reads from memory-mapped windows of the file.
+ */
+public class FileChannelStream extends SharpStream {
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+
+    private int mapWindowSize = 0;
+    private MappedByteBuffer window;
+    private long windowOffset;
+
+    private final ByteBuffer single = ByteBuffer.allocate(1);
+
+    public FileChannelStream(@NonNull File target) throws FileNotFoundException {
+        this.file = new RandomAccessFile(target, "rw");
+        this.channel = file.getChannel();
+    }
+
+    public FileChannelStream(@NonNull String path) throws FileNotFoundException {
+        this(new File(path));
+    }
+
+    /**
+     * Serve the reads from memory-mapped windows of the file, instead of copying the data with
+     * {@code read()} calls. Any write drops the current window.
+     *
+     * @param size the window size, use zero to disable the memory mapping
+     */
+    public void setMapWindowSize(int size) {
+        mapWindowSize = Math.max(size, 0);
+        window = null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (read(single.array(), 0, 1) < 1) return -1;
+        return single.get(0) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer) throws IOException {
+        return read(buffer, 0, buffer.length);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        if (count == 0) return 0;
+
+        if (mapWindowSize > 0) {
+            long position = channel.position();
+            if (!mapWindow(position)) return -1;
+
+            int read = Math.min(count, (int) (windowOffset + window.limit() - position));
+            window.position((int) (position - windowOffset));
+            window.get(buffer, offset, read);
+
+            channel.position(position + read);
+            return read;
+        }
+
+        return channel.read(ByteBuffer.wrap(buffer, offset, count));
+    }
+
+    private boolean mapWindow(long position) throws IOException {
+        if (window != null && position >= windowOffset && position < windowOffset + window.limit()) {
+            return true;// the position is inside of the current window
+        }
+
+        long size = Math.min(mapWindowSize, channel.size() - position);
+        if (size < 1) return false;// EOF reached
+
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        windowOffset = position;
+        return true;
+    }
+
+    @Override
+    public long skip(long amount) throws IOException {
+        long position = channel.position();
+        amount = Math.max(Math.min(amount, channel.size() - position), 0);
+
+        channel.position(position + amount);
+        return amount;
+    }
+
+    @Override
+    public long available() {
+        try {
+            return channel.size() - channel.position();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (file == null) return;
+        try {
+            file.close();// also closes the channel
+        } catch (IOException err) {
+            // nothing to do
+        }
+        window = null;
+        channel = null;
+        file = null;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return file == null;
+    }
+
+    @Override
+    public void rewind() throws IOException {
+        channel.position(0);
+    }
+
+    @Override
+    public boolean canRewind() {
+        return true;
+    }
+
+    @Override
+    public boolean canRead() {
+        return true;
+    }
+
+    @Override
+    public boolean canWrite() {
+        return true;
+    }
+
+    @Override
+    public boolean canSeek() {
+        return true;
+    }
+
+    @Override
+    public boolean canSetLength() {
+        return true;
+    }
+
+    @Override
+    public void write(byte value) throws IOException {
+        single.put(0, value);
+        write(single.array(), 0, 1);
+    }
+
+    @Override
+    public void write(byte[] buffer) throws IOException {
+        write(buffer, 0, buffer.length);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int count) throws IOException {
+        window = null;
+
+        ByteBuffer src = ByteBuffer.wrap(buffer, offset, count);
+        while (src.hasRemaining()) {
+            channel.write(src);
+        }
+    }
+
+    @Override
+    public void setLength(long length) throws IOException {
+        window = null;
+
+        if (length < channel.size()) {
+            channel.truncate(length);
+        } else {
+            file.setLength(length);
+        }
+    }
+
+    @Override
+    public void seek(long offset) throws IOException {
+        channel.position(offset);
+    }
+
+    @Override
+    public long length() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public FileChannel getReadChannel() {
+        return channel;
+    }
+
+    @Override
+    public FileChannel getWriteChannel() {
+        window = null;
+        return channel;
+    }
+}
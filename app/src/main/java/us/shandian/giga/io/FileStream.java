@@ -8,6 +8,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 
 /**
  * @author kapodamy
@@ -128,4 +129,14 @@ public class FileStream extends SharpStream {
     public long length() throws IOException {
         return source.length();
     }
+
+    @Override
+    public FileChannel getReadChannel() {
+        return source.getChannel();
+    }
+
+    @Override
+    public FileChannel getWriteChannel() {
+        return source.getChannel();
+    }
 }
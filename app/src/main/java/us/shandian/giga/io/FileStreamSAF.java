@@ -147,4 +147,14 @@ public class FileStreamSAF extends SharpStream {
     public long length() throws IOException {
         return channel.size();
     }
+
+    @Override
+    public FileChannel getReadChannel() {
+        return in.getChannel();
+    }
+
+    @Override
+    public FileChannel getWriteChannel() {
+        return channel;
+    }
 }
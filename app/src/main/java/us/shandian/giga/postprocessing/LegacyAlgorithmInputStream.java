@@ -0,0 +1,60 @@
+package us.shandian.giga.postprocessing;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+
+/**
+ * Reads the missions saved by older versions. The post-processing algorithms do not declare
+ * their serialVersionUID, the value computed at runtime changes with every method added and with
+ * how each build was desugared and shrunk. The class descriptor of an algorithm is replaced by
+ * the current one if both have the same serialized fields, the other classes are checked as
+ * usual.
+ */
+public class LegacyAlgorithmInputStream extends ObjectInputStream {
+
+    public LegacyAlgorithmInputStream(InputStream in) throws IOException {
+        super(in);
+    }
+
+    @Override
+    protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+        ObjectStreamClass stored = super.readClassDescriptor();
+
+        Class<?> type;
+        try {
+            type = Class.forName(stored.getName(), false, Postprocessing.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return stored;// reported by resolveClass()
+        }
+
+        if (!Postprocessing.class.isAssignableFrom(type)) return stored;
+
+        ObjectStreamClass local = ObjectStreamClass.lookup(type);
+        if (local == null || local.getSerialVersionUID() == stored.getSerialVersionUID())
+            return stored;
+
+        return hasSameFields(stored, local) ? local : stored;
+    }
+
+    private static boolean hasSameFields(@NonNull ObjectStreamClass a, @NonNull ObjectStreamClass b) {
+        // the fields are sorted the same way in both descriptors
+        ObjectStreamField[] fieldsA = a.getFields();
+        ObjectStreamField[] fieldsB = b.getFields();
+        if (fieldsA.length != fieldsB.length) return false;
+
+        for (int i = 0; i < fieldsA.length; i++) {
+            if (!fieldsA[i].getName().equals(fieldsB[i].getName())) return false;
+            if (fieldsA[i].getTypeCode() != fieldsB[i].getTypeCode()) return false;
+
+            String typeA = fieldsA[i].getTypeString();
+            if (typeA != null && !typeA.equals(fieldsB[i].getTypeString())) return false;
+        }
+
+        return true;
+    }
+}
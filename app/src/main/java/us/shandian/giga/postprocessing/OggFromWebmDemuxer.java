@@ -6,6 +6,7 @@ import org.schabi.newpipe.streams.OggFromWebMWriter;
 import org.schabi.newpipe.streams.io.SharpStream;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.nio.ByteBuffer;
 
 class OggFromWebmDemuxer extends Postprocessing {
@@ -14,6 +15,11 @@ class OggFromWebmDemuxer extends Postprocessing {
         super(true, true, ALGORITHM_OGG_FROM_WEBM_DEMUXER);
     }
 
+    @Override
+    boolean supportsCheckpoints() {
+        return true;
+    }
+
     @Override
     boolean test(SharpStream... sources) throws IOException {
         ByteBuffer buffer = ByteBuffer.allocate(4);
@@ -35,8 +41,15 @@ class OggFromWebmDemuxer extends Postprocessing {
     @Override
     int process(SharpStream out, @NonNull SharpStream... sources) throws IOException {
         OggFromWebMWriter demuxer = new OggFromWebMWriter(sources[0], out);
-        demuxer.parseSource();
-        demuxer.selectTrack(0);
+        demuxer.setCheckpointListener(getCheckpointListener(), getCheckpointInterval());
+
+        Serializable state = getCheckpointState();
+        if (state != null) {
+            demuxer.resume(state);
+        } else {
+            demuxer.parseSource();
+            demuxer.selectTrack(0);
+        }
         demuxer.build();
 
         return OK_RESULT;
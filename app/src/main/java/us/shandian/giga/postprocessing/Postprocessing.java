@@ -4,10 +4,21 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import org.schabi.newpipe.streams.CheckpointListener;
 import org.schabi.newpipe.streams.io.SharpStream;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 import us.shandian.giga.get.DownloadMission;
@@ -15,6 +26,7 @@ import us.shandian.giga.io.ChunkFileInputStream;
 import us.shandian.giga.io.CircularFileWriter;
 import us.shandian.giga.io.CircularFileWriter.OffsetChecker;
 import us.shandian.giga.io.ProgressReport;
+import us.shandian.giga.util.Utility;
 
 import static us.shandian.giga.get.DownloadMission.ERROR_NOTHING;
 import static us.shandian.giga.get.DownloadMission.ERROR_POSTPROCESSING;
@@ -24,6 +36,25 @@ public abstract class Postprocessing implements Serializable {
 
     static transient final byte OK_RESULT = ERROR_NOTHING;
 
+    /**
+     * The checkpoints are stored next to the mission metadata, the serialized algorithm is not
+     * modified while processing
+     */
+    private transient static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    private transient static final int CHECKPOINT_MAGIC = 0x4E504331;// "NPC1"
+
+    /**
+     * Amount of output written between checkpoints, limited to the half of the reserved space
+     */
+    private transient static final long CHECKPOINT_INTERVAL = 16 * 1024 * 1024;// 16 MiB
+    private transient static final long CHECKPOINT_INTERVAL_MINIMUM = 1024 * 1024;// 1 MiB
+
+    /**
+     * Space for the headers and indexes written by the muxers, a fraction of the sources length
+     */
+    private transient static final int OVERHEAD_RATIO = 50;// 2%
+    private transient static final long OVERHEAD_MINIMUM = 1024 * 1024;// 1 MiB
+
     public transient static final String ALGORITHM_TTML_CONVERTER = "ttml";
     public transient static final String ALGORITHM_WEBM_MUXER = "webm";
     public transient static final String ALGORITHM_MP4_FROM_DASH_MUXER = "mp4D-mp4";
@@ -59,6 +90,28 @@ public abstract class Postprocessing implements Serializable {
         return instance;
     }
 
+    /**
+     * Checks if a file in the pending missions directory is a checkpoint
+     */
+    public static boolean isCheckpoint(@NonNull File file) {
+        return file.getName().endsWith(CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * Deletes the checkpoint saved next to the metadata of a mission, without reading it
+     *
+     * @param metadata the mission metadata
+     */
+    public static void deleteCheckpoint(@NonNull File metadata) {
+        //noinspection ResultOfMethodCallIgnored
+        checkpointOf(metadata).delete();
+    }
+
+    @NonNull
+    private static File checkpointOf(@NonNull File metadata) {
+        return new File(metadata.getPath() + CHECKPOINT_SUFFIX);
+    }
+
     /**
      * Get a boolean value that indicate if the given algorithm work on the same
      * file
@@ -82,6 +135,20 @@ public abstract class Postprocessing implements Serializable {
 
     private transient File tempFile;
 
+    /**
+     * Last checkpoint of the algorithm, used to resume if the app dies while processing
+     */
+    private transient Checkpoint checkpoint;
+
+    /**
+     * Where the last checkpoint is saved, next to the mission metadata
+     */
+    private transient File checkpointFile;
+
+    private transient volatile long writeLimit;
+
+    private transient CheckpointListener checkpointListener;
+
     Postprocessing(boolean reserveSpace, boolean worksOnSameFile, String algorithmName) {
         this.reserveSpace = reserveSpace;
         this.worksOnSameFile = worksOnSameFile;
@@ -104,6 +171,90 @@ public abstract class Postprocessing implements Serializable {
         }
     }
 
+    /**
+     * Indicates if the algorithm can continue from the last checkpoint, instead of starting again
+     *
+     * @return {@code true} if a checkpoint was saved and the auxiliar file still exists
+     */
+    public boolean canResume() {
+        if (checkpoint == null) return false;
+
+        File aux = new File(checkpoint.auxPath);
+        return aux.exists() && aux.length() >= checkpoint.auxLength;
+    }
+
+    /**
+     * Reads the last checkpoint saved next to the mission metadata, if any
+     *
+     * @param metadata the mission metadata
+     */
+    public void loadCheckpoint(@NonNull File metadata) {
+        checkpointFile = checkpointOf(metadata);
+        checkpoint = null;
+
+        if (!checkpointFile.exists()) return;
+
+        try (DataInputStream stream = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(checkpointFile)))) {
+            checkpoint = Checkpoint.read(stream);
+        } catch (IOException e) {
+            Log.w(getClass().getSimpleName(), "Failed to read the checkpoint", e);
+        }
+    }
+
+    /**
+     * Deletes the last checkpoint and its auxiliar file
+     */
+    public void discardCheckpoint() {
+        if (checkpoint != null) {
+            try {
+                //noinspection ResultOfMethodCallIgnored
+                new File(checkpoint.auxPath).delete();
+            } catch (Exception e) {
+                // nothing to do
+            }
+        }
+
+        clearCheckpoint();
+    }
+
+    /**
+     * Forgets the last checkpoint, the auxiliar file is not deleted
+     */
+    private void clearCheckpoint() {
+        checkpoint = null;
+
+        if (checkpointFile != null) {
+            //noinspection ResultOfMethodCallIgnored
+            checkpointFile.delete();
+        }
+    }
+
+
+    /**
+     * Plans the space reserved at the start of the file from the length of the sources, so the
+     * output is written in place, without reaching the source data not read yet. The output grows
+     * with the first source, plus the data of the other sources and the muxer overhead
+     * interleaved with it, the auxiliar file is only used if the estimated overhead is exceeded.
+     *
+     * @param lengths the length of every source, in download order
+     * @return the space to reserve, or {@code -1} if the length of any source is unknown
+     */
+    public long planReservedSpace(long[] lengths) {
+        long total = 0;
+        for (long length : lengths) {
+            if (length < 1) return -1;
+            total += length;
+        }
+
+        long reserve = total - lengths[0];
+        reserve += Math.max(total / OVERHEAD_RATIO, OVERHEAD_MINIMUM);
+
+        // the output can not overwrite the source data read after the last checkpoint
+        if (supportsCheckpoints()) reserve += CHECKPOINT_INTERVAL;
+
+        return reserve;
+    }
 
     public void run(DownloadMission target) throws IOException {
         this.mission = target;
@@ -123,6 +274,7 @@ public abstract class Postprocessing implements Serializable {
 
         if (worksOnSameFile) {
             ChunkFileInputStream[] sources = new ChunkFileInputStream[mission.urls.length];
+            boolean resuming = checkpoint != null;
             try {
                 for (int i = 0, j = 1; i < sources.length; i++, j++) {
                     SharpStream source = mission.storage.getStream();
@@ -131,8 +283,11 @@ public abstract class Postprocessing implements Serializable {
                     sources[i] = new ChunkFileInputStream(source, mission.offsets[i], end, readProgress);
                 }
 
-                if (test(sources)) {
-                    for (SharpStream source : sources) source.rewind();
+                // the start of the sources can be already overwritten, do not test them again
+                if (resuming || test(sources)) {
+                    if (!resuming) {
+                        for (SharpStream source : sources) source.rewind();
+                    }
 
                     OffsetChecker checker = () -> {
                         for (ChunkFileInputStream source : sources) {
@@ -150,8 +305,22 @@ public abstract class Postprocessing implements Serializable {
                         return -1;
                     };
 
-                    try (CircularFileWriter out = new CircularFileWriter(
-                            mission.storage.getStream(), tempFile, checker)) {
+                    if (supportsCheckpoints()) {
+                        // only the data not required by the last checkpoint can be overwritten
+                        writeLimit = resuming ? checkpoint.writeLimit : mission.offsets[0];
+                        checker = () -> writeLimit;
+                    }
+
+                    CircularFileWriter writer;
+                    if (resuming) {
+                        tempFile = new File(checkpoint.auxPath);
+                        writer = new CircularFileWriter(mission.storage.getStream(), tempFile,
+                                checker, checkpoint.outputLength, checkpoint.auxLength);
+                    } else {
+                        writer = new CircularFileWriter(mission.storage.getStream(), tempFile, checker);
+                    }
+
+                    try (CircularFileWriter out = writer) {
                         out.onProgress = (long position) -> mission.done = position;
 
                         out.onWriteError = err -> {
@@ -171,15 +340,31 @@ public abstract class Postprocessing implements Serializable {
                             return mission.errCode == ERROR_NOTHING;
                         };
 
+                        if (supportsCheckpoints()) {
+                            checkpointFile = checkpointOf(mission.metadata);
+                            checkpointListener = (state, positions) -> checkpoint(out, state, positions);
+                        }
+
+                        long processTime = System.nanoTime();
                         result = process(out, sources);
+                        mission.metrics.onStage("process", System.nanoTime() - processTime);
+
+                        if (result == OK_RESULT) {
+                            // finalizing moves the auxiliar file, the checkpoint is not valid anymore
+                            clearCheckpoint();
 
-                        if (result == OK_RESULT)
+                            long finalizeTime = System.nanoTime();
                             finalLength = out.finalizeFile();
+                            mission.metrics.onStage("finalize", System.nanoTime() - finalizeTime);
+                        }
                     }
                 } else {
                     result = OK_RESULT;
                 }
             } finally {
+                checkpointListener = null;
+                clearCheckpoint();// the auxiliar file is deleted below
+
                 for (SharpStream source : sources) {
                     if (source != null && !source.isClosed()) {
                         source.close();
@@ -192,7 +377,9 @@ public abstract class Postprocessing implements Serializable {
                 }
             }
         } else {
+            long processTime = System.nanoTime();
             result = test() ? process(null) : OK_RESULT;
+            mission.metrics.onStage("process", System.nanoTime() - processTime);
         }
 
         if (result == OK_RESULT) {
@@ -209,6 +396,89 @@ public abstract class Postprocessing implements Serializable {
         this.mission = null;
     }
 
+    /**
+     * Saves a checkpoint of the algorithm, called by the muxer. The checkpoint is stored next to
+     * the mission metadata, after that, the output can overwrite the source data not required
+     * anymore.
+     */
+    private void checkpoint(CircularFileWriter out, Serializable state, long[] sourcePositions)
+            throws IOException {
+        long limit = -1;
+        for (int i = 0; i < sourcePositions.length; i++) {
+            if (sourcePositions[i] < 0) continue;// the source is not used anymore
+
+            long offset = mission.offsets[i] + sourcePositions[i];
+            if (limit == -1 || offset < limit) limit = offset;
+        }
+
+        boolean backwards = limit != -1 && (writeLimit == -1 || limit < writeLimit);
+        if (backwards) {
+            // the data before the current limit was already overwritten
+            Log.w(getClass().getSimpleName(), "checkpoint ignored, required offset goes backwards");
+            return;
+        }
+
+        if (!out.checkpoint(writeLimit)) return;
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ObjectOutputStream stream = new ObjectOutputStream(buffer)) {
+            // the state is modified after this method returns, serialize it now
+            stream.writeObject(state);
+        }
+
+        Checkpoint saved = new Checkpoint(buffer.toByteArray(), out.getOutputLength(),
+                out.getAuxiliarLength(), tempFile.getAbsolutePath(), limit);
+        saved.write(checkpointFile);
+        checkpoint = saved;
+
+        writeLimit = limit;
+    }
+
+    /**
+     * Gets the listener used to save checkpoints, the muxer must call it periodically
+     *
+     * @return the listener, or {@code null} if the checkpoints are not available
+     */
+    CheckpointListener getCheckpointListener() {
+        return checkpointListener;
+    }
+
+    /**
+     * Gets the amount of output between checkpoints, limited by the reserved space since the
+     * output can not overwrite the sources data between checkpoints
+     *
+     * @return the interval in bytes
+     */
+    long getCheckpointInterval() {
+        long interval = Math.min(CHECKPOINT_INTERVAL, mission.offsets[0] / 2);
+        return Math.max(CHECKPOINT_INTERVAL_MINIMUM, interval);
+    }
+
+    /**
+     * Gets the muxer state saved on the last checkpoint, the processing must continue from there
+     *
+     * @return the state, or {@code null} to start from the beginning
+     * @throws IOException if the state can not be read
+     */
+    Serializable getCheckpointState() throws IOException {
+        if (checkpoint == null) return null;
+
+        ByteArrayInputStream buffer = new ByteArrayInputStream(checkpoint.state);
+        try (ObjectInputStream stream = new ObjectInputStream(buffer)) {
+            return (Serializable) stream.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Invalid checkpoint", e);
+        }
+    }
+
+    /**
+     * Indicates if the algorithm saves checkpoints while processing, see
+     * {@link #getCheckpointListener()}
+     */
+    boolean supportsCheckpoints() {
+        return false;
+    }
+
     /**
      * Test if the post-processing algorithm can be skipped
      *
@@ -255,4 +525,67 @@ public abstract class Postprocessing implements Serializable {
 
         return str.append("] }").toString();
     }
+
+    static class Checkpoint {
+        final byte[] state;
+        final long outputLength;
+        final long auxLength;
+        final String auxPath;
+        final long writeLimit;
+
+        Checkpoint(byte[] state, long outputLength, long auxLength, String auxPath, long writeLimit) {
+            this.state = state;
+            this.outputLength = outputLength;
+            this.auxLength = auxLength;
+            this.auxPath = auxPath;
+            this.writeLimit = writeLimit;
+        }
+
+        /**
+         * Writes the checkpoint to a temporal file, then renames it. The previous checkpoint is
+         * kept if the write fails
+         *
+         * @param file the destination
+         * @throws IOException if the checkpoint can not be written
+         */
+        void write(@NonNull File file) throws IOException {
+            File temp = new File(file.getPath() + Utility.TEMP_SUFFIX);
+
+            try (DataOutputStream stream = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                stream.writeInt(CHECKPOINT_MAGIC);
+                stream.writeInt(state.length);
+                stream.write(state);
+                stream.writeLong(outputLength);
+                stream.writeLong(auxLength);
+                stream.writeUTF(auxPath);
+                stream.writeLong(writeLimit);
+            } catch (IOException e) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+                throw e;
+            }
+
+            if (!temp.renameTo(file)) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+                throw new IOException("Failed to rename " + temp.getName());
+            }
+        }
+
+        @NonNull
+        static Checkpoint read(@NonNull DataInputStream stream) throws IOException {
+            if (stream.readInt() != CHECKPOINT_MAGIC) throw new IOException("Invalid checkpoint");
+
+            byte[] state = new byte[stream.readInt()];
+            stream.readFully(state);
+
+            long outputLength = stream.readLong();
+            long auxLength = stream.readLong();
+            String auxPath = stream.readUTF();
+            long writeLimit = stream.readLong();
+
+            return new Checkpoint(state, outputLength, auxLength, auxPath, writeLimit);
+        }
+    }
 }
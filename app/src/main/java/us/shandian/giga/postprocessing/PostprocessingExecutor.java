@@ -0,0 +1,108 @@
+package us.shandian.giga.postprocessing;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import us.shandian.giga.get.DownloadMission;
+
+/**
+ * Limits the amount of post-processing running at the same time. Every mission runs the
+ * post-processing in its own thread, which waits here for its turn. The missions with higher
+ * priority go first, then the oldest in the queue.
+ */
+public class PostprocessingExecutor {
+    public final static int DEFAULT_LIMIT = 2;
+
+    private static PostprocessingExecutor instance;
+
+    private final ArrayList<Ticket> queue = new ArrayList<>();
+    private int limit = DEFAULT_LIMIT;
+    private int running = 0;
+    private long sequence = 0;
+
+    public static synchronized PostprocessingExecutor getInstance() {
+        if (instance == null) instance = new PostprocessingExecutor();
+        return instance;
+    }
+
+    /**
+     * Changes the amount of post-processing running at the same time, the running ones are never
+     * stopped
+     *
+     * @param limit the new limit, at least one
+     */
+    public synchronized void setLimit(int limit) {
+        this.limit = Math.max(limit, 1);
+        notifyAll();
+    }
+
+    /**
+     * Gets the amount of missions waiting for their turn
+     */
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Runs the post-processing of a mission in the calling thread, once its turn comes
+     *
+     * @param mission  the mission, with the post-processing algorithm
+     * @param priority missions with higher priority run first
+     * @throws IOException          if the post-processing fails
+     * @throws InterruptedException if the thread was interrupted while waiting for its turn
+     */
+    public void execute(@NonNull DownloadMission mission, int priority)
+            throws IOException, InterruptedException {
+        long queueTime = System.nanoTime();
+
+        synchronized (this) {
+            Ticket ticket = new Ticket(priority, sequence++);
+            queue.add(ticket);
+
+            try {
+                while (running >= limit || next() != ticket) wait();
+            } finally {
+                queue.remove(ticket);
+                notifyAll();
+            }
+
+            running++;
+        }
+
+        long runTime = System.nanoTime();
+        mission.metrics.onStage("queue", runTime - queueTime);
+
+        try {
+            mission.psAlgorithm.run(mission);
+        } finally {
+            mission.metrics.onStage("run", System.nanoTime() - runTime);
+
+            synchronized (this) {
+                running--;
+                notifyAll();
+            }
+        }
+    }
+
+    private Ticket next() {
+        Ticket next = null;
+        for (Ticket ticket : queue) {
+            if (next == null || ticket.priority > next.priority ||
+                    (ticket.priority == next.priority && ticket.sequence < next.sequence))
+                next = ticket;
+        }
+        return next;
+    }
+
+    private static class Ticket {
+        final int priority;
+        final long sequence;
+
+        Ticket(int priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+}
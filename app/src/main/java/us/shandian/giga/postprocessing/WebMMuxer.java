@@ -6,6 +6,7 @@ import org.schabi.newpipe.streams.WebMWriter;
 import org.schabi.newpipe.streams.io.SharpStream;
 
 import java.io.IOException;
+import java.io.Serializable;
 
 /**
  * @author kapodamy
@@ -16,9 +17,23 @@ class WebMMuxer extends Postprocessing {
         super(true, true, ALGORITHM_WEBM_MUXER);
     }
 
+    @Override
+    boolean supportsCheckpoints() {
+        return true;
+    }
+
     @Override
     int process(SharpStream out, SharpStream... sources) throws IOException {
         WebMWriter muxer = new WebMWriter(sources);
+        muxer.setCheckpointListener(getCheckpointListener(), getCheckpointInterval());
+
+        Serializable state = getCheckpointState();
+        if (state != null) {
+            muxer.resume(state);
+            muxer.build(out);
+            return OK_RESULT;
+        }
+
         muxer.parseSources();
 
         // youtube uses a webm with a fake video track that acts as a "cover image"
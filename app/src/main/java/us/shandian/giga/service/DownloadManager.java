@@ -8,6 +8,11 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.DiffUtil;
 
+import com.grack.nanojson.JsonStringWriter;
+import com.grack.nanojson.JsonWriter;
+
+import org.schabi.newpipe.BuildConfig;
+
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -18,7 +23,9 @@ import java.util.List;
 import us.shandian.giga.get.DownloadMission;
 import us.shandian.giga.get.FinishedMission;
 import us.shandian.giga.get.Mission;
+import us.shandian.giga.get.MissionJournal;
 import us.shandian.giga.get.sqlite.FinishedMissionStore;
+import us.shandian.giga.postprocessing.Postprocessing;
 import org.schabi.newpipe.streams.io.StoredDirectoryHelper;
 import org.schabi.newpipe.streams.io.StoredFileHelper;
 import us.shandian.giga.util.Utility;
@@ -148,13 +155,30 @@ public class DownloadManager {
             if (!sub.isFile()) continue;
             if (sub.getName().equals(".tmp")) continue;
 
+            if (sub.getName().endsWith(Utility.TEMP_SUFFIX)) {
+                // interrupted write, the previous metadata is still there
+                //noinspection ResultOfMethodCallIgnored
+                sub.delete();
+                continue;
+            }
+            if (MissionJournal.isJournal(sub) || Postprocessing.isCheckpoint(sub)) {
+                // read along with the metadata, deleted with it
+                continue;
+            }
+
             DownloadMission mis = Utility.readFromFile(sub);
+            MissionJournal journal = new MissionJournal(sub);
             if (mis == null || mis.isFinished() || mis.hasInvalidStorage()) {
                 //noinspection ResultOfMethodCallIgnored
                 sub.delete();
+                journal.delete();
+                Postprocessing.deleteCheckpoint(sub);
                 continue;
             }
 
+            // apply the progress saved after the metadata was written
+            journal.replay(mis);
+
             mis.threads = new Thread[0];
 
             boolean exists;
@@ -167,7 +191,17 @@ public class DownloadManager {
                 exists = false;
             }
 
-            if (mis.isPsRunning()) {
+            if (mis.isPsRunning())
+                mis.psAlgorithm.loadCheckpoint(sub);
+            else
+                Postprocessing.deleteCheckpoint(sub);
+
+            if (mis.isPsRunning() && exists && mis.psAlgorithm.canResume()) {
+                // continue the post-processing from the last checkpoint
+                mis.psState = 0;
+            } else if (mis.isPsRunning()) {
+                mis.psAlgorithm.discardCheckpoint();
+
                 if (mis.psAlgorithm.worksOnSameFile) {
                     // Incomplete post-processing results in a corrupted download file
                     // because the selected algorithm works on the same file to save space.
@@ -456,6 +490,25 @@ public class DownloadManager {
         }
     }
 
+    /**
+     * Gets the measurements of the pending missions, used to tune the amount of threads
+     *
+     * @return a JSON object with the missions
+     */
+    public String getDiagnostics() {
+        JsonStringWriter writer = JsonWriter.string();
+        writer.object()
+                .value("app_version", BuildConfig.VERSION_NAME)
+                .value("time", System.currentTimeMillis())
+                .array("missions");
+
+        synchronized (this) {
+            for (DownloadMission mission : mMissionsPending) mission.writeDiagnosticsOn(writer);
+        }
+
+        return writer.end().end().done();
+    }
+
     public MissionIterator getIterator() {
         mSelfMissionsControl = true;
         return new MissionIterator();
@@ -45,6 +45,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 
+import us.shandian.giga.get.BandwidthScheduler;
 import us.shandian.giga.get.DownloadMission;
 import us.shandian.giga.get.MissionRecoveryInfo;
 import org.schabi.newpipe.streams.io.StoredDirectoryHelper;
@@ -52,6 +53,7 @@ import org.schabi.newpipe.streams.io.StoredFileHelper;
 import org.schabi.newpipe.util.Localization;
 
 import us.shandian.giga.postprocessing.Postprocessing;
+import us.shandian.giga.postprocessing.PostprocessingExecutor;
 import us.shandian.giga.service.DownloadManager.NetworkState;
 
 import static org.schabi.newpipe.BuildConfig.APPLICATION_ID;
@@ -194,6 +196,8 @@ public class DownloadManagerService extends Service {
         handlePreferenceChange(mPrefs, getString(R.string.downloads_cross_network));
         handlePreferenceChange(mPrefs, getString(R.string.downloads_maximum_retry));
         handlePreferenceChange(mPrefs, getString(R.string.downloads_queue_limit));
+        handlePreferenceChange(mPrefs, getString(R.string.downloads_speed_limit));
+        handlePreferenceChange(mPrefs, getString(R.string.downloads_postprocessing_limit));
 
         mLock = new LockManager(this);
     }
@@ -352,6 +356,21 @@ public class DownloadManagerService extends Service {
             mManager.mPrefMeteredDownloads = prefs.getBoolean(key, false);
         } else if (key.equals(getString(R.string.downloads_queue_limit))) {
             mManager.mPrefQueueLimit = prefs.getBoolean(key, true);
+        } else if (key.equals(getString(R.string.downloads_speed_limit))) {
+            try {
+                String value = prefs.getString(key, getString(R.string.downloads_speed_limit_default));
+                BandwidthScheduler.getInstance().setRate(value == null ? 0 : Long.parseLong(value));
+            } catch (Exception e) {
+                BandwidthScheduler.getInstance().setRate(0);
+            }
+        } else if (key.equals(getString(R.string.downloads_postprocessing_limit))) {
+            try {
+                String value = prefs.getString(key, getString(R.string.downloads_postprocessing_limit_default));
+                int limit = value == null ? PostprocessingExecutor.DEFAULT_LIMIT : Integer.parseInt(value);
+                PostprocessingExecutor.getInstance().setLimit(limit);
+            } catch (Exception e) {
+                PostprocessingExecutor.getInstance().setLimit(PostprocessingExecutor.DEFAULT_LIMIT);
+            }
         } else if (key.equals(getString(R.string.download_path_video_key))) {
             mManager.mMainStorageVideo = loadMainVideoStorage();
         } else if (key.equals(getString(R.string.download_path_audio_key))) {
@@ -36,6 +36,8 @@ import androidx.recyclerview.widget.RecyclerView.Adapter;
 import androidx.recyclerview.widget.RecyclerView.ViewHolder;
 
 import com.google.android.material.snackbar.Snackbar;
+import com.grack.nanojson.JsonStringWriter;
+import com.grack.nanojson.JsonWriter;
 
 import org.schabi.newpipe.BuildConfig;
 import org.schabi.newpipe.R;
@@ -57,6 +59,7 @@ import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.disposables.CompositeDisposable;
 import io.reactivex.rxjava3.schedulers.Schedulers;
+import us.shandian.giga.get.BandwidthScheduler.Share;
 import us.shandian.giga.get.DownloadMission;
 import us.shandian.giga.get.FinishedMission;
 import us.shandian.giga.get.Mission;
@@ -561,6 +564,20 @@ public class MissionAdapter extends Adapter<ViewHolder> implements Handler.Callb
                 .show();
     }
 
+    private void showDiagnostics(@NonNull DownloadMission mission) {
+        new AlertDialog.Builder(mContext)
+                .setTitle(mission.storage.getName())
+                .setMessage(mission.metrics.toString())
+                .setPositiveButton(R.string.share, (dialog, which) -> {
+                    JsonStringWriter writer = JsonWriter.string();
+                    mission.writeDiagnosticsOn(writer);
+                    ShareUtils.shareText(mContext, mContext.getString(R.string.download_diagnostics), writer.done());
+                })
+                .setNegativeButton(R.string.ok, (dialog, which) -> dialog.cancel())
+                .create()
+                .show();
+    }
+
     private void showError(DownloadMission mission, UserAction action, @StringRes int reason) {
         StringBuilder request = new StringBuilder(256);
         request.append(mission.source);
@@ -656,6 +673,21 @@ public class MissionAdapter extends Adapter<ViewHolder> implements Handler.Callb
                     mission.setEnqueued(flag);
                     updateProgress(h);
                     return true;
+                case R.id.prioritize:
+                    boolean prioritized = !h.prioritize.isChecked();
+                    h.prioritize.setChecked(prioritized);
+                    mission.setBandwidthShare(mission.bandwidth.weight,
+                            prioritized ? Share.PRIORITY_HIGH : Share.PRIORITY_NORMAL);
+                    return true;
+                case R.id.bandwidth_share_low:
+                    mission.setBandwidthShare(Share.WEIGHT_LOW, mission.bandwidth.priority);
+                    return true;
+                case R.id.bandwidth_share_normal:
+                    mission.setBandwidthShare(Share.WEIGHT_NORMAL, mission.bandwidth.priority);
+                    return true;
+                case R.id.bandwidth_share_high:
+                    mission.setBandwidthShare(Share.WEIGHT_HIGH, mission.bandwidth.priority);
+                    return true;
                 case R.id.retry:
                     if (mission.isPsRunning()) {
                         mission.psContinue(true);
@@ -670,6 +702,9 @@ public class MissionAdapter extends Adapter<ViewHolder> implements Handler.Callb
                 case R.id.cancel:
                     mission.psContinue(false);
                     return false;
+                case R.id.diagnostics:
+                    showDiagnostics(mission);
+                    return true;
             }
         }
 
@@ -782,6 +817,15 @@ public class MissionAdapter extends Adapter<ViewHolder> implements Handler.Callb
             button.setVisible(visible);
     }
 
+    private static int getBandwidthShareId(int weight) {
+        if (weight <= Share.WEIGHT_LOW)
+            return R.id.bandwidth_share_low;
+        else if (weight >= Share.WEIGHT_HIGH)
+            return R.id.bandwidth_share_high;
+        else
+            return R.id.bandwidth_share_normal;
+    }
+
     public void refreshMissionItems() {
         for (ViewHolderItem h : mPendingDownloadsItems) {
             if (((DownloadMission) h.item.mission).running) continue;
@@ -856,9 +900,12 @@ public class MissionAdapter extends Adapter<ViewHolder> implements Handler.Callb
         MenuItem pause;
         MenuItem open;
         MenuItem queue;
+        MenuItem prioritize;
+        MenuItem bandwidthShare;
         MenuItem showError;
         MenuItem delete;
         MenuItem source;
+        MenuItem diagnostics;
         MenuItem checksum;
 
         long lastTimestamp = -1;
@@ -891,9 +938,12 @@ public class MissionAdapter extends Adapter<ViewHolder> implements Handler.Callb
             pause = menu.findItem(R.id.pause);
             open = menu.findItem(R.id.menu_item_share);
             queue = menu.findItem(R.id.queue);
+            prioritize = menu.findItem(R.id.prioritize);
+            bandwidthShare = menu.findItem(R.id.bandwidth_share);
             showError = menu.findItem(R.id.error_message_view);
             delete = menu.findItem(R.id.delete);
             source = menu.findItem(R.id.source);
+            diagnostics = menu.findItem(R.id.diagnostics);
             checksum = menu.findItem(R.id.checksum);
 
             itemView.setHapticFeedbackEnabled(true);
@@ -917,14 +967,29 @@ public class MissionAdapter extends Adapter<ViewHolder> implements Handler.Callb
             pause.setVisible(false);
             open.setVisible(false);
             queue.setVisible(false);
+            prioritize.setVisible(false);
+            bandwidthShare.setVisible(false);
             showError.setVisible(false);
             delete.setVisible(false);
             source.setVisible(false);
+            diagnostics.setVisible(false);
             checksum.setVisible(false);
 
             DownloadMission mission = item.mission instanceof DownloadMission ? (DownloadMission) item.mission : null;
 
             if (mission != null) {
+                diagnostics.setVisible(true);
+
+                if (!mission.hasInvalidStorage()) {
+                    // the priority also orders the post-processing queue
+                    prioritize.setChecked(mission.bandwidth.priority > Share.PRIORITY_NORMAL);
+                    prioritize.setVisible(true);
+
+                    int weightId = getBandwidthShareId(mission.bandwidth.weight);
+                    bandwidthShare.getSubMenu().findItem(weightId).setChecked(true);
+                    bandwidthShare.setVisible(!mission.isPsRunning());
+                }
+
                 if (mission.hasInvalidStorage()) {
                     retry.setVisible(true);
                     delete.setVisible(true);
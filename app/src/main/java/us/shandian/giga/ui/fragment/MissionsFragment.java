@@ -35,6 +35,7 @@ import org.schabi.newpipe.settings.NewPipeSettings;
 import org.schabi.newpipe.streams.io.NoFileManagerSafeGuard;
 import org.schabi.newpipe.streams.io.StoredFileHelper;
 import org.schabi.newpipe.util.FilePickerActivityHelper;
+import org.schabi.newpipe.util.external_communication.ShareUtils;
 
 import java.io.File;
 import java.io.IOException;
@@ -200,6 +201,11 @@ public class MissionsFragment extends Fragment {
             case R.id.pause_downloads:
                 mBinder.getDownloadManager().pauseAllMissions(false);
                 mAdapter.refreshMissionItems();// update items view
+                return true;
+            case R.id.export_diagnostics:
+                ShareUtils.shareText(mContext, getString(R.string.download_diagnostics_export),
+                        mBinder.getDownloadManager().getDiagnostics());
+                return true;
             default:
                 return super.onOptionsItemSelected(item);
         }
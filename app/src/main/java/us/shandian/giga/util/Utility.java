@@ -3,7 +3,6 @@ package us.shandian.giga.util;
 import android.content.ClipData;
 import android.content.ClipboardManager;
 import android.content.Context;
-import android.os.Build;
 import android.util.Log;
 import android.widget.Toast;
 
@@ -16,6 +15,7 @@ import androidx.core.content.ContextCompat;
 import org.schabi.newpipe.R;
 import org.schabi.newpipe.streams.io.SharpStream;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -24,15 +24,21 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.net.HttpURLConnection;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Locale;
 
 import org.schabi.newpipe.streams.io.StoredFileHelper;
 
+import us.shandian.giga.postprocessing.LegacyAlgorithmInputStream;
+
 public class Utility {
 
+    /**
+     * Suffix of the temporal file used by {@link #writeToFile(File, Serializable)}
+     */
+    public static final String TEMP_SUFFIX = ".new";
+
     public enum FileType {
         VIDEO,
         MUSIC,
@@ -66,23 +72,38 @@ public class Utility {
         }
     }
 
+    /**
+     * Writes the object to a temporal file, then renames it. The file is never left half written
+     */
     public static void writeToFile(@NonNull File file, @NonNull Serializable serializable) {
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
 
-        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
             objectOutputStream.writeObject(serializable);
         } catch (Exception e) {
-            //nothing to do
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            return;
+        }
+
+        if (!temp.renameTo(file)) {
+            Log.w("Utility", "Failed to rename " + temp.getName());
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
         }
-        //nothing to do
     }
 
+    /**
+     * Reads an object written by {@link #writeToFile(File, Serializable)}, the post-processing
+     * algorithms saved by older versions are accepted, see {@link LegacyAlgorithmInputStream}
+     */
     @Nullable
     @SuppressWarnings("unchecked")
     public static <T> T readFromFile(File file) {
         T object;
 
         try (ObjectInputStream objectInputStream =
-                     new ObjectInputStream(new FileInputStream(file))) {
+                     new LegacyAlgorithmInputStream(new BufferedInputStream(new FileInputStream(file)))) {
             object = (T) objectInputStream.readObject();
         } catch (Exception e) {
             Log.e("Utility", "Failed to deserialize the object", e);
@@ -255,20 +276,6 @@ public class Utility {
         return p.exists();
     }
 
-    public static long getContentLength(HttpURLConnection connection) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-            return connection.getContentLengthLong();
-        }
-
-        try {
-            return Long.parseLong(connection.getHeaderField("Content-Length"));
-        } catch (Exception err) {
-            // nothing to do
-        }
-
-        return -1;
-    }
-
     private static String pad(int number) {
         return number < 10 ? ("0" + number) : String.valueOf(number);
     }
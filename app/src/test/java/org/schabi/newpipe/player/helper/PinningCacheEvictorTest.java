@@ -0,0 +1,108 @@
+package org.schabi.newpipe.player.helper;
+
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class PinningCacheEvictorTest {
+    private static final long MIB = 1024 * 1024L;
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMaxSize() {
+        assertEquals(64 * MIB, PinningCacheEvictor.getMaxSize(100 * MIB, 0));
+        assertEquals(100 * MIB, PinningCacheEvictor.getMaxSize(1900 * MIB, 100 * MIB));
+        assertEquals(512 * MIB, PinningCacheEvictor.getMaxSize(100_000 * MIB, 0));
+    }
+
+    @Test
+    public void testScore() {
+        final long now = 100 * DAY;
+        assertEquals(3, PinningCacheEvictor.getScore(3, now, now), 0);
+        assertEquals(1.5, PinningCacheEvictor.getScore(3, now - 2 * DAY, now), 1e-9);
+        // a timestamp in the future does not increase the score
+        assertEquals(3, PinningCacheEvictor.getScore(3, now + DAY, now), 0);
+    }
+
+    @Test
+    public void testFrequentOverOld() {
+        final long now = 100 * DAY;
+        // a song played 10 times last week is kept over a video watched once a month ago
+        assertTrue(PinningCacheEvictor.getScore(10, now - 7 * DAY, now)
+                > PinningCacheEvictor.getScore(1, now - 30 * DAY, now));
+        // a video watched once today is kept over a song played twice a week ago
+        assertTrue(PinningCacheEvictor.getScore(1, now - DAY / 2, now)
+                > PinningCacheEvictor.getScore(2, now - 7 * DAY, now));
+    }
+
+    @Test
+    public void testFrequenciesArePersisted() throws IOException {
+        final File cacheDir = folder.newFolder("exoplayer");
+        final Cache cache = mock(Cache.class);
+        final long now = System.currentTimeMillis();
+
+        final PinningCacheEvictor evictor = new PinningCacheEvictor(cacheDir);
+        evictor.onCacheInitialized();
+        evictor.onSpanAdded(cache, span("often", now));
+        evictor.onSpanAdded(cache, span("once", now));
+        // played again twice
+        evictor.use("often", now + DAY / 24);
+        evictor.use("often", now + DAY / 12);
+        final double frequency = evictor.getFrequency("often", now + DAY / 12);
+        assertTrue(frequency > 2.9);
+
+        // the frequencies are saved later, in background
+        final File frequenciesFile = new File(folder.getRoot(), "exoplayer.frequencies");
+        assertFalse(frequenciesFile.exists());
+        evictor.saveFrequencies();
+        assertTrue(frequenciesFile.exists());
+
+        // a new session reads the spans of the previous one before being initialized
+        final PinningCacheEvictor restored = new PinningCacheEvictor(cacheDir);
+        restored.onSpanAdded(cache, span("often", now));
+        restored.onSpanAdded(cache, span("once", now));
+        restored.onCacheInitialized();
+        assertEquals(frequency, restored.getFrequency("often", now + DAY / 12), 1e-9);
+        assertEquals(1, restored.getFrequency("once", now), 1e-3);
+    }
+
+    @Test
+    public void testPrefetchIsNotAUse() throws IOException {
+        final Cache cache = mock(Cache.class);
+        final long now = System.currentTimeMillis();
+
+        final PinningCacheEvictor evictor = new PinningCacheEvictor(folder.newFolder("exoplayer"));
+        evictor.onCacheInitialized();
+        evictor.startPrefetch("next");
+        evictor.onSpanAdded(cache, span("next", now));
+        evictor.finishPrefetch("next");
+        assertEquals(0, evictor.getFrequency("next", now), 1e-3);
+
+        // the playback reads the prefetched span
+        evictor.onSpanTouched(cache, span("next", now), span("next", now));
+        assertEquals(1, evictor.getFrequency("next", now), 1e-3);
+
+        // the spans downloaded while playing count as a use
+        evictor.onSpanAdded(cache, span("current", now));
+        assertEquals(1, evictor.getFrequency("current", now), 1e-3);
+    }
+
+    private static CacheSpan span(final String key, final long lastTouchTimestamp) {
+        return new CacheSpan(key, 0, 1024, lastTouchTimestamp, null);
+    }
+}
@@ -0,0 +1,71 @@
+package org.schabi.newpipe.player.playback;
+
+import org.junit.Test;
+import org.schabi.newpipe.player.playqueue.PlayQueue;
+import org.schabi.newpipe.player.playqueue.PlayQueueItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class MediaSourceManagerTest {
+    private static final int SIZE = 8;
+
+    private static PlayQueue makePlayQueue(final List<PlayQueueItem> streams, final int index) {
+        final PlayQueue playQueue = mock(PlayQueue.class);
+        doReturn(index).when(playQueue).getIndex();
+        doReturn(streams).when(playQueue).getStreams();
+        doReturn(streams.size()).when(playQueue).size();
+        for (int i = 0; i < streams.size(); i++) {
+            doReturn(streams.get(i)).when(playQueue).getItem(i);
+        }
+        return playQueue;
+    }
+
+    private static List<PlayQueueItem> makeStreams() {
+        final List<PlayQueueItem> streams = new ArrayList<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            streams.add(mock(PlayQueueItem.class));
+        }
+        return streams;
+    }
+
+    @Test
+    public void testItemsToLoadByPriority() {
+        final List<PlayQueueItem> streams = makeStreams();
+        final MediaSourceManager.ItemsToLoad items =
+                MediaSourceManager.getItemsToLoad(makePlayQueue(streams, 2), 3);
+
+        assertSame(streams.get(2), items.center);
+        assertEquals(Arrays.asList(streams.get(3), streams.get(4), streams.get(5),
+                streams.get(1)), new ArrayList<>(items.neighbors));
+    }
+
+    @Test
+    public void testItemsToLoadRoundRobin() {
+        final List<PlayQueueItem> streams = makeStreams();
+        final MediaSourceManager.ItemsToLoad items =
+                MediaSourceManager.getItemsToLoad(makePlayQueue(streams, SIZE - 1), 2);
+
+        assertSame(streams.get(SIZE - 1), items.center);
+        assertEquals(Arrays.asList(streams.get(0), streams.get(1), streams.get(SIZE - 2)),
+                new ArrayList<>(items.neighbors));
+    }
+
+    @Test
+    public void testItemsToLoadSmallQueue() {
+        final List<PlayQueueItem> streams = makeStreams().subList(0, 2);
+        final MediaSourceManager.ItemsToLoad items =
+                MediaSourceManager.getItemsToLoad(makePlayQueue(streams, 0), 5);
+
+        assertSame(streams.get(0), items.center);
+        assertEquals(Collections.singletonList(streams.get(1)),
+                new ArrayList<>(items.neighbors));
+    }
+}
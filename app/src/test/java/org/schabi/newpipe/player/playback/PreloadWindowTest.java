@@ -0,0 +1,65 @@
+package org.schabi.newpipe.player.playback;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PreloadWindowTest {
+
+    @Test
+    public void testFixedSize() {
+        final PreloadWindow window = new PreloadWindow(null, 3);
+        assertEquals(3, window.getSize());
+
+        for (int i = 1; i < 10; i++) {
+            window.onIndexChanged(i, i * 1000L);
+        }
+        assertEquals(3, window.getSize());
+    }
+
+    @Test
+    public void testAdaptiveSize() {
+        assertEquals(1, PreloadWindow.getAdaptiveSize(true, false, 1));
+        assertEquals(1, PreloadWindow.getAdaptiveSize(false, true, 0));
+        assertEquals(2, PreloadWindow.getAdaptiveSize(false, false, 0));
+        assertEquals(2, PreloadWindow.getAdaptiveSize(false, true, 0.3f));
+        assertEquals(3, PreloadWindow.getAdaptiveSize(false, false, 0.3f));
+        assertEquals(2, PreloadWindow.getAdaptiveSize(false, true, 0.9f));
+        assertEquals(PreloadWindow.MAXIMUM_SIZE,
+                PreloadWindow.getAdaptiveSize(false, false, 0.9f));
+    }
+
+    @Test
+    public void testSkipRate() {
+        final PreloadWindow window = new PreloadWindow(null, 0);
+        long time = 0;
+
+        window.onIndexChanged(0, time);
+        assertEquals(0, window.getSkipRate(), 0);
+
+        // quick changes of stream
+        for (int i = 1; i <= 5; i++) {
+            time += 3000;
+            window.onIndexChanged(i, time);
+        }
+        assertTrue(window.getSkipRate() > 0.5f);
+
+        // the same index again is not a change
+        final float skipRate = window.getSkipRate();
+        window.onIndexChanged(5, time + 1000);
+        assertEquals(skipRate, window.getSkipRate(), 0);
+
+        // whole streams played
+        for (int i = 6; i <= 15; i++) {
+            time += 240000;
+            window.onIndexChanged(i, time);
+        }
+        assertTrue(window.getSkipRate() < 0.25f);
+
+        // jumping over streams
+        time += 240000;
+        window.onIndexChanged(20, time);
+        assertTrue(window.getSkipRate() > skipRate * 0.3f);
+    }
+}
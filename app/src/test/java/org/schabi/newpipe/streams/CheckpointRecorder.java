@@ -0,0 +1,94 @@
+package org.schabi.newpipe.streams;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Saves every checkpoint of a muxer like the downloader does: the state is serialized, and a copy
+ * of the output written until the checkpoint is kept.
+ */
+public class CheckpointRecorder implements CheckpointListener {
+    private final MemorySharpStream output;
+    private final List<Checkpoint> checkpoints = new ArrayList<>();
+
+    public CheckpointRecorder(final MemorySharpStream output) {
+        this.output = output;
+    }
+
+    public List<Checkpoint> getCheckpoints() {
+        return checkpoints;
+    }
+
+    @Override
+    public void onCheckpoint(final Serializable state, final long[] sourcePositions)
+            throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream stream = new ObjectOutputStream(bytes)) {
+            stream.writeObject(state);
+        }
+
+        if (!checkpoints.isEmpty()) {
+            // the downloader does not allow the required data to go backwards
+            final long[] previous = checkpoints.get(checkpoints.size() - 1).sourcePositions;
+            for (int i = 0; i < sourcePositions.length; i++) {
+                assertTrue(sourcePositions[i] == -1 || sourcePositions[i] >= previous[i]);
+            }
+        }
+
+        checkpoints.add(new Checkpoint(bytes.toByteArray(), output.toByteArray(),
+                sourcePositions.clone()));
+    }
+
+    public static final class Checkpoint {
+        private final byte[] state;
+        private final byte[] output;
+        private final long[] sourcePositions;
+
+        Checkpoint(final byte[] state, final byte[] output, final long[] sourcePositions) {
+            this.state = state;
+            this.output = output;
+            this.sourcePositions = sourcePositions;
+        }
+
+        public Serializable getState() throws IOException {
+            try (ObjectInputStream stream = new ObjectInputStream(
+                    new ByteArrayInputStream(state))) {
+                return (Serializable) stream.readObject();
+            } catch (final ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+        }
+
+        /**
+         * @return a stream with the output written before the checkpoint, positioned at the end
+         */
+        public MemorySharpStream getOutput() {
+            final MemorySharpStream stream = new MemorySharpStream(output.clone());
+            stream.seek(output.length);
+            return stream;
+        }
+
+        /**
+         * Simulates an output written over the source data that is not required anymore.
+         *
+         * @param index  the source index
+         * @param source the source data
+         * @return a copy of the source, with the data before the required position destroyed
+         */
+        public MemorySharpStream getSource(final int index, final byte[] source) {
+            final byte[] copy = source.clone();
+            final long position = sourcePositions[index];
+            Arrays.fill(copy, 0, position < 0 ? copy.length : (int) position, (byte) 0xFF);
+            return new MemorySharpStream(copy);
+        }
+    }
+}
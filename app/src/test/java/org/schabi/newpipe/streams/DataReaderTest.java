@@ -0,0 +1,108 @@
+package org.schabi.newpipe.streams;
+
+import org.junit.Test;
+import org.schabi.newpipe.streams.Mp4DashReader.Mp4DashChunk;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class DataReaderTest {
+    private static final int BUFFER_SIZE = 128 * 1024;
+    private static final int FIVE_MINUTES = 5 * 60;
+
+    @Test
+    public void testPrimitivesAcrossBufferBoundaries() throws IOException {
+        // place the values around the end of the read buffer, using every possible split
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE * 2);
+        buffer.position(BUFFER_SIZE - 24);
+        for (int i = 0; i < 8; i++) {
+            buffer.putLong(0x8123456789ABCDEFL + i);
+        }
+        buffer.position(BUFFER_SIZE - 24);
+
+        for (int offset = 0; offset < 8; offset++) {
+            final DataReader reader = new DataReader(new MemorySharpStream(buffer.array()));
+            reader.read(); // fill the read buffer
+            reader.skipBytes(BUFFER_SIZE - 25 - offset);
+            buffer.position(BUFFER_SIZE - 24 - offset);
+
+            assertEquals(buffer.getLong(), reader.readLong());
+            assertEquals(buffer.getInt(), reader.readInt());
+            assertEquals(buffer.getShort(), reader.readShort());
+            assertEquals(buffer.getInt() & 0xFFFFFFFFL, reader.readUnsignedInt());
+            assertEquals(buffer.getLong(), reader.readLong());
+            assertEquals(buffer.position(), reader.position());
+        }
+    }
+
+    @Test
+    public void testNegativeValues() throws IOException {
+        final byte[] data = ByteBuffer.allocate(14)
+                .putLong(-2L)
+                .putInt(0xFFFFFFFE)
+                .putShort((short) -3)
+                .array();
+        final DataReader reader = new DataReader(new MemorySharpStream(data));
+
+        assertEquals(-2L, reader.readLong());
+        assertEquals(0xFFFFFFFEL, reader.readUnsignedInt());
+        assertEquals(-3, reader.readShort());
+    }
+
+    @Test
+    public void testSeek() throws IOException {
+        final byte[] data = new byte[BUFFER_SIZE * 3];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+
+        final DataReader reader = new DataReader(new MemorySharpStream(data));
+        for (final int offset : new int[]{10, 11, 5, BUFFER_SIZE + 3, 7, BUFFER_SIZE * 3 - 1}) {
+            reader.seek(offset);
+            assertEquals(offset, reader.position());
+            assertEquals(data[offset] & 0xFF, reader.read());
+        }
+        assertEquals(-1, reader.read());
+    }
+
+    @Test(expected = EOFException.class)
+    public void testSeekBeyondEnd() throws IOException {
+        new DataReader(new MemorySharpStream(new byte[100])).seek(101);
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedStream() throws IOException {
+        final DataReader reader = new DataReader(new MemorySharpStream(new byte[6]));
+        reader.readInt();
+        reader.readInt();
+    }
+
+    @Test
+    public void testParseFragmentedMp4() throws IOException {
+        // several fragments, every trun entry is read through the primitive reads
+        final byte[] file = FragmentedMp4Fixture.video(FIVE_MINUTES, 8);
+        final int expected = FragmentedMp4Fixture.sampleCount(FIVE_MINUTES,
+                FragmentedMp4Fixture.VIDEO_TIMESCALE, FragmentedMp4Fixture.VIDEO_SAMPLE_DURATION);
+
+        assertEquals(expected, countSamples(file));
+    }
+
+    private static int countSamples(final byte[] file) throws IOException {
+        final Mp4DashReader reader = new Mp4DashReader(new MemorySharpStream(file));
+        reader.parse();
+        reader.selectTrack(0);
+
+        int count = 0;
+        Mp4DashChunk chunk;
+        while ((chunk = reader.getNextChunk(true)) != null) {
+            while (chunk.getNextSampleInfo() != null) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,138 @@
+package org.schabi.newpipe.streams;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class EbmlWriterTest {
+    private static final long[] NUMBERS = {
+            0, 1, 126, 127, 128, 255, 256, 16382, 16383, 16384, 65535, 2097151, 2097152,
+            268435454, 268435455, 268435456, 34359738367L, 34359738368L, 4398046511103L,
+            562949953421311L, 562949953421312L - 2
+    };
+
+    /**
+     * The encoder formerly used by {@link WebMWriter}.
+     *
+     * @param number     the value
+     * @param withLength {@code true} to prepend the length of an unsigned integer element
+     * @return the encoded value
+     */
+    private static byte[] referenceEncode(final long number, final boolean withLength) {
+        int length = -1;
+        for (int i = 1; i <= 7; i++) {
+            if (number < Math.pow(2, 7 * i)) {
+                length = i;
+                break;
+            }
+        }
+
+        if (number == (Math.pow(2, 7 * length)) - 1) {
+            length++;
+        }
+
+        final int offset = withLength ? 1 : 0;
+        final byte[] buffer = new byte[offset + length];
+        final long marker = (long) Math.floor((length - 1f) / 8f);
+
+        int shift = 0;
+        for (int i = length - 1; i >= 0; i--, shift += 8) {
+            long b = number >>> shift;
+            if (!withLength && i == marker) {
+                b = b | (0x80 >>> (length - 1));
+            }
+            buffer[offset + i] = (byte) b;
+        }
+
+        if (withLength) {
+            buffer[0] = (byte) (0x80 | length);
+        }
+
+        return buffer;
+    }
+
+    private static byte[] toByteArray(final EbmlWriter writer) throws IOException {
+        final MemorySharpStream stream = new MemorySharpStream();
+        assertEquals(writer.size(), writer.writeTo(stream));
+        assertEquals(0, writer.size());
+        return stream.toByteArray();
+    }
+
+    @Test
+    public void testSameEncodingAsReference() throws IOException {
+        final EbmlWriter writer = new EbmlWriter(1);
+
+        for (final long number : NUMBERS) {
+            writer.writeVint(number);
+            assertArrayEquals(referenceEncode(number, false), toByteArray(writer));
+
+            writer.writeUnsigned(number);
+            assertArrayEquals(referenceEncode(number, true), toByteArray(writer));
+        }
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testNumberTooBig() {
+        new EbmlWriter(16).writeVint(1L << 49);
+    }
+
+    @Test
+    public void testElementIds() throws IOException {
+        final EbmlWriter writer = new EbmlWriter(16);
+        writer.writeId(0xA3);
+        writer.writeId(0x4286);
+        writer.writeId(0x2AD7B1);
+        writer.writeId(0x1F43B675);
+
+        assertArrayEquals(new byte[]{
+                (byte) 0xA3, 0x42, (byte) 0x86, 0x2A, (byte) 0xD7, (byte) 0xB1,
+                0x1F, 0x43, (byte) 0xB6, 0x75
+        }, toByteArray(writer));
+    }
+
+    @Test
+    public void testBackPatchedSizes() throws IOException {
+        final EbmlWriter writer = new EbmlWriter(4);
+
+        for (final int contentSize : new int[]{0, 1, 126, 127, 128, 16382, 16383, 70000}) {
+            final byte[] content = new byte[contentSize];
+            Arrays.fill(content, (byte) 0x55);
+
+            // an element inside of another element
+            final int outer = writer.startElement(0x1654AE6B);
+            writer.writeByte(0x01);
+            final int inner = writer.startElement(0xAE);
+            writer.write(content);
+            writer.endElement(inner);
+            writer.writeByte(0x02);
+            writer.endElement(outer);
+
+            final byte[] innerSize = referenceEncode(contentSize, false);
+            final byte[] outerSize = referenceEncode(2 + 1 + innerSize.length + contentSize,
+                    false);
+            final byte[] expected = concat(new byte[]{0x16, 0x54, (byte) 0xAE, 0x6B}, outerSize,
+                    new byte[]{0x01, (byte) 0xAE}, innerSize, content, new byte[]{0x02});
+
+            assertArrayEquals(expected, toByteArray(writer));
+        }
+    }
+
+    private static byte[] concat(final byte[]... parts) {
+        int length = 0;
+        for (final byte[] part : parts) {
+            length += part.length;
+        }
+
+        final byte[] result = new byte[length];
+        int offset = 0;
+        for (final byte[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,228 @@
+package org.schabi.newpipe.streams;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Generates synthetic fragmented MP4 (DASH) files, with the same box layout used by YouTube.
+ * The samples are tiny, so a file with hours of media only takes a few MiB.
+ */
+public final class FragmentedMp4Fixture {
+    public static final int VIDEO_TIMESCALE = 15360;
+    public static final int VIDEO_SAMPLE_DURATION = 512; // 30 fps
+    public static final int AUDIO_TIMESCALE = 44100;
+    public static final int AUDIO_SAMPLE_DURATION = 1024;
+
+    private static final int KEYFRAME_INTERVAL = 60;
+    private static final int FRAGMENT_SECONDS = 5;
+
+    private FragmentedMp4Fixture() {
+    }
+
+    public static byte[] video(final int seconds, final int sampleSize) {
+        return generate(true, seconds, VIDEO_TIMESCALE, VIDEO_SAMPLE_DURATION, sampleSize);
+    }
+
+    public static byte[] audio(final int seconds, final int sampleSize) {
+        return generate(false, seconds, AUDIO_TIMESCALE, AUDIO_SAMPLE_DURATION, sampleSize);
+    }
+
+    /**
+     * Get the amount of samples stored in a file created by this class.
+     *
+     * @param seconds        the media duration
+     * @param timescale      the media timescale
+     * @param sampleDuration the duration of every sample
+     * @return the sample count
+     */
+    public static int sampleCount(final int seconds, final int timescale,
+                                  final int sampleDuration) {
+        return (int) ((long) seconds * timescale / sampleDuration);
+    }
+
+    /**
+     * Gets the content of a sample, every sample has different data.
+     *
+     * @param index the sample index
+     * @param size  the sample size
+     * @return the sample data
+     */
+    public static byte[] sampleData(final int index, final int size) {
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (index * 31 + i);
+        }
+        return data;
+    }
+
+    private static byte[] generate(final boolean video, final int seconds, final int timescale,
+                                   final int sampleDuration, final int sampleSize) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final int totalSamples = sampleCount(seconds, timescale, sampleDuration);
+        final int samplesPerFragment = FRAGMENT_SECONDS * timescale / sampleDuration;
+
+        write(out, box("ftyp", ints(0x64617368, 0, 0x69736F36, 0x6D703431))); // dash iso6 mp41
+        write(out, moov(video, timescale, (long) totalSamples * sampleDuration, sampleDuration,
+                sampleSize));
+
+        int sequence = 1;
+        for (int first = 0; first < totalSamples; first += samplesPerFragment) {
+            final int count = Math.min(samplesPerFragment, totalSamples - first);
+            final byte[] moof = moof(video, sequence++, (long) first * sampleDuration, first,
+                    count, sampleDuration, sampleSize);
+            write(out, moof);
+
+            final ByteBuffer mdat = ByteBuffer.allocate(8 + count * sampleSize);
+            mdat.putInt(mdat.capacity());
+            mdat.putInt(0x6D646174); // mdat
+            for (int i = 0; i < count; i++) {
+                mdat.put(sampleData(first + i, sampleSize));
+            }
+            write(out, mdat.array());
+        }
+
+        return out.toByteArray();
+    }
+
+    private static byte[] moov(final boolean video, final int timescale, final long duration,
+                               final int sampleDuration, final int sampleSize) {
+        final byte[] mvhd = ByteBuffer.allocate(100)
+                .putInt(0) // version & flags
+                .putInt(0).putInt(0) // creation & modification time
+                .putInt(timescale)
+                .putInt((int) duration)
+                .putInt(0x00010000) // rate
+                .putShort((short) 0x0100) // volume
+                .put(new byte[10]) // reserved
+                .put(matrix())
+                .put(new byte[24]) // predefined
+                .putInt(2) // next track id
+                .array();
+
+        final byte[] tkhd = ByteBuffer.allocate(84)
+                .putInt(0x00000003) // version & flags
+                .putInt(0).putInt(0) // creation & modification time
+                .putInt(1) // track id
+                .putInt(0) // reserved
+                .putInt((int) duration)
+                .put(new byte[8]) // reserved
+                .putShort((short) 0) // layer
+                .putShort((short) 0) // alternate group
+                .putShort((short) (video ? 0 : 0x0100)) // volume
+                .putShort((short) 0) // reserved
+                .put(matrix())
+                .putInt(video ? 1280 << 16 : 0)
+                .putInt(video ? 720 << 16 : 0)
+                .array();
+
+        final byte[] mdhd = ByteBuffer.allocate(24)
+                .putInt(0) // version & flags
+                .putInt(0).putInt(0) // creation & modification time
+                .putInt(timescale)
+                .putInt((int) duration)
+                .putShort((short) 0x55C4) // language "und"
+                .putShort((short) 0)
+                .array();
+
+        final byte[] hdlr = ByteBuffer.allocate(25)
+                .putInt(0) // version & flags
+                .putInt(0) // predefined
+                .putInt(video ? 0x76696465 : 0x736F756E) // "vide" or "soun"
+                .put(new byte[12]) // reserved
+                .put((byte) 0) // empty name
+                .array();
+
+        final byte[] mhd = video
+                ? box("vmhd", ints(0x00000001, 0, 0))
+                : box("smhd", ints(0, 0));
+        final byte[] dinf = box("dinf", box("dref", ints(0, 1), box("url ", ints(1))));
+        final byte[] stbl = box("stbl", box("stsd", ints(0, 0)));
+
+        final byte[] trex = ints(0, 1, 1, sampleDuration, sampleSize, 0);
+
+        return box("moov",
+                box("mvhd", mvhd),
+                box("trak",
+                        box("tkhd", tkhd),
+                        box("mdia",
+                                box("mdhd", mdhd),
+                                box("hdlr", hdlr),
+                                box("minf", mhd, dinf, stbl))),
+                box("mvex", box("trex", trex)));
+    }
+
+    private static byte[] moof(final boolean video, final int sequence, final long decodeTime,
+                               final int first, final int count, final int sampleDuration,
+                               final int sampleSize) {
+        // video: sample duration + size + flags + composition offset, audio: duration + size
+        final int flags = video ? 0x000F01 : 0x000301;
+        final int rowSize = video ? 16 : 8;
+
+        final ByteBuffer trun = ByteBuffer.allocate(12 + count * rowSize)
+                .putInt(flags)
+                .putInt(count)
+                .putInt(0); // data offset, set below
+
+        for (int i = 0; i < count; i++) {
+            trun.putInt(sampleDuration);
+            trun.putInt(sampleSize);
+            if (video) {
+                final boolean keyframe = (first + i) % KEYFRAME_INTERVAL == 0;
+                trun.putInt(keyframe ? 0x02000000 : 0x01010000);
+                trun.putInt((first + i) % 3 == 0 ? 0 : sampleDuration * 2);
+            }
+        }
+
+        final byte[] tfdt = ByteBuffer.allocate(12)
+                .putInt(0x01000000) // version 1
+                .putLong(decodeTime)
+                .array();
+
+        final byte[] moof = box("moof",
+                box("mfhd", ints(0, sequence)),
+                box("traf",
+                        box("tfhd", ints(0x00020000, 1)), // default-base-is-moof
+                        box("tfdt", tfdt),
+                        box("trun", trun.array())));
+
+        // the data offset is relative to the moof start, points to the mdat payload
+        final ByteBuffer buffer = ByteBuffer.wrap(moof);
+        buffer.putInt(moof.length - trun.capacity() + 8, moof.length + 8);
+
+        return moof;
+    }
+
+    private static byte[] matrix() {
+        return ints(0x00010000, 0, 0, 0, 0x00010000, 0, 0, 0, 0x40000000);
+    }
+
+    private static byte[] ints(final int... values) {
+        final ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+        for (final int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+
+    static byte[] box(final String type, final byte[]... content) {
+        int size = 8;
+        for (final byte[] part : content) {
+            size += part.length;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(size);
+        for (int i = 0; i < 4; i++) {
+            buffer.put((byte) type.charAt(i));
+        }
+        for (final byte[] part : content) {
+            buffer.put(part);
+        }
+
+        return buffer.array();
+    }
+
+    private static void write(final ByteArrayOutputStream out, final byte[] data) {
+        out.write(data, 0, data.length);
+    }
+}
@@ -0,0 +1,127 @@
+package org.schabi.newpipe.streams;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class Mp4FromDashWriterTest {
+    @Test
+    public void testFastStartOutputIsIdentical() throws IOException {
+        final byte[] video = FragmentedMp4Fixture.video(10 * 60, 1500);
+        final byte[] audio = FragmentedMp4Fixture.audio(10 * 60, 300);
+
+        final Mp4FromDashWriter regular = createMuxer(video, audio);
+        final Mp4FromDashWriter fastStart = createMuxer(video, audio);
+        fastStart.setFastStart(true);
+
+        assertSameOutput(build(regular), buildSequentially(fastStart));
+    }
+
+    @Test
+    public void testFastStartSingleTrack() throws IOException {
+        final byte[] audio = FragmentedMp4Fixture.audio(5 * 60, 700);
+
+        final Mp4FromDashWriter regular = createMuxer(audio);
+        final Mp4FromDashWriter fastStart = createMuxer(audio);
+        fastStart.setFastStart(true);
+
+        assertSameOutput(build(regular), buildSequentially(fastStart));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedSource() throws IOException {
+        final byte[] video = FragmentedMp4Fixture.video(60, 1500);
+        final byte[] audio = FragmentedMp4Fixture.audio(60, 300);
+
+        final MemorySharpStream truncated = new MemorySharpStream(video);
+        final Mp4FromDashWriter muxer = new Mp4FromDashWriter(truncated,
+                new MemorySharpStream(audio));
+        muxer.parseSources();
+        muxer.selectTracks(0, 0);
+
+        // drop the last samples after parsing the sources
+        truncated.setLength(video.length - 4096);
+        build(muxer);
+    }
+
+    /**
+     * Checks that both outputs are identical, the creation and modification times are ignored
+     * because each muxer takes them from the clock.
+     *
+     * @param expected the expected output
+     * @param actual   the output to check
+     */
+    private static void assertSameOutput(final byte[] expected, final byte[] actual) {
+        assertArrayEquals(clearTimes(expected), clearTimes(actual));
+    }
+
+    private static byte[] clearTimes(final byte[] output) {
+        final byte[] result = output.clone();
+        // the mvhd and tkhd boxes are written with the version 1, the times are 64 bits long
+        for (final String box : new String[]{"mvhd", "tkhd"}) {
+            final byte[] type = box.getBytes(StandardCharsets.US_ASCII);
+            for (int i = 0; i + type.length + 20 <= result.length; i++) {
+                if (result[i] == type[0] && result[i + 1] == type[1]
+                        && result[i + 2] == type[2] && result[i + 3] == type[3]) {
+                    // skip the version and flags, then clear the creation and modification times
+                    Arrays.fill(result, i + 8, i + 24, (byte) 0);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Mp4FromDashWriter createMuxer(final byte[]... sources) throws IOException {
+        final MemorySharpStream[] streams = new MemorySharpStream[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            streams[i] = new MemorySharpStream(sources[i]);
+        }
+
+        final Mp4FromDashWriter muxer = new Mp4FromDashWriter(streams);
+        muxer.parseSources();
+        muxer.selectTracks(new int[sources.length]);
+        return muxer;
+    }
+
+    /**
+     * Builds the output in a stream that can not be seeked or rewound.
+     *
+     * @param muxer the muxer, with the tracks already selected
+     * @return the output
+     * @throws IOException if the sources are invalid
+     */
+    private static byte[] buildSequentially(final Mp4FromDashWriter muxer) throws IOException {
+        final MemorySharpStream output = new MemorySharpStream() {
+            @Override
+            public boolean canSeek() {
+                return false;
+            }
+
+            @Override
+            public boolean canRewind() {
+                return false;
+            }
+
+            @Override
+            public void seek(final long offset) {
+                throw new UnsupportedOperationException("seek");
+            }
+        };
+
+        muxer.build(output);
+        muxer.close();
+        return output.toByteArray();
+    }
+
+    private static byte[] build(final Mp4FromDashWriter muxer) throws IOException {
+        final MemorySharpStream output = new MemorySharpStream();
+        muxer.build(output);
+        muxer.close();
+        return output.toByteArray();
+    }
+}
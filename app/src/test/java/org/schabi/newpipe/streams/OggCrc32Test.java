@@ -0,0 +1,98 @@
+package org.schabi.newpipe.streams;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class OggCrc32Test {
+    private static final int[] REFERENCE_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 0x100; i++) {
+            int crc = i << 24;
+            for (int j = 0; j < 8; j++) {
+                final long b = crc >>> 31;
+                crc <<= 1;
+                crc ^= (int) (0x100000000L - b) & 0x04c11db7;
+            }
+            REFERENCE_TABLE[i] = crc;
+        }
+    }
+
+    /**
+     * The byte-at-a-time implementation formerly used by {@link OggFromWebMWriter}.
+     *
+     * @param initialCrc the checksum of the previous data, or zero
+     * @param buffer     the data
+     * @param offset     the data offset
+     * @param size       amount of bytes
+     * @return the new checksum
+     */
+    private static int referenceCrc32(final int initialCrc, final byte[] buffer,
+                                      final int offset, final int size) {
+        int crc = initialCrc;
+        for (int i = offset; i < offset + size; i++) {
+            final int reg = (crc >>> 24) & 0xff;
+            crc = (crc << 8) ^ REFERENCE_TABLE[reg ^ (buffer[i] & 0xff)];
+        }
+
+        return crc;
+    }
+
+    @Test
+    public void testSameAsReference() {
+        final byte[] data = new byte[1024];
+        new Random(0x4F676753).nextBytes(data);
+
+        for (int offset = 0; offset < 16; offset++) {
+            for (int length = 0; length <= 100; length++) {
+                assertEquals(referenceCrc32(0, data, offset, length),
+                        OggCrc32.update(0, data, offset, length));
+                assertEquals(referenceCrc32(0x12345678, data, offset, length),
+                        OggCrc32.update(0x12345678, data, offset, length));
+            }
+        }
+
+        assertEquals(referenceCrc32(0, data, 0, data.length),
+                OggCrc32.update(0, data, 0, data.length));
+    }
+
+    @Test
+    public void testKnownValue() {
+        final byte[] data = "123456789".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0x89A1897F, OggCrc32.update(0, data, 0, data.length));
+    }
+
+    @Test
+    public void testIncrementalUpdates() {
+        final byte[] header = new byte[27 + 255];
+        final byte[] page = new byte[65025];
+        final Random random = new Random(42);
+        random.nextBytes(header);
+        random.nextBytes(page);
+
+        // append the page in segments of different sizes, like OggFromWebMWriter does
+        final OggCrc32 checksum = new OggCrc32();
+        int offset = 0;
+        while (offset < page.length) {
+            final int size = Math.min(random.nextInt(2000), page.length - offset);
+            checksum.update(page, offset, size);
+            offset += size;
+        }
+        assertEquals(page.length, checksum.getLength());
+
+        final int expected = referenceCrc32(referenceCrc32(0, header, 0, header.length),
+                page, 0, page.length);
+        final int headerCrc = OggCrc32.update(0, header, 0, header.length);
+
+        assertEquals(expected,
+                OggCrc32.combine(headerCrc, checksum.getValue(), checksum.getLength()));
+
+        checksum.reset();
+        assertEquals(0, checksum.getLength());
+        assertEquals(headerCrc, OggCrc32.combine(headerCrc, checksum.getValue(), 0));
+    }
+}
@@ -0,0 +1,83 @@
+package org.schabi.newpipe.streams;
+
+import org.junit.Test;
+import org.schabi.newpipe.streams.CheckpointRecorder.Checkpoint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OggFromWebMWriterTest {
+
+    @Test
+    public void testPagesAreValid() throws IOException {
+        final MemorySharpStream output = new MemorySharpStream();
+        demux(WebMFixture.audio(2 * 60, 300), output, null, 0);
+        final ByteBuffer buffer = ByteBuffer.wrap(output.toByteArray())
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        int pages = 0;
+        while (buffer.hasRemaining()) {
+            final int start = buffer.position();
+            assertEquals(0x5367674f, buffer.getInt(start)); // "OggS"
+            assertEquals(pages, buffer.getInt(start + 18)); // page sequence number
+
+            final int segments = buffer.get(start + 26) & 0xFF;
+            int size = 27 + segments;
+            for (int i = 0; i < segments; i++) {
+                size += buffer.get(start + 27 + i) & 0xFF;
+            }
+
+            final byte[] page = new byte[size];
+            buffer.get(page);
+            final int checksum = ByteBuffer.wrap(page, 22, 4).order(ByteOrder.LITTLE_ENDIAN)
+                    .getInt();
+            Arrays.fill(page, 22, 26, (byte) 0); // the checksum is computed with zeros
+            assertEquals(checksum, OggCrc32.update(0, page, 0, page.length));
+
+            pages++;
+        }
+
+        assertTrue(pages > 100);
+    }
+
+    @Test
+    public void testResumeFromCheckpoints() throws IOException {
+        final byte[] audio = WebMFixture.audio(5 * 60, 400);
+
+        final MemorySharpStream output = new MemorySharpStream();
+        final CheckpointRecorder recorder = new CheckpointRecorder(output);
+        demux(audio, output, recorder, 128 * 1024);
+        final byte[] expected = output.toByteArray();
+
+        final List<Checkpoint> checkpoints = recorder.getCheckpoints();
+        assertTrue(checkpoints.size() > 10);
+
+        for (final Checkpoint checkpoint : checkpoints) {
+            final MemorySharpStream resumedOutput = checkpoint.getOutput();
+            final OggFromWebMWriter resumed = new OggFromWebMWriter(
+                    checkpoint.getSource(0, audio), resumedOutput);
+            resumed.resume(checkpoint.getState());
+            resumed.build();
+
+            assertArrayEquals(expected, resumedOutput.toByteArray());
+        }
+    }
+
+    private static void demux(final byte[] source, final MemorySharpStream output,
+                              final CheckpointListener listener, final long interval)
+            throws IOException {
+        final OggFromWebMWriter demuxer = new OggFromWebMWriter(new MemorySharpStream(source),
+                output);
+        demuxer.parseSource();
+        demuxer.selectTrack(0);
+        demuxer.setCheckpointListener(listener, interval);
+        demuxer.build();
+    }
+}
@@ -0,0 +1,76 @@
+package org.schabi.newpipe.streams;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SrtFromTtmlWriterTest {
+    private static final String[] CORPUS = {
+            "manual.ttml", "auto-generated.ttml", "edge-cases.ttml", "prefixed.ttml", "empty.ttml"
+    };
+
+    @Test
+    public void testSameOutputAsDomConverter() throws IOException {
+        for (final String name : CORPUS) {
+            final byte[] ttml = readResource("ttml/" + name);
+            assertSameOutput(name, ttml, true);
+            assertSameOutput(name, ttml, false);
+        }
+    }
+
+    @Test
+    public void testSameOutputOnLongSubtitles() throws IOException {
+        final byte[] ttml = TtmlFixture.autoCaptions(3 * 60 * 60);
+        assertSameOutput("generated", ttml, true);
+        assertSameOutput("generated", ttml, false);
+    }
+
+    @Test
+    public void testFrames() throws IOException {
+        final String ttml = "<tt><body><div>"
+                + "<p begin=\"00:00:00.140\" end=\"00:00:03.130\">Hello<br />world</p>"
+                + "<p begin=\"00:00:03.130\" end=\"00:00:04.000\"></p>"
+                + "<p begin=\"00:00:04.000\" end=\"00:01:00.500\">Tom &amp; Jerry</p>"
+                + "</div></body></tt>";
+
+        assertEquals("0\r\n00:00:00,140 --> 00:00:03,130\r\nHello\r\nworld\r\n\r\n"
+                        + "1\r\n00:00:04,000 --> 00:01:00,500\r\nTom & Jerry\r\n\r\n",
+                new String(convert(ttml.getBytes(StandardCharsets.UTF_8), true),
+                        StandardCharsets.UTF_8));
+    }
+
+    private static void assertSameOutput(final String name, final byte[] ttml,
+                                         final boolean ignoreEmptyFrames) throws IOException {
+        final MemorySharpStream expected = new MemorySharpStream();
+        new JsoupSrtFromTtmlWriter(expected, ignoreEmptyFrames)
+                .build(new MemorySharpStream(ttml));
+
+        assertArrayEquals(name, expected.toByteArray(), convert(ttml, ignoreEmptyFrames));
+    }
+
+    private static byte[] convert(final byte[] ttml, final boolean ignoreEmptyFrames)
+            throws IOException {
+        final MemorySharpStream out = new MemorySharpStream();
+        new SrtFromTtmlWriter(out, ignoreEmptyFrames).build(new MemorySharpStream(ttml));
+        return out.toByteArray();
+    }
+
+    private static byte[] readResource(final String name) throws IOException {
+        try (InputStream stream = SrtFromTtmlWriterTest.class.getClassLoader()
+                .getResourceAsStream(name)) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8 * 1024];
+            int read;
+            while ((read = stream.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.schabi.newpipe.streams;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Generates synthetic TTML subtitles, similar to the auto-generated captions of YouTube.
+ */
+public final class TtmlFixture {
+    private TtmlFixture() {
+    }
+
+    /**
+     * Generates a subtitle with one frame every two seconds, some frames have no text, nested
+     * spans, line breaks, entities and non-ASCII characters.
+     *
+     * @param seconds the subtitle duration
+     * @return the TTML document encoded in UTF-8
+     */
+    public static byte[] autoCaptions(final int seconds) {
+        final StringBuilder ttml = new StringBuilder(seconds * 64);
+        ttml.append("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n")
+                .append("<tt xml:lang=\"en\" xmlns=\"http://www.w3.org/ns/ttml\">\n")
+                .append("<body region=\"r1\">\n<div>\n");
+
+        for (int i = 0; i < seconds; i += 2) {
+            ttml.append("<p begin=\"").append(timestamp(i * 1000L)).append("\" end=\"")
+                    .append(timestamp(i * 1000L + 1990)).append("\" style=\"s2\">");
+
+            if (i % 10 == 8) {
+                ttml.append("\n</p>\n"); // frame without text
+                continue;
+            }
+
+            ttml.append("word").append(i).append(" &amp; <span begin=\"")
+                    .append(timestamp(i * 1000L + 500)).append("\">other</span> words");
+            if (i % 3 == 0) {
+                ttml.append("<br />second line éè 日本");
+            }
+            ttml.append("</p>\n");
+        }
+
+        ttml.append("</div>\n</body>\n</tt>\n");
+        return ttml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String timestamp(final long millis) {
+        return String.format(Locale.ENGLISH, "%02d:%02d:%02d.%03d", millis / 3600000,
+                millis / 60000 % 60, millis / 1000 % 60, millis % 1000);
+    }
+}
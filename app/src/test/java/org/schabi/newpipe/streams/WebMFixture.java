@@ -0,0 +1,244 @@
+package org.schabi.newpipe.streams;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generates synthetic WebM files: one cluster every 5 seconds, starting with a keyframe, and the
+ * cues after the clusters, referenced by the seek head. The blocks are tiny, so a file with
+ * hours of media only takes a few MiB.
+ */
+public final class WebMFixture {
+    public static final int VIDEO_BLOCK_DURATION = 33; // near 30 fps, in milliseconds
+    public static final int AUDIO_BLOCK_DURATION = 20; // opus frames
+
+    private static final int CLUSTER_DURATION = 5000;
+    private static final int TIMECODE_SCALE = 1000000;
+
+    private WebMFixture() {
+    }
+
+    public static byte[] video(final int seconds, final int blockSize) {
+        return generate(true, seconds, VIDEO_BLOCK_DURATION, blockSize, true);
+    }
+
+    public static byte[] audio(final int seconds, final int blockSize) {
+        return generate(false, seconds, AUDIO_BLOCK_DURATION, blockSize, true);
+    }
+
+    public static byte[] audioWithoutCues(final int seconds, final int blockSize) {
+        return generate(false, seconds, AUDIO_BLOCK_DURATION, blockSize, false);
+    }
+
+    /**
+     * Get the amount of blocks stored in a file created by this class.
+     *
+     * @param seconds       the media duration
+     * @param blockDuration the duration of every block, in milliseconds
+     * @return the block count
+     */
+    public static int blockCount(final int seconds, final int blockDuration) {
+        final int blocksPerCluster = (CLUSTER_DURATION + blockDuration - 1) / blockDuration;
+        final int clusters = seconds * 1000 / CLUSTER_DURATION;
+        final int lastCluster = seconds * 1000 % CLUSTER_DURATION;
+
+        return clusters * blocksPerCluster + (lastCluster + blockDuration - 1) / blockDuration;
+    }
+
+    /**
+     * Gets the timecode of a block, in milliseconds.
+     *
+     * @param index         the block index
+     * @param blockDuration the duration of every block, in milliseconds
+     * @return the timecode
+     */
+    public static long blockTimecode(final int index, final int blockDuration) {
+        final int blocksPerCluster = (CLUSTER_DURATION + blockDuration - 1) / blockDuration;
+        return (long) (index / blocksPerCluster) * CLUSTER_DURATION
+                + (long) (index % blocksPerCluster) * blockDuration;
+    }
+
+    /**
+     * Gets the content of a block, every block has different data and size.
+     *
+     * @param index     the block index
+     * @param blockSize the average block size
+     * @return the block data
+     */
+    public static byte[] blockData(final int index, final int blockSize) {
+        final byte[] data = new byte[blockSize / 2 + (index * 7919) % (blockSize + 1)];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (index * 17 + i);
+        }
+        return data;
+    }
+
+    private static byte[] generate(final boolean video, final int seconds,
+                                   final int blockDuration, final int blockSize,
+                                   final boolean withCues) {
+        final byte[] info = element(0x1549A966,
+                element(0x2AD7B1, number(TIMECODE_SCALE, 3)),
+                element(0x4489, ByteBuffer.allocate(4).putFloat(seconds * 1000f).array())
+        );
+        final byte[] tracks = element(0x1654AE6B, trackEntry(video, blockDuration));
+
+        final ByteArrayOutputStream clusters = new ByteArrayOutputStream();
+        final ByteArrayOutputStream cuePoints = new ByteArrayOutputStream();
+        final int infoOffset = seekHead(0, 0).length;
+        final int clustersOffset = infoOffset + info.length + tracks.length;
+        final int totalBlocks = blockCount(seconds, blockDuration);
+
+        int index = 0;
+        while (index < totalBlocks) {
+            final long timecode = blockTimecode(index, blockDuration);
+            write(cuePoints, element(0xBB, // cue point
+                    element(0xB3, number(timecode, 4)),
+                    element(0xB7, // cue track positions
+                            element(0xF7, number(1, 1)),
+                            element(0xF1, number(clustersOffset + clusters.size(), 4))
+                    )
+            ));
+
+            final ByteArrayOutputStream cluster = new ByteArrayOutputStream();
+            write(cluster, element(0xE7, number(timecode, 4)));
+
+            do {
+                final byte[] data = blockData(index, blockSize);
+                final ByteBuffer header = ByteBuffer.allocate(4);
+                header.put((byte) 0x81); // track number
+                header.putShort((short) (blockTimecode(index, blockDuration) - timecode));
+                header.put((byte) (!video || blockTimecode(index, blockDuration) == timecode
+                        ? 0x80 : 0x00)); // keyframe flag
+                write(cluster, element(0xA3, header.array(), data));
+                index++;
+            } while (index < totalBlocks && blockTimecode(index, blockDuration) - timecode
+                    < CLUSTER_DURATION);
+
+            write(clusters, element(0x1F43B675, cluster.toByteArray()));
+        }
+
+        final ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        if (withCues) {
+            write(segment, seekHead(0x1C53BB6B, clustersOffset + clusters.size()));
+        } else {
+            write(segment, seekHead(0x1549A966, infoOffset));
+        }
+        write(segment, info);
+        write(segment, tracks);
+        write(segment, clusters.toByteArray());
+        if (withCues) {
+            write(segment, element(0x1C53BB6B, cuePoints.toByteArray()));
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, element(0x1A45DFA3, // EBML
+                element(0x4286, number(1, 1)),
+                element(0x42F7, number(1, 1)),
+                element(0x42F2, number(4, 1)),
+                element(0x42F3, number(8, 1)),
+                element(0x4282, "webm".getBytes(StandardCharsets.US_ASCII)),
+                element(0x4287, number(4, 1)),
+                element(0x4285, number(2, 1))
+        ));
+        write(out, element(0x18538067, segment.toByteArray()));
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Creates a seek head with a single entry, the size is the same for any position.
+     *
+     * @param id       the ID of the element
+     * @param position position of the element in the segment
+     * @return the seek head element
+     */
+    private static byte[] seekHead(final int id, final long position) {
+        return element(0x114D9B74,
+                element(0x4DBB, // seek
+                        element(0x53AB, number(id, 4)),
+                        element(0x53AC, number(position, 8))
+                )
+        );
+    }
+
+    private static byte[] trackEntry(final boolean video, final int blockDuration) {
+        if (video) {
+            return element(0xAE,
+                    element(0xD7, number(1, 1)), // track number
+                    element(0x73C5, number(1, 1)), // track uid
+                    element(0x9C, number(0, 1)), // flag lacing
+                    element(0x86, "V_VP9".getBytes(StandardCharsets.US_ASCII)),
+                    element(0x83, number(1, 1)), // track type
+                    element(0x23E383, number((long) blockDuration * TIMECODE_SCALE, 4)),
+                    element(0xE0, // video
+                            element(0xB0, number(1920, 2)),
+                            element(0xBA, number(1080, 2))
+                    )
+            );
+        }
+
+        final byte[] opusHead = ByteBuffer.allocate(19)
+                .put("OpusHead".getBytes(StandardCharsets.US_ASCII))
+                .put((byte) 1) // version
+                .put((byte) 2) // channels
+                .putShort(Short.reverseBytes((short) 312)) // pre-skip
+                .putInt(Integer.reverseBytes(48000))
+                .array();
+
+        return element(0xAE,
+                element(0xD7, number(1, 1)), // track number
+                element(0x73C5, number(1, 1)), // track uid
+                element(0x9C, number(0, 1)), // flag lacing
+                element(0x86, "A_OPUS".getBytes(StandardCharsets.US_ASCII)),
+                element(0x56AA, number(6500000, 4)), // codec delay
+                element(0x56BB, number(80000000, 4)), // seek pre-roll
+                element(0x83, number(2, 1)), // track type
+                element(0xE1, // audio
+                        // sampling frequency, with the short encoding expected by the Ogg demuxer
+                        new byte[]{(byte) 0xB5, (byte) 0x84},
+                        ByteBuffer.allocate(4).putFloat(48000).array(),
+                        element(0x9F, number(2, 1))
+                ),
+                element(0x63A2, opusHead)
+        );
+    }
+
+    /**
+     * Creates an element, the size is always encoded using 8 bytes.
+     *
+     * @param id      the element ID, including the length marker
+     * @param content the parts of the content
+     * @return the element
+     */
+    private static byte[] element(final int id, final byte[]... content) {
+        long size = 0;
+        for (final byte[] part : content) {
+            size += part.length;
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            if ((id >>> shift) != 0) {
+                out.write(id >>> shift);
+            }
+        }
+        write(out, ByteBuffer.allocate(8).putLong(size | 0x0100000000000000L).array());
+        for (final byte[] part : content) {
+            write(out, part);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] number(final long value, final int length) {
+        final byte[] buffer = new byte[length];
+        for (int i = length - 1, shift = 0; i >= 0; i--, shift += 8) {
+            buffer[i] = (byte) (value >>> shift);
+        }
+        return buffer;
+    }
+
+    private static void write(final ByteArrayOutputStream out, final byte[] data) {
+        out.write(data, 0, data.length);
+    }
+}
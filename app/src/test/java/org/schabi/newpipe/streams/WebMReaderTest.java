@@ -0,0 +1,142 @@
+package org.schabi.newpipe.streams;
+
+import org.junit.Test;
+import org.schabi.newpipe.streams.WebMReader.Cluster;
+import org.schabi.newpipe.streams.WebMReader.CuePoint;
+import org.schabi.newpipe.streams.WebMReader.Segment;
+import org.schabi.newpipe.streams.WebMReader.SimpleBlock;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class WebMReaderTest {
+    private static final int SECONDS = 10 * 60;
+    private static final int BLOCK_SIZE = 300;
+    private static final int BLOCKS_PER_CLUSTER = 5000 / WebMFixture.AUDIO_BLOCK_DURATION;
+
+    @Test
+    public void testCuesAfterClusters() throws IOException {
+        final Segment segment = open(WebMFixture.audio(SECONDS, BLOCK_SIZE));
+
+        final CuePoint[] cues = segment.getCues();
+        assertNotNull(cues);
+        assertEquals(SECONDS / 5, cues.length);
+        for (int i = 0; i < cues.length; i++) {
+            assertEquals(i * 5000L, cues[i].timecode);
+            assertEquals(1, cues[i].trackNumber);
+        }
+
+        assertSeek(segment, 123_456, 120_000);
+        assertSeek(segment, 10_000, 10_000);
+        assertSeek(segment, 0, 0);
+        assertSeek(segment, 60 * 60 * 1000, SECONDS * 1000 - 5000);
+        assertSeek(segment, 42_000, 40_000);
+        assertRemainingBlocks(segment, 40_000);
+    }
+
+    @Test
+    public void testSeekWithoutCues() throws IOException {
+        final Segment segment = open(WebMFixture.audioWithoutCues(SECONDS, BLOCK_SIZE));
+        assertNull(segment.getCues());
+
+        // read some clusters before seeking
+        final Cluster first = segment.getNextCluster();
+        assertEquals(0, first.timecode);
+        assertEquals(5000, segment.getNextCluster().timecode);
+
+        assertSeek(segment, 300_500, 300_000);
+        assertSeek(segment, 7_000, 5_000);
+        assertSeek(segment, 60 * 60 * 1000, SECONDS * 1000 - 5000);
+        assertSeek(segment, 599_999, 595_000);
+        assertSeek(segment, 62_000, 60_000);
+        assertRemainingBlocks(segment, 60_000);
+    }
+
+    @Test
+    public void testSeekBeforeReadingClusters() throws IOException {
+        final Segment segment = open(WebMFixture.audioWithoutCues(SECONDS, BLOCK_SIZE));
+        assertSeek(segment, 15_000, 15_000);
+        assertRemainingBlocks(segment, 15_000);
+    }
+
+    @Test
+    public void testSeekInMuxedFile() throws IOException {
+        // the muxer places the cues before the clusters
+        final MemorySharpStream[] sources = {
+                new MemorySharpStream(WebMFixture.video(SECONDS, 1500)),
+                new MemorySharpStream(WebMFixture.audio(SECONDS, BLOCK_SIZE))
+        };
+        final WebMWriter muxer = new WebMWriter(sources);
+        muxer.parseSources();
+        muxer.selectTracks(0, 0);
+        final MemorySharpStream output = new MemorySharpStream();
+        muxer.build(output);
+        muxer.close();
+
+        final WebMReader reader = new WebMReader(new MemorySharpStream(output.toByteArray()));
+        reader.parse();
+        reader.selectTrack(0);
+        final Segment segment = reader.getNextSegment();
+        assertNotNull(segment.getCues());
+
+        final Cluster cluster = segment.seek(200_000_000_000L);
+        assertNotNull(cluster);
+
+        // the cue points are placed on keyframes of the video track
+        SimpleBlock block = cluster.getNextSimpleBlock();
+        while (!block.isKeyframe()) {
+            block = cluster.getNextSimpleBlock();
+        }
+        assertEquals(200_000, block.absoluteTimeCodeNs / 1_000_000);
+    }
+
+    private static Segment open(final byte[] webm) throws IOException {
+        final WebMReader reader = new WebMReader(new MemorySharpStream(webm));
+        reader.parse();
+        reader.selectTrack(0);
+        return reader.getNextSegment();
+    }
+
+    private static void assertSeek(final Segment segment, final long timecodeMs,
+                                   final long expectedCluster) throws IOException {
+        final Cluster cluster = segment.seek(timecodeMs * 1_000_000);
+        assertEquals(expectedCluster, cluster.timecode);
+
+        final SimpleBlock block = cluster.getNextSimpleBlock();
+        final int index = (int) (expectedCluster / 5000 * BLOCKS_PER_CLUSTER);
+        assertEquals(expectedCluster, block.absoluteTimeCodeNs / 1_000_000);
+
+        final byte[] data = new byte[block.dataSize];
+        assertEquals(data.length, block.data.read(data));
+        assertArrayEquals(WebMFixture.blockData(index, BLOCK_SIZE), data);
+    }
+
+    /**
+     * Checks that the blocks after the seeked one are read in order until the end.
+     *
+     * @param segment         the segment of the audio fixture
+     * @param clusterTimecode the timecode to seek, in milliseconds
+     * @throws IOException if the fixture can not be read
+     */
+    private static void assertRemainingBlocks(final Segment segment, final long clusterTimecode)
+            throws IOException {
+        int index = (int) (clusterTimecode / 5000 * BLOCKS_PER_CLUSTER);
+        Cluster cluster = segment.seek(clusterTimecode * 1_000_000);
+
+        while (cluster != null) {
+            SimpleBlock block;
+            while ((block = cluster.getNextSimpleBlock()) != null) {
+                assertEquals(WebMFixture.blockTimecode(index, WebMFixture.AUDIO_BLOCK_DURATION),
+                        block.absoluteTimeCodeNs / 1_000_000);
+                index++;
+            }
+            cluster = segment.getNextCluster();
+        }
+
+        assertEquals(WebMFixture.blockCount(SECONDS, WebMFixture.AUDIO_BLOCK_DURATION), index);
+    }
+}
@@ -0,0 +1,124 @@
+package org.schabi.newpipe.streams;
+
+import org.junit.Test;
+import org.schabi.newpipe.streams.CheckpointRecorder.Checkpoint;
+import org.schabi.newpipe.streams.WebMReader.Cluster;
+import org.schabi.newpipe.streams.WebMReader.Segment;
+import org.schabi.newpipe.streams.WebMReader.SimpleBlock;
+import org.schabi.newpipe.streams.WebMReader.WebMTrack;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WebMWriterTest {
+
+    @Test
+    public void testMuxedBlocksAreReadable() throws IOException {
+        final int seconds = 2 * 60;
+        final byte[] output = mux(WebMFixture.video(seconds, 1500),
+                WebMFixture.audio(seconds, 300));
+
+        final WebMReader reader = new WebMReader(new MemorySharpStream(output));
+        reader.parse();
+        final WebMTrack[] tracks = reader.getAvailableTracks();
+        assertEquals(2, tracks.length);
+        assertEquals("V_VP9", tracks[0].codecId);
+        assertEquals("A_OPUS", tracks[1].codecId);
+        assertEquals(6500000, tracks[1].codecDelay);
+        assertEquals(19, tracks[1].codecPrivate.length);
+
+        assertBlocks(output, 0, seconds, WebMFixture.VIDEO_BLOCK_DURATION, 1500);
+        assertBlocks(output, 1, seconds, WebMFixture.AUDIO_BLOCK_DURATION, 300);
+    }
+
+    @Test
+    public void testSingleTrack() throws IOException {
+        final byte[] output = mux(WebMFixture.audio(60, 700));
+        assertBlocks(output, 0, 60, WebMFixture.AUDIO_BLOCK_DURATION, 700);
+    }
+
+    @Test
+    public void testResumeFromCheckpoints() throws IOException {
+        final int seconds = 3 * 60;
+        final byte[] video = WebMFixture.video(seconds, 1500);
+        final byte[] audio = WebMFixture.audio(seconds, 300);
+
+        final MemorySharpStream output = new MemorySharpStream();
+        final CheckpointRecorder recorder = new CheckpointRecorder(output);
+        final WebMWriter muxer = new WebMWriter(new MemorySharpStream(video),
+                new MemorySharpStream(audio));
+        muxer.parseSources();
+        muxer.selectTracks(0, 0);
+        muxer.setCheckpointListener(recorder, 256 * 1024);
+        muxer.build(output);
+        muxer.close();
+
+        final byte[] expected = output.toByteArray();
+        assertArrayEquals(mux(video, audio), expected);
+
+        final List<Checkpoint> checkpoints = recorder.getCheckpoints();
+        assertTrue(checkpoints.size() > 10);
+
+        for (final Checkpoint checkpoint : checkpoints) {
+            final WebMWriter resumed = new WebMWriter(checkpoint.getSource(0, video),
+                    checkpoint.getSource(1, audio));
+            resumed.resume(checkpoint.getState());
+
+            final MemorySharpStream resumedOutput = checkpoint.getOutput();
+            resumed.build(resumedOutput);
+            resumed.close();
+
+            assertArrayEquals(expected, resumedOutput.toByteArray());
+        }
+    }
+
+    private static byte[] mux(final byte[]... sources) throws IOException {
+        final MemorySharpStream[] streams = new MemorySharpStream[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            streams[i] = new MemorySharpStream(sources[i]);
+        }
+
+        final WebMWriter muxer = new WebMWriter(streams);
+        muxer.parseSources();
+        muxer.selectTracks(new int[sources.length]);
+
+        final MemorySharpStream output = new MemorySharpStream();
+        muxer.build(output);
+        muxer.close();
+        return output.toByteArray();
+    }
+
+    private static void assertBlocks(final byte[] webm, final int track, final int seconds,
+                                     final int blockDuration, final int blockSize)
+            throws IOException {
+        final WebMReader reader = new WebMReader(new MemorySharpStream(webm));
+        reader.parse();
+        reader.selectTrack(track);
+
+        int index = 0;
+        Segment segment;
+        while ((segment = reader.getNextSegment()) != null) {
+            Cluster cluster;
+            while ((cluster = segment.getNextCluster()) != null) {
+                SimpleBlock block;
+                while ((block = cluster.getNextSimpleBlock()) != null) {
+                    assertEquals(WebMFixture.blockTimecode(index, blockDuration),
+                            block.absoluteTimeCodeNs / 1000000);
+
+                    final byte[] data = new byte[block.dataSize];
+                    assertEquals(data.length, block.data.read(data));
+                    assertArrayEquals(WebMFixture.blockData(index, blockSize), data);
+                    index++;
+                }
+            }
+        }
+
+        assertEquals(WebMFixture.blockCount(seconds, blockDuration), index);
+        assertNull(reader.getNextSegment());
+    }
+}
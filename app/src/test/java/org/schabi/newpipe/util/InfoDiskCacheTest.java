@@ -0,0 +1,119 @@
+package org.schabi.newpipe.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.extractor.stream.StreamType;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InfoDiskCacheTest {
+    private static final long HOUR = 60 * 60 * 1000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        final InfoDiskCache cache = new InfoDiskCache(folder.newFolder(), 1024 * 1024);
+        final long expireTimestamp = System.currentTimeMillis() + HOUR;
+        cache.put("0videoSTREAM", streamInfo("video"), expireTimestamp);
+
+        assertTrue(cache.contains("0videoSTREAM"));
+        assertFalse(cache.contains("0otherSTREAM"));
+
+        final InfoDiskCache.Entry entry = cache.get("0videoSTREAM");
+        assertNotNull(entry);
+        assertEquals("video", entry.info.getName());
+        assertEquals(expireTimestamp, entry.expireTimestamp);
+        assertNull(cache.get("0otherSTREAM"));
+
+        cache.remove("0videoSTREAM");
+        assertNull(cache.get("0videoSTREAM"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testExpiredAndCorrupted() throws IOException {
+        final File directory = folder.newFolder();
+        final InfoDiskCache cache = new InfoDiskCache(directory, 1024 * 1024);
+        cache.put("0expiredSTREAM", streamInfo("expired"), System.currentTimeMillis() - 1);
+        cache.put("0corruptedSTREAM", streamInfo("corrupted"), System.currentTimeMillis() + HOUR);
+
+        // cut the compressed info
+        try (RandomAccessFile file = new RandomAccessFile(
+                fileOf(directory, "0corruptedSTREAM"), "rw")) {
+            file.setLength(file.length() - 10);
+        }
+
+        assertFalse(cache.contains("0expiredSTREAM"));
+        assertNull(cache.get("0expiredSTREAM"));
+        assertNull(cache.get("0corruptedSTREAM"));
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        final File directory = folder.newFolder();
+        final long expireTimestamp = System.currentTimeMillis() + HOUR;
+
+        // measure the size of a single info
+        final InfoDiskCache measure = new InfoDiskCache(folder.newFolder(), Long.MAX_VALUE);
+        measure.put("0measureSTREAM", streamInfo("measure"), expireTimestamp);
+        final long size = measure.getSize();
+
+        final InfoDiskCache cache = new InfoDiskCache(directory, size * 2 + size / 2);
+        cache.put("0firstSTREAM", streamInfo("first"), expireTimestamp);
+        cache.put("0secondSTREAM", streamInfo("second"), expireTimestamp);
+
+        // the first info was used more recently than the second one
+        assertTrue(fileOf(directory, "0secondSTREAM")
+                .setLastModified(System.currentTimeMillis() - HOUR));
+
+        cache.put("0thirdSTREAM", streamInfo("third"), expireTimestamp);
+        assertTrue(cache.contains("0firstSTREAM"));
+        assertFalse(cache.contains("0secondSTREAM"));
+        assertTrue(cache.contains("0thirdSTREAM"));
+
+        // the size is restored from the files
+        final InfoDiskCache restored = new InfoDiskCache(directory, Long.MAX_VALUE);
+        assertEquals(cache.getSize(), restored.getSize());
+    }
+
+    @Test
+    public void testIndex() throws IOException {
+        final File directory = folder.newFolder();
+        final InfoDiskCache cache = new InfoDiskCache(directory, 1024 * 1024);
+        cache.put("0videoSTREAM", streamInfo("video"), System.currentTimeMillis() + HOUR);
+        cache.put("0expiredSTREAM", streamInfo("expired"), System.currentTimeMillis() - 1);
+
+        // the infos of a previous session are found once indexed
+        final InfoDiskCache restored = new InfoDiskCache(directory, 1024 * 1024);
+        assertFalse(restored.contains("0videoSTREAM"));
+        restored.index();
+        assertTrue(restored.contains("0videoSTREAM"));
+        assertFalse(restored.contains("0expiredSTREAM"));
+        assertEquals(cache.getSize(), restored.getSize());
+
+        restored.clear();
+        assertFalse(restored.contains("0videoSTREAM"));
+    }
+
+    private static File fileOf(final File directory, final String key) {
+        return new File(directory, String.format("%08x", key.hashCode()) + ".info");
+    }
+
+    private static StreamInfo streamInfo(final String name) {
+        return new StreamInfo(0, "https://example.com/" + name, "https://example.com/" + name,
+                StreamType.VIDEO_STREAM, name, name, 0);
+    }
+}
@@ -0,0 +1,129 @@
+package us.shandian.giga.get;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertTrue;
+
+public class BandwidthSchedulerTest {
+    private static final int RATE = 1024 * 1024;
+    private static final long DURATION = 1000;
+
+    private BandwidthScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new BandwidthScheduler();
+    }
+
+    @Test
+    public void testNoLimit() throws InterruptedException {
+        final long start = System.currentTimeMillis();
+        for (int i = 0; i < 1000; i++) {
+            scheduler.acquire(new BandwidthScheduler.Share(), DownloadMission.BUFFER_SIZE);
+        }
+        assertTrue(System.currentTimeMillis() - start < DURATION);
+    }
+
+    @Test
+    public void testLimit() throws InterruptedException {
+        scheduler.setRate(RATE);
+
+        final long[] bytes = download(new BandwidthScheduler.Share());
+
+        // the bucket starts empty, every thread can take one buffer after the end
+        assertTrue(bytes[0] <= RATE * DURATION / 1000 + DownloadMission.BUFFER_SIZE * 2);
+        assertTrue(bytes[0] >= RATE * DURATION / 1000 / 2);
+    }
+
+    @Test
+    public void testWeights() throws InterruptedException {
+        scheduler.setRate(RATE);
+
+        final BandwidthScheduler.Share light = new BandwidthScheduler.Share();
+        final BandwidthScheduler.Share heavy = new BandwidthScheduler.Share();
+        heavy.weight = BandwidthScheduler.Share.WEIGHT_HIGH;
+
+        // twice the normal weight
+        final long[] bytes = download(light, heavy);
+        final double ratio = (double) bytes[1] / bytes[0];
+        assertTrue("ratio " + ratio, ratio > 1.5 && ratio < 3);
+    }
+
+    @Test
+    public void testPriority() throws InterruptedException {
+        scheduler.setRate(RATE);
+
+        final BandwidthScheduler.Share normal = new BandwidthScheduler.Share();
+        final BandwidthScheduler.Share critical = new BandwidthScheduler.Share();
+        critical.priority = BandwidthScheduler.Share.PRIORITY_HIGH;
+
+        final long[] bytes = download(normal, critical);
+        assertTrue(bytes[1] > bytes[0] * 4);
+    }
+
+    @Test
+    public void testRemoveLimit() throws InterruptedException {
+        scheduler.setRate(1);
+
+        final Thread remover = new Thread(() -> {
+            try {
+                Thread.sleep(DURATION / 4);
+            } catch (final InterruptedException ignored) {
+                // expected
+            }
+            scheduler.setRate(0);
+        });
+        remover.start();
+
+        // without removing the limit this takes more than a day
+        final long start = System.currentTimeMillis();
+        scheduler.acquire(new BandwidthScheduler.Share(), DownloadMission.BUFFER_SIZE);
+        assertTrue(System.currentTimeMillis() - start < DURATION);
+        remover.join();
+    }
+
+    /**
+     * Runs two download threads for every share during {@link #DURATION}.
+     *
+     * @param shares the shares of the downloads
+     * @return the bytes downloaded by every share
+     */
+    private long[] download(final BandwidthScheduler.Share... shares)
+            throws InterruptedException {
+        final long end = System.currentTimeMillis() + DURATION;
+        final AtomicLong[] counters = new AtomicLong[shares.length];
+        final Thread[] threads = new Thread[shares.length * 2];
+
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i / 2;
+            if (counters[index] == null) {
+                counters[index] = new AtomicLong();
+            }
+
+            threads[i] = new Thread(() -> {
+                try {
+                    while (System.currentTimeMillis() < end) {
+                        scheduler.acquire(shares[index], DownloadMission.BUFFER_SIZE);
+                        counters[index].addAndGet(DownloadMission.BUFFER_SIZE);
+                    }
+                } catch (final InterruptedException ignored) {
+                    // expected
+                }
+            });
+            threads[i].start();
+        }
+
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        final long[] bytes = new long[shares.length];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = counters[i].get();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,32 @@
+package us.shandian.giga.get;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DownloadMissionRefreshTest {
+
+    @Test
+    public void testExpirationFromQuery() {
+        assertEquals(1700000000000L, DownloadMissionRefresh.getExpiration(
+                "https://rr1.googlevideo.com/videoplayback?expire=1700000000&ei=abc&itag=251"));
+        assertEquals(1700000000000L, DownloadMissionRefresh.getExpiration(
+                "https://rr1.googlevideo.com/videoplayback?ei=abc&itag=251&expire=1700000000"));
+    }
+
+    @Test
+    public void testExpirationFromPath() {
+        assertEquals(1700000000000L, DownloadMissionRefresh.getExpiration(
+                "https://rr1.googlevideo.com/videoplayback/expire/1700000000/ei/abc?alr=yes"));
+    }
+
+    @Test
+    public void testNoExpiration() {
+        assertEquals(-1, DownloadMissionRefresh.getExpiration(null));
+        assertEquals(-1, DownloadMissionRefresh.getExpiration("https://example.com/video.mp4"));
+        assertEquals(-1, DownloadMissionRefresh.getExpiration(
+                "https://example.com/video.mp4?noexpire=1700000000"));
+        assertEquals(-1, DownloadMissionRefresh.getExpiration(
+                "https://example.com/video.mp4?expire=soon"));
+    }
+}
@@ -0,0 +1,66 @@
+package us.shandian.giga.get;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class DownloadMissionTest {
+
+    @Test
+    public void testReadMissionWithoutBandwidthShare() throws Exception {
+        final DownloadMission mission = new DownloadMission(
+                new String[]{"https://example.com/video.mp4"}, null, 'v', null);
+        // a field missing from the stream is read as null, like the missions saved before
+        // the share was added
+        mission.bandwidth = null;
+
+        final DownloadMission restored = read(write(mission));
+        assertNotNull(restored.bandwidth);
+        assertEquals(BandwidthScheduler.Share.WEIGHT_NORMAL, restored.bandwidth.weight);
+        assertEquals(BandwidthScheduler.Share.PRIORITY_NORMAL, restored.bandwidth.priority);
+    }
+
+    @Test
+    public void testReadBandwidthShare() throws Exception {
+        final DownloadMission mission = new DownloadMission(
+                new String[]{"https://example.com/video.mp4"}, null, 'v', null);
+        mission.bandwidth.weight = BandwidthScheduler.Share.WEIGHT_HIGH;
+        mission.bandwidth.priority = BandwidthScheduler.Share.PRIORITY_HIGH;
+
+        final DownloadMission restored = read(write(mission));
+        assertEquals(BandwidthScheduler.Share.WEIGHT_HIGH, restored.bandwidth.weight);
+        assertEquals(BandwidthScheduler.Share.PRIORITY_HIGH, restored.bandwidth.priority);
+    }
+
+    @Test
+    public void testReadMetrics() throws Exception {
+        final DownloadMission mission = new DownloadMission(
+                new String[]{"https://example.com/video.mp4"}, null, 'v', null);
+        assertNotNull(mission.metrics);
+
+        // the measurements are not saved, a loaded mission starts with empty ones
+        assertNotNull(read(write(mission)).metrics);
+    }
+
+    private static byte[] write(final DownloadMission mission) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ObjectOutputStream objects = new ObjectOutputStream(output)) {
+            objects.writeObject(mission);
+        }
+        return output.toByteArray();
+    }
+
+    private static DownloadMission read(final byte[] data)
+            throws IOException, ClassNotFoundException {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return (DownloadMission) input.readObject();
+        }
+    }
+}
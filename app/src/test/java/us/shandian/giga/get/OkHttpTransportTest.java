@@ -0,0 +1,151 @@
+package us.shandian.giga.get;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class OkHttpTransportTest {
+    private MockWebServer server;
+    private OkHttpTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        transport = new OkHttpTransport(new OkHttpClient());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void testRangeRequest() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(206)
+                .setHeader("Content-Range", "bytes 10-19/100")
+                .setBody("0123456789"));
+
+        final DownloadConnection conn = open(false);
+        conn.setRequestProperty("Range", "bytes=10-19");
+        assertEquals("bytes=10-19", conn.getRequestProperty("Range"));
+
+        assertEquals(206, conn.getResponseCode());
+        assertEquals("bytes 10-19/100", conn.getHeaderField("Content-Range"));
+        assertEquals(10, conn.getContentLength());
+        assertEquals("0123456789", read(conn));
+        conn.disconnect();
+
+        final RecordedRequest request = server.takeRequest();
+        assertEquals("GET", request.getMethod());
+        assertEquals("bytes=10-19", request.getHeader("Range"));
+    }
+
+    @Test
+    public void testHeadRequest() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Content-Length", 12345)
+                .setHeader("ETag", "\"abc\""));
+
+        final DownloadConnection conn = open(true);
+        assertEquals(200, conn.getResponseCode());
+        assertEquals(12345, conn.getContentLength());
+        assertEquals("\"abc\"", conn.getHeaderField("ETag"));
+        assertNull(conn.getHeaderField("Last-Modified"));
+        conn.disconnect();
+
+        assertEquals("HEAD", server.takeRequest().getMethod());
+    }
+
+    @Test
+    public void testUnknownLength() throws Exception {
+        server.enqueue(new MockResponse().setChunkedBody("0123456789", 3));
+
+        final DownloadConnection conn = open(false);
+        assertEquals(-1, conn.getContentLength());
+        assertEquals("0123456789", read(conn));
+        conn.disconnect();
+    }
+
+    @Test
+    public void testConnectionIsReused() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(206).setBody("block" + i));
+        }
+
+        for (int i = 0; i < 3; i++) {
+            final DownloadConnection conn = open(false);
+            conn.setRequestProperty("Range", "bytes=" + i + "-");
+            assertEquals("block" + i, read(conn));
+            conn.disconnect();
+        }
+
+        // the sequence number is the amount of previous requests on the same connection
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, server.takeRequest().getSequenceNumber());
+        }
+    }
+
+    @Test
+    public void testDisconnectAbortsTheBody() throws Exception {
+        server.enqueue(new MockResponse().setBody(new String(new byte[1024 * 1024],
+                StandardCharsets.US_ASCII)).throttleBody(1024, 1, TimeUnit.SECONDS));
+
+        final DownloadConnection conn = open(false);
+        final InputStream stream = conn.getInputStream();
+        assertEquals(0, stream.read());
+
+        final Thread thread = new Thread(conn::disconnect);
+        thread.start();
+        thread.join();
+
+        try {
+            readAll(stream);
+            fail("the body was read completely");
+        } catch (final IOException e) {
+            // expected, the request was canceled
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testFailedRequest() throws Exception {
+        final String url = server.url("/file").toString();
+        server.shutdown();
+
+        transport.open(url, false).getResponseCode();
+    }
+
+    private DownloadConnection open(final boolean headRequest) throws IOException {
+        return transport.open(server.url("/file").toString(), headRequest);
+    }
+
+    private static String read(final DownloadConnection conn) throws IOException {
+        try (InputStream stream = conn.getInputStream()) {
+            return readAll(stream);
+        }
+    }
+
+    private static String readAll(final InputStream stream) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString("UTF-8");
+    }
+}
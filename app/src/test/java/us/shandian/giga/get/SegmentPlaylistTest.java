@@ -0,0 +1,73 @@
+package us.shandian.giga.get;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SegmentPlaylistTest {
+    private static final String URL = "https://example.com/hls/stream/index.m3u8?token=abc";
+
+    @Test
+    public void testIsPlaylist() {
+        assertTrue(SegmentPlaylist.isPlaylist(URL, null));
+        assertTrue(SegmentPlaylist.isPlaylist("https://example.com/video",
+                "application/vnd.apple.mpegurl"));
+        assertTrue(SegmentPlaylist.isPlaylist("https://example.com/video",
+                "audio/x-mpegURL; charset=utf-8"));
+        assertFalse(SegmentPlaylist.isPlaylist("https://example.com/video.mp4?m3u8=1",
+                "video/mp4"));
+        assertFalse(SegmentPlaylist.isPlaylist("https://example.com/videoplayback", null));
+    }
+
+    @Test
+    public void testParse() throws IOException {
+        final String playlist = "#EXTM3U\r\n"
+                + "#EXT-X-VERSION:7\r\n"
+                + "#EXT-X-TARGETDURATION:5\r\n"
+                + "#EXT-X-PLAYLIST-TYPE:VOD\r\n"
+                + "#EXT-X-MAP:URI=\"init.mp4\"\r\n"
+                + "#EXT-X-KEY:METHOD=NONE\r\n"
+                + "#EXTINF:5.0,\r\n"
+                + "segment/0.m4s\r\n"
+                + "\r\n"
+                + "#EXTINF:5.0,\r\n"
+                + "/other/1.m4s\r\n"
+                + "#EXTINF:2.5,\r\n"
+                + "https://cdn.example.com/2.m4s?sq=2\r\n"
+                + "#EXT-X-ENDLIST\r\n";
+
+        assertArrayEquals(new String[]{
+                "https://example.com/hls/stream/init.mp4",
+                "https://example.com/hls/stream/segment/0.m4s",
+                "https://example.com/other/1.m4s",
+                "https://cdn.example.com/2.m4s?sq=2"
+        }, SegmentPlaylist.parse(URL, playlist));
+    }
+
+    @Test
+    public void testUnsupported() {
+        assertInvalid("<html></html>");
+        // live
+        assertInvalid("#EXTM3U\n#EXTINF:5.0,\n0.ts\n");
+        // empty
+        assertInvalid("#EXTM3U\n#EXT-X-ENDLIST\n");
+        assertInvalid("#EXTM3U\n#EXT-X-STREAM-INF:BANDWIDTH=1280000\nlow.m3u8\n#EXT-X-ENDLIST\n");
+        assertInvalid("#EXTM3U\n#EXT-X-KEY:METHOD=AES-128,URI=\"key\"\n"
+                + "#EXTINF:5.0,\n0.ts\n#EXT-X-ENDLIST\n");
+        assertInvalid("#EXTM3U\n#EXTINF:5.0,\n#EXT-X-BYTERANGE:1000@0\n0.ts\n#EXT-X-ENDLIST\n");
+    }
+
+    private static void assertInvalid(final String playlist) {
+        try {
+            SegmentPlaylist.parse(URL, playlist);
+            fail("parsed " + playlist);
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package us.shandian.giga.postprocessing;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PostprocessingTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadLegacyAlgorithm() throws Exception {
+        // a WebM muxer with the argument "arg", saved by the previous version
+        final byte[] data;
+        try (InputStream input = getClass().getClassLoader()
+                .getResourceAsStream("postprocessing/webm_muxer_legacy.ser")) {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[1024];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                output.write(buffer, 0, read);
+            }
+            data = output.toByteArray();
+        }
+
+        assertReadFails(data);
+
+        final Postprocessing algorithm = (Postprocessing) readLegacy(data);
+        assertTrue(algorithm instanceof WebMMuxer);
+        assertTrue(algorithm.worksOnSameFile);
+        assertTrue(algorithm.reserveSpace);
+        assertTrue(algorithm.toString().contains("webm"));
+        assertTrue(algorithm.toString().contains("arg"));
+        assertFalse(algorithm.canResume());
+    }
+
+    @Test
+    public void testReadForeignSerialVersions() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ObjectOutputStream objects = new ObjectOutputStream(output)) {
+            objects.writeObject(Postprocessing.getAlgorithm(
+                    Postprocessing.ALGORITHM_OGG_FROM_WEBM_DEMUXER, new String[0]));
+        }
+        final byte[] data = output.toByteArray();
+
+        // another build computed other values
+        final int subclass = uidOffset(data, OggFromWebmDemuxer.class);
+        final int superclass = uidOffset(data, Postprocessing.class);
+        ByteBuffer.wrap(data).putLong(subclass, 0x0123456789ABCDEFL);
+        ByteBuffer.wrap(data).putLong(superclass, -0x0123456789ABCDEFL);
+
+        assertReadFails(data);
+        assertEquals(OggFromWebmDemuxer.class, readLegacy(data).getClass());
+    }
+
+    @Test
+    public void testCheckpointFile() throws IOException {
+        final File metadata = folder.newFile("1600000000000");
+        final File aux = folder.newFile("aux.tmp");
+        try (RandomAccessFile file = new RandomAccessFile(aux, "rw")) {
+            file.setLength(2048);
+        }
+
+        new Postprocessing.Checkpoint(new byte[]{1, 2, 3}, 4096, 2048, aux.getAbsolutePath(),
+                8192).write(new File(metadata.getPath() + ".checkpoint"));
+
+        final Postprocessing algorithm = Postprocessing.getAlgorithm(
+                Postprocessing.ALGORITHM_WEBM_MUXER, new String[0]);
+        algorithm.loadCheckpoint(metadata);
+        assertTrue(algorithm.canResume());
+        assertEquals(1, folder.getRoot().listFiles(Postprocessing::isCheckpoint).length);
+
+        // the checkpoint is not usable without the whole auxiliar file
+        try (RandomAccessFile file = new RandomAccessFile(aux, "rw")) {
+            file.setLength(1024);
+        }
+        assertFalse(algorithm.canResume());
+
+        algorithm.discardCheckpoint();
+        assertFalse(aux.exists());
+        assertEquals(0, folder.getRoot().listFiles(Postprocessing::isCheckpoint).length);
+    }
+
+    private static Object read(final byte[] data) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return input.readObject();
+        }
+    }
+
+    private static Object readLegacy(final byte[] data)
+            throws IOException, ClassNotFoundException {
+        try (ObjectInputStream input =
+                     new LegacyAlgorithmInputStream(new ByteArrayInputStream(data))) {
+            return input.readObject();
+        }
+    }
+
+    private static void assertReadFails(final byte[] data) throws ClassNotFoundException {
+        try {
+            read(data);
+            fail("the serialVersionUID was accepted");
+        } catch (final InvalidClassException e) {
+            // expected
+        } catch (final IOException e) {
+            fail(e.toString());
+        }
+    }
+
+    private static int uidOffset(final byte[] data, final Class<?> type) {
+        final byte[] name = type.getName().getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i + name.length <= data.length; i++) {
+            int j = 0;
+            while (j < name.length && data[i + j] == name[j]) {
+                j++;
+            }
+            if (j == name.length) {
+                return i + name.length;
+            }
+        }
+        throw new AssertionError(type.getName() + " not found");
+    }
+}
@@ -0,0 +1,64 @@
+package org.schabi.newpipe.streams;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checksum of a full Ogg page, {@link OggCrc32} against the byte-at-a-time implementation
+ * formerly used by {@link OggFromWebMWriter}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OggCrc32Benchmark {
+    private static final int[] REFERENCE_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 0x100; i++) {
+            int crc = i << 24;
+            for (int j = 0; j < 8; j++) {
+                final long b = crc >>> 31;
+                crc <<= 1;
+                crc ^= (int) (0x100000000L - b) & 0x04c11db7;
+            }
+            REFERENCE_TABLE[i] = crc;
+        }
+    }
+
+    // the biggest page written by OggFromWebMWriter
+    private final byte[] page = new byte[65025];
+
+    @Setup(Level.Trial)
+    public void generate() {
+        new Random(1).nextBytes(page);
+    }
+
+    @Benchmark
+    public int byteAtATime() {
+        int crc = 0;
+        for (final byte b : page) {
+            crc = (crc << 8) ^ REFERENCE_TABLE[(crc >>> 24) ^ (b & 0xff)];
+        }
+        return crc;
+    }
+
+    @Benchmark
+    public int sliceBy8() {
+        return OggCrc32.update(0, page, 0, page.length);
+    }
+}
@@ -0,0 +1,205 @@
+package org.schabi.newpipe.streams;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.schabi.newpipe.streams.Mp4DashReader.Mp4DashChunk;
+import org.schabi.newpipe.streams.Mp4DashReader.Mp4DashSample;
+import org.schabi.newpipe.streams.Mp4DashReader.TrunEntry;
+import org.schabi.newpipe.streams.WebMReader.Cluster;
+import org.schabi.newpipe.streams.WebMReader.Segment;
+import org.schabi.newpipe.streams.WebMReader.SimpleBlock;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of every stage used by the downloader post-processing. Each benchmark reports the
+ * megabytes of input processed per second in the {@code megabytes} counter, run it with the
+ * {@code gc} profiler to get the allocation rate of the stage.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamsBenchmark {
+    private static final int VIDEO_SAMPLE_SIZE = 2048;
+    private static final int AUDIO_SAMPLE_SIZE = 160;
+
+    /**
+     * Media duration of the generated sources, in seconds.
+     */
+    @Param({"60", "600"})
+    public int seconds;
+
+    private byte[] mp4Video;
+    private byte[] mp4Audio;
+    private byte[] webmVideo;
+    private byte[] webmAudio;
+    private byte[] ttml;
+
+    private final MemorySharpStream output = new MemorySharpStream();
+
+    @Setup(Level.Trial)
+    public void generate() {
+        mp4Video = FragmentedMp4Fixture.video(seconds, VIDEO_SAMPLE_SIZE);
+        mp4Audio = FragmentedMp4Fixture.audio(seconds, AUDIO_SAMPLE_SIZE);
+        webmVideo = WebMFixture.video(seconds, VIDEO_SAMPLE_SIZE);
+        webmAudio = WebMFixture.audio(seconds, AUDIO_SAMPLE_SIZE);
+        ttml = TtmlFixture.autoCaptions(seconds);
+    }
+
+    @Setup(Level.Invocation)
+    public void resetOutput() {
+        // keep the buffer, the output allocations are not part of the measured stages
+        output.setLength(0);
+        output.seek(0);
+    }
+
+    @Benchmark
+    public void mp4DashReader(final Throughput throughput, final Blackhole blackhole)
+            throws IOException {
+        final Mp4DashReader reader = new Mp4DashReader(new MemorySharpStream(mp4Video));
+        reader.parse();
+        reader.selectTrack(0);
+
+        Mp4DashChunk chunk;
+        while ((chunk = reader.getNextChunk(false)) != null) {
+            Mp4DashSample sample;
+            while ((sample = chunk.getNextSample()) != null) {
+                blackhole.consume(sample);
+            }
+        }
+
+        throughput.add(mp4Video.length);
+    }
+
+    /**
+     * Parses the box tree and every trun entry without reading the samples, this only measures
+     * the primitive reads of {@link DataReader}. Use {@code -Pseconds=7200} for a 2-hour video.
+     *
+     * @param throughput the input counter
+     * @param blackhole  consumes the sample infos
+     * @throws IOException if the source is invalid
+     */
+    @Benchmark
+    public void mp4DashReaderSampleInfo(final Throughput throughput, final Blackhole blackhole)
+            throws IOException {
+        final Mp4DashReader reader = new Mp4DashReader(new MemorySharpStream(mp4Video));
+        reader.parse();
+        reader.selectTrack(0);
+
+        Mp4DashChunk chunk;
+        while ((chunk = reader.getNextChunk(true)) != null) {
+            TrunEntry entry;
+            while ((entry = chunk.getNextSampleInfo()) != null) {
+                blackhole.consume(entry);
+            }
+        }
+
+        throughput.add(mp4Video.length);
+    }
+
+    @Benchmark
+    public void mp4FromDashWriter(final Throughput throughput) throws IOException {
+        buildMp4(false);
+        throughput.add(mp4Video.length + mp4Audio.length);
+    }
+
+    @Benchmark
+    public void mp4FromDashWriterFastStart(final Throughput throughput) throws IOException {
+        buildMp4(true);
+        throughput.add(mp4Video.length + mp4Audio.length);
+    }
+
+    @Benchmark
+    public void webMReader(final Throughput throughput, final Blackhole blackhole)
+            throws IOException {
+        final WebMReader reader = new WebMReader(new MemorySharpStream(webmVideo));
+        reader.parse();
+        reader.selectTrack(0);
+
+        Segment segment;
+        while ((segment = reader.getNextSegment()) != null) {
+            Cluster cluster;
+            while ((cluster = segment.getNextCluster()) != null) {
+                SimpleBlock block;
+                while ((block = cluster.getNextSimpleBlock()) != null) {
+                    blackhole.consume(block.data.skip(block.dataSize));
+                }
+            }
+        }
+
+        throughput.add(webmVideo.length);
+    }
+
+    @Benchmark
+    public void webMWriter(final Throughput throughput) throws IOException {
+        final WebMWriter muxer = new WebMWriter(new MemorySharpStream(webmVideo),
+                new MemorySharpStream(webmAudio));
+        muxer.parseSources();
+        muxer.selectTracks(0, 0);
+        muxer.build(output);
+        muxer.close();
+
+        throughput.add(webmVideo.length + webmAudio.length);
+    }
+
+    @Benchmark
+    public void oggFromWebMWriter(final Throughput throughput) throws IOException {
+        final OggFromWebMWriter demuxer = new OggFromWebMWriter(
+                new MemorySharpStream(webmAudio), output);
+        demuxer.parseSource();
+        demuxer.selectTrack(0);
+        demuxer.build();
+
+        throughput.add(webmAudio.length);
+    }
+
+    @Benchmark
+    public void srtFromTtmlWriter(final Throughput throughput) throws IOException {
+        new SrtFromTtmlWriter(output, true).build(new MemorySharpStream(ttml));
+        throughput.add(ttml.length);
+    }
+
+    private void buildMp4(final boolean fastStart) throws IOException {
+        final Mp4FromDashWriter muxer = new Mp4FromDashWriter(new MemorySharpStream(mp4Video),
+                new MemorySharpStream(mp4Audio));
+        muxer.parseSources();
+        muxer.selectTracks(0, 0);
+        muxer.setFastStart(fastStart);
+        muxer.build(output);
+        muxer.close();
+    }
+
+    /**
+     * Counts the input processed by a benchmark, JMH reports it as megabytes per second.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Throughput {
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+
+        void add(final long bytes) {
+            megabytes += bytes / (1024.0 * 1024.0);
+        }
+    }
+}
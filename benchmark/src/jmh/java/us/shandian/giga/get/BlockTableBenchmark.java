@@ -0,0 +1,183 @@
+package us.shandian.giga.get;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Contention of the download threads: N threads download a file from a local HTTP server,
+ * acquiring ranges of blocks and reporting the progress like {@link DownloadRunnable} does.
+ * Every operation is a complete download.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockTableBenchmark {
+    private static final int BLOCK_SIZE = 512 * 1024; // same as DownloadMission.BLOCK_SIZE
+    private static final int BUFFER_SIZE = 64 * 1024; // same as DownloadMission.BUFFER_SIZE
+    private static final int RANGE_BLOCKS = 4;
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    private static final AtomicLongFieldUpdater<BlockTableBenchmark> DONE_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(BlockTableBenchmark.class, "done");
+
+    @Param({"1", "4", "8", "16"})
+    public int threads;
+
+    /**
+     * File size in MiB.
+     */
+    @Param({"64"})
+    public int size;
+
+    private byte[] file;
+    private HttpServer server;
+    private URL url;
+
+    private volatile long done;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        file = new byte[size * 1024 * 1024];
+        for (int i = 0; i < file.length; i++) {
+            file[i] = (byte) i;
+        }
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/file", exchange -> {
+            final Matcher range = RANGE.matcher(exchange.getRequestHeaders().getFirst("Range"));
+            if (!range.matches()) {
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+
+            final int start = Integer.parseInt(range.group(1));
+            final int end = Math.min(Integer.parseInt(range.group(2)), file.length - 1);
+            exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + start + "-" + end + "/" + file.length);
+            exchange.sendResponseHeaders(206, end - start + 1);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(file, start, end - start + 1);
+            }
+        });
+        server.start();
+
+        url = new URL("http://" + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort() + "/file");
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Benchmark
+    public long download() throws InterruptedException {
+        final int[] blocks = new int[(file.length + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        final BlockTable table = new BlockTable(blocks, threads);
+        done = 0;
+
+        final Thread[] workers = new Thread[threads];
+        for (int i = 0; i < workers.length; i++) {
+            final int id = i;
+            workers[i] = new Thread(() -> work(table, id));
+            workers[i].start();
+        }
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+
+        if (done != file.length) {
+            throw new IllegalStateException("downloaded " + done + " of " + file.length);
+        }
+        return done;
+    }
+
+    private void work(final BlockTable table, final int id) {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        BlockTable.Block block;
+
+        while ((block = table.acquire(id, RANGE_BLOCKS)) != null) {
+            long start = (long) block.getPosition() * BLOCK_SIZE + block.done;
+            final long end = Math.min((long) block.getEnd() * BLOCK_SIZE, file.length) - 1;
+
+            try {
+                final HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+                conn.setRequestProperty("Range", "bytes=" + start + "-" + end);
+
+                try (InputStream in = conn.getInputStream()) {
+                    long blockEnd = -1;
+                    int unreported = 0;
+                    boolean owned = true;
+
+                    while (owned) {
+                        final int len = in.read(buffer);
+                        if (len == -1) {
+                            break;
+                        }
+
+                        int offset = 0;
+                        while (offset < len) {
+                            if (blockEnd <= start) {
+                                blockEnd = Math.min((block.getPosition() + 1L) * BLOCK_SIZE,
+                                        file.length);
+                            }
+
+                            final int count = (int) Math.min(len - offset, blockEnd - start);
+                            offset += count;
+                            start += count;
+                            block.done += count;
+                            unreported += count;
+
+                            if (start >= blockEnd && !table.next(block)) {
+                                owned = false;
+                                break;
+                            }
+                        }
+
+                        if (unreported >= BUFFER_SIZE) {
+                            DONE_UPDATER.addAndGet(this, unreported);
+                            unreported = 0;
+                        }
+                    }
+
+                    DONE_UPDATER.addAndGet(this, unreported);
+                }
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                table.release(id, block);
+            }
+        }
+    }
+}